@@ -46,6 +46,14 @@ public class BrokerMemoryConfig extends BrokerConfig {
             https.put("certKeyPass", null);
             server.put("https", https);
         }
+        {
+            JsonObject ws = new JsonObject();
+            ws.put("compression", true);
+            ws.put("compressionLevel", 6);
+            ws.put("compressionThreshold", 0);
+            ws.put("maxFrameSize", 0);
+            server.put("websocket", ws);
+        }
         opts.put("server", server);
     }
 
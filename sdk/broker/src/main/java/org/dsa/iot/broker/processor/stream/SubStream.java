@@ -3,6 +3,7 @@ package org.dsa.iot.broker.processor.stream;
 import org.dsa.iot.broker.node.BrokerNode;
 import org.dsa.iot.broker.server.client.Client;
 import org.dsa.iot.broker.utils.ParsedPath;
+import org.dsa.iot.dslink.util.LatencyTrace;
 import org.dsa.iot.dslink.util.json.JsonArray;
 import org.dsa.iot.dslink.util.json.JsonObject;
 
@@ -68,6 +69,7 @@ public class SubStream {
     }
 
     public void dispatch(JsonArray update) {
+        LatencyTrace.record(update);
         lastValueUpdate = update;
 
         JsonObject resp = new JsonObject();
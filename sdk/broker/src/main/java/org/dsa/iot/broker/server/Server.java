@@ -6,9 +6,9 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
-import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
 import io.netty.handler.ssl.SslContext;
 import org.dsa.iot.broker.Broker;
+import org.dsa.iot.dslink.provider.netty.WsFrameOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,12 +23,16 @@ public class Server {
     private final String host;
     private final int port;
     private final SslContext ssl;
+    private final WsFrameOptions options;
     private Channel channel;
 
     public Server(String host, int port,
-                  SslContext ssl, Broker broker) {
+                  SslContext ssl, WsFrameOptions options,
+                  Broker broker) {
         if (host == null) {
             throw new NullPointerException("host");
+        } else if (options == null) {
+            throw new NullPointerException("options");
         } else if (broker == null) {
             throw new NullPointerException("broker");
         } else if (port < 0) {
@@ -38,6 +42,7 @@ public class Server {
         this.host = host;
         this.port = port;
         this.ssl = ssl;
+        this.options = options;
     }
 
     public void start(EventLoopGroup bossLoop,
@@ -74,8 +79,8 @@ public class Server {
             }
             pipeline.addLast(new HttpServerCodec());
             pipeline.addLast(new HttpObjectAggregator(65536));
-            pipeline.addLast(new WebSocketServerCompressionHandler());
-            pipeline.addLast(new WsServerHandler(broker, ssl != null));
+            options.addCompression(pipeline, true);
+            pipeline.addLast(new WsServerHandler(broker, ssl != null, options));
         }
     }
 }
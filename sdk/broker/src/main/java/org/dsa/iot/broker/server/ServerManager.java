@@ -4,6 +4,7 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.handler.ssl.SslContext;
 import org.dsa.iot.broker.Broker;
+import org.dsa.iot.dslink.provider.netty.WsFrameOptions;
 import org.dsa.iot.dslink.util.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +20,7 @@ public class ServerManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerManager.class);
     private final JsonObject serverConf;
     private final Broker broker;
+    private WsFrameOptions frameOptions;
 
     private EventLoopGroup bossLoop;
     private EventLoopGroup workerLoop;
@@ -43,6 +45,7 @@ public class ServerManager {
         bossLoop = new NioEventLoopGroup(1);
         workerLoop = new NioEventLoopGroup();
 
+        frameOptions = createFrameOptions(serverConf.<JsonObject>get("websocket"));
         final JsonObject httpConf = serverConf.get("http");
         final JsonObject httpsConf = serverConf.get("https");
 
@@ -95,7 +98,7 @@ public class ServerManager {
     private void startHttpServer(JsonObject conf) {
         String host = conf.get("host");
         int port = conf.get("port");
-        httpServer = new Server(host, port, null, broker);
+        httpServer = new Server(host, port, null, frameOptions, broker);
         httpServer.start(bossLoop, workerLoop);
     }
 
@@ -121,7 +124,18 @@ public class ServerManager {
 
         String host = conf.get("host");
         int port = conf.get("port");
-        httpsServer = new Server(host, port, ssl, broker);
+        httpsServer = new Server(host, port, ssl, frameOptions, broker);
         httpsServer.start(bossLoop, workerLoop);
     }
+
+    private static WsFrameOptions createFrameOptions(JsonObject conf) {
+        WsFrameOptions opts = new WsFrameOptions();
+        if (conf != null) {
+            opts.setCompression(conf.get("compression", true));
+            opts.setCompressionLevel(conf.get("compressionLevel", 6));
+            opts.setCompressionThreshold(conf.get("compressionThreshold", 0));
+            opts.setMaxFrameSize(conf.get("maxFrameSize", 0));
+        }
+        return opts;
+    }
 }
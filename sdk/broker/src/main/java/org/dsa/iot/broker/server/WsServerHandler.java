@@ -11,6 +11,7 @@ import io.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
 import io.netty.util.CharsetUtil;
 import org.dsa.iot.broker.Broker;
 import org.dsa.iot.broker.server.client.Client;
+import org.dsa.iot.dslink.provider.netty.WsFrameOptions;
 import org.dsa.iot.dslink.util.json.JsonObject;
 
 import java.util.List;
@@ -24,13 +25,19 @@ public class WsServerHandler extends SimpleChannelInboundHandler<FullHttpRequest
 
     private final Broker broker;
     private final boolean secure;
+    private final WsFrameOptions options;
 
-    public WsServerHandler(Broker broker, boolean secure) {
+    public WsServerHandler(Broker broker,
+                           boolean secure,
+                           WsFrameOptions options) {
         if (broker == null) {
             throw new NullPointerException("broker");
+        } else if (options == null) {
+            throw new NullPointerException("options");
         }
         this.broker = broker;
         this.secure = secure;
+        this.options = options;
     }
 
     @Override
@@ -104,12 +111,14 @@ public class WsServerHandler extends SimpleChannelInboundHandler<FullHttpRequest
 
         // Allow the handshake to continue
         WebSocketServerHandshakerFactory ws = new WebSocketServerHandshakerFactory(
-                getWebSocketLocation(req), null, true, Integer.MAX_VALUE);
+                getWebSocketLocation(req), null, true,
+                options.getMaxFramePayloadLength());
         WebSocketServerHandshaker handshake = ws.newHandshaker(req);
         if (handshake == null) {
             Channel c = ctx.channel();
             WebSocketServerHandshakerFactory.sendUnsupportedVersionResponse(c);
         } else {
+            client.options(options);
             ctx.pipeline().addLast(client);
             ctx.pipeline().remove(WsServerHandler.class);
             handshake.handshake(ctx.channel(), req);
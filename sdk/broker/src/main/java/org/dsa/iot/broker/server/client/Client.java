@@ -10,6 +10,8 @@ import org.dsa.iot.broker.Broker;
 import org.dsa.iot.broker.node.DSLinkNode;
 import org.dsa.iot.broker.processor.MessageProcessor;
 import org.dsa.iot.broker.server.DsaHandshake;
+import org.dsa.iot.dslink.provider.netty.WsFrameOptions;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
 import org.dsa.iot.dslink.util.json.JsonArray;
 import org.dsa.iot.dslink.util.json.JsonObject;
 import org.slf4j.Logger;
@@ -24,6 +26,7 @@ public class Client extends SimpleChannelInboundHandler<WebSocketFrame> {
     private final DsaHandshake handshake;
     private final Broker broker;
 
+    private WsFrameOptions options = new WsFrameOptions();
     private ChannelHandlerContext ctx;
     private DSLinkNode node;
 
@@ -44,6 +47,13 @@ public class Client extends SimpleChannelInboundHandler<WebSocketFrame> {
         this.node = node;
     }
 
+    public void options(WsFrameOptions options) {
+        if (options == null) {
+            throw new NullPointerException("options");
+        }
+        this.options = options;
+    }
+
     public MessageProcessor processor() {
         return node.processor();
     }
@@ -92,7 +102,7 @@ public class Client extends SimpleChannelInboundHandler<WebSocketFrame> {
         }
         JsonObject top = new JsonObject();
         top.put("requests", requests);
-        write(ctx, new String(top.encode(), CharsetUtil.UTF_8));
+        write(ctx, top);
         return true;
     }
 
@@ -123,17 +133,27 @@ public class Client extends SimpleChannelInboundHandler<WebSocketFrame> {
         }
         JsonObject top = new JsonObject();
         top.put("responses", responses);
-        write(ctx, new String(top.encode(), CharsetUtil.UTF_8));
+        write(ctx, top);
         return true;
     }
 
+    private void write(ChannelHandlerContext ctx, JsonObject top) {
+        for (byte[] bytes : options.encode(top, EncodingFormat.JSON)) {
+            write(ctx, bytes);
+        }
+    }
+
     private void write(ChannelHandlerContext ctx, String data) {
-        byte[] bytes = data.getBytes(CharsetUtil.UTF_8);
+        write(ctx, data.getBytes(CharsetUtil.UTF_8));
+    }
+
+    private void write(ChannelHandlerContext ctx, byte[] bytes) {
         ByteBuf buf = Unpooled.wrappedBuffer(bytes);
         TextWebSocketFrame frame = new TextWebSocketFrame(buf);
-        ctx.channel().writeAndFlush(frame);
+        options.write(ctx.channel(), frame);
         broker().metrics().incrementOut();
         if (LOGGER.isDebugEnabled()) {
+            String data = new String(bytes, CharsetUtil.UTF_8);
             LOGGER.debug("[Sent] {}: {}", handshake().dsId(), data);
         }
     }
@@ -1,12 +1,15 @@
 package org.dsa.iot.dslink;
 
+import org.dsa.iot.dslink.config.Configuration;
 import org.dsa.iot.dslink.connection.ConnectionManager;
 import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.connection.LinkMetrics;
 import org.dsa.iot.dslink.link.Responder;
 import org.dsa.iot.dslink.node.NodeManager;
 import org.dsa.iot.dslink.serializer.SerializationManager;
 import org.dsa.iot.dslink.util.Objects;
 import org.dsa.iot.dslink.util.handler.Handler;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -103,11 +106,15 @@ public class DSLinkProvider {
                                 if (tmp == null) {
                                     tmp = new DSLink(handler, false, path);
                                     tmp.setWriter(writer);
-                                    File path = handler.getConfig().getSerializationPath();
+                                    Configuration conf = handler.getConfig();
+                                    File path = conf.getSerializationPath();
                                     if (path != null) {
                                         NodeManager man = tmp.getNodeManager();
+                                        EncodingFormat format = conf.getSerializationFormat();
+                                        boolean journal = conf.isSerializationJournal();
                                         SerializationManager manager;
-                                        manager = new SerializationManager(path, man);
+                                        manager = new SerializationManager(path, man,
+                                                                    format, journal);
                                         try {
                                             manager.deserialize();
                                         } catch (Exception e) {
@@ -119,6 +126,10 @@ public class DSLinkProvider {
                                     }
 
                                     tmp.setDefaultDataHandlers(false, true);
+                                    LinkMetrics metrics = writer.getMetrics();
+                                    if (metrics != null) {
+                                        metrics.publish(tmp.getNodeManager());
+                                    }
                                     handler.onResponderInitialized(tmp);
                                     linkResponderCache.put(dsId, tmp);
                                 }
@@ -6,6 +6,7 @@ import org.dsa.iot.dslink.handshake.LocalKeys;
 import org.dsa.iot.dslink.util.FileUtils;
 import org.dsa.iot.dslink.util.PropertyReference;
 import org.dsa.iot.dslink.util.URLInfo;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
 import org.dsa.iot.dslink.util.json.JsonObject;
 import org.dsa.iot.dslink.util.log.LogManager;
 
@@ -27,6 +28,8 @@ public class Configuration {
     private ConnectionType type;
     private LocalKeys keys;
     private File serializationPath;
+    private EncodingFormat serializationFormat = EncodingFormat.JSON;
+    private boolean serializationJournal;
     private JsonObject linkData;
     private String token;
 
@@ -250,6 +253,43 @@ public class Configuration {
         return serializationPath;
     }
 
+    /**
+     * Sets the format the nodes are serialized in. Existing data in any
+     * format can always be deserialized.
+     *
+     * @param format Serialization format.
+     */
+    public void setSerializationFormat(EncodingFormat format) {
+        if (format == null) {
+            throw new NullPointerException("format");
+        }
+        this.serializationFormat = format;
+    }
+
+    /**
+     * @return Serialization format.
+     */
+    public EncodingFormat getSerializationFormat() {
+        return serializationFormat;
+    }
+
+    /**
+     * Sets whether node changes are journaled as they occur in addition to
+     * the periodic serialization.
+     *
+     * @param journal Whether to journal changes.
+     */
+    public void setSerializationJournal(boolean journal) {
+        this.serializationJournal = journal;
+    }
+
+    /**
+     * @return Whether node changes are journaled.
+     */
+    public boolean isSerializationJournal() {
+        return serializationJournal;
+    }
+
     /**
      * Validates the configuration for any issues.
      */
@@ -337,6 +377,12 @@ public class Configuration {
 
         loc = new File(nodePath);
         defaults.setSerializationPath(loc);
+
+        prop = System.getProperty(PropertyReference.SERIALIZATION_FORMAT);
+        defaults.setSerializationFormat(EncodingFormat.toEnum(prop));
+
+        prop = System.getProperty(PropertyReference.JOURNAL, "false");
+        defaults.setSerializationJournal(Boolean.parseBoolean(prop));
         return defaults;
     }
 
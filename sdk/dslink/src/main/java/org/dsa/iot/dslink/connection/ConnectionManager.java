@@ -50,7 +50,7 @@ public class ConnectionManager {
     }
 
     public synchronized void start(final Handler<Client> onClientConnected) {
-        stop();
+        disconnect();
         running = true;
 
         final ScheduledThreadPoolExecutor stpe = Objects.getDaemonThreadPool();
@@ -78,6 +78,10 @@ public class ConnectionManager {
                 if (handler == null) {
                     handler = new DataHandler();
                 }
+                LinkMetrics metrics = handler.getMetrics();
+                if (metrics != null) {
+                    metrics.registerMBean(remoteHandshake.getPath());
+                }
 
                 boolean req = localHandshake.isRequester();
                 boolean resp = localHandshake.isResponder();
@@ -93,6 +97,7 @@ public class ConnectionManager {
                 switch (type) {
                     case WEB_SOCKET:
                         WebSocketConnector connector = new WebSocketConnector();
+                        connector.setMetrics(metrics);
                         connector.setEndpoint(configuration.getAuthEndpoint());
                         connector.setRemoteHandshake(remoteHandshake);
                         connector.setLocalHandshake(localHandshake);
@@ -135,7 +140,25 @@ public class ConnectionManager {
         });
     }
 
+    /**
+     * Stops the connection and releases the metrics of the link. A link
+     * that is started again uses a new handler.
+     */
     public synchronized void stop() {
+        disconnect();
+        if (handler != null) {
+            LinkMetrics metrics = handler.getMetrics();
+            if (metrics != null) {
+                metrics.close();
+            }
+            handler = null;
+        }
+    }
+
+    /**
+     * Closes the connection while keeping the handler for reconnecting.
+     */
+    private synchronized void disconnect() {
         running = false;
 
         if (future != null) {
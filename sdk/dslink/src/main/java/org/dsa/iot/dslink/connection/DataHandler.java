@@ -1,6 +1,7 @@
 package org.dsa.iot.dslink.connection;
 
 import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.PropertyReference;
 import org.dsa.iot.dslink.util.handler.Handler;
 import org.dsa.iot.dslink.util.json.EncodingFormat;
 import org.dsa.iot.dslink.util.json.JsonArray;
@@ -10,6 +11,9 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles all incoming and outgoing data in a network endpoint.
@@ -20,10 +24,24 @@ public class DataHandler implements MessageTracker {
 
     private static final Logger LOGGER;
 
+    private static final int INITIAL_ACK_WINDOW = 8;
+    private static final int MIN_ACK_WINDOW = 4;
+    private static final int MAX_ACK_WINDOW = 256;
+    private static final long MIN_RTT_EXPIRY = TimeUnit.SECONDS.toNanos(10);
+
+    private final LinkMetrics metrics;
     private final Object msgLock = new Object();
+    private final Map<Integer, Long> sendTimes = new HashMap<>();
     private int messageId = 0;
     private int lastReceivedAck = 0;
 
+    private int ackWindow = INITIAL_ACK_WINDOW;
+    private double smoothedRtt = -1;
+    private double minRtt = -1;
+    private long minRttTime;
+    private double ackRate;
+    private long lastAckTime;
+
     private EncodingFormat format;
     private NetworkClient client;
 
@@ -33,12 +51,43 @@ public class DataHandler implements MessageTracker {
     private QueuedWriteManager reqsManager;
     private QueuedWriteManager respsManager;
 
+    public DataHandler() {
+        boolean enabled = Boolean.getBoolean(PropertyReference.METRICS);
+        this.metrics = enabled ? new LinkMetrics(this) : null;
+    }
+
     public void setClient(NetworkClient client,
                           EncodingFormat format) {
         this.client = client;
         this.format = format;
         this.reqsManager = new QueuedWriteManager(client, this, format, "requests");
         this.respsManager = new QueuedWriteManager(client, this, format, "responses");
+        reqsManager.setMetrics(metrics);
+        respsManager.setMetrics(metrics);
+    }
+
+    /**
+     * @return Metrics of the link or {@code null} if they are disabled.
+     * @see PropertyReference#METRICS
+     */
+    public LinkMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return Amount of updates queued for writing.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        QueuedWriteManager manager = reqsManager;
+        if (manager != null) {
+            depth += manager.getQueued();
+        }
+        manager = respsManager;
+        if (manager != null) {
+            depth += manager.getQueued();
+        }
+        return depth;
     }
 
     public void setReqHandler(Handler<DataReceived> handler) {
@@ -143,10 +192,86 @@ public class DataHandler implements MessageTracker {
         }
     }
 
+    /**
+     * Blocks until the amount of queued response updates falls below
+     * the limit. Used to apply backpressure to response producers.
+     *
+     * @param limit Maximum amount of queued updates to allow.
+     */
+    public void awaitResponseCapacity(int limit) {
+        QueuedWriteManager manager = respsManager;
+        if (manager != null) {
+            manager.awaitCapacity(limit);
+        }
+    }
+
+    /**
+     * Samples the round trip time of the acked message and the rate
+     * messages are acked at. The ack window is sized to twice the product
+     * of the delivery rate and the minimum round trip time, keeping enough
+     * messages in flight to saturate the link without queueing excessively
+     * in the network.
+     *
+     * @param ack Received ack ID.
+     */
     @Override
     public void ackReceived(int ack) {
         synchronized (msgLock) {
-            lastReceivedAck = Math.max(lastReceivedAck, ack);
+            if (ack <= lastReceivedAck) {
+                return;
+            }
+            long now = nanoTime();
+            Long sent = sendTimes.get(ack);
+            int end = Math.min(ack, messageId);
+            for (int i = lastReceivedAck + 1; i <= end; i++) {
+                sendTimes.remove(i);
+            }
+            int acked = ack - lastReceivedAck;
+            lastReceivedAck = ack;
+
+            if (sent != null) {
+                if (metrics != null) {
+                    metrics.recordRoundTrip(now - sent);
+                }
+                double rtt = (now - sent) / 1e6;
+                if (smoothedRtt < 0) {
+                    smoothedRtt = rtt;
+                } else {
+                    smoothedRtt += (rtt - smoothedRtt) / 8;
+                }
+                if (minRtt < 0 || rtt <= minRtt
+                        || now - minRttTime > MIN_RTT_EXPIRY) {
+                    minRtt = rtt;
+                    minRttTime = now;
+                }
+            }
+            if (lastAckTime != 0) {
+                double elapsed = (now - lastAckTime) / 1e6;
+                if (elapsed > 0) {
+                    double rate = acked / elapsed;
+                    if (ackRate <= 0) {
+                        ackRate = rate;
+                    } else {
+                        ackRate += (rate - ackRate) / 8;
+                    }
+                }
+            }
+            lastAckTime = now;
+
+            if (minRtt > 0 && ackRate > 0) {
+                int window = (int) Math.ceil(2 * ackRate * minRtt);
+                window = Math.max(MIN_ACK_WINDOW, window);
+                ackWindow = Math.min(MAX_ACK_WINDOW, window);
+            }
+        }
+
+        QueuedWriteManager manager = reqsManager;
+        if (manager != null) {
+            manager.ackReceived();
+        }
+        manager = respsManager;
+        if (manager != null) {
+            manager.ackReceived();
         }
     }
 
@@ -157,13 +282,40 @@ public class DataHandler implements MessageTracker {
         }
     }
 
+    @Override
+    public int ackWindow() {
+        synchronized (msgLock) {
+            return ackWindow;
+        }
+    }
+
+    /**
+     * @return Smoothed round trip time of messages in milliseconds or
+     *         {@code -1} if no message was acked yet.
+     */
+    public double getRoundTripTime() {
+        synchronized (msgLock) {
+            return smoothedRtt;
+        }
+    }
+
     @Override
     public int incrementMessageId() {
         synchronized (msgLock) {
-            return ++messageId;
+            int id = ++messageId;
+            sendTimes.put(id, nanoTime());
+            return id;
         }
     }
 
+    /**
+     * @return Current time in nanoseconds the round trip times are
+     *         measured with.
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
     public static class DataReceived {
 
         private final Integer msgId;
@@ -0,0 +1,273 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.NodeManager;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueType;
+import org.dsa.iot.dslink.util.Histogram;
+import org.dsa.iot.dslink.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and throughput metrics of a link. Counters are cumulative while
+ * the latency histograms are summarized and cleared every interval. The
+ * metrics can be published as nodes under {@code /sys/metrics} of a
+ * responder and registered over JMX.
+ *
+ * @author Samuel Grenier
+ * @see org.dsa.iot.dslink.util.PropertyReference#METRICS
+ */
+public class LinkMetrics implements LinkMetricsMBean {
+
+    private static final Logger LOGGER;
+    private static final long INTERVAL = 5;
+
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong messagesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong updatesPosted = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+
+    private final Histogram roundTrip = new Histogram();
+    private final Histogram encode = new Histogram();
+    private final Histogram decode = new Histogram();
+
+    private final DataHandler handler;
+    private final ScheduledFuture<?> intervalFut;
+
+    private volatile double roundTripP50;
+    private volatile double roundTripP99;
+    private volatile double encodeP99;
+    private volatile double decodeP99;
+
+    private ObjectName objectName;
+    private Node node;
+
+    LinkMetrics(DataHandler handler) {
+        this.handler = handler;
+        intervalFut = Objects.getDaemonThreadPool().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                roll();
+            }
+        }, INTERVAL, INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param bytes Size of the written message.
+     * @param encodeNanos Time spent encoding the message.
+     */
+    public void recordSent(int bytes, long encodeNanos) {
+        messagesSent.incrementAndGet();
+        bytesSent.addAndGet(bytes);
+        encode.record(TimeUnit.NANOSECONDS.toMicros(encodeNanos));
+    }
+
+    /**
+     * @param bytes Size of the received message.
+     * @param decodeNanos Time spent decoding the message.
+     */
+    public void recordReceived(int bytes, long decodeNanos) {
+        messagesReceived.incrementAndGet();
+        bytesReceived.addAndGet(bytes);
+        decode.record(TimeUnit.NANOSECONDS.toMicros(decodeNanos));
+    }
+
+    void recordRoundTrip(long nanos) {
+        roundTrip.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void recordPosted(int updates) {
+        updatesPosted.addAndGet(updates);
+    }
+
+    void recordBatch() {
+        batchesWritten.incrementAndGet();
+    }
+
+    @Override
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        return messagesReceived.get();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * @return Average amount of updates written per message.
+     */
+    @Override
+    public double getMergeRatio() {
+        long batches = batchesWritten.get();
+        return batches > 0 ? (double) updatesPosted.get() / batches : 0;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return handler.getQueueDepth();
+    }
+
+    @Override
+    public int getAckWindow() {
+        return handler.ackWindow();
+    }
+
+    @Override
+    public int getMissingAcks() {
+        return handler.missingAckCount();
+    }
+
+    @Override
+    public double getRoundTripTimeP50() {
+        return roundTripP50;
+    }
+
+    @Override
+    public double getRoundTripTimeP99() {
+        return roundTripP99;
+    }
+
+    @Override
+    public double getEncodeTimeP99() {
+        return encodeP99;
+    }
+
+    @Override
+    public double getDecodeTimeP99() {
+        return decodeP99;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server. Does nothing
+     * if the metrics are already registered.
+     *
+     * @param path Path of the link on the broker.
+     */
+    public synchronized void registerMBean(String path) {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            String name = "org.dsa.iot:type=LinkMetrics,name=";
+            name += ObjectName.quote(path == null ? "link" : path);
+            ObjectName objectName = new ObjectName(name);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+            }
+            this.objectName = objectName;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to register link metrics", e);
+        }
+    }
+
+    /**
+     * Publishes the metrics as nodes under {@code /sys/metrics}. The nodes
+     * are updated every interval.
+     *
+     * @param manager Node manager of the responder.
+     */
+    public synchronized void publish(NodeManager manager) {
+        if (manager == null) {
+            throw new NullPointerException("manager");
+        }
+        Node sys = manager.getSuperRoot().getChild("sys");
+        if (sys == null) {
+            sys = manager.createRootNode("sys").setSerializable(false).build();
+        }
+        Node node = sys.getChild("metrics");
+        if (node == null) {
+            node = sys.createChild("metrics").setSerializable(false).build();
+        }
+        this.node = node;
+        update();
+    }
+
+    /**
+     * Stops the metrics and unregisters them from JMX.
+     */
+    public synchronized void close() {
+        intervalFut.cancel(false);
+        if (objectName != null) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                server.unregisterMBean(objectName);
+            } catch (Exception ignored) {
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * Summarizes the histograms of the interval and updates the published
+     * nodes.
+     */
+    private void roll() {
+        roundTripP50 = millis(roundTrip, 50);
+        roundTripP99 = millis(roundTrip, 99);
+        encodeP99 = millis(encode, 99);
+        decodeP99 = millis(decode, 99);
+        roundTrip.reset();
+        encode.reset();
+        decode.reset();
+        update();
+    }
+
+    private synchronized void update() {
+        if (node == null) {
+            return;
+        }
+        set("messagesSent", getMessagesSent());
+        set("messagesReceived", getMessagesReceived());
+        set("bytesSent", getBytesSent());
+        set("bytesReceived", getBytesReceived());
+        set("mergeRatio", getMergeRatio());
+        set("queueDepth", getQueueDepth());
+        set("ackWindow", getAckWindow());
+        set("missingAcks", getMissingAcks());
+        set("rttP50", getRoundTripTimeP50());
+        set("rttP99", getRoundTripTimeP99());
+        set("encodeP99", getEncodeTimeP99());
+        set("decodeP99", getDecodeTimeP99());
+    }
+
+    private void set(String name, Number value) {
+        Node child = node.getChild(name);
+        if (child == null) {
+            child = node.createChild(name)
+                    .setValueType(ValueType.NUMBER)
+                    .setSerializable(false)
+                    .build();
+        }
+        child.setValue(new Value(value));
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getPercentile(percentile) / 1000.0;
+    }
+
+    static {
+        LOGGER = LoggerFactory.getLogger(LinkMetrics.class);
+    }
+}
@@ -0,0 +1,34 @@
+package org.dsa.iot.dslink.connection;
+
+/**
+ * Management interface of the {@link LinkMetrics} exposed over JMX. Times
+ * are in milliseconds and percentiles cover the latest metrics interval.
+ *
+ * @author Samuel Grenier
+ */
+public interface LinkMetricsMBean {
+
+    long getMessagesSent();
+
+    long getMessagesReceived();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    double getMergeRatio();
+
+    int getQueueDepth();
+
+    int getAckWindow();
+
+    int getMissingAcks();
+
+    double getRoundTripTimeP50();
+
+    double getRoundTripTimeP99();
+
+    double getEncodeTimeP99();
+
+    double getDecodeTimeP99();
+}
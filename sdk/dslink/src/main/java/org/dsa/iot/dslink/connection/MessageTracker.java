@@ -24,6 +24,15 @@ public interface MessageTracker {
      */
     int missingAckCount();
 
+    /**
+     * Retrieves the amount of messages that may be missing acks before
+     * writes must be queued. The window adapts to the measured round trip
+     * time and delivery rate of the network.
+     *
+     * @return Current ack window.
+     */
+    int ackWindow();
+
     /**
      * Increments the message ID. This directly affects the missing ack
      * count.
@@ -1,24 +1,33 @@
 package org.dsa.iot.dslink.connection;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.netty.util.internal.SystemPropertyUtil;
 import org.dsa.iot.dslink.util.Objects;
 import org.dsa.iot.dslink.util.PropertyReference;
 import org.dsa.iot.dslink.util.json.EncodingFormat;
 import org.dsa.iot.dslink.util.json.JsonArray;
 import org.dsa.iot.dslink.util.json.JsonObject;
+import org.dsa.iot.dslink.util.json.JsonWritable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class QueuedWriteManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(QueuedWriteManager.class);
     private static final int DISPATCH_DELAY;
 
+    /**
+     * Dispatches the queued tasks on its own thread so it can't be starved
+     * by producers blocked in {@link #awaitCapacity} on the shared pools.
+     */
+    private static final ScheduledThreadPoolExecutor TIMER;
+
+    private final AtomicBoolean ackPending = new AtomicBoolean();
     private final Map<Integer, JsonObject> mergedTasks = new HashMap<>();
     private final List<JsonObject> rawTasks = new LinkedList<>();
     private final EncodingFormat format;
@@ -26,6 +35,8 @@ public class QueuedWriteManager {
     private final NetworkClient client;
     private final String topName;
     private ScheduledFuture<?> fut;
+    private LinkMetrics metrics;
+    private int queued;
 
     public QueuedWriteManager(NetworkClient client,
                               MessageTracker tracker,
@@ -46,18 +57,37 @@ public class QueuedWriteManager {
         this.client = client;
     }
 
-    @SuppressFBWarnings("SWL_SLEEP_WITH_LOCK_HELD")
+    /**
+     * @param metrics Metrics to record the writes in, can be {@code null}.
+     */
+    public synchronized void setMetrics(LinkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return Amount of queued updates.
+     */
+    public synchronized int getQueued() {
+        return queued;
+    }
+
     public boolean post(JsonObject content, boolean merge) {
         synchronized (this) {
+            if (metrics != null) {
+                JsonArray contentUpdates = content.get("updates");
+                metrics.recordPosted(contentUpdates != null ? contentUpdates.size() : 1);
+            }
             while (shouldBlock()) {
+                // Waiting releases the lock so the queue can be dispatched
                 try {
-                    Thread.sleep(5);
+                    wait(5);
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    Thread.currentThread().interrupt();
+                    break;
                 }
             }
 
-            if (shouldQueue()) {
+            if (hasTasks() || !canWrite()) {
                 addTask(content, merge);
                 schedule();
                 return false;
@@ -73,7 +103,28 @@ public class QueuedWriteManager {
         return true;
     }
 
+    /**
+     * Blocks the calling thread until the amount of queued updates falls
+     * below the limit, the client disconnects, or the thread is interrupted.
+     * Producers of large amounts of data use this to avoid outpacing the
+     * network.
+     *
+     * @param limit Maximum amount of queued updates to allow.
+     */
+    public synchronized void awaitCapacity(int limit) {
+        while (queued >= limit && client.isConnected()) {
+            try {
+                wait(DISPATCH_DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     private synchronized void addTask(JsonObject content, boolean merge) {
+        JsonArray contentUpdates = content.get("updates");
+        queued += contentUpdates != null ? contentUpdates.size() : 1;
         if (merge) {
             int rid = content.get("rid");
             JsonObject obj = mergedTasks.get(rid);
@@ -86,7 +137,8 @@ public class QueuedWriteManager {
                     if (newUpdates != null) {
                         for (Object update : newUpdates) {
                             if (update instanceof JsonArray
-                                    || update instanceof JsonObject) {
+                                    || update instanceof JsonObject
+                                    || update instanceof JsonWritable) {
                                 oldUpdates.add(update);
                             } else {
                                 String clazz = update.getClass().getName();
@@ -105,39 +157,53 @@ public class QueuedWriteManager {
         }
     }
 
+    /**
+     * Dispatches the queued tasks once acks free up the window. Tasks are
+     * written as soon as possible rather than waiting for the dispatch
+     * delay, which only remains as a fallback when the client is not
+     * writable or acks are lost.
+     * <p>
+     * Acks are received on the IO thread, so the dispatch is handed off to
+     * the timer rather than waiting on the lock of producers.
+     */
+    public void ackReceived() {
+        if (!ackPending.compareAndSet(false, true)) {
+            return;
+        }
+        TIMER.execute(new Runnable() {
+            @Override
+            public void run() {
+                ackPending.set(false);
+                dispatchAcked();
+            }
+        });
+    }
+
+    private synchronized void dispatchAcked() {
+        if (hasTasks() && canWrite()) {
+            if (fut != null) {
+                fut.cancel(false);
+                fut = null;
+            }
+            dispatch();
+        }
+    }
+
     private synchronized void schedule() {
         if (fut != null) {
             return;
         }
-        fut = Objects.getDaemonThreadPool().schedule(new Runnable() {
+        fut = TIMER.schedule(new Runnable() {
             @Override
             public void run() {
-                boolean schedule = false;
                 synchronized (QueuedWriteManager.this) {
                     fut = null;
-                    if (shouldQueue()) {
-                        schedule = true;
-                    } else {
-                        if (rawTasks.isEmpty() && mergedTasks.isEmpty()) {
-                            return;
-                        }
-                        JsonArray updates = new JsonArray();
-                        Iterator<JsonObject> it = mergedTasks.values().iterator();
-                        while (it.hasNext()) {
-                            updates.add(it.next());
-                            it.remove();
-                        }
-                        it = rawTasks.iterator();
-                        while (it.hasNext()) {
-                            updates.add(it.next());
-                            it.remove();
-                        }
-
-                        JsonObject top = new JsonObject();
-                        top.put(topName, updates);
-                        forceWrite(top);
+                    if (!hasTasks()) {
+                        return;
                     }
-                    if (schedule) {
+                    if (canWrite()) {
+                        dispatch();
+                    } else {
                         schedule();
                     }
                 }
@@ -145,16 +211,46 @@ public class QueuedWriteManager {
         }, DISPATCH_DELAY, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Writes all the queued tasks in a single message.
+     */
+    private synchronized void dispatch() {
+        JsonArray updates = new JsonArray();
+        Iterator<JsonObject> it = mergedTasks.values().iterator();
+        while (it.hasNext()) {
+            updates.add(it.next());
+            it.remove();
+        }
+        it = rawTasks.iterator();
+        while (it.hasNext()) {
+            updates.add(it.next());
+            it.remove();
+        }
+
+        JsonObject top = new JsonObject();
+        top.put(topName, updates);
+        forceWrite(top);
+        queued = 0;
+        notifyAll();
+    }
+
     private synchronized boolean shouldBlock() {
         return (rawTasks.size() + rawTasks.size()) > 100000;
     }
 
-    private synchronized boolean shouldQueue() {
-        return !client.writable()
-                || tracker.missingAckCount() > 8 || fut != null;
+    private synchronized boolean hasTasks() {
+        return !(rawTasks.isEmpty() && mergedTasks.isEmpty());
+    }
+
+    private synchronized boolean canWrite() {
+        return client.writable()
+                && tracker.missingAckCount() < tracker.ackWindow();
     }
 
     private synchronized void forceWrite(JsonObject obj) {
+        if (metrics != null) {
+            metrics.recordBatch();
+        }
         obj.put("msg", tracker.incrementMessageId());
         client.write(format, obj);
     }
@@ -163,5 +259,6 @@ public class QueuedWriteManager {
         String s = PropertyReference.DISPATCH_DELAY;
         DISPATCH_DELAY = SystemPropertyUtil.getInt(s, 75);
         LOGGER.debug("-D{}: {}", s, DISPATCH_DELAY);
+        TIMER = Objects.createDaemonThreadPool(1);
     }
 }
@@ -1,5 +1,6 @@
 package org.dsa.iot.dslink.connection.connector;
 
+import org.dsa.iot.dslink.connection.LinkMetrics;
 import org.dsa.iot.dslink.connection.NetworkClient;
 import org.dsa.iot.dslink.connection.RemoteEndpoint;
 import org.dsa.iot.dslink.provider.WsProvider;
@@ -26,8 +27,16 @@ public class WebSocketConnector extends RemoteEndpoint {
 
     private ScheduledFuture<?> pingHandler;
     private NetworkClient writer;
+    private LinkMetrics metrics;
     private long lastSentMessage;
 
+    /**
+     * @param metrics Metrics to record the traffic in, can be {@code null}.
+     */
+    public void setMetrics(LinkMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     public void start() {
         URLInfo endpoint = getEndpoint();
@@ -111,7 +120,12 @@ public class WebSocketConnector extends RemoteEndpoint {
 
         @Override
         public void onData(byte[] data, int offset, int length) {
+            long start = System.nanoTime();
             JsonObject obj = new JsonObject(getFormat(), data, offset, length);
+            LinkMetrics metrics = WebSocketConnector.this.metrics;
+            if (metrics != null) {
+                metrics.recordReceived(length, System.nanoTime() - start);
+            }
             if (obj.contains("ping")) {
                 obj.put("pong", obj.remove("ping"));
                 WebSocketConnector.this.write(getFormat(), obj);
@@ -127,6 +141,14 @@ public class WebSocketConnector extends RemoteEndpoint {
             }
         }
 
+        @Override
+        public void onWrite(int length, long encodeNanos) {
+            LinkMetrics metrics = WebSocketConnector.this.metrics;
+            if (metrics != null) {
+                metrics.recordSent(length, encodeNanos);
+            }
+        }
+
         @Override
         public void onConnected(NetworkClient writer) {
             WebSocketConnector.this.writer = writer;
@@ -76,6 +76,7 @@ public abstract class Linkable {
      * @return A reference to the dslink, can be null
      */
     public DSLink getDSLink() {
-        return link.get();
+        WeakReference<DSLink> ref = link;
+        return ref != null ? ref.get() : null;
     }
 }
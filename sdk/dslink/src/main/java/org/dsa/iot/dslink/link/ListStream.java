@@ -0,0 +1,157 @@
+package org.dsa.iot.dslink.link;
+
+import org.dsa.iot.dslink.methods.StreamState;
+import org.dsa.iot.dslink.methods.responses.ListResponse;
+import org.dsa.iot.dslink.methods.responses.ListUpdate;
+import org.dsa.iot.dslink.util.handler.Handler;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A list stream of the requester shared by every listener of the same
+ * path. The latest state of the listed node is cached so listeners joining
+ * an open stream receive it immediately. The stream is only closed once
+ * every listener closed it.
+ * <p>
+ * Responses are only materialized into the node manager while the stream
+ * has response listeners, a response listener joining a stream that was
+ * only opened for updates materializes the node from the cached state.
+ *
+ * @author Samuel Grenier
+ */
+class ListStream {
+
+    private final Map<Integer, Handler<ListResponse>> responseListeners = new HashMap<>();
+    private final Map<Integer, Handler<ListUpdate>> updateListeners = new HashMap<>();
+    private final Map<String, Object> cache = new LinkedHashMap<>();
+    private final String path;
+    private final int rid;
+    private boolean materialized;
+
+    /**
+     * @param path Path of the listed node.
+     * @param rid Request ID of the stream sent to the responder.
+     */
+    ListStream(String path, int rid) {
+        this.path = path;
+        this.rid = rid;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    int getRid() {
+        return rid;
+    }
+
+    void addListener(int id, Handler<ListResponse> handler) {
+        responseListeners.put(id, handler);
+    }
+
+    void addUpdateListener(int id, Handler<ListUpdate> handler) {
+        updateListeners.put(id, handler);
+    }
+
+    void removeListener(int id) {
+        responseListeners.remove(id);
+        updateListeners.remove(id);
+        if (responseListeners.isEmpty()) {
+            // The node is no longer kept up to date
+            materialized = false;
+        }
+    }
+
+    boolean isEmpty() {
+        return responseListeners.isEmpty() && updateListeners.isEmpty();
+    }
+
+    /**
+     * @return Whether any response of the stream was received.
+     */
+    boolean hasState() {
+        return !cache.isEmpty();
+    }
+
+    /**
+     * @return Whether the responses of the stream were materialized into
+     *         the node manager.
+     */
+    boolean isMaterialized() {
+        return materialized;
+    }
+
+    void setMaterialized() {
+        this.materialized = true;
+    }
+
+    Map<Integer, Handler<ListResponse>> getListeners() {
+        return responseListeners;
+    }
+
+    Map<Integer, Handler<ListUpdate>> getUpdateListeners() {
+        return updateListeners;
+    }
+
+    /**
+     * Applies the updates of a response to the cached state.
+     *
+     * @param in Response of the responder.
+     */
+    void update(JsonObject in) {
+        JsonArray updates = in.get("updates");
+        if (updates == null) {
+            return;
+        }
+        for (Object obj : updates) {
+            if (obj instanceof JsonObject) {
+                JsonObject json = (JsonObject) obj;
+                if ("remove".equals(json.get("change"))) {
+                    cache.remove((String) json.get("name"));
+                }
+            } else if (obj instanceof JsonArray) {
+                JsonArray array = (JsonArray) obj;
+                String name = array.get(0);
+                Object value = array.get(1);
+                if ("$is".equals(name)) {
+                    cache.clear();
+                } else if (value instanceof JsonObject
+                        && "remove".equals(((JsonObject) value).get("change"))) {
+                    cache.remove(name);
+                    continue;
+                }
+                cache.put(name, array);
+            }
+        }
+    }
+
+    /**
+     * @param id ID of the listener the snapshot is for.
+     * @return Snapshot of the cached state as a single update.
+     */
+    ListUpdate snapshot(int id) {
+        ListUpdate update = new ListUpdate(id, path);
+        update.populate(toResponse(id));
+        return update;
+    }
+
+    /**
+     * @param rid Request ID of the response.
+     * @return Cached state as a single response.
+     */
+    JsonObject toResponse(int rid) {
+        JsonArray updates = new JsonArray();
+        for (Object update : cache.values()) {
+            updates.add(update);
+        }
+        JsonObject in = new JsonObject();
+        in.put("rid", rid);
+        in.put("stream", StreamState.OPEN.getJsonName());
+        in.put("updates", updates);
+        return in;
+    }
+}
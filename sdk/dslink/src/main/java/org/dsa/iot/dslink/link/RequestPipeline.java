@@ -0,0 +1,285 @@
+package org.dsa.iot.dslink.link;
+
+import org.dsa.iot.dslink.DSLink;
+import org.dsa.iot.dslink.methods.StreamState;
+import org.dsa.iot.dslink.methods.requests.InvokeRequest;
+import org.dsa.iot.dslink.methods.requests.SetRequest;
+import org.dsa.iot.dslink.methods.responses.ErrorResponse;
+import org.dsa.iot.dslink.methods.responses.InvokeResponse;
+import org.dsa.iot.dslink.methods.responses.SetResponse;
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.handler.Handler;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pipelines invoke and set requests of a requester. At most a window of
+ * requests are in flight at once while the remaining requests are queued,
+ * allowing bulk operations to saturate the link without overwhelming the
+ * responder. Requests that are not completed within the timeout have their
+ * stream closed and are completed with an error. Requests started while the
+ * requester has no link are completed with an error immediately.
+ * <p>
+ * An invocation is completed once its stream is closed or it fails. A set
+ * is completed by its response.
+ *
+ * @author Samuel Grenier
+ */
+public class RequestPipeline {
+
+    private final Queue<Operation> queue = new LinkedList<>();
+    private final Requester requester;
+    private final int window;
+    private final long timeout;
+
+    private int inFlight;
+
+    /**
+     * @param requester Requester to send the requests with.
+     * @param window Maximum amount of requests in flight.
+     * @param timeout Time in milliseconds a request may be in flight
+     *                before it is closed, 0 to disable.
+     */
+    public RequestPipeline(Requester requester, int window, long timeout) {
+        if (requester == null) {
+            throw new NullPointerException("requester");
+        } else if (window < 1) {
+            throw new IllegalArgumentException("window < 1");
+        } else if (timeout < 0) {
+            throw new IllegalArgumentException("timeout < 0");
+        }
+        this.requester = requester;
+        this.window = window;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Queues an invocation. The handler receives every response of the
+     * invocation like {@link Requester#invoke}.
+     *
+     * @param request Invocation request.
+     * @param onResponse Response, can be {@code null}.
+     */
+    public void invoke(final InvokeRequest request,
+                       final Handler<InvokeResponse> onResponse) {
+        if (request == null) {
+            throw new NullPointerException("request");
+        }
+        submit(new Operation() {
+            @Override
+            protected int send() {
+                return requester.invoke(request, new Handler<InvokeResponse>() {
+                    @Override
+                    public void handle(InvokeResponse event) {
+                        boolean last = event.hasError()
+                                || event.getState() == StreamState.CLOSED;
+                        if (last ? !complete() : isDone()) {
+                            return;
+                        }
+                        if (onResponse != null) {
+                            onResponse.handle(event);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            protected void failed(DSLink link, int rid, ErrorResponse error) {
+                if (onResponse != null) {
+                    String path = request.getPath();
+                    InvokeResponse resp = new InvokeResponse(link, rid, path);
+                    resp.setStreamState(StreamState.CLOSED);
+                    resp.setError(error);
+                    onResponse.handle(resp);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues a set request.
+     *
+     * @param request Set request.
+     * @param onResponse Response, can be {@code null}.
+     */
+    public void set(final SetRequest request,
+                    final Handler<SetResponse> onResponse) {
+        if (request == null) {
+            throw new NullPointerException("request");
+        }
+        submit(new Operation() {
+            @Override
+            protected int send() {
+                return requester.set(request, new Handler<SetResponse>() {
+                    @Override
+                    public void handle(SetResponse event) {
+                        if (complete() && onResponse != null) {
+                            onResponse.handle(event);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            protected void failed(DSLink link, int rid, ErrorResponse error) {
+                if (onResponse != null) {
+                    String path = request.getPath();
+                    SetResponse resp = new SetResponse(rid, link, path);
+                    resp.setError(error);
+                    onResponse.handle(resp);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return Amount of requests in flight.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return Amount of requests waiting to be sent.
+     */
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    private void submit(Operation op) {
+        synchronized (this) {
+            queue.add(op);
+        }
+        drain();
+    }
+
+    /**
+     * Sends queued requests while the window has room.
+     */
+    private void drain() {
+        while (true) {
+            Operation op;
+            synchronized (this) {
+                if (inFlight >= window || queue.isEmpty()) {
+                    return;
+                }
+                op = queue.poll();
+                inFlight++;
+            }
+            if (!op.start()) {
+                synchronized (this) {
+                    inFlight--;
+                }
+                op.fail();
+            }
+        }
+    }
+
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    private abstract class Operation {
+
+        private final AtomicBoolean done = new AtomicBoolean();
+        private ScheduledFuture<?> timeoutFut;
+        private int rid;
+
+        /**
+         * Sends the request.
+         *
+         * @return Request ID of the request.
+         */
+        protected abstract int send();
+
+        /**
+         * Completes the request with an error.
+         *
+         * @param link Link of the requester, can be {@code null}.
+         * @param rid Request ID or {@code 0} if the request was never sent.
+         * @param error Error of the request.
+         */
+        protected abstract void failed(DSLink link, int rid, ErrorResponse error);
+
+        /**
+         * Sends the request and schedules its timeout.
+         *
+         * @return Whether the request was sent. Otherwise the request is
+         *         done but its slot must still be released by the caller.
+         */
+        boolean start() {
+            if (requester.getDSLink() == null) {
+                // Nothing would ever complete the request
+                done.set(true);
+                return false;
+            }
+            try {
+                rid = send();
+            } catch (RuntimeException e) {
+                complete();
+                throw e;
+            }
+            if (timeout > 0) {
+                ScheduledFuture<?> fut = Objects.getDaemonThreadPool().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        expire();
+                    }
+                }, timeout, TimeUnit.MILLISECONDS);
+                synchronized (this) {
+                    timeoutFut = fut;
+                }
+                if (isDone()) {
+                    fut.cancel(false);
+                }
+            }
+            return true;
+        }
+
+        void fail() {
+            String msg = "Requester is not connected";
+            failed(null, 0, new ErrorResponse(msg, null));
+        }
+
+        boolean isDone() {
+            return done.get();
+        }
+
+        /**
+         * @return Whether this call completed the request.
+         */
+        boolean complete() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            synchronized (this) {
+                if (timeoutFut != null) {
+                    timeoutFut.cancel(false);
+                }
+            }
+            release();
+            return true;
+        }
+
+        private void expire() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            // The stream is closed before the slot is reused
+            requester.closeStream(rid, null);
+            try {
+                String msg = "Request timed out after " + timeout + "ms";
+                failed(requester.getDSLink(), rid, new ErrorResponse(msg, null));
+            } finally {
+                release();
+            }
+        }
+    }
+}
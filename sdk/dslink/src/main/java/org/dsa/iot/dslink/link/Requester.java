@@ -13,6 +13,7 @@ import org.dsa.iot.dslink.node.SubscriptionManager;
 import org.dsa.iot.dslink.node.value.SubscriptionValue;
 import org.dsa.iot.dslink.node.value.Value;
 import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.PropertyReference;
 import org.dsa.iot.dslink.util.SubData;
 import org.dsa.iot.dslink.util.handler.Handler;
 import org.dsa.iot.dslink.util.json.JsonObject;
@@ -21,6 +22,8 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -30,6 +33,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class Requester extends Linkable {
 
+    private static final long SUBSCRIPTION_DELAY;
+    private static final long VALUE_CACHE_TTL;
+
     private final Map<Integer, RequestWrapper> reqs;
 
     /**
@@ -53,9 +59,34 @@ public class Requester extends Linkable {
     private final Map<Integer, String> subSids = new ConcurrentHashMap<>();
 
     /**
-     * Mapping of sid->handler
+     * Mapping of sid->handlers
+     */
+    private final Map<Integer, SubscriptionHandlers> subUpdates = new ConcurrentHashMap<>();
+
+    /**
+     * Subscriptions waiting to be sent, sid->path
+     */
+    private final Map<Integer, SubData> pendingSubs = new LinkedHashMap<>();
+
+    /**
+     * Unsubscriptions waiting to be sent, path->handlers
+     */
+    private final Map<String, SubscriptionHandlers> pendingUnsubs = new LinkedHashMap<>();
+
+    private final List<Handler<SubscribeResponse>> pendingSubHandlers = new ArrayList<>();
+    private final List<Handler<UnsubscribeResponse>> pendingUnsubHandlers = new ArrayList<>();
+    private ScheduledFuture<?> subFlushFut;
+    private ValueCache valueCache;
+
+    /**
+     * Shared list streams, path->stream
      */
-    private final Map<Integer, Handler<SubscriptionValue>> subUpdates = new ConcurrentHashMap<>();
+    private final Map<String, ListStream> listStreams = new HashMap<>();
+
+    /**
+     * Listeners of the shared list streams, id->stream
+     */
+    private final Map<Integer, ListStream> listListeners = new HashMap<>();
 
     /**
      * Mapping of rid->response
@@ -92,7 +123,7 @@ public class Requester extends Linkable {
     }
 
     public Map<Integer, Handler<SubscriptionValue>> getSubscriptionHandlers() {
-        return Collections.unmodifiableMap(subUpdates);
+        return Collections.<Integer, Handler<SubscriptionValue>>unmodifiableMap(subUpdates);
     }
 
     public void subscribe(String path,
@@ -114,75 +145,303 @@ public class Requester extends Linkable {
         subscribe(new SubscribeRequest(paths), onUpdate);
     }
 
+    /**
+     * Subscribes to a path with a throttled handler.
+     *
+     * @param path Path to subscribe to.
+     * @param onUpdate Handler of the updates.
+     * @param minInterval Minimum interval between updates delivered to
+     *                    the handler in milliseconds.
+     * @see #subscribe(SubscribeRequest, Handler, long)
+     */
+    public void subscribe(SubData path,
+                          Handler<SubscriptionValue> onUpdate,
+                          long minInterval) {
+        SubscribeRequest req = new SubscribeRequest(Collections.singleton(path));
+        subscribe(req, onUpdate, minInterval);
+    }
+
     public void subscribe(SubscribeRequest req,
                           Handler<SubscriptionValue> onUpdate) {
+        subscribe(req, onUpdate, 0, null);
+    }
+
+    /**
+     * @see #subscribe(SubscribeRequest, Handler, long, Handler)
+     */
+    public void subscribe(SubscribeRequest req,
+                          Handler<SubscriptionValue> onUpdate,
+                          long minInterval) {
+        subscribe(req, onUpdate, minInterval, null);
+    }
+
+    /**
+     * Subscribes to the paths of the request. A path that is already
+     * subscribed only gains the handler as a new reference and is not sent
+     * to the responder again, unless a higher QoS is requested. Each
+     * subscription must be released with
+     * {@link #unsubscribe(Set, Handler, Handler)}.
+     * <p>
+     * Subscriptions and unsubscriptions are coalesced for a short delay
+     * into a single request. A path that is subscribed and unsubscribed
+     * within the delay is never sent.
+     *
+     * @param req Subscription request.
+     * @param onUpdate Handler of the updates, can be {@code null}.
+     * @param minInterval Minimum interval between updates delivered to
+     *                    the handler in milliseconds, 0 to disable.
+     * @param onResponse Response of the request the paths were sent with,
+     *                   only called if any path had to be sent.
+     * @see PropertyReference#SUBSCRIPTION_DELAY
+     */
+    public void subscribe(SubscribeRequest req,
+                          Handler<SubscriptionValue> onUpdate,
+                          long minInterval,
+                          Handler<SubscribeResponse> onResponse) {
         if (req == null) {
             throw new NullPointerException("req");
+        } else if (minInterval < 0) {
+            throw new IllegalArgumentException("minInterval < 0");
         }
-        final Set<SubData> paths = req.getPaths();
-        Map<SubData, Integer> subs = new HashMap<>();
-        int min = currentSubID.getAndAdd(paths.size());
-        int max = min + paths.size();
-        Iterator<SubData> it = paths.iterator();
+        boolean queued = false;
         StringBuilder error = null;
-        while (min < max && it.hasNext()) {
-            try {
-                SubData data = it.next();
-                String path = data.getPath();
-                subs.put(data, min);
-                Integer prev = subPaths.put(path, min);
-                if (prev != null) {
-                    String err = "Path " + path + " already subscribed";
-                    throw new RuntimeException(err);
-                }
-                subSids.put(min, path);
-                if (onUpdate != null) {
-                    subUpdates.put(min, onUpdate);
+        List<SubscriptionHandlers.Entry> added = new ArrayList<>();
+        synchronized (subPaths) {
+            for (SubData data : req.getPaths()) {
+                try {
+                    String path = data.getPath();
+                    Integer sid = subPaths.get(path);
+                    SubscriptionHandlers handlers;
+                    if (sid != null) {
+                        handlers = subUpdates.get(sid);
+                        if (handlers.upgradeQos(data.getQos())) {
+                            pendingSubs.put(sid, data);
+                            queued = true;
+                        }
+                    } else {
+                        // Resubscribing before the unsubscription is sent
+                        // keeps the existing subscription
+                        handlers = pendingUnsubs.remove(path);
+                        if (handlers != null) {
+                            if (handlers.upgradeQos(data.getQos())) {
+                                pendingSubs.put(handlers.getSid(), data);
+                                queued = true;
+                            }
+                        } else {
+                            sid = currentSubID.getAndIncrement();
+                            handlers = new SubscriptionHandlers(sid, data.getQos());
+                            pendingSubs.put(sid, data);
+                            queued = true;
+                        }
+                        sid = handlers.getSid();
+                        subPaths.put(path, sid);
+                        subSids.put(sid, path);
+                        subUpdates.put(sid, handlers);
+                    }
+                    added.add(handlers.register(onUpdate, minInterval));
+                } catch (IllegalArgumentException e) {
+                    if (error == null) {
+                        error = new StringBuilder();
+                    }
+                    StringWriter writer = new StringWriter();
+                    e.printStackTrace(new PrintWriter(writer));
+                    error.append(writer.toString());
+                    error.append("\n\n");
                 }
-                min++;
-            } catch (IllegalArgumentException e) {
-                if (error == null) {
-                    error = new StringBuilder();
+            }
+
+            if (queued) {
+                if (onResponse != null) {
+                    pendingSubHandlers.add(onResponse);
                 }
-                StringWriter writer = new StringWriter();
-                e.printStackTrace(new PrintWriter(writer));
-                error.append(writer.toString());
-                error.append("\n\n");
+                scheduleSubscriptionFlush();
             }
         }
-
-        req.setSubSids(subs);
-        RequestWrapper wrapper = new RequestWrapper(req);
-        sendRequest(wrapper, currentReqID.incrementAndGet());
+        // The handlers may subscribe or unsubscribe from their callbacks
+        for (SubscriptionHandlers.Entry e : added) {
+            e.deliver();
+        }
         if (error != null) {
             throw new RuntimeException(error.toString());
         }
     }
 
+    /**
+     * Removes the subscription of the path regardless of how many
+     * handlers reference it.
+     *
+     * @param path Path to unsubscribe from.
+     * @param onResponse Response.
+     */
     public void unsubscribe(String path, Handler<UnsubscribeResponse> onResponse) {
         Set<String> paths = new HashSet<>();
         paths.add(path);
         unsubscribe(paths, onResponse);
     }
 
+    /**
+     * Removes the subscriptions of the paths regardless of how many
+     * handlers reference them.
+     *
+     * @param paths Paths to unsubscribe from.
+     * @param onResponse Response.
+     */
     public void unsubscribe(Set<String> paths, Handler<UnsubscribeResponse> onResponse) {
+        unsubscribe(paths, null, true, onResponse);
+    }
+
+    /**
+     * Releases a reference of the handler from the subscriptions of the
+     * paths. Paths are only unsubscribed from the responder once they are
+     * no longer referenced.
+     *
+     * @param paths Paths to unsubscribe from.
+     * @param onUpdate Handler the paths were subscribed with.
+     * @param onResponse Response, only called if an unsubscription was
+     *                   sent.
+     */
+    public void unsubscribe(Set<String> paths,
+                            Handler<SubscriptionValue> onUpdate,
+                            Handler<UnsubscribeResponse> onResponse) {
+        unsubscribe(paths, onUpdate, false, onResponse);
+    }
+
+    private void unsubscribe(Set<String> paths,
+                             Handler<SubscriptionValue> onUpdate,
+                             boolean all,
+                             Handler<UnsubscribeResponse> onResponse) {
         if (paths == null) {
             throw new NullPointerException("paths");
         }
-        List<Integer> subs = new ArrayList<>();
-        for (String path : paths) {
-            path = NodeManager.normalizePath(path, true);
-            Integer sid = subPaths.remove(path);
-            if (sid != null) {
-                subs.add(sid);
+        boolean queued = false;
+        synchronized (subPaths) {
+            for (String path : paths) {
+                path = NodeManager.normalizePath(path, true);
+                Integer sid = subPaths.get(path);
+                if (sid == null) {
+                    continue;
+                }
+                SubscriptionHandlers handlers = subUpdates.get(sid);
+                if (all) {
+                    handlers.clear();
+                } else if (!handlers.remove(onUpdate) || !handlers.isEmpty()) {
+                    continue;
+                }
+                subPaths.remove(path);
                 subSids.remove(sid);
                 subUpdates.remove(sid);
+                pendingSubs.remove(sid);
+                if (handlers.isSent()) {
+                    pendingUnsubs.put(path, handlers);
+                    queued = true;
+                }
+            }
+
+            if (queued || all) {
+                if (onResponse != null) {
+                    pendingUnsubHandlers.add(onResponse);
+                }
+                scheduleSubscriptionFlush();
             }
         }
-        UnsubscribeRequest req = new UnsubscribeRequest(subs);
-        RequestWrapper wrapper = new RequestWrapper(req);
-        wrapper.unsubHandler = onResponse;
-        sendRequest(wrapper, currentReqID.incrementAndGet());
+    }
+
+    /**
+     * Sends the pending subscriptions and unsubscriptions once the
+     * coalescing delay has elapsed. Must be called while holding the
+     * subscription lock.
+     */
+    private void scheduleSubscriptionFlush() {
+        if (SUBSCRIPTION_DELAY <= 0) {
+            flushSubscriptions();
+        } else if (subFlushFut == null) {
+            subFlushFut = Objects.getDaemonThreadPool().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (subPaths) {
+                        subFlushFut = null;
+                        flushSubscriptions();
+                    }
+                }
+            }, SUBSCRIPTION_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends the pending subscriptions and unsubscriptions. Requests are
+     * sent under the subscription lock to keep the order of the
+     * subscriptions and unsubscriptions of the same path.
+     */
+    private void flushSubscriptions() {
+        if (!pendingUnsubs.isEmpty() || !pendingUnsubHandlers.isEmpty()) {
+            List<Integer> sids = new ArrayList<>();
+            for (SubscriptionHandlers handlers : pendingUnsubs.values()) {
+                sids.add(handlers.getSid());
+            }
+            UnsubscribeRequest req = new UnsubscribeRequest(sids);
+            RequestWrapper wrapper = new RequestWrapper(req);
+            if (!pendingUnsubHandlers.isEmpty()) {
+                wrapper.unsubHandlers = new ArrayList<>(pendingUnsubHandlers);
+            }
+            pendingUnsubs.clear();
+            pendingUnsubHandlers.clear();
+            sendRequest(wrapper, currentReqID.incrementAndGet());
+        }
+
+        if (!pendingSubs.isEmpty()) {
+            Map<SubData, Integer> sids = new LinkedHashMap<>();
+            for (Map.Entry<Integer, SubData> entry : pendingSubs.entrySet()) {
+                int sid = entry.getKey();
+                sids.put(entry.getValue(), sid);
+                SubscriptionHandlers handlers = subUpdates.get(sid);
+                if (handlers != null) {
+                    handlers.setSent();
+                }
+            }
+            SubscribeRequest req = new SubscribeRequest(sids.keySet());
+            req.setSubSids(sids);
+            RequestWrapper wrapper = new RequestWrapper(req);
+            if (!pendingSubHandlers.isEmpty()) {
+                wrapper.subHandlers = new ArrayList<>(pendingSubHandlers);
+            }
+            pendingSubs.clear();
+            pendingSubHandlers.clear();
+            sendRequest(wrapper, currentReqID.incrementAndGet());
+        }
+    }
+
+    /**
+     * @return Last value cache of the requester.
+     * @see PropertyReference#VALUE_CACHE_TTL
+     */
+    public synchronized ValueCache getValueCache() {
+        if (valueCache == null) {
+            valueCache = new ValueCache(this, VALUE_CACHE_TTL);
+        }
+        return valueCache;
+    }
+
+    /**
+     * Reads the current value of a path through the value cache.
+     *
+     * @param path Path to read.
+     * @param onValue Handler of the value.
+     * @see ValueCache#read(String, Handler)
+     */
+    public void read(String path, Handler<SubscriptionValue> onValue) {
+        getValueCache().read(path, onValue);
+    }
+
+    /**
+     * Reads the current values of multiple paths through the value cache.
+     *
+     * @param paths Paths to read.
+     * @param onValues Handler of the values.
+     * @see ValueCache#readAll(Set, Handler)
+     */
+    public void readAll(Set<String> paths,
+                        Handler<Map<String, SubscriptionValue>> onValues) {
+        getValueCache().readAll(paths, onValues);
     }
 
     /**
@@ -193,16 +452,52 @@ public class Requester extends Linkable {
      */
     @SuppressWarnings("unused")
     public void closeStream(int rid, Handler<CloseResponse> onResponse) {
-        CloseRequest req = new CloseRequest();
-        RequestWrapper wrapper = new RequestWrapper(req);
-        sendRequest(wrapper, rid);
+        int streamRid = rid;
+        synchronized (listStreams) {
+            ListStream stream = listListeners.remove(rid);
+            if (stream != null) {
+                stream.removeListener(rid);
+                if (stream.isEmpty()) {
+                    streamRid = stream.getRid();
+                    removeListStream(stream);
+                } else {
+                    streamRid = -1;
+                }
+            }
+        }
 
-        reqs.remove(rid);
+        if (streamRid != -1) {
+            CloseRequest req = new CloseRequest();
+            RequestWrapper wrapper = new RequestWrapper(req);
+            sendRequest(wrapper, streamRid);
+            reqs.remove(streamRid);
+            synchronized (invokeResponses) {
+                invokeResponses.remove(streamRid);
+            }
+        }
         if (onResponse != null) {
             onResponse.handle(new CloseResponse(rid, null));
         }
     }
 
+    /**
+     * Removes a shared list stream and all of its listeners. Must be
+     * called while holding the list lock.
+     *
+     * @param stream Stream to remove.
+     */
+    private void removeListStream(ListStream stream) {
+        if (listStreams.get(stream.getPath()) == stream) {
+            listStreams.remove(stream.getPath());
+        }
+        Iterator<ListStream> it = listListeners.values().iterator();
+        while (it.hasNext()) {
+            if (it.next() == stream) {
+                it.remove();
+            }
+        }
+    }
+
     /**
      * Sends an invocation request.
      *
@@ -240,9 +535,121 @@ public class Requester extends Linkable {
      * @return Request ID that can be used to close the stream.
      */
     public int list(ListRequest request, Handler<ListResponse> onResponse) {
-        RequestWrapper wrapper = new RequestWrapper(request);
-        wrapper.listHandler = onResponse;
-        return sendRequest(wrapper);
+        return openList(request, onResponse, null);
+    }
+
+    /**
+     * Sends a list request whose responses are not materialized into the
+     * node manager of the requester. Each response is delivered as an
+     * immutable update instead.
+     *
+     * @param request List request.
+     * @param onUpdate Updates of the listed node.
+     * @return Request ID that can be used to close the stream.
+     * @see ListUpdate
+     */
+    public int listUpdates(ListRequest request, Handler<ListUpdate> onUpdate) {
+        if (onUpdate == null) {
+            throw new NullPointerException("onUpdate");
+        }
+        return openList(request, null, onUpdate);
+    }
+
+    /**
+     * Lists of the same path share a single stream. Listeners joining an
+     * open stream receive the latest state of the node immediately and
+     * the stream is only closed once every listener closed it.
+     *
+     * @return ID of the listener that can be used to close the stream.
+     * @see #closeStream(int, Handler)
+     */
+    private int openList(ListRequest request,
+                         Handler<ListResponse> onResponse,
+                         Handler<ListUpdate> onUpdate) {
+        if (request == null) {
+            throw new NullPointerException("request");
+        }
+        String path = NodeManager.normalizePath(request.getPath(), true);
+        ListStream stream;
+        boolean join;
+        ListUpdate snapshot = null;
+        JsonObject state = null;
+        int id = currentReqID.incrementAndGet();
+        synchronized (listStreams) {
+            stream = listStreams.get(path);
+            join = stream != null;
+            if (!join) {
+                stream = new ListStream(path, id);
+                listStreams.put(path, stream);
+            }
+            if (onResponse != null) {
+                stream.addListener(id, onResponse);
+            } else {
+                stream.addUpdateListener(id, onUpdate);
+            }
+            listListeners.put(id, stream);
+
+            if (!join) {
+                RequestWrapper wrapper = new RequestWrapper(request);
+                wrapper.listStream = stream;
+                sendRequest(wrapper, id);
+                return id;
+            } else if (!stream.hasState()) {
+                return id;
+            } else if (onUpdate != null) {
+                snapshot = stream.snapshot(id);
+            } else if (!stream.isMaterialized()) {
+                // The stream was only opened for updates
+                state = stream.toResponse(id);
+                stream.setMaterialized();
+            }
+        }
+
+        if (snapshot != null) {
+            onUpdate.handle(snapshot);
+        } else {
+            DSLink link = getDSLink();
+            Node node = link.getNodeManager().getNode(path, true).getNode();
+            SubscriptionManager subs = link.getSubscriptionManager();
+            ListResponse resp = new ListResponse(link, subs, id, node, node.getPath());
+            if (state != null) {
+                resp.populate(state);
+            }
+            onResponse.handle(resp);
+        }
+        return id;
+    }
+
+    /**
+     * Removes a remote node and its children that were materialized by
+     * list responses from the node manager of the requester. Nodes of open
+     * list streams are recreated by their next response.
+     *
+     * @param path Path of the remote node.
+     * @return Whether the node was materialized.
+     */
+    public boolean releaseNode(String path) {
+        if (path == null) {
+            throw new NullPointerException("path");
+        }
+        DSLink link = getDSLink();
+        if (link == null) {
+            return false;
+        }
+        NodeManager manager = link.getNodeManager();
+        NodePair pair = manager.getNode(path, false, false);
+        Node node = pair.getNode();
+        if (node == null || pair.getReference() != null) {
+            return false;
+        }
+        Node parent = node.getParent();
+        if (parent == null) {
+            // Super root, release all of its children
+            node.clearChildren();
+        } else {
+            parent.removeChild(node);
+        }
+        return true;
     }
 
     /**
@@ -250,11 +657,12 @@ public class Requester extends Linkable {
      *
      * @param request Set request.
      * @param onResponse Response.
+     * @return Request ID of the request.
      */
-    public void set(SetRequest request, Handler<SetResponse> onResponse) {
+    public int set(SetRequest request, Handler<SetResponse> onResponse) {
         RequestWrapper wrapper = new RequestWrapper(request);
         wrapper.setHandler = onResponse;
-        sendRequest(wrapper);
+        return sendRequest(wrapper);
     }
 
     /**
@@ -373,14 +781,43 @@ public class Requester extends Linkable {
         switch (method) {
             case "list":
                 ListRequest listRequest = (ListRequest) request;
-                Node node = manager.getNode(listRequest.getPath(), true).getNode();
-                String path = node.getPath();
-                SubscriptionManager subs = link.getSubscriptionManager();
-                ListResponse listResp = new ListResponse(link, subs, rid, node, path);
-                listResp.setError(error);
-                listResp.populate(in);
-                if (wrapper.listHandler != null) {
-                    wrapper.listHandler.handle(listResp);
+                ListStream listStream = wrapper.listStream;
+                Map<Integer, Handler<ListResponse>> responseListeners;
+                Map<Integer, Handler<ListUpdate>> updateListeners;
+                synchronized (listStreams) {
+                    listStream.update(in);
+                    responseListeners = new HashMap<>(listStream.getListeners());
+                    if (!responseListeners.isEmpty()) {
+                        listStream.setMaterialized();
+                    }
+                    updateListeners = new HashMap<>(listStream.getUpdateListeners());
+                    if (closed) {
+                        removeListStream(listStream);
+                    }
+                }
+
+                String path;
+                if (!responseListeners.isEmpty()) {
+                    Node node = manager.getNode(listRequest.getPath(), true).getNode();
+                    path = node.getPath();
+                    SubscriptionManager subs = link.getSubscriptionManager();
+                    ListResponse listResp = new ListResponse(link, subs, rid, node, path);
+                    listResp.setError(error);
+                    listResp.populate(in);
+                    // Every listener receives its own ID to close the stream with
+                    for (Map.Entry<Integer, Handler<ListResponse>> e : responseListeners.entrySet()) {
+                        int id = e.getKey();
+                        e.getValue().handle(id == rid ? listResp : new ListResponse(listResp, id));
+                    }
+                }
+                if (!updateListeners.isEmpty()) {
+                    ListUpdate update = new ListUpdate(rid, listStream.getPath());
+                    update.setError(error);
+                    update.populate(in);
+                    for (Map.Entry<Integer, Handler<ListUpdate>> e : updateListeners.entrySet()) {
+                        int id = e.getKey();
+                        e.getValue().handle(id == rid ? update : new ListUpdate(update, id));
+                    }
                 }
                 break;
             case "set":
@@ -411,13 +848,20 @@ public class Requester extends Linkable {
                 SubscribeResponse subResp = new SubscribeResponse(rid, link);
                 subResp.setError(error);
                 subResp.populate(in);
+                if (wrapper.subHandlers != null) {
+                    for (Handler<SubscribeResponse> h : wrapper.subHandlers) {
+                        h.handle(subResp);
+                    }
+                }
                 break;
             case "unsubscribe":
                 UnsubscribeResponse unsubResp = new UnsubscribeResponse(rid, link);
                 unsubResp.setError(error);
                 unsubResp.populate(in);
-                if (wrapper.unsubHandler != null) {
-                    wrapper.unsubHandler.handle(unsubResp);
+                if (wrapper.unsubHandlers != null) {
+                    for (Handler<UnsubscribeResponse> h : wrapper.unsubHandlers) {
+                        h.handle(unsubResp);
+                    }
                 }
                 break;
             case "invoke":
@@ -473,10 +917,35 @@ public class Requester extends Linkable {
      * unsubscribe to the server.
      */
     public void clearSubscriptions() {
-        subPaths.clear();
-        subSids.clear();
-        subUpdates.clear();
+        synchronized (subPaths) {
+            for (SubscriptionHandlers handlers : subUpdates.values()) {
+                handlers.clear();
+            }
+            if (subFlushFut != null) {
+                subFlushFut.cancel(false);
+                subFlushFut = null;
+            }
+            pendingSubs.clear();
+            pendingUnsubs.clear();
+            pendingSubHandlers.clear();
+            pendingUnsubHandlers.clear();
+            subPaths.clear();
+            subSids.clear();
+            subUpdates.clear();
+        }
         invokeResponses.clear();
+        synchronized (listStreams) {
+            listStreams.clear();
+            listListeners.clear();
+        }
+
+        ValueCache cache;
+        synchronized (this) {
+            cache = valueCache;
+        }
+        if (cache != null) {
+            cache.clear();
+        }
     }
 
     private static class RequestWrapper {
@@ -484,10 +953,11 @@ public class Requester extends Linkable {
         private final Request request;
 
         private Handler<InvokeResponse> invokeHandler;
-        private Handler<ListResponse> listHandler;
+        private ListStream listStream;
         private Handler<RemoveResponse> removeHandler;
         private Handler<SetResponse> setHandler;
-        private Handler<UnsubscribeResponse> unsubHandler;
+        private List<Handler<SubscribeResponse>> subHandlers;
+        private List<Handler<UnsubscribeResponse>> unsubHandlers;
 
         public RequestWrapper(Request request) {
             this.request = request;
@@ -495,10 +965,19 @@ public class Requester extends Linkable {
 
         public boolean shouldStore() {
             return !(invokeHandler == null
-                    && listHandler == null
+                    && listStream == null
                     && removeHandler == null
                     && setHandler == null
-                    && unsubHandler == null);
+                    && subHandlers == null
+                    && unsubHandlers == null);
         }
     }
+
+    static {
+        String s = PropertyReference.SUBSCRIPTION_DELAY;
+        SUBSCRIPTION_DELAY = Long.getLong(s, 10);
+
+        s = PropertyReference.VALUE_CACHE_TTL;
+        VALUE_CACHE_TTL = Long.getLong(s, 30000);
+    }
 }
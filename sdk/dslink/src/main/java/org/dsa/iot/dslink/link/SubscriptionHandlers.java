@@ -0,0 +1,258 @@
+package org.dsa.iot.dslink.link;
+
+import org.dsa.iot.dslink.node.value.SubscriptionValue;
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.handler.Handler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local handlers sharing a single subscription of the requester. Every
+ * subscribe call adds a reference to the subscription, which is only
+ * removed from the responder once all the references are released.
+ * <p>
+ * The last update of the subscription is retained and delivered to every
+ * handler as it is added, so handlers joining an existing subscription
+ * receive the current value without waiting for it to change.
+ * <p>
+ * Each handler may be throttled to a minimum interval between updates.
+ * Updates received sooner are coalesced into the latest value, which is
+ * delivered once the interval has elapsed.
+ *
+ * @author Samuel Grenier
+ */
+class SubscriptionHandlers implements Handler<SubscriptionValue> {
+
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+    private final int sid;
+    private SubscriptionValue last;
+    private Integer qos;
+    private boolean sent;
+
+    /**
+     * @param sid Subscription ID of the path.
+     * @param qos QoS the subscription was requested with.
+     */
+    SubscriptionHandlers(int sid, Integer qos) {
+        this.sid = sid;
+        this.qos = qos;
+    }
+
+    /**
+     * Adds a reference to the subscription. The handler is called with the
+     * last update immediately if one was already received.
+     *
+     * @param handler Handler of the updates, can be {@code null}.
+     * @param minInterval Minimum interval between updates in
+     *                    milliseconds, 0 to disable throttling.
+     */
+    void add(Handler<SubscriptionValue> handler, long minInterval) {
+        register(handler, minInterval).deliver();
+    }
+
+    /**
+     * Adds a reference to the subscription without calling the handler.
+     * The last update is retained by the returned entry and must be
+     * delivered with {@link Entry#deliver()} once no locks are held, as
+     * the handler may subscribe or unsubscribe from within its callback.
+     *
+     * @param handler Handler of the updates, can be {@code null}.
+     * @param minInterval Minimum interval between updates in
+     *                    milliseconds, 0 to disable throttling.
+     * @return Entry of the handler.
+     */
+    synchronized Entry register(Handler<SubscriptionValue> handler,
+                                long minInterval) {
+        if (minInterval < 0) {
+            throw new IllegalArgumentException("minInterval < 0");
+        }
+        Entry e = new Entry(handler, minInterval, last);
+        entries.add(e);
+        return e;
+    }
+
+    /**
+     * Releases a reference of the handler from the subscription.
+     *
+     * @param handler Handler that was added.
+     * @return Whether a reference was released.
+     */
+    boolean remove(Handler<SubscriptionValue> handler) {
+        for (Entry e : entries) {
+            if (e.handler == handler) {
+                e.close();
+                return entries.remove(e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Releases all the references.
+     */
+    synchronized void clear() {
+        for (Entry e : entries) {
+            e.close();
+        }
+        entries.clear();
+        last = null;
+    }
+
+    /**
+     * @return Last update of the subscription or {@code null} if none was
+     *         received yet.
+     */
+    synchronized SubscriptionValue getLast() {
+        return last;
+    }
+
+    /**
+     * @return Whether the subscription is no longer referenced.
+     */
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return Amount of references to the subscription.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    int getSid() {
+        return sid;
+    }
+
+    /**
+     * @return Whether the subscription was sent to the responder.
+     */
+    boolean isSent() {
+        return sent;
+    }
+
+    void setSent() {
+        this.sent = true;
+    }
+
+    Integer getQos() {
+        return qos;
+    }
+
+    /**
+     * Raises the QoS of the subscription if the requested QoS is higher.
+     *
+     * @param qos Requested QoS.
+     * @return Whether the subscription must be sent again.
+     */
+    boolean upgradeQos(Integer qos) {
+        if (qos == null || (this.qos != null && this.qos >= qos)) {
+            return false;
+        }
+        this.qos = qos;
+        return true;
+    }
+
+    @Override
+    public void handle(SubscriptionValue event) {
+        // Handlers are called without holding the monitor, entries added
+        // after the snapshot receive the update as their initial value
+        Object[] snapshot;
+        synchronized (this) {
+            last = event;
+            snapshot = entries.toArray();
+        }
+        for (Object e : snapshot) {
+            ((Entry) e).handle(event);
+        }
+    }
+
+    static class Entry {
+
+        private final Handler<SubscriptionValue> handler;
+        private final long minInterval;
+
+        private SubscriptionValue initial;
+        private long lastDelivered;
+        private SubscriptionValue throttled;
+        private boolean closed;
+
+        Entry(Handler<SubscriptionValue> handler,
+              long minInterval,
+              SubscriptionValue initial) {
+            this.handler = handler;
+            this.minInterval = minInterval;
+            this.initial = initial;
+        }
+
+        /**
+         * Delivers the last update of the subscription at the time the
+         * entry was added, unless a newer update was already handled.
+         */
+        void deliver() {
+            SubscriptionValue event;
+            synchronized (this) {
+                event = initial;
+            }
+            if (event != null) {
+                handle(event, true);
+            }
+        }
+
+        void handle(SubscriptionValue event) {
+            handle(event, false);
+        }
+
+        private void handle(SubscriptionValue event, boolean isInitial) {
+            if (handler == null) {
+                return;
+            }
+            synchronized (this) {
+                if (isInitial && initial != event) {
+                    return;
+                }
+                initial = null;
+                if (closed) {
+                    return;
+                }
+                if (minInterval > 0) {
+                    long now = System.currentTimeMillis();
+                    long wait = lastDelivered + minInterval - now;
+                    if (wait > 0) {
+                        if (throttled == null) {
+                            schedule(wait);
+                        }
+                        throttled = event;
+                        return;
+                    }
+                    lastDelivered = now;
+                }
+            }
+            handler.handle(event);
+        }
+
+        synchronized void close() {
+            closed = true;
+            throttled = null;
+        }
+
+        private void schedule(long wait) {
+            Objects.getDaemonThreadPool().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    SubscriptionValue event;
+                    synchronized (Entry.this) {
+                        event = throttled;
+                        throttled = null;
+                        lastDelivered = System.currentTimeMillis();
+                    }
+                    if (event != null) {
+                        handler.handle(event);
+                    }
+                }
+            }, wait, TimeUnit.MILLISECONDS);
+        }
+    }
+}
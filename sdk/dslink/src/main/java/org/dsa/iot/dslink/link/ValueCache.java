@@ -0,0 +1,251 @@
+package org.dsa.iot.dslink.link;
+
+import org.dsa.iot.dslink.node.NodeManager;
+import org.dsa.iot.dslink.node.value.SubscriptionValue;
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.SubData;
+import org.dsa.iot.dslink.util.handler.Handler;
+
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Last value cache of the requester. Reading a path subscribes to it and
+ * keeps the subscription open until the path has not been read for the
+ * configured time to live, so repeated reads of a hot path are answered
+ * immediately from the cache. The subscriptions are shared with any other
+ * subscriptions of the requester to the same path.
+ *
+ * @author Samuel Grenier
+ */
+public class ValueCache {
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Requester requester;
+    private final long ttl;
+
+    private ScheduledFuture<?> expireFut;
+
+    /**
+     * @param requester Requester to subscribe with.
+     * @param ttl Time in milliseconds a path stays subscribed after it
+     *            was last read.
+     */
+    public ValueCache(Requester requester, long ttl) {
+        if (requester == null) {
+            throw new NullPointerException("requester");
+        } else if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl <= 0");
+        }
+        this.requester = requester;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Reads the current value of a path. The handler is called
+     * immediately if the value is cached or the path is already subscribed
+     * elsewhere in the requester and received an update, otherwise once
+     * the first update of the subscription is received. If no update is
+     * received before the path expires then the handler is called with
+     * {@code null}.
+     *
+     * @param path Path to read.
+     * @param onValue Handler of the value.
+     */
+    public void read(String path, Handler<SubscriptionValue> onValue) {
+        if (path == null) {
+            throw new NullPointerException("path");
+        } else if (onValue == null) {
+            throw new NullPointerException("onValue");
+        }
+        path = NodeManager.normalizePath(path, true);
+        Entry entry;
+        SubscriptionValue value;
+        boolean subscribe = false;
+        synchronized (this) {
+            entry = entries.get(path);
+            if (entry == null) {
+                entry = new Entry(path);
+                entries.put(path, entry);
+                subscribe = true;
+                scheduleExpiration();
+            }
+            value = entry.read(onValue);
+        }
+
+        if (subscribe) {
+            requester.subscribe(new SubData(path, null), entry);
+        }
+        if (value != null) {
+            onValue.handle(value);
+        }
+    }
+
+    /**
+     * Reads the current values of multiple paths. The handler is called
+     * once every path was read.
+     *
+     * @param paths Paths to read.
+     * @param onValues Handler of the values mapped by their path as given.
+     *                 Paths that expired before receiving an update are
+     *                 mapped to {@code null}.
+     * @see #read(String, Handler)
+     */
+    public void readAll(Set<String> paths,
+                        final Handler<Map<String, SubscriptionValue>> onValues) {
+        if (paths == null) {
+            throw new NullPointerException("paths");
+        } else if (onValues == null) {
+            throw new NullPointerException("onValues");
+        }
+        final Map<String, SubscriptionValue> values = new HashMap<>();
+        final int size = paths.size();
+        if (size == 0) {
+            onValues.handle(values);
+            return;
+        }
+        for (final String path : paths) {
+            read(path, new Handler<SubscriptionValue>() {
+                @Override
+                public void handle(SubscriptionValue event) {
+                    boolean done;
+                    synchronized (values) {
+                        values.put(path, event);
+                        done = values.size() == size;
+                    }
+                    if (done) {
+                        onValues.handle(values);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @return Amount of paths currently cached.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all the cached paths without unsubscribing them. Used when
+     * the subscriptions of the requester are cleared. Pending reads are
+     * completed with {@code null}.
+     */
+    public void clear() {
+        List<Entry> cleared;
+        synchronized (this) {
+            cleared = new ArrayList<>(entries.values());
+            entries.clear();
+            cancelExpiration();
+        }
+        for (Entry e : cleared) {
+            e.expire();
+        }
+    }
+
+    private void scheduleExpiration() {
+        if (expireFut != null) {
+            return;
+        }
+        long delay = Math.max(ttl / 2, 1);
+        expireFut = Objects.getDaemonThreadPool().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                expire();
+            }
+        }, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelExpiration() {
+        if (expireFut != null) {
+            expireFut.cancel(false);
+            expireFut = null;
+        }
+    }
+
+    /**
+     * Unsubscribes the paths that have not been read within the time to
+     * live.
+     */
+    private void expire() {
+        List<Entry> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+                if (now - e.getLastRead() >= ttl) {
+                    it.remove();
+                    expired.add(e);
+                }
+            }
+            if (entries.isEmpty()) {
+                cancelExpiration();
+            }
+        }
+        for (Entry e : expired) {
+            Set<String> paths = Collections.singleton(e.path);
+            requester.unsubscribe(paths, e, null);
+            e.expire();
+        }
+    }
+
+    private static class Entry implements Handler<SubscriptionValue> {
+
+        private final List<Handler<SubscriptionValue>> waiters = new ArrayList<>();
+        private final String path;
+
+        private SubscriptionValue value;
+        private long lastRead;
+
+        Entry(String path) {
+            this.path = path;
+        }
+
+        /**
+         * @param onValue Handler to wait for the value if it is not cached.
+         * @return Cached value or {@code null} if the handler is waiting.
+         */
+        synchronized SubscriptionValue read(Handler<SubscriptionValue> onValue) {
+            lastRead = System.currentTimeMillis();
+            if (value == null) {
+                waiters.add(onValue);
+            }
+            return value;
+        }
+
+        synchronized long getLastRead() {
+            return lastRead;
+        }
+
+        @Override
+        public void handle(SubscriptionValue event) {
+            List<Handler<SubscriptionValue>> waiting;
+            synchronized (this) {
+                value = event;
+                if (waiters.isEmpty()) {
+                    return;
+                }
+                waiting = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            for (Handler<SubscriptionValue> h : waiting) {
+                h.handle(event);
+            }
+        }
+
+        void expire() {
+            List<Handler<SubscriptionValue>> waiting;
+            synchronized (this) {
+                waiting = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            for (Handler<SubscriptionValue> h : waiting) {
+                h.handle(null);
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.dsa.iot.dslink.methods.responses;
 
 import org.dsa.iot.dslink.DSLink;
 import org.dsa.iot.dslink.DSLinkHandler;
+import org.dsa.iot.dslink.connection.DataHandler;
 import org.dsa.iot.dslink.link.Requester;
 import org.dsa.iot.dslink.methods.Response;
 import org.dsa.iot.dslink.methods.StreamState;
@@ -19,6 +20,7 @@ import org.dsa.iot.dslink.util.handler.Handler;
 import org.dsa.iot.dslink.util.json.JsonArray;
 import org.dsa.iot.dslink.util.json.JsonObject;
 
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -160,20 +162,9 @@ public class InvokeResponse extends Response {
 
         // Handle results
         {
-            JsonArray results = new JsonArray();
             List<Row> rows = table.getRows(true);
             if (rows != null) {
-                for (Row r : rows) {
-                    JsonArray row = new JsonArray();
-                    List<Value> values = r.getValues();
-                    if (values != null) {
-                        for (Value v : values) {
-                            row.add(v);
-                        }
-                    }
-                    results.add(row);
-                }
-                out.put("updates", results);
+                out = writeChunks(out, rows, table.getChunkSize(), state);
             }
         }
 
@@ -204,6 +195,54 @@ public class InvokeResponse extends Response {
         return obj;
     }
 
+    /**
+     * Writes all but the last chunk of rows directly to the network. The
+     * stream is kept open until the last chunk is returned to the caller,
+     * which ensures the chunks are queued in order.
+     *
+     * @param out Initial response holding the columns and metadata.
+     * @param rows Rows of the table.
+     * @param chunkSize Maximum amount of rows per response.
+     * @param state Final state of the stream.
+     * @return Last response holding the remaining rows.
+     */
+    private JsonObject writeChunks(JsonObject out,
+                                   List<Row> rows,
+                                   int chunkSize,
+                                   StreamState state) {
+        DataHandler writer = link.getWriter();
+        if (writer == null) {
+            chunkSize = Integer.MAX_VALUE;
+        }
+        Iterator<Row> it = rows.iterator();
+        do {
+            JsonArray updates = new JsonArray();
+            for (int i = 0; i < chunkSize && it.hasNext(); i++) {
+                JsonArray row = new JsonArray();
+                List<Value> values = it.next().getValues();
+                if (values != null) {
+                    for (Value v : values) {
+                        row.add(v);
+                    }
+                }
+                updates.add(row);
+            }
+            out.put("updates", updates);
+            if (!it.hasNext()) {
+                break;
+            }
+
+            out.put("stream", StreamState.OPEN.getJsonName());
+            writer.writeResponse(out);
+            writer.awaitResponseCapacity(chunkSize);
+
+            out = new JsonObject();
+            out.put("rid", rid);
+            out.put("stream", state.getJsonName());
+        } while (true);
+        return out;
+    }
+
     private void processColumns(Action act, JsonObject obj) {
         Table table = actRes.getTable();
         List<Parameter> cols = table.getColumns();
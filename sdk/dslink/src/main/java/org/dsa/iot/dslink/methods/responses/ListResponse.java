@@ -45,6 +45,19 @@ public class ListResponse extends Response {
         this.path = path;
     }
 
+    /**
+     * Copies the response for another listener of the same list stream.
+     * The node and the children updates are shared with the original.
+     *
+     * @param other Response to copy.
+     * @param rid ID of the listener the copy is for.
+     */
+    public ListResponse(ListResponse other, int rid) {
+        this(other.link, other.manager, rid, other.node, other.path);
+        this.updates.putAll(other.updates);
+        setError(other.getError());
+    }
+
     /**
      * @return Node the response corresponds to.
      */
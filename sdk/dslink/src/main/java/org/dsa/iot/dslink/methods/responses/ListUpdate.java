@@ -0,0 +1,162 @@
+package org.dsa.iot.dslink.methods.responses;
+
+import org.dsa.iot.dslink.methods.Response;
+import org.dsa.iot.dslink.methods.StreamState;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+
+import java.util.*;
+
+/**
+ * A list response that is not materialized into the node manager of the
+ * requester. Each update only holds the changes of a single response from
+ * the responder, allowing large remote nodes to be browsed without
+ * retaining any of their children.
+ * <p>
+ * An update containing {@code $is} resets the node and begins a new
+ * snapshot of it. The following updates are deltas over that snapshot.
+ * The values are the raw values received and must not be modified.
+ *
+ * @author Samuel Grenier
+ */
+public class ListUpdate extends Response {
+
+    private final int rid;
+    private final String path;
+
+    private Map<String, Object> metadata = Collections.emptyMap();
+    private Map<String, JsonObject> children = Collections.emptyMap();
+    private Set<String> removed = Collections.emptySet();
+    private StreamState stream;
+
+    public ListUpdate(int rid, String path) {
+        this.rid = rid;
+        this.path = path;
+    }
+
+    /**
+     * Copies the update for another listener of the same list stream.
+     *
+     * @param other Update to copy.
+     * @param rid ID of the listener the copy is for.
+     */
+    public ListUpdate(ListUpdate other, int rid) {
+        this(rid, other.path);
+        this.metadata = other.metadata;
+        this.children = other.children;
+        this.removed = other.removed;
+        this.stream = other.stream;
+        setError(other.getError());
+    }
+
+    @Override
+    public int getRid() {
+        return rid;
+    }
+
+    /**
+     * @return Path of the listed node.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return State of the stream or {@code null} if it was not sent.
+     */
+    public StreamState getStreamState() {
+        return stream;
+    }
+
+    /**
+     * @return Whether this update begins a new snapshot of the node.
+     */
+    public boolean isSnapshot() {
+        return metadata.containsKey("$is");
+    }
+
+    /**
+     * @return Changed configurations and attributes with their prefix.
+     */
+    public Map<String, Object> getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return Added or changed children and their data.
+     */
+    public Map<String, JsonObject> getChildren() {
+        return children;
+    }
+
+    /**
+     * @return Names of removed children, and of removed configurations
+     *         and attributes with their prefix.
+     */
+    public Set<String> getRemoved() {
+        return removed;
+    }
+
+    @Override
+    public void populate(JsonObject in) {
+        stream = StreamState.toEnum((String) in.get("stream"));
+        JsonArray updates = in.get("updates");
+        if (updates == null) {
+            return;
+        }
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        Map<String, JsonObject> children = new LinkedHashMap<>();
+        Set<String> removed = new LinkedHashSet<>();
+        for (Object obj : updates) {
+            if (obj instanceof JsonObject) {
+                JsonObject update = (JsonObject) obj;
+                String name = update.get("name");
+                if ("remove".equals(update.get("change"))) {
+                    metadata.remove(name);
+                    children.remove(name);
+                    removed.add(name);
+                } else {
+                    throw new RuntimeException("Unhandled update: " + update);
+                }
+                continue;
+            }
+
+            JsonArray update = (JsonArray) obj;
+            String name = update.get(0);
+            Object value = update.get(1);
+            if (name.startsWith("$") || name.startsWith("@")) {
+                if ("$is".equals(name)) {
+                    // The node was reset
+                    metadata.clear();
+                    children.clear();
+                    removed.clear();
+                }
+                removed.remove(name);
+                metadata.put(name, value);
+            } else {
+                JsonObject data = (JsonObject) value;
+                if (data != null && "remove".equals(data.get("change"))) {
+                    children.remove(name);
+                    removed.add(name);
+                } else {
+                    removed.remove(name);
+                    children.put(name, data);
+                }
+            }
+        }
+        this.metadata = Collections.unmodifiableMap(metadata);
+        this.children = Collections.unmodifiableMap(children);
+        this.removed = Collections.unmodifiableSet(removed);
+    }
+
+    @Override
+    public JsonObject getJsonResponse(JsonObject in) {
+        return null;
+    }
+
+    @Override
+    public JsonObject getCloseResponse() {
+        return null;
+    }
+}
@@ -8,6 +8,7 @@ import org.dsa.iot.dslink.node.value.SubscriptionValue;
 import org.dsa.iot.dslink.node.value.Value;
 import org.dsa.iot.dslink.node.value.ValueType;
 import org.dsa.iot.dslink.node.value.ValueUtils;
+import org.dsa.iot.dslink.util.LatencyTrace;
 import org.dsa.iot.dslink.util.handler.Handler;
 import org.dsa.iot.dslink.util.json.JsonArray;
 import org.dsa.iot.dslink.util.json.JsonObject;
@@ -54,6 +55,7 @@ public class SubscriptionUpdate extends Response {
                     path = paths.get(rid);
                     valueObj = update.get(1);
                     timestamp = update.get(2);
+                    LatencyTrace.record(update);
                 } else if (obj instanceof JsonObject) {
                     JsonObject update = (JsonObject) obj;
                     rid = update.get("sid");
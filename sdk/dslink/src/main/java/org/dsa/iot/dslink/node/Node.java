@@ -354,7 +354,6 @@ public class Node {
     /**
      * Clears the children in the node.
      */
-    @SuppressWarnings("unused")
     public void clearChildren() {
         synchronized (childrenLock) {
             if (children != null) {
@@ -437,8 +436,11 @@ public class Node {
             if (manager != null) {
                 manager.postChildUpdate(node, false);
             }
-            if (node.isSerializable()) {
-                markChanged();
+            if (isSerializable() && node.isSerializable()) {
+                SerializationManager sm = getSerialManager();
+                if (sm != null) {
+                    sm.markAdded(node);
+                }
             }
             return node;
         }
@@ -487,7 +489,10 @@ public class Node {
                     manager.removePathSub(child);
                 }
                 if (isSerializable()) {
-                    markChanged();
+                    SerializationManager sm = getSerialManager();
+                    if (sm != null) {
+                        sm.markRemoved(child);
+                    }
                 }
             }
             return child;
@@ -919,8 +924,16 @@ public class Node {
      * @param serializable Whether this node can be serialized.
      */
     public void setSerializable(boolean serializable) {
+        boolean prev = this.serializable;
         this.serializable = serializable;
-        markChanged();
+        SerializationManager sm = getSerialManager();
+        if (prev != serializable && sm != null) {
+            if (serializable) {
+                sm.markAdded(this);
+            } else {
+                sm.markRemoved(this);
+            }
+        }
     }
 
     /**
@@ -967,13 +980,18 @@ public class Node {
         if (!isSerializable()) {
             return;
         }
+        SerializationManager sm = getSerialManager();
+        if (sm != null) {
+            sm.markChanged(this);
+        }
+    }
+
+    private SerializationManager getSerialManager() {
         Linkable link = getLink();
         if (link != null) {
-            SerializationManager sm = link.getSerialManager();
-            if (sm != null) {
-                sm.markChanged();
-            }
+            return link.getSerialManager();
         }
+        return null;
     }
 
     private void postRemoval(String prefix, String name, Value value) {
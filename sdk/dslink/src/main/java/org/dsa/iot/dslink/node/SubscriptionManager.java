@@ -5,6 +5,7 @@ import org.dsa.iot.dslink.methods.responses.ListResponse;
 import org.dsa.iot.dslink.node.storage.FileDriver;
 import org.dsa.iot.dslink.node.storage.StorageDriver;
 import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.LatencyTrace;
 import org.dsa.iot.dslink.util.Objects;
 import org.dsa.iot.dslink.util.StringUtils;
 import org.dsa.iot.dslink.util.json.JsonArray;
@@ -276,7 +277,9 @@ public class SubscriptionManager {
                 if (jsonUpdates == null) {
                     jsonUpdates = new JsonArray();
                 }
-                jsonUpdates.add(sub.generateUpdate(val));
+                JsonArray update = sub.generateUpdate(val);
+                LatencyTrace.sample(update);
+                jsonUpdates.add(update);
             }
         }
 
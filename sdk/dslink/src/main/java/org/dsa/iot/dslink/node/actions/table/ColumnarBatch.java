@@ -0,0 +1,210 @@
+package org.dsa.iot.dslink.node.actions.table;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.TimeUtils;
+import org.dsa.iot.dslink.util.json.JsonWritable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of rows stored as typed columns. Unlike {@link BatchRow}, cells
+ * are kept as primitives and encoded straight into the wire format when
+ * the table is streaming, avoiding a {@link Value} and row array for every
+ * cell. This is suited for historical and report data that produce large
+ * amounts of numeric rows.
+ * <p>
+ * Every column must hold at least {@link #size} values. Columns are
+ * written in the order they are added. {@link Double#NaN} numbers and
+ * {@code null} strings are written as {@code null}.
+ * <p>
+ * Columns are not copied. The batch takes ownership of the arrays that
+ * are added, which are only read once the rows are encoded, possibly
+ * after the batch was handed to a table. The arrays must therefore not
+ * be modified or reused afterwards.
+ *
+ * @author Samuel Grenier
+ */
+public class ColumnarBatch {
+
+    private final List<Object> columns = new ArrayList<>();
+    private final int size;
+
+    /**
+     * @param size Amount of rows in the batch.
+     */
+    public ColumnarBatch(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size < 0");
+        }
+        this.size = size;
+    }
+
+    /**
+     * Adds a column of timestamps in milliseconds since the epoch.
+     *
+     * @param times Timestamps of the column, owned by the batch.
+     */
+    public void addTimeColumn(long[] times) {
+        if (times == null) {
+            throw new NullPointerException("times");
+        }
+        checkLength(times.length);
+        columns.add(new TimeColumn(times));
+    }
+
+    /**
+     * @param numbers Numbers of the column, owned by the batch.
+     */
+    public void addNumberColumn(double[] numbers) {
+        if (numbers == null) {
+            throw new NullPointerException("numbers");
+        }
+        checkLength(numbers.length);
+        columns.add(numbers);
+    }
+
+    /**
+     * @param integers Integers of the column, such as counts, owned by the
+     *                 batch.
+     */
+    public void addIntegerColumn(long[] integers) {
+        if (integers == null) {
+            throw new NullPointerException("integers");
+        }
+        checkLength(integers.length);
+        columns.add(integers);
+    }
+
+    /**
+     * @param bools Booleans of the column, owned by the batch.
+     */
+    public void addBoolColumn(boolean[] bools) {
+        if (bools == null) {
+            throw new NullPointerException("bools");
+        }
+        checkLength(bools.length);
+        columns.add(bools);
+    }
+
+    /**
+     * @param strings Strings of the column, owned by the batch.
+     */
+    public void addStringColumn(String[] strings) {
+        if (strings == null) {
+            throw new NullPointerException("strings");
+        }
+        checkLength(strings.length);
+        columns.add(strings);
+    }
+
+    /**
+     * @return Amount of rows in the batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Creates a view of a single row that writes its cells directly from
+     * the columns when encoded.
+     *
+     * @param index Index of the row.
+     * @return Encodable row.
+     */
+    public JsonWritable getRow(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index);
+        }
+        return new RowWriter(index);
+    }
+
+    /**
+     * Converts the batch into rows of values. Used when the rows must be
+     * buffered by a table that is not streaming.
+     *
+     * @return Batch of the converted rows.
+     */
+    public BatchRow toBatchRow() {
+        BatchRow batch = new BatchRow();
+        for (int i = 0; i < size; i++) {
+            Row row = new Row();
+            for (Object col : columns) {
+                row.addValue(toValue(col, i));
+            }
+            batch.addRow(row);
+        }
+        return batch;
+    }
+
+    private void checkLength(int length) {
+        if (length < size) {
+            String err = "Column length " + length + " < size " + size;
+            throw new IllegalArgumentException(err);
+        }
+    }
+
+    private static Value toValue(Object col, int i) {
+        if (col instanceof TimeColumn) {
+            return new Value(TimeUtils.format(((TimeColumn) col).times[i]));
+        } else if (col instanceof double[]) {
+            double d = ((double[]) col)[i];
+            return new Value(Double.isNaN(d) ? null : (Number) d);
+        } else if (col instanceof long[]) {
+            return new Value(((long[]) col)[i]);
+        } else if (col instanceof boolean[]) {
+            return new Value(((boolean[]) col)[i]);
+        }
+        return new Value(((String[]) col)[i]);
+    }
+
+    private static class TimeColumn {
+
+        private final long[] times;
+
+        TimeColumn(long[] times) {
+            this.times = times;
+        }
+    }
+
+    private class RowWriter implements JsonWritable {
+
+        private final int index;
+
+        RowWriter(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void writeTo(JsonGenerator gen) throws IOException {
+            gen.writeStartArray();
+            for (Object col : columns) {
+                if (col instanceof TimeColumn) {
+                    long time = ((TimeColumn) col).times[index];
+                    gen.writeString(TimeUtils.format(time));
+                } else if (col instanceof double[]) {
+                    double d = ((double[]) col)[index];
+                    if (Double.isNaN(d)) {
+                        gen.writeNull();
+                    } else {
+                        gen.writeNumber(d);
+                    }
+                } else if (col instanceof long[]) {
+                    gen.writeNumber(((long[]) col)[index]);
+                } else if (col instanceof boolean[]) {
+                    gen.writeBoolean(((boolean[]) col)[index]);
+                } else {
+                    String s = ((String[]) col)[index];
+                    if (s == null) {
+                        gen.writeNull();
+                    } else {
+                        gen.writeString(s);
+                    }
+                }
+            }
+            gen.writeEndArray();
+        }
+    }
+}
@@ -1,24 +1,40 @@
 package org.dsa.iot.dslink.node.actions.table;
 
+import io.netty.util.internal.SystemPropertyUtil;
 import org.dsa.iot.dslink.connection.DataHandler;
 import org.dsa.iot.dslink.methods.StreamState;
 import org.dsa.iot.dslink.node.actions.Parameter;
 import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.PropertyReference;
 import org.dsa.iot.dslink.util.handler.Handler;
 import org.dsa.iot.dslink.util.json.JsonArray;
 import org.dsa.iot.dslink.util.json.JsonObject;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
 /**
  * Constructs a table for action results. This class is not thread safe.
+ * <p>
+ * Rows of a streaming table are written in chunks of at most the
+ * {@link #setChunkSize chunk size}. Bulk results are added with
+ * {@link #addRows(List)}, which blocks while the responses that were
+ * already written have not been sent over the network, allowing large
+ * results to be produced without buffering them in memory. The other
+ * methods never block so they are safe to call from threads delivering
+ * real time updates.
  *
  * @author Samuel Grenier
  */
 public class Table {
 
+    private static final int CHUNK_SIZE;
+
+    private int chunkSize = CHUNK_SIZE;
     private List<Parameter> columns;
     private List<Row> rows;
     private Mode mode;
@@ -52,6 +68,25 @@ public class Table {
         this.meta = meta;
     }
 
+    /**
+     * Sets the maximum amount of rows written in a single response.
+     *
+     * @param chunkSize Maximum amount of rows per response.
+     */
+    public synchronized void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize < 1");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return Maximum amount of rows written in a single response.
+     */
+    public synchronized int getChunkSize() {
+        return chunkSize;
+    }
+
     /**
      * Batch metadata is ignored if the table is not streaming.
      *
@@ -67,31 +102,101 @@ public class Table {
      * @param cols Columns to dynamically adjust columns of the table.
      * @param batch Batch of rows.
      */
-    public synchronized void addBatchRows(List<Parameter> cols, BatchRow batch) {
-        DataHandler writer = this.writer;
+    public void addBatchRows(List<Parameter> cols, BatchRow batch) {
         if (batch == null) {
             throw new NullPointerException("batch");
-        } else if (rows == null && writer == null) {
-            rows = new LinkedList<>();
         }
 
-        if (writer == null) {
-            setColumns(cols);
-            rows.addAll(batch.getRows());
-        } else {
-            JsonArray updates = new JsonArray();
-            for (Row r : batch.getRows()) {
-                updates.add(processRow(r));
-            }
+        BatchRow.Modifier m = batch.getModifier();
+        JsonObject meta = null;
+        if (m != null) {
+            meta = new JsonObject();
+            meta.put("modify", m.get());
+        }
+        writeRows(cols, batch.getRows(), meta, false);
+    }
 
-            BatchRow.Modifier m = batch.getModifier();
-            JsonObject meta = null;
-            if (m != null) {
-                meta = new JsonObject();
-                meta.put("modify", batch.getModifier().get());
-            }
-            write(writer, cols, updates, meta);
+    /**
+     * Adds a bulk result of rows. Streaming tables write the rows in
+     * chunks and block after every chunk until the written responses
+     * have been sent, the connection is lost or the thread is interrupted.
+     *
+     * @param rows Rows to add.
+     * @see #addRows(List, List)
+     */
+    public void addRows(List<Row> rows) {
+        addRows(null, rows);
+    }
+
+    /**
+     * Adds a bulk result of rows. Streaming tables write the rows in
+     * chunks and block after every chunk until the written responses
+     * have been sent, the connection is lost or the thread is interrupted.
+     *
+     * @param cols Columns to dynamically adjust columns of the table.
+     * @param rows Rows to add.
+     */
+    public void addRows(List<Parameter> cols, List<Row> rows) {
+        if (rows == null) {
+            throw new NullPointerException("rows");
+        }
+        writeRows(cols, rows, null, true);
+    }
+
+    /**
+     * Adds a bulk result of rows in columnar form. Streaming tables write
+     * the rows in chunks and block after every chunk until the written
+     * responses have been sent, the connection is lost or the thread is
+     * interrupted.
+     *
+     * @param batch Columnar batch of rows.
+     * @see #addRows(List, ColumnarBatch)
+     */
+    public void addRows(ColumnarBatch batch) {
+        addRows(null, batch);
+    }
+
+    /**
+     * Adds a bulk result of rows in columnar form. Streaming tables write
+     * the rows in chunks and block after every chunk until the written
+     * responses have been sent, the connection is lost or the thread is
+     * interrupted.
+     *
+     * @param cols Columns to dynamically adjust columns of the table.
+     * @param batch Columnar batch of rows.
+     */
+    public void addRows(List<Parameter> cols, ColumnarBatch batch) {
+        if (batch == null) {
+            throw new NullPointerException("batch");
         }
+        writeColumnar(cols, batch, true);
+    }
+
+    /**
+     * Adds a columnar batch of rows. Streaming tables encode the columns
+     * directly into the responses, otherwise the batch is converted into
+     * rows and buffered.
+     *
+     * @param batch Columnar batch of rows.
+     * @see #addColumnarRows(List, ColumnarBatch)
+     */
+    public void addColumnarRows(ColumnarBatch batch) {
+        addColumnarRows(null, batch);
+    }
+
+    /**
+     * Adds a columnar batch of rows. Streaming tables encode the columns
+     * directly into the responses, otherwise the batch is converted into
+     * rows and buffered.
+     *
+     * @param cols Columns to dynamically adjust columns of the table.
+     * @param batch Columnar batch of rows.
+     */
+    public void addColumnarRows(List<Parameter> cols, ColumnarBatch batch) {
+        if (batch == null) {
+            throw new NullPointerException("batch");
+        }
+        writeColumnar(cols, batch, false);
     }
 
     /**
@@ -112,7 +217,6 @@ public class Table {
      * @param row Row to add to the table.
      */
     public synchronized void addRow(List<Parameter> cols, Row row) {
-        DataHandler writer = this.writer;
         if (row == null) {
             throw new NullPointerException("row");
         } else if (rows == null && writer == null) {
@@ -122,11 +226,12 @@ public class Table {
         if (writer == null) {
             setColumns(cols);
             rows.add(row);
-        } else {
-            JsonArray updates = new JsonArray();
-            updates.add(processRow(row));
-            write(writer, cols, updates, null);
+            return;
         }
+
+        JsonArray updates = new JsonArray();
+        updates.add(processRow(row));
+        write(writer, cols, updates, null);
     }
 
     /**
@@ -179,11 +284,29 @@ public class Table {
      * tables.
      */
     public synchronized void close() {
+        close(null);
+    }
+
+    /**
+     * Closes a streaming table with an error, such as a failure to produce
+     * the remaining rows.
+     *
+     * @param error Error to close the table with, can be {@code null}.
+     */
+    public synchronized void close(Throwable error) {
         DataHandler writer = this.writer;
         if (writer != null) {
             JsonObject obj = new JsonObject();
             obj.put("rid", rid);
             obj.put("stream", StreamState.CLOSED.getJsonName());
+            if (error != null) {
+                JsonObject err = new JsonObject();
+                err.put("msg", error.getMessage());
+                StringWriter detail = new StringWriter();
+                error.printStackTrace(new PrintWriter(detail));
+                err.put("detail", detail.toString());
+                obj.put("error", err);
+            }
             writer.writeResponse(obj);
             this.writer = null;
             Handler<Void> closeHandler = this.closeHandler;
@@ -255,6 +378,91 @@ public class Table {
         writer.writeResponse(obj);
     }
 
+    /**
+     * Writes rows in chunks, modifications of rows are written in a single
+     * chunk.
+     *
+     * @param await Whether to block after every chunk until the written
+     *              responses have been sent.
+     */
+    private void writeRows(List<Parameter> cols,
+                           List<Row> batchRows,
+                           JsonObject meta,
+                           boolean await) {
+        int written = 0;
+        do {
+            DataHandler writer;
+            int limit;
+            synchronized (this) {
+                writer = this.writer;
+                limit = chunkSize;
+                if (writer == null) {
+                    if (written > 0) {
+                        // Closed while the rows were being written
+                        return;
+                    } else if (rows == null) {
+                        rows = new LinkedList<>();
+                    }
+                    setColumns(cols);
+                    rows.addAll(batchRows);
+                    return;
+                }
+
+                int size = batchRows.size() - written;
+                int chunk = meta == null ? Math.min(limit, size) : size;
+                JsonArray updates = new JsonArray();
+                for (Row r : batchRows.subList(written, written + chunk)) {
+                    updates.add(processRow(r));
+                }
+                write(writer, cols, updates, meta);
+                written += chunk;
+                cols = null;
+                meta = null;
+            }
+            if (await) {
+                writer.awaitResponseCapacity(limit);
+            }
+        } while (written < batchRows.size());
+    }
+
+    /**
+     * Encodes the columns of the batch directly into chunks of responses.
+     *
+     * @param await Whether to block after every chunk until the written
+     *              responses have been sent.
+     */
+    private void writeColumnar(List<Parameter> cols,
+                               ColumnarBatch batch,
+                               boolean await) {
+        int written = 0;
+        do {
+            DataHandler writer;
+            int limit;
+            synchronized (this) {
+                writer = this.writer;
+                limit = chunkSize;
+                if (writer == null) {
+                    if (written == 0) {
+                        addBatchRows(cols, batch.toBatchRow());
+                    }
+                    return;
+                }
+
+                int end = Math.min(written + limit, batch.size());
+                JsonArray updates = new JsonArray(new ArrayList<>(end - written));
+                for (int i = written; i < end; i++) {
+                    updates.add(batch.getRow(i));
+                }
+                write(writer, cols, updates, null);
+                written = end;
+                cols = null;
+            }
+            if (await) {
+                writer.awaitResponseCapacity(limit);
+            }
+        } while (written < batch.size());
+    }
+
     private void setColumns(List<Parameter> cols) {
         if (cols == null) {
             return;
@@ -337,4 +545,9 @@ public class Table {
             return mode;
         }
     }
+
+    static {
+        String s = PropertyReference.TABLE_CHUNK_SIZE;
+        CHUNK_SIZE = SystemPropertyUtil.getInt(s, 1000);
+    }
 }
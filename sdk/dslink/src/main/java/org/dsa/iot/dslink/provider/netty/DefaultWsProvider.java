@@ -8,7 +8,6 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.websocketx.*;
-import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketClientCompressionHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import io.netty.util.CharsetUtil;
@@ -25,6 +24,7 @@ import org.slf4j.LoggerFactory;
 import javax.net.ssl.TrustManagerFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
 
 /**
  * @author Samuel Grenier
@@ -32,6 +32,21 @@ import java.net.URISyntaxException;
 public class DefaultWsProvider extends WsProvider {
 
     private static final Logger LOGGER;
+    private final WsFrameOptions options;
+
+    public DefaultWsProvider() {
+        this(WsFrameOptions.fromProperties());
+    }
+
+    /**
+     * @param options Compression and frame size options of connections.
+     */
+    public DefaultWsProvider(WsFrameOptions options) {
+        if (options == null) {
+            throw new NullPointerException("options");
+        }
+        this.options = options;
+    }
 
     @Override
     public void connect(WsClient client) {
@@ -50,8 +65,9 @@ public class DefaultWsProvider extends WsProvider {
         WebSocketVersion v = WebSocketVersion.V13;
         HttpHeaders h = new DefaultHttpHeaders();
         final WebSocketClientHandshaker wsch = WebSocketClientHandshakerFactory
-                .newHandshaker(uri, v, null, true, h, Integer.MAX_VALUE);
-        final WebSocketHandler handler = new WebSocketHandler(wsch, client);
+                .newHandshaker(uri, v, null, true, h,
+                        options.getMaxFramePayloadLength());
+        final WebSocketHandler handler = new WebSocketHandler(wsch, client, options);
 
         Bootstrap b = new Bootstrap();
         b.group(SharedObjects.getLoop());
@@ -68,7 +84,7 @@ public class DefaultWsProvider extends WsProvider {
 
                 p.addLast(new HttpClientCodec());
                 p.addLast(new HttpObjectAggregator(8192));
-                p.addLast(new WebSocketClientCompressionHandler());
+                options.addCompression(p, false);
                 p.addLast(handler);
             }
         });
@@ -81,14 +97,17 @@ public class DefaultWsProvider extends WsProvider {
     private static class WebSocketHandler extends SimpleChannelInboundHandler<Object> {
 
         private final WsClient client;
+        private final WsFrameOptions options;
 
         private WebSocketClientHandshaker handshake;
         private ChannelPromise handshakeFuture;
 
         public WebSocketHandler(WebSocketClientHandshaker handshake,
-                                WsClient client) {
+                                WsClient client,
+                                WsFrameOptions options) {
             this.handshake = handshake;
             this.client = client;
+            this.options = options;
         }
 
         public ChannelFuture handshakeFuture() {
@@ -134,19 +153,25 @@ public class DefaultWsProvider extends WsProvider {
                     @Override
                     public void write(EncodingFormat format,
                                       JsonObject data) {
-                        byte[] bytes = data.encode(format);
-                        ByteBuf buf = Unpooled.wrappedBuffer(bytes);
-                        WebSocketFrame frame = null;
-                        if (format == EncodingFormat.MESSAGE_PACK) {
-                            frame = new BinaryWebSocketFrame(buf);
-                        } else if (format == EncodingFormat.JSON) {
-                            frame = new TextWebSocketFrame(buf);
-                        } else {
+                        if (format != EncodingFormat.MESSAGE_PACK
+                                && format != EncodingFormat.JSON) {
                             String err = "Unsupported encoding format: {}";
                             LOGGER.error(err, format);
+                            return;
                         }
-                        if (frame != null) {
-                            ch.writeAndFlush(frame);
+                        long start = System.nanoTime();
+                        List<byte[]> parts = options.encode(data, format);
+                        long encodeNanos = System.nanoTime() - start;
+                        for (byte[] bytes : parts) {
+                            client.onWrite(bytes.length, encodeNanos / parts.size());
+                            ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+                            WebSocketFrame frame;
+                            if (format == EncodingFormat.MESSAGE_PACK) {
+                                frame = new BinaryWebSocketFrame(buf);
+                            } else {
+                                frame = new TextWebSocketFrame(buf);
+                            }
+                            options.write(ch, frame);
                         }
                     }
 
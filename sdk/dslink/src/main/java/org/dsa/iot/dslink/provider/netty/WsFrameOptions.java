@@ -0,0 +1,225 @@
+package org.dsa.iot.dslink.provider.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateClientExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+import io.netty.util.internal.SystemPropertyUtil;
+import org.dsa.iot.dslink.util.PropertyReference;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compression and frame size options of WebSocket connections.
+ * <p>
+ * Messages below the compression threshold are written beneath the
+ * permessage-deflate encoder so they are sent uncompressed, which the
+ * extension allows for any message. Batches that encode larger than the
+ * maximum frame size are split into multiple messages.
+ *
+ * @author Samuel Grenier
+ */
+public class WsFrameOptions {
+
+    private static final Logger LOGGER;
+    private static final String UNCOMPRESSED = "ws-uncompressed";
+    private static final int MAX_WINDOW_SIZE = 15;
+
+    private boolean compression = true;
+    private int compressionLevel = 6;
+    private int compressionThreshold;
+    private int maxFrameSize;
+
+    /**
+     * @return Options configured from the system properties.
+     * @see PropertyReference#COMPRESSION
+     * @see PropertyReference#COMPRESSION_LEVEL
+     * @see PropertyReference#COMPRESSION_THRESHOLD
+     * @see PropertyReference#MAX_FRAME_SIZE
+     */
+    public static WsFrameOptions fromProperties() {
+        WsFrameOptions opts = new WsFrameOptions();
+        opts.setCompression(SystemPropertyUtil.getBoolean(PropertyReference.COMPRESSION, true));
+        opts.setCompressionLevel(SystemPropertyUtil.getInt(PropertyReference.COMPRESSION_LEVEL, 6));
+        opts.setCompressionThreshold(SystemPropertyUtil.getInt(PropertyReference.COMPRESSION_THRESHOLD, 0));
+        opts.setMaxFrameSize(SystemPropertyUtil.getInt(PropertyReference.MAX_FRAME_SIZE, 0));
+        return opts;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * @param compression Whether to negotiate permessage-deflate.
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * @param level Deflate level between 0 and 9.
+     */
+    public void setCompressionLevel(int level) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("level: " + level);
+        }
+        this.compressionLevel = level;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * @param threshold Size in bytes below which messages are sent
+     *                  uncompressed.
+     */
+    public void setCompressionThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold < 0");
+        }
+        this.compressionThreshold = threshold;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * @param size Maximum frame size in bytes, 0 to disable the limit.
+     */
+    public void setMaxFrameSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size < 0");
+        }
+        this.maxFrameSize = size;
+    }
+
+    /**
+     * @return Maximum frame payload length for the handshakers.
+     */
+    public int getMaxFramePayloadLength() {
+        return maxFrameSize > 0 ? maxFrameSize : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Adds the compression extension to the pipeline, if enabled.
+     *
+     * @param pipeline Pipeline of the connection.
+     * @param server Whether the pipeline is of the server side.
+     */
+    public void addCompression(ChannelPipeline pipeline, boolean server) {
+        if (!compression) {
+            return;
+        }
+        pipeline.addLast(UNCOMPRESSED, new ChannelHandlerAdapter());
+        if (server) {
+            pipeline.addLast(new WebSocketServerExtensionHandler(
+                    new PerMessageDeflateServerExtensionHandshaker(
+                            compressionLevel, false, MAX_WINDOW_SIZE, false, false)));
+        } else {
+            pipeline.addLast(new WebSocketClientExtensionHandler(
+                    new PerMessageDeflateClientExtensionHandshaker(
+                            compressionLevel, false, MAX_WINDOW_SIZE, false, false)));
+        }
+    }
+
+    /**
+     * Writes a frame, skipping compression when it is below the threshold.
+     *
+     * @param channel Channel to write to.
+     * @param frame Frame to write.
+     */
+    public void write(Channel channel, WebSocketFrame frame) {
+        if (compression && frame.content().readableBytes() < compressionThreshold) {
+            ChannelHandlerContext ctx = channel.pipeline().context(UNCOMPRESSED);
+            if (ctx != null) {
+                ctx.writeAndFlush(frame);
+                return;
+            }
+        }
+        channel.writeAndFlush(frame);
+    }
+
+    /**
+     * Encodes a message, splitting its batch of requests or responses into
+     * multiple messages when it exceeds the maximum frame size. Every part
+     * but the last only carries its share of the batch, the last part
+     * carries the remaining fields such as the message ID so the message
+     * is only acknowledged once the entire batch was received.
+     *
+     * @param obj Message to encode.
+     * @param format Format to encode the message in.
+     * @return Encoded messages in the order they must be written.
+     */
+    public List<byte[]> encode(JsonObject obj, EncodingFormat format) {
+        List<byte[]> parts = new ArrayList<>(1);
+        encode(obj, format, parts);
+        return parts;
+    }
+
+    private void encode(JsonObject obj, EncodingFormat format, List<byte[]> parts) {
+        byte[] bytes = obj.encode(format);
+        if (maxFrameSize <= 0 || bytes.length <= maxFrameSize) {
+            parts.add(bytes);
+            return;
+        }
+
+        String key = null;
+        JsonArray batch = null;
+        for (Map.Entry<String, Object> entry : obj) {
+            Object value = entry.getValue();
+            if (value instanceof JsonArray && ((JsonArray) value).size() > 1) {
+                key = entry.getKey();
+                batch = (JsonArray) value;
+                break;
+            }
+        }
+        if (batch == null) {
+            String err = "Message of {} bytes exceeds the maximum frame size";
+            LOGGER.warn(err, bytes.length);
+            parts.add(bytes);
+            return;
+        }
+
+        int half = batch.size() / 2;
+        JsonArray first = new JsonArray();
+        JsonArray second = new JsonArray();
+        for (int i = 0; i < batch.size(); i++) {
+            (i < half ? first : second).add(batch.get(i));
+        }
+
+        JsonObject head = new JsonObject();
+        head.put(key, first);
+
+        JsonObject tail = new JsonObject();
+        for (Map.Entry<String, Object> entry : obj) {
+            tail.put(entry.getKey(), entry.getValue());
+        }
+        tail.put(key, second);
+
+        encode(head, format, parts);
+        encode(tail, format, parts);
+    }
+
+    static {
+        LOGGER = LoggerFactory.getLogger(WsFrameOptions.class);
+    }
+}
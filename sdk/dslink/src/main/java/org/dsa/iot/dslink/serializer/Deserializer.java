@@ -1,12 +1,16 @@
 package org.dsa.iot.dslink.serializer;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.dsa.iot.dslink.node.Node;
 import org.dsa.iot.dslink.node.NodeManager;
 import org.dsa.iot.dslink.node.Writable;
 import org.dsa.iot.dslink.node.value.ValueType;
 import org.dsa.iot.dslink.node.value.ValueUtils;
 import org.dsa.iot.dslink.util.json.JsonObject;
+import org.dsa.iot.dslink.util.json.decoders.MapDecoder;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -38,6 +42,52 @@ public class Deserializer {
         }
     }
 
+    /**
+     * Deserializes the nodes into the manager directly from the tokens of
+     * the parser. No intermediate object of the entire tree is created.
+     *
+     * @param parser Parser positioned before the top level object.
+     * @throws IOException An error occurred reading from the parser.
+     */
+    public void deserialize(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected top level object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected object for node: " + name);
+            }
+            Node node = manager.getNode(name, true).getNode();
+            deserializeNode(node, parser);
+        }
+    }
+
+    /**
+     * Replaces the serializable data of an existing node. Data of the node
+     * that is not present in the object is removed.
+     *
+     * @param node Node to replace the data of.
+     * @param object Serialized data of the node.
+     * @param children Whether the children of the node are replaced as well.
+     */
+    public void replace(Node node, JsonObject object, boolean children) {
+        if (children) {
+            node.clearChildren();
+        }
+        node.clearConfigs();
+        node.clearRoConfigs();
+        node.clearAttributes();
+        node.setInterfaces(null);
+        node.setDisplayName(null);
+        node.setPassword(null);
+        node.setWritable(null);
+        node.setHidden(false);
+        node.setValue(null);
+        node.setValueType(null);
+        deserializeNode(node, object);
+    }
+
     @SuppressWarnings("unchecked")
     private void deserializeNode(Node node, JsonObject map) {
         final String type = map.get("$type");
@@ -51,31 +101,77 @@ public class Deserializer {
             if (value == null || "$type".equals(name)) {
                 continue;
             }
-            if ("$is".equals(name)) {
-                node.setProfile((String) value);
-            } else if ("$interface".equals(name)) {
-                node.setInterfaces((String) value);
-            } else if ("$name".equals(name)) {
-                node.setDisplayName((String) value);
-            } else if ("$writable".equals(name)) {
-                node.setWritable(Writable.toEnum((String) value));
-            } else if ("$hidden".equals(name)) {
-                node.setHidden((Boolean) value);
-            } else if ("$$password".equals(name)) {
-                node.setPassword(((String) value).toCharArray());
-            } else if ("?value".equals(name)) {
-                node.setValue(ValueUtils.toValue(value));
-            } else if (name.startsWith("$$")) {
-                node.setRoConfig(name.substring(2), ValueUtils.toValue(value));
-            } else if (name.startsWith("$")) {
-                node.setConfig(name.substring(1), ValueUtils.toValue(value));
-            } else if (name.startsWith("@")) {
-                node.setAttribute(name.substring(1), ValueUtils.toValue(value));
-            } else {
+            if (isChild(name)) {
                 Node child = node.createChild(name).build();
                 JsonObject children = (JsonObject) value;
                 deserializeNode(child, children);
+            } else {
+                deserializeField(node, name, value);
             }
         }
     }
+
+    private void deserializeNode(Node node, JsonParser parser)
+                                                throws IOException {
+        // The value type must be known before the value can be set
+        Object value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (isChild(name)) {
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                Node child = node.createChild(name).build();
+                deserializeNode(child, parser);
+                continue;
+            }
+
+            Object obj = MapDecoder.decodeValue(parser);
+            if (obj == null) {
+                continue;
+            }
+            if ("$type".equals(name)) {
+                node.setValueType(ValueType.toValueType((String) obj));
+            } else if ("?value".equals(name)) {
+                value = obj;
+            } else {
+                deserializeField(node, name, obj);
+            }
+        }
+        if (value != null) {
+            deserializeField(node, "?value", value);
+        }
+    }
+
+    private void deserializeField(Node node, String name, Object value) {
+        if ("$is".equals(name)) {
+            node.setProfile((String) value);
+        } else if ("$interface".equals(name)) {
+            node.setInterfaces((String) value);
+        } else if ("$name".equals(name)) {
+            node.setDisplayName((String) value);
+        } else if ("$writable".equals(name)) {
+            node.setWritable(Writable.toEnum((String) value));
+        } else if ("$hidden".equals(name)) {
+            node.setHidden((Boolean) value);
+        } else if ("$$password".equals(name)) {
+            node.setPassword(((String) value).toCharArray());
+        } else if ("?value".equals(name)) {
+            node.setValue(ValueUtils.toValue(value));
+        } else if (name.startsWith("$$")) {
+            node.setRoConfig(name.substring(2), ValueUtils.toValue(value));
+        } else if (name.startsWith("$")) {
+            node.setConfig(name.substring(1), ValueUtils.toValue(value));
+        } else if (name.startsWith("@")) {
+            node.setAttribute(name.substring(1), ValueUtils.toValue(value));
+        }
+    }
+
+    private static boolean isChild(String name) {
+        return !(name.startsWith("$")
+                || name.startsWith("@")
+                || "?value".equals(name));
+    }
 }
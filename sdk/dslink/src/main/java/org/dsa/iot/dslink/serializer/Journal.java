@@ -0,0 +1,369 @@
+package org.dsa.iot.dslink.serializer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.NodeManager;
+import org.dsa.iot.dslink.util.FileUtils;
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.Json;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Append-only journal of node mutations. Every changed node is recorded
+ * as a single line of JSON holding the node's current state, or its
+ * removal. Changes are coalesced per node for a short delay before being
+ * appended, keeping the I/O proportional to the rate of change instead of
+ * the size of the tree. The journal is replayed over the last snapshot
+ * when the nodes are deserialized, entries that were truncated by an
+ * abrupt shutdown are skipped.
+ * <p>
+ * Before a snapshot is written the journal is rolled over. Once the
+ * snapshot is safely on disk the rolled over journal is discarded.
+ *
+ * @author Samuel Grenier
+ */
+public class Journal {
+
+    private static final Logger LOGGER;
+
+    private final ConcurrentMap<String, Op> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Object lock = new Object();
+
+    private final File file;
+    private final File rolled;
+    private final NodeManager manager;
+    private final Serializer serializer;
+    private final Deserializer deserializer;
+    private final long delay;
+
+    private FileOutputStream stream;
+    private OutputStream out;
+    private volatile boolean running;
+
+    /**
+     * @param file File to append the journal entries to.
+     * @param manager Manager the journaled nodes reside in.
+     * @param delay Delay in milliseconds to coalesce changes for.
+     */
+    public Journal(File file, NodeManager manager, long delay) {
+        this.file = file;
+        this.rolled = new File(file.getPath() + ".1");
+        this.manager = manager;
+        this.serializer = new Serializer(manager);
+        this.deserializer = new Deserializer(manager);
+        this.delay = delay;
+    }
+
+    /**
+     * Records that the data of the node itself has changed.
+     *
+     * @param node Node that changed.
+     */
+    public void markChanged(Node node) {
+        mark(node.getPath(), Op.UPDATE);
+    }
+
+    /**
+     * Records that the node was added along with all of its children.
+     *
+     * @param node Node that was added.
+     */
+    public void markAdded(Node node) {
+        mark(node.getPath(), Op.ADD);
+    }
+
+    /**
+     * Records that the node was removed.
+     *
+     * @param node Node that was removed.
+     */
+    public void markRemoved(Node node) {
+        mark(node.getPath(), Op.REMOVE);
+    }
+
+    /**
+     * Discards all changes that have not been written yet.
+     */
+    public void clearPending() {
+        pending.clear();
+    }
+
+    /**
+     * Starts journaling changes. Changes that occur before the journal is
+     * started are not recorded.
+     */
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Stops journaling changes. Pending changes are written before
+     * returning.
+     */
+    public void stop() {
+        running = false;
+        flush();
+        synchronized (lock) {
+            close();
+        }
+    }
+
+    /**
+     * Writes all pending changes to disk.
+     */
+    public void flush() {
+        synchronized (lock) {
+            scheduled.set(false);
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                open();
+                for (String path : pending.keySet()) {
+                    Op op = pending.remove(path);
+                    if (op != null) {
+                        write(path, op);
+                    }
+                }
+                out.flush();
+                try {
+                    stream.getFD().sync();
+                } catch (SyncFailedException ignored) {
+                }
+            } catch (IOException e) {
+                LOGGER.error("Failed to write journal", e);
+                close();
+            }
+        }
+    }
+
+    /**
+     * @return The size of the journal, including any rolled over data.
+     */
+    public long size() {
+        synchronized (lock) {
+            return file.length() + rolled.length();
+        }
+    }
+
+    /**
+     * Writes any pending changes and rolls over the journal so that new
+     * changes are recorded separately from the changes that are about to
+     * be compacted into a snapshot.
+     *
+     * @throws IOException An error occurred rolling over the journal.
+     */
+    public void rollOver() throws IOException {
+        flush();
+        synchronized (lock) {
+            close();
+            if (!file.exists()) {
+                return;
+            }
+            if (rolled.exists()) {
+                // A previous compaction failed, keep its changes
+                try (FileOutputStream fos = new FileOutputStream(rolled, true)) {
+                    fos.write(FileUtils.readAllBytes(file));
+                    fos.getFD().sync();
+                }
+                if (!file.delete()) {
+                    throw new IOException("Failed to delete " + file.getPath());
+                }
+            } else if (!file.renameTo(rolled)) {
+                throw new IOException("Failed to roll over " + file.getPath());
+            }
+        }
+    }
+
+    /**
+     * Discards the rolled over changes after they have been compacted into
+     * a snapshot.
+     */
+    public void discardRolled() {
+        synchronized (lock) {
+            if (rolled.exists() && !rolled.delete()) {
+                LOGGER.error("Failed to delete {}", rolled.getPath());
+            }
+        }
+    }
+
+    /**
+     * Replays the journal over the nodes in the manager.
+     */
+    public void replay() {
+        synchronized (lock) {
+            int count = replay(rolled) + replay(file);
+            if (count > 0) {
+                LOGGER.info("Replayed {} journal entries", count);
+            }
+        }
+    }
+
+    private int replay(File src) {
+        if (!src.exists()) {
+            return 0;
+        }
+        int count = 0;
+        try (InputStream is = new FileInputStream(src)) {
+            Reader reader = new InputStreamReader(is, "UTF-8");
+            BufferedReader in = new BufferedReader(reader);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    apply(new JsonObject(line));
+                    count++;
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Ignoring corrupt journal entry in {}", src, e);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to read journal", e);
+        }
+        return count;
+    }
+
+    private void apply(JsonObject entry) {
+        String path = entry.get("path");
+        Op op = Op.toEnum((String) entry.get("op"));
+        if (op == Op.REMOVE) {
+            Node node = manager.getNode(path, false, false).getNode();
+            if (node != null) {
+                node.delete();
+            }
+        } else {
+            Node node = manager.getNode(path, true).getNode();
+            JsonObject data = entry.get("node");
+            deserializer.replace(node, data, op == Op.ADD);
+        }
+    }
+
+    private void mark(String path, Op op) {
+        if (!running || "/".equals(path)) {
+            return;
+        }
+        if (op == Op.UPDATE) {
+            // Any pending operation already records the node's state
+            if (pending.putIfAbsent(path, op) != null) {
+                return;
+            }
+        } else {
+            pending.put(path, op);
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            Objects.getDaemonThreadPool().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void write(String path, Op op) throws IOException {
+        Node node = null;
+        if (op != Op.REMOVE) {
+            node = manager.getNode(path, false, false).getNode();
+            if (node == null || !isSerializable(node)) {
+                op = Op.REMOVE;
+            }
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        JsonGenerator gen = Json.createGenerator(EncodingFormat.JSON, baos);
+        gen.writeStartObject();
+        gen.writeStringField("op", op.getName());
+        gen.writeStringField("path", path);
+        if (node != null && op != Op.REMOVE) {
+            gen.writeFieldName("node");
+            serializer.serialize(gen, node, op == Op.ADD);
+        }
+        gen.writeEndObject();
+        gen.close();
+
+        out.write(baos.toByteArray());
+        out.write('\n');
+    }
+
+    private void open() throws IOException {
+        if (out != null) {
+            return;
+        }
+        boolean terminate = false;
+        if (file.length() > 0) {
+            // Terminate an entry that was truncated by an abrupt shutdown
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                raf.seek(raf.length() - 1);
+                terminate = raf.read() != '\n';
+            }
+        }
+        stream = new FileOutputStream(file, true);
+        out = new BufferedOutputStream(stream);
+        if (terminate) {
+            out.write('\n');
+        }
+    }
+
+    private void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close journal", e);
+            }
+            out = null;
+            stream = null;
+        }
+    }
+
+    private static boolean isSerializable(Node node) {
+        while (node != null && !(node instanceof NodeManager.SuperRoot)) {
+            if (!node.isSerializable()) {
+                return false;
+            }
+            node = node.getParent();
+        }
+        return true;
+    }
+
+    private enum Op {
+        UPDATE("update"),
+        ADD("add"),
+        REMOVE("remove");
+
+        private final String name;
+
+        Op(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public static Op toEnum(String name) {
+            for (Op op : values()) {
+                if (op.name.equals(name)) {
+                    return op;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation: " + name);
+        }
+    }
+
+    static {
+        LOGGER = LoggerFactory.getLogger(Journal.class);
+    }
+}
@@ -1,36 +1,67 @@
 package org.dsa.iot.dslink.serializer;
 
+import com.fasterxml.jackson.core.JsonParser;
+import org.dsa.iot.dslink.node.Node;
 import org.dsa.iot.dslink.node.NodeManager;
 import org.dsa.iot.dslink.util.FileUtils;
 import org.dsa.iot.dslink.util.Objects;
-import org.dsa.iot.dslink.util.json.JsonObject;
+import org.dsa.iot.dslink.util.PropertyReference;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.Json;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Handles automatic serialization and deserialization.
+ * Handles automatic serialization and deserialization. Changes are tracked
+ * per root node so that only the subtrees that were modified since the last
+ * write are encoded again. The remaining subtrees are written from a cache
+ * of their previously encoded data.
+ * <p>
+ * Data can be written as either JSON or MessagePack. The binary format is
+ * considerably faster to load for large trees. Reading is performed by
+ * streaming the tokens directly into nodes and the format of the existing
+ * data is detected automatically.
+ * <p>
+ * When the journal is enabled every change is appended to a {@link Journal}
+ * shortly after it occurs. Snapshots then act as compactions of the journal
+ * and are only written once the journal has grown large enough.
  *
  * @author Samuel Grenier
  */
 public class SerializationManager {
 
     private static final Logger LOGGER;
+    private static final long JOURNAL_DELAY;
+    private static final long JOURNAL_COMPACT_SIZE;
 
     private final File file;
     private final File backup;
+    private final File temp;
+    private final EncodingFormat format;
 
+    private final NodeManager manager;
     private final Deserializer deserializer;
     private final Serializer serializer;
+    private final Journal journal;
     private ScheduledFuture<?> future;
 
     private final AtomicBoolean changed = new AtomicBoolean(false);
+    private final AtomicBoolean changedAll = new AtomicBoolean(true);
+    private final Set<String> dirty;
+
+    // Encoded root nodes, only accessed while serializing
+    private final Map<String, byte[]> cache = new HashMap<>();
 
     /**
      * Handles serialization based on the file path.
@@ -39,30 +70,143 @@ public class SerializationManager {
      * @param manager Manager to deserialize/serialize
      */
     public SerializationManager(File file, NodeManager manager) {
+        this(file, manager, EncodingFormat.JSON);
+    }
+
+    /**
+     * Handles serialization based on the file path.
+     *
+     * @param file Path that holds the data
+     * @param manager Manager to deserialize/serialize
+     * @param format Format to serialize the data in
+     */
+    public SerializationManager(File file,
+                                NodeManager manager,
+                                EncodingFormat format) {
+        this(file, manager, format, false);
+    }
+
+    /**
+     * Handles serialization based on the file path.
+     *
+     * @param file Path that holds the data
+     * @param manager Manager to deserialize/serialize
+     * @param format Format to serialize the data in
+     * @param journal Whether to journal changes as they occur
+     */
+    public SerializationManager(File file,
+                                NodeManager manager,
+                                EncodingFormat format,
+                                boolean journal) {
+        if (format == null) {
+            throw new NullPointerException("format");
+        }
         this.file = file;
+        this.format = format;
         this.backup = new File(file.getPath() + ".bak");
+        this.temp = new File(file.getPath() + ".tmp");
+        this.manager = manager;
         this.deserializer = new Deserializer(manager);
         this.serializer = new Serializer(manager);
+        this.dirty = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        if (journal) {
+            File path = new File(file.getPath() + ".journal");
+            this.journal = new Journal(path, manager, JOURNAL_DELAY);
+        } else {
+            this.journal = null;
+        }
     }
 
+    /**
+     * Marks the entire tree as changed. Every root node will be encoded
+     * again on the next serialization.
+     */
     public void markChanged() {
+        changedAll.set(true);
         changed.set(true);
     }
 
+    /**
+     * Marks the subtree the node belongs to as changed. Only the root node
+     * the changed node resides in will be encoded again on the next
+     * serialization.
+     *
+     * @param node Node that has changed.
+     */
+    public void markChanged(Node node) {
+        markDirty(node);
+        if (journal != null) {
+            journal.markChanged(node);
+        }
+    }
+
+    /**
+     * Marks the node as added to the tree along with its children.
+     *
+     * @param node Node that was added.
+     */
+    public void markAdded(Node node) {
+        markDirty(node);
+        if (journal != null) {
+            journal.markAdded(node);
+        }
+    }
+
+    /**
+     * Marks the node as removed from the tree.
+     *
+     * @param node Node that was removed.
+     */
+    public void markRemoved(Node node) {
+        markDirty(node);
+        if (journal != null) {
+            journal.markRemoved(node);
+        }
+    }
+
     public void markChangedOverride(boolean bool) {
-        changed.set(bool);
+        if (bool) {
+            markChanged();
+        } else {
+            dirty.clear();
+            changed.set(false);
+            if (journal != null) {
+                journal.clearPending();
+            }
+        }
+    }
+
+    private void markDirty(Node node) {
+        String path = node.getPath();
+        if (!"/".equals(path)) {
+            int end = path.indexOf('/', 1);
+            if (end == -1) {
+                end = path.length();
+            }
+            dirty.add(path.substring(1, end));
+        }
+        changed.set(true);
     }
 
     public synchronized void start() {
         stop();
+        if (journal != null) {
+            journal.start();
+        }
         ScheduledThreadPoolExecutor daemon = Objects.getDaemonThreadPool();
         future = daemon.scheduleWithFixedDelay(new Runnable() {
             @Override
             public void run() {
                 boolean c = changed.getAndSet(false);
-                if (c) {
-                    serialize();
+                if (!c) {
+                    return;
                 }
+                if (journal != null && journal.size() < JOURNAL_COMPACT_SIZE) {
+                    // Changes are durable in the journal, compact later
+                    changed.set(true);
+                    return;
+                }
+                serialize();
             }
         }, 5, 5, TimeUnit.SECONDS);
     }
@@ -72,34 +216,133 @@ public class SerializationManager {
             future.cancel(false);
             future = null;
         }
+        if (journal != null) {
+            journal.stop();
+        }
     }
 
     /**
      * Serializes the data from the node manager into the file based on the
      * path. Manually calling this is redundant as a timer will automatically
-     * handle serialization.
+     * handle serialization. The data is streamed into a temporary file which
+     * then atomically replaces the original, so the file always holds either
+     * the old or the new data. The original is kept as the backup through a
+     * hard link rather than a copy.
      */
     public void serialize() {
-        JsonObject json = serializer.serialize();
-        try {
-            if (file.exists()) {
-                if (backup.exists() && !backup.delete()) {
-                    LOGGER.error("Failed to remove backup data");
+        synchronized (cache) {
+            try {
+                if (journal != null) {
+                    journal.rollOver();
+                }
+                int count = write(temp);
+                if (file.exists()) {
+                    backup(file, backup);
+                }
+                move(temp, file);
+                if (journal != null) {
+                    journal.discardRolled();
                 }
+                LOGGER.debug("Wrote serialized data of {} root nodes", count);
+            } catch (IOException e) {
+                // Ensure every node is written on the next attempt
+                cache.clear();
+                LOGGER.error("Failed to save serialized data", e);
+            }
+        }
+    }
 
-                if (!file.renameTo(backup)) {
-                    LOGGER.error("Failed to create backup data");
+    private int write(File dest) throws IOException {
+        final boolean all = changedAll.getAndSet(false);
+        Map<String, Node> children = manager.getSuperRoot().getChildren();
+        Map<String, byte[]> fragments = new LinkedHashMap<>();
+        if (children != null) {
+            for (Node child : children.values()) {
+                if (!child.isSerializable()) {
+                    continue;
                 }
-                LOGGER.debug("Copying serialized data to a backup");
+                String name = child.getName();
+                boolean isDirty = dirty.remove(name);
+                byte[] bytes = cache.get(name);
+                if (all || isDirty || bytes == null) {
+                    bytes = serializer.serializeFragment(child, format);
+                    cache.put(name, bytes);
+                }
+                fragments.put(name, bytes);
             }
-            byte[] bytes = json.encodePrettily();
-            FileUtils.write(file, bytes);
+        }
+        cache.keySet().retainAll(fragments.keySet());
+        dirty.retainAll(fragments.keySet());
 
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Wrote serialized data: {}", json);
+        try (FileOutputStream fos = new FileOutputStream(dest)) {
+            OutputStream out = new BufferedOutputStream(fos);
+            if (format == EncodingFormat.MESSAGE_PACK) {
+                writeMapHeader(out, fragments.size());
+                for (byte[] bytes : fragments.values()) {
+                    out.write(bytes);
+                }
+            } else {
+                out.write('{');
+                boolean first = true;
+                for (byte[] bytes : fragments.values()) {
+                    if (!first) {
+                        out.write(',');
+                    }
+                    out.write(bytes);
+                    first = false;
+                }
+                out.write('}');
+            }
+            out.flush();
+            try {
+                fos.getFD().sync();
+            } catch (SyncFailedException ignored) {
             }
-        } catch (IOException e) {
-            LOGGER.error("Failed to save serialized data", e);
+        }
+        return fragments.size();
+    }
+
+    private static void writeMapHeader(OutputStream out,
+                                       int size) throws IOException {
+        if (size < 16) {
+            out.write(0x80 | size);
+        } else if (size < 65536) {
+            out.write(0xde);
+            out.write(size >>> 8);
+            out.write(size);
+        } else {
+            out.write(0xdf);
+            out.write(size >>> 24);
+            out.write(size >>> 16);
+            out.write(size >>> 8);
+            out.write(size);
+        }
+    }
+
+    /**
+     * Links the original data to the backup without copying it. Falls
+     * back to renaming the original when links are not supported, the
+     * backup is then restored should the file be missing on startup.
+     */
+    private static void backup(File file, File backup) throws IOException {
+        Files.deleteIfExists(backup.toPath());
+        try {
+            Files.createLink(backup.toPath(), file.toPath());
+            LOGGER.debug("Linked serialized data to a backup");
+        } catch (UnsupportedOperationException | IOException e) {
+            move(file, backup);
+            LOGGER.debug("Moved serialized data to a backup");
+        }
+    }
+
+    private static void move(File src, File dest) throws IOException {
+        try {
+            Files.move(src.toPath(), dest.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(src.toPath(), dest.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
@@ -110,25 +353,25 @@ public class SerializationManager {
      */
     public void deserialize() throws Exception {
         deserialize(true);
+        if (journal != null) {
+            journal.replay();
+        }
     }
 
     private void deserialize(boolean cont) throws Exception {
-        byte[] bytes = null;
+        File src = null;
         if (file.exists()) {
-            try {
-                bytes = FileUtils.readAllBytes(file);
-            } catch (Exception ignored) {
-            }
+            src = file;
         } else if (backup.exists()) {
-            bytes = FileUtils.readAllBytes(backup);
-            FileUtils.write(file, bytes);
+            FileUtils.copy(backup, file);
             LOGGER.warn("Restored backup data");
+            src = file;
         }
 
         boolean tryAgain = false;
-        if (bytes != null) {
+        if (src != null) {
             try {
-                handle(bytes);
+                handle(src);
             } catch (Exception e) {
                 if (!cont) {
                     throw e;
@@ -144,20 +387,52 @@ public class SerializationManager {
             if (!file.delete()) {
                 LOGGER.debug("Failed to delete original file");
             }
+            // Discard the nodes of the partially read file
+            manager.getSuperRoot().clearChildren();
+            markChangedOverride(false);
             deserialize(false);
         }
     }
 
-    private void handle(byte[] bytes) throws Exception {
-        String in = new String(bytes, "UTF-8");
-        JsonObject obj = new JsonObject(in);
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Read serialized data: " + obj);
+    private void handle(File src) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(src))) {
+            EncodingFormat format = detectFormat(in);
+            JsonParser parser = Json.createParser(format, in);
+            try {
+                deserializer.deserialize(parser);
+            } finally {
+                parser.close();
+            }
+            LOGGER.debug("Read serialized data as {}", format.toJson());
         }
-        deserializer.deserialize(obj);
+    }
+
+    /**
+     * Detects the format of the data without consuming any of it. A
+     * MessagePack map never starts with the byte of a JSON object brace.
+     *
+     * @param in Stream to detect, must support marking.
+     * @return Detected format of the stream.
+     * @throws IOException An error occurred reading the stream.
+     */
+    private static EncodingFormat detectFormat(InputStream in)
+                                                throws IOException {
+        in.mark(1);
+        int b = in.read();
+        in.reset();
+        if (b == '{' || Character.isWhitespace(b)) {
+            return EncodingFormat.JSON;
+        }
+        return EncodingFormat.MESSAGE_PACK;
     }
 
     static {
         LOGGER = LoggerFactory.getLogger(SerializationManager.class);
+
+        String s = PropertyReference.JOURNAL_DELAY;
+        JOURNAL_DELAY = Long.getLong(s, 100);
+
+        s = PropertyReference.JOURNAL_COMPACT_SIZE;
+        JOURNAL_COMPACT_SIZE = Long.getLong(s, 4 * 1024 * 1024);
     }
 }
@@ -1,13 +1,20 @@
 package org.dsa.iot.dslink.serializer;
 
 import org.dsa.iot.dslink.node.Node;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.dsa.iot.dslink.node.NodeManager;
 import org.dsa.iot.dslink.node.Writable;
 import org.dsa.iot.dslink.node.value.Value;
 import org.dsa.iot.dslink.node.value.ValueType;
+import org.dsa.iot.dslink.node.value.ValueUtils;
 import org.dsa.iot.dslink.util.StringUtils;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.Json;
 import org.dsa.iot.dslink.util.json.JsonObject;
+import org.dsa.iot.dslink.util.json.encoders.MapEncoder;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 
@@ -38,6 +45,125 @@ public class Serializer {
         return top;
     }
 
+    /**
+     * Encodes a root node as a compact {@code "name":{...}} fragment that
+     * can be spliced into the top level object of the serialized file. The
+     * node is streamed directly from the tree without building an
+     * intermediate {@link JsonObject}.
+     *
+     * @param node Root node to encode.
+     * @param format Format to encode the node in.
+     * @return Encoded fragment without the surrounding object header.
+     * @throws IOException An error occurred encoding the node.
+     */
+    public byte[] serializeFragment(Node node,
+                                    EncodingFormat format) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        JsonGenerator gen = Json.createGenerator(format, baos);
+        gen.writeStartObject();
+        gen.writeFieldName(node.getName());
+        serialize(gen, node);
+        gen.writeEndObject();
+        gen.close();
+
+        byte[] bytes = baos.toByteArray();
+        int offset;
+        int length;
+        if (format == EncodingFormat.MESSAGE_PACK) {
+            // Strip the fixmap header of the wrapping single entry map
+            if (bytes[0] != (byte) 0x81) {
+                throw new IOException("Unexpected map header: " + bytes[0]);
+            }
+            offset = 1;
+            length = bytes.length - 1;
+        } else {
+            // Strip the braces of the wrapping object
+            offset = 1;
+            length = bytes.length - 2;
+        }
+        byte[] fragment = new byte[length];
+        System.arraycopy(bytes, offset, fragment, 0, length);
+        return fragment;
+    }
+
+    /**
+     * Streams the node and all of its serializable children into the
+     * generator as an object.
+     *
+     * @param gen Generator to write to.
+     * @param parent Node to write.
+     * @throws IOException An error occurred writing the node.
+     */
+    public void serialize(JsonGenerator gen, Node parent) throws IOException {
+        serialize(gen, parent, true);
+    }
+
+    /**
+     * Streams the node into the generator as an object.
+     *
+     * @param gen Generator to write to.
+     * @param parent Node to write.
+     * @param children Whether to write the serializable children as well.
+     * @throws IOException An error occurred writing the node.
+     */
+    public void serialize(JsonGenerator gen,
+                          Node parent,
+                          boolean children) throws IOException {
+        gen.writeStartObject();
+        String data = parent.getDisplayName();
+        if (data != null) {
+            gen.writeStringField("$name", data);
+        }
+
+        Set<String> set = parent.getInterfaces();
+        if (set != null && set.size() > 0) {
+            gen.writeStringField("$interface", StringUtils.join(set, "|"));
+        }
+
+        String profile = parent.getProfile();
+        if (profile != null) {
+            gen.writeStringField("$is", profile);
+        }
+
+        ValueType type = parent.getValueType();
+        if (type != null) {
+            gen.writeStringField("$type", type.toJsonString());
+            Value value = parent.getValue();
+            if (value != null && value.isSerializable()) {
+                writeValue(gen, "?value", value);
+            }
+        }
+
+        char[] password = parent.getPassword();
+        if (password != null) {
+            gen.writeStringField("$$password", new String(password));
+        }
+
+        Writable writable = parent.getWritable();
+        if (!(writable == null || writable == Writable.NEVER)) {
+            gen.writeStringField("$writable", writable.toJsonName());
+        }
+
+        if (parent.isHidden()) {
+            gen.writeBooleanField("$hidden", true);
+        }
+
+        writeValues(gen, "$$", parent.getRoConfigurations());
+        writeValues(gen, "$", parent.getConfigurations());
+        writeValues(gen, "@", parent.getAttributes());
+
+        Map<String, Node> nodes = children ? parent.getChildren() : null;
+        if (nodes != null && nodes.size() > 0) {
+            for (Node child : nodes.values()) {
+                if (child.isSerializable()) {
+                    gen.writeFieldName(child.getName());
+                    serialize(gen, child, true);
+                }
+            }
+        }
+        gen.writeEndObject();
+    }
+
     private void serializeChildren(JsonObject out, Node parent) {
         String data = parent.getDisplayName();
         if (data != null) {
@@ -106,4 +232,25 @@ public class Serializer {
             }
         }
     }
+
+    private void writeValues(JsonGenerator gen,
+                             String prefix,
+                             Map<String, Value> vals) throws IOException {
+        if (vals == null || vals.size() == 0) {
+            return;
+        }
+
+        for (Map.Entry<String, Value> entry : vals.entrySet()) {
+            Value value = entry.getValue();
+            if (value.isSerializable()) {
+                writeValue(gen, prefix + entry.getKey(), value);
+            }
+        }
+    }
+
+    private void writeValue(JsonGenerator gen,
+                            String name,
+                            Value value) throws IOException {
+        MapEncoder.writeField(gen, name, ValueUtils.toObject(value));
+    }
 }
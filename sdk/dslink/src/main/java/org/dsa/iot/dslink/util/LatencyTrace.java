@@ -0,0 +1,188 @@
+package org.dsa.iot.dslink.util;
+
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Traces the latency of value updates from the responder through the
+ * broker to the requester. Sampled updates carry a trace as an additional
+ * element after the timestamp of the update, holding the time in
+ * microseconds since the epoch at which every hop handled it. Endpoints
+ * that are not aware of traces ignore the extra element.
+ * <p>
+ * Every component that receives a trace records the latency of each hop
+ * seen so far into histograms of this JVM, which are registered over JMX.
+ * The stamps are taken from the wall clock, so hops between hosts include
+ * the offset between their clocks.
+ *
+ * @author Samuel Grenier
+ * @see PropertyReference#TRACE_SAMPLING
+ */
+public class LatencyTrace implements LatencyTraceMBean {
+
+    private static final Logger LOGGER;
+    private static final int MAX_HOPS = 4;
+    private static final int TRACE_INDEX = 3;
+
+    private static final long SAMPLING;
+    private static final long BASE_MICROS;
+    private static final long BASE_NANOS;
+
+    private static final AtomicLong COUNTER = new AtomicLong();
+    private static final Histogram TOTAL = new Histogram();
+    private static final Histogram[] HOPS = new Histogram[MAX_HOPS];
+
+    private LatencyTrace() {
+    }
+
+    /**
+     * @return Whether tracing is enabled.
+     */
+    public static boolean isEnabled() {
+        return SAMPLING > 0;
+    }
+
+    /**
+     * Starts a trace of a value update if it is sampled.
+     *
+     * @param update Update to trace, in the form of {@code [sid, value, ts]}.
+     * @return Whether the update is traced.
+     */
+    public static boolean sample(JsonArray update) {
+        if (SAMPLING <= 0 || update == null || update.size() != TRACE_INDEX) {
+            return false;
+        } else if (COUNTER.incrementAndGet() % SAMPLING != 0) {
+            return false;
+        }
+        JsonArray trace = new JsonArray();
+        trace.add(now());
+        update.add(trace);
+        return true;
+    }
+
+    /**
+     * Stamps the trace of an update with the current time, if it has one.
+     *
+     * @param update Received value update.
+     * @return Trace of the update or {@code null} if it is not traced.
+     */
+    public static JsonArray stamp(JsonArray update) {
+        if (update == null || update.size() <= TRACE_INDEX) {
+            return null;
+        }
+        Object obj = update.get(TRACE_INDEX);
+        if (!(obj instanceof JsonArray)) {
+            return null;
+        }
+        JsonArray trace = (JsonArray) obj;
+        trace.add(now());
+        return trace;
+    }
+
+    /**
+     * Stamps the trace of an update and records the latency of every hop
+     * it passed through so far.
+     *
+     * @param update Received value update.
+     */
+    public static void record(JsonArray update) {
+        JsonArray trace = stamp(update);
+        if (trace == null || trace.size() < 2) {
+            return;
+        }
+        try {
+            long first = ((Number) trace.get(0)).longValue();
+            long prev = first;
+            for (int i = 1; i < trace.size(); i++) {
+                long time = ((Number) trace.get(i)).longValue();
+                if (i <= MAX_HOPS) {
+                    HOPS[i - 1].record(time - prev);
+                }
+                prev = time;
+            }
+            TOTAL.record(prev - first);
+        } catch (ClassCastException e) {
+            LOGGER.debug("Invalid trace: {}", trace);
+        }
+    }
+
+    /**
+     * @return Time in microseconds since the epoch.
+     */
+    public static long now() {
+        return BASE_MICROS + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - BASE_NANOS);
+    }
+
+    @Override
+    public long getTracedUpdates() {
+        return TOTAL.getCount();
+    }
+
+    @Override
+    public double getTotalP50() {
+        return millis(TOTAL, 50);
+    }
+
+    @Override
+    public double getTotalP99() {
+        return millis(TOTAL, 99);
+    }
+
+    @Override
+    public double[] getHopP50() {
+        return hops(50);
+    }
+
+    @Override
+    public double[] getHopP99() {
+        return hops(99);
+    }
+
+    @Override
+    public void reset() {
+        TOTAL.reset();
+        for (Histogram hop : HOPS) {
+            hop.reset();
+        }
+    }
+
+    private static double[] hops(double percentile) {
+        double[] hops = new double[MAX_HOPS];
+        for (int i = 0; i < MAX_HOPS; i++) {
+            hops[i] = millis(HOPS[i], percentile);
+        }
+        return hops;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getPercentile(percentile) / 1000.0;
+    }
+
+    static {
+        LOGGER = LoggerFactory.getLogger(LatencyTrace.class);
+        SAMPLING = Long.getLong(PropertyReference.TRACE_SAMPLING, 0);
+        BASE_MICROS = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        BASE_NANOS = System.nanoTime();
+        for (int i = 0; i < MAX_HOPS; i++) {
+            HOPS[i] = new Histogram();
+        }
+        if (SAMPLING > 0) {
+            try {
+                ObjectName name = new ObjectName("org.dsa.iot:type=LatencyTrace");
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new LatencyTrace(), name);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to register latency trace", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.dsa.iot.dslink.util;
+
+/**
+ * Management interface of the {@link LatencyTrace} exposed over JMX. Times
+ * are in milliseconds and hops are indexed in the order the traced updates
+ * passed through them.
+ *
+ * @author Samuel Grenier
+ */
+public interface LatencyTraceMBean {
+
+    long getTracedUpdates();
+
+    double getTotalP50();
+
+    double getTotalP99();
+
+    double[] getHopP50();
+
+    double[] getHopP99();
+
+    void reset();
+}
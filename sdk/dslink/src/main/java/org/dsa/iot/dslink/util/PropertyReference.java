@@ -26,6 +26,125 @@ public class PropertyReference {
      */
     public static final String DISPATCH_DELAY = NAMESPACE + ".dispatchDelay";
 
+    /**
+     * An integer property that determines the maximum amount of rows an
+     * invocation result table writes in a single response. Larger results
+     * are split into multiple responses and the producer of the rows is
+     * paused while the responses are queued for the network.
+     *
+     * Default value is 1000.
+     */
+    public static final String TABLE_CHUNK_SIZE = NAMESPACE + ".tableChunkSize";
+
+    /**
+     * A long property that determines the delay in milliseconds
+     * subscriptions and unsubscriptions of a requester are coalesced for
+     * before being sent as a single request. A delay of 0 sends every
+     * call as its own request.
+     *
+     * Default value is 10.
+     */
+    public static final String SUBSCRIPTION_DELAY = NAMESPACE + ".subscriptionDelay";
+
+    /**
+     * A long property that determines the time in milliseconds a path
+     * read through the value cache of a requester stays subscribed after
+     * it was last read.
+     *
+     * Default value is 30000.
+     */
+    public static final String VALUE_CACHE_TTL = NAMESPACE + ".valueCacheTtl";
+
+    /**
+     * A string property that determines the encoding format of the
+     * serialized nodes. Supported values are {@code json} and
+     * {@code msgpack}. Existing data in either format is always readable
+     * regardless of this property, allowing links to migrate between formats.
+     *
+     * Default value is json.
+     */
+    public static final String SERIALIZATION_FORMAT = NAMESPACE + ".serializationFormat";
+
+    /**
+     * A boolean property that determines whether node changes are appended
+     * to a journal as they occur. The journal is replayed over the
+     * serialized nodes on startup, preventing changes from being lost
+     * between snapshots.
+     *
+     * Default value is false.
+     */
+    public static final String JOURNAL = NAMESPACE + ".journal";
+
+    /**
+     * A long property that determines the delay in milliseconds changes to
+     * a node are coalesced for before being written to the journal.
+     *
+     * Default value is 100.
+     */
+    public static final String JOURNAL_DELAY = JOURNAL + ".delay";
+
+    /**
+     * A long property that determines the size in bytes the journal must
+     * reach before it is compacted into a new snapshot of the nodes.
+     *
+     * Default value is 4194304.
+     */
+    public static final String JOURNAL_COMPACT_SIZE = JOURNAL + ".compactSize";
+
+    /**
+     * A boolean property that determines whether latency and throughput
+     * metrics of the link are recorded. The metrics are registered over
+     * JMX and published under {@code /sys/metrics} of responders.
+     *
+     * Default value is false.
+     */
+    public static final String METRICS = NAMESPACE + ".metrics";
+
+    /**
+     * A long property that determines how often value updates are traced.
+     * One in every N updates published by a responder carries timestamps
+     * of every hop it passes through. A value of 0 disables tracing.
+     *
+     * Default value is 0.
+     */
+    public static final String TRACE_SAMPLING = NAMESPACE + ".traceSampling";
+
+    /**
+     * A boolean property that determines whether WebSocket messages are
+     * compressed with permessage-deflate when the remote endpoint
+     * supports it.
+     *
+     * Default value is true.
+     */
+    public static final String COMPRESSION = NAMESPACE + ".compression";
+
+    /**
+     * An integer property that determines the deflate level between 0 and
+     * 9 of compressed WebSocket messages. Lower levels trade bandwidth for
+     * CPU time.
+     *
+     * Default value is 6.
+     */
+    public static final String COMPRESSION_LEVEL = NAMESPACE + ".compressionLevel";
+
+    /**
+     * An integer property that determines the size in bytes below which
+     * WebSocket messages are sent uncompressed.
+     *
+     * Default value is 0.
+     */
+    public static final String COMPRESSION_THRESHOLD = NAMESPACE + ".compressionThreshold";
+
+    /**
+     * An integer property that determines the maximum size in bytes of a
+     * WebSocket frame. Larger incoming frames are rejected and larger
+     * outgoing batches are split into multiple messages. A value of 0
+     * disables the limit.
+     *
+     * Default value is 0.
+     */
+    public static final String MAX_FRAME_SIZE = NAMESPACE + ".maxFrameSize";
+
     /**
      * A boolean property that determines the sdk should perform any
      * validations. Currently only the dslink.json is validated.
@@ -28,6 +28,15 @@ public abstract class WsClient {
 
     public abstract void onData(byte[] data, int offset, int length);
 
+    /**
+     * Called by the provider after a message was encoded and written.
+     *
+     * @param length Size of the encoded message.
+     * @param encodeNanos Time spent encoding the message.
+     */
+    public void onWrite(int length, long encodeNanos) {
+    }
+
     public abstract void onConnected(NetworkClient writer);
 
     public abstract void onDisconnected();
@@ -15,6 +15,7 @@ import org.msgpack.jackson.dataformat.MessagePackFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Writer;
 import java.util.List;
@@ -45,16 +46,9 @@ public class Json {
                                         Object obj,
                                         PrettyPrinter printer) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        JsonEncoding enc = JsonEncoding.UTF8;
         JsonGenerator gen;
         try {
-            if (format == EncodingFormat.JSON) {
-                gen = JSON_FACTORY.createGenerator(baos, enc);
-            } else if (format == EncodingFormat.MESSAGE_PACK) {
-                gen = MSG_FACTORY.createGenerator(baos, enc);
-            } else {
-                throw new UnsupportedOperationException(format.toJson());
-            }
+            gen = createGenerator(format, baos);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -72,6 +66,47 @@ public class Json {
         }
     }
 
+    /**
+     * Creates a generator that streams directly into the designated output
+     * stream. The caller is responsible for closing the generator.
+     *
+     * @param format Format to encode into.
+     * @param out Stream to write the encoded data into.
+     * @return A generator writing into {@code out}.
+     * @throws IOException An error occurred creating the generator.
+     */
+    public static JsonGenerator createGenerator(EncodingFormat format,
+                                                OutputStream out)
+                                                throws IOException {
+        JsonEncoding enc = JsonEncoding.UTF8;
+        if (format == EncodingFormat.JSON) {
+            return JSON_FACTORY.createGenerator(out, enc);
+        } else if (format == EncodingFormat.MESSAGE_PACK) {
+            return MSG_FACTORY.createGenerator(out, enc);
+        }
+        throw new UnsupportedOperationException(format.toJson());
+    }
+
+    /**
+     * Creates a parser that streams directly from the designated input
+     * stream. The caller is responsible for closing the parser.
+     *
+     * @param format Format to decode from.
+     * @param in Stream to read the encoded data from.
+     * @return A parser reading from {@code in}.
+     * @throws IOException An error occurred creating the parser.
+     */
+    public static JsonParser createParser(EncodingFormat format,
+                                          InputStream in)
+                                          throws IOException {
+        if (format == EncodingFormat.JSON) {
+            return JSON_FACTORY.createParser(in);
+        } else if (format == EncodingFormat.MESSAGE_PACK) {
+            return MSG_FACTORY.createParser(in);
+        }
+        throw new UnsupportedOperationException(format.toJson());
+    }
+
     public static Map<String, Object> decodeMap(EncodingFormat format,
                                                 byte[] content,
                                                 int offset,
@@ -111,6 +146,7 @@ public class Json {
                 || (value instanceof JsonObject)
                 || (value instanceof JsonArray)
                 || (value instanceof Value)
+                || (value instanceof JsonWritable)
                 || (value instanceof byte[]))) {
             throw new IllegalArgumentException("Invalid class: " + value.getClass());
         }
@@ -0,0 +1,22 @@
+package org.dsa.iot.dslink.util.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Allows data to be written directly into the generator during encoding
+ * instead of being converted into intermediate JSON objects beforehand.
+ *
+ * @author Samuel Grenier
+ */
+public interface JsonWritable {
+
+    /**
+     * Writes exactly one JSON value into the generator.
+     *
+     * @param gen Generator to write to.
+     * @throws IOException An error occurred writing the value.
+     */
+    void writeTo(JsonGenerator gen) throws IOException;
+}
@@ -72,4 +72,37 @@ public class MapDecoder {
             }
         }
     }
+
+    /**
+     * Decodes the value at the current token of the parser. Objects and
+     * arrays are consumed entirely.
+     *
+     * @param parser Parser positioned at the value to decode.
+     * @return Decoded value.
+     * @throws IOException An error occurred reading the value.
+     */
+    public static Object decodeValue(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        } else if (token == JsonToken.VALUE_FALSE) {
+            return false;
+        } else if (token == JsonToken.VALUE_TRUE) {
+            return true;
+        } else if (token == JsonToken.VALUE_NUMBER_INT
+                || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getNumberValue();
+        } else if (token == JsonToken.VALUE_EMBEDDED_OBJECT) {
+            return parser.getBinaryValue();
+        } else if (token == JsonToken.START_ARRAY) {
+            List<Object> list = new LinkedList<>();
+            ListDecoder.performDecodeList(list, parser);
+            return new JsonArray(list);
+        } else if (token == JsonToken.START_OBJECT) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            performDecodeMap(map, parser);
+            return new JsonObject(map);
+        }
+        return null;
+    }
 }
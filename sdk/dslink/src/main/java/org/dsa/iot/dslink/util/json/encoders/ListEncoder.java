@@ -3,6 +3,7 @@ package org.dsa.iot.dslink.util.json.encoders;
 import com.fasterxml.jackson.core.JsonGenerator;
 import org.dsa.iot.dslink.util.json.JsonArray;
 import org.dsa.iot.dslink.util.json.JsonObject;
+import org.dsa.iot.dslink.util.json.JsonWritable;
 
 import java.io.IOException;
 
@@ -42,6 +43,8 @@ public class ListEncoder {
             } else if (instance instanceof JsonArray) {
                 gen.writeStartArray();
                 performWrite(gen, (JsonArray) instance);
+            } else if (instance instanceof JsonWritable) {
+                ((JsonWritable) instance).writeTo(gen);
             } else if (instance instanceof byte[]) {
                 gen.writeBinary((byte[]) instance);
             } else if (instance == null) {
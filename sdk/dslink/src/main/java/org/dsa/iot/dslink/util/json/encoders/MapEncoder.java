@@ -3,6 +3,7 @@ package org.dsa.iot.dslink.util.json.encoders;
 import com.fasterxml.jackson.core.JsonGenerator;
 import org.dsa.iot.dslink.util.json.JsonArray;
 import org.dsa.iot.dslink.util.json.JsonObject;
+import org.dsa.iot.dslink.util.json.JsonWritable;
 
 import java.io.IOException;
 import java.util.Map;
@@ -21,39 +22,54 @@ public class MapEncoder {
     static void performWrite(JsonGenerator gen, JsonObject json)
                                                         throws IOException {
         for (Map.Entry<String, Object> entry : json) {
-            String name = entry.getKey();
-            Object instance = entry.getValue();
-            if (instance instanceof Byte) {
-                gen.writeNumberField(name, ((Number) instance).byteValue());
-            } else if (instance instanceof Short) {
-                gen.writeNumberField(name, ((Number) instance).shortValue());
-            } else if (instance instanceof Integer) {
-                gen.writeNumberField(name, ((Number) instance).intValue());
-            } else if (instance instanceof Long) {
-                gen.writeNumberField(name, ((Number) instance).longValue());
-            } else if (instance instanceof Float) {
-                gen.writeNumberField(name, ((Number) instance).floatValue());
-            } else if (instance instanceof Double) {
-                gen.writeNumberField(name, ((Number) instance).doubleValue());
-            } else if (instance instanceof Boolean) {
-                gen.writeBooleanField(name, (Boolean) instance);
-            } else if (instance instanceof String) {
-                gen.writeStringField(name, (String) instance);
-            } else if (instance instanceof JsonObject) {
-                gen.writeObjectFieldStart(name);
-                performWrite(gen, (JsonObject) instance);
-            } else if (instance instanceof JsonArray) {
-                gen.writeArrayFieldStart(name);
-                ListEncoder.performWrite(gen, (JsonArray) instance);
-            } else if (instance instanceof byte[]) {
-                gen.writeBinaryField(name, (byte[]) instance);
-            } else if (instance == null) {
-                gen.writeNullField(name);
-            } else {
-                String err = "Unsupported class: " + instance.getClass().getName();
-                throw new RuntimeException(err);
-            }
+            writeField(gen, entry.getKey(), entry.getValue());
         }
         gen.writeEndObject();
     }
+
+    /**
+     * Writes a single field into an object that has already been started.
+     *
+     * @param gen Generator to write to.
+     * @param name Name of the field.
+     * @param instance Value of the field.
+     * @throws IOException An error occurred writing the field.
+     */
+    public static void writeField(JsonGenerator gen,
+                                  String name,
+                                  Object instance) throws IOException {
+        if (instance instanceof Byte) {
+            gen.writeNumberField(name, ((Number) instance).byteValue());
+        } else if (instance instanceof Short) {
+            gen.writeNumberField(name, ((Number) instance).shortValue());
+        } else if (instance instanceof Integer) {
+            gen.writeNumberField(name, ((Number) instance).intValue());
+        } else if (instance instanceof Long) {
+            gen.writeNumberField(name, ((Number) instance).longValue());
+        } else if (instance instanceof Float) {
+            gen.writeNumberField(name, ((Number) instance).floatValue());
+        } else if (instance instanceof Double) {
+            gen.writeNumberField(name, ((Number) instance).doubleValue());
+        } else if (instance instanceof Boolean) {
+            gen.writeBooleanField(name, (Boolean) instance);
+        } else if (instance instanceof String) {
+            gen.writeStringField(name, (String) instance);
+        } else if (instance instanceof JsonObject) {
+            gen.writeObjectFieldStart(name);
+            performWrite(gen, (JsonObject) instance);
+        } else if (instance instanceof JsonArray) {
+            gen.writeArrayFieldStart(name);
+            ListEncoder.performWrite(gen, (JsonArray) instance);
+        } else if (instance instanceof JsonWritable) {
+            gen.writeFieldName(name);
+            ((JsonWritable) instance).writeTo(gen);
+        } else if (instance instanceof byte[]) {
+            gen.writeBinaryField(name, (byte[]) instance);
+        } else if (instance == null) {
+            gen.writeNullField(name);
+        } else {
+            String err = "Unsupported class: " + instance.getClass().getName();
+            throw new RuntimeException(err);
+        }
+    }
 }
@@ -0,0 +1,185 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests sizing the ack window from the sampled round trip times and ack
+ * rate.
+ *
+ * @author Samuel Grenier
+ */
+public class DataHandlerTest {
+
+    private TestClient client;
+    private ClockHandler handler;
+
+    @Before
+    public void setup() {
+        client = new TestClient();
+        handler = new ClockHandler();
+        handler.setClient(client, EncodingFormat.JSON);
+        handler.time = 1;
+    }
+
+    @Test
+    public void initialWindow() {
+        Assert.assertEquals(8, handler.ackWindow());
+        Assert.assertEquals(-1, handler.getRoundTripTime(), 0);
+    }
+
+    /**
+     * Ensures the window is twice the product of the ack rate and the
+     * minimum round trip time.
+     */
+    @Test
+    public void windowSizing() {
+        send(4);
+        advance(100);
+        handler.ackReceived(2);
+        Assert.assertEquals(100, handler.getRoundTripTime(), 0);
+        // The rate is only sampled between two acks
+        Assert.assertEquals(8, handler.ackWindow());
+        Assert.assertEquals(2, handler.missingAckCount());
+
+        advance(10);
+        handler.ackReceived(4);
+        // 2 acks in 10ms over a minimum round trip of 100ms
+        Assert.assertEquals(40, handler.ackWindow());
+        Assert.assertEquals(101.25, handler.getRoundTripTime(), 0);
+        Assert.assertEquals(0, handler.missingAckCount());
+    }
+
+    /**
+     * Ensures the rate is smoothed and the minimum round trip time is
+     * replaced once a lower one is sampled.
+     */
+    @Test
+    public void rateAndRttSampling() {
+        send(2);
+        advance(100);
+        handler.ackReceived(1);
+        advance(10);
+        handler.ackReceived(2);
+        // Rate of 0.1 acks per ms
+        Assert.assertEquals(20, handler.ackWindow());
+
+        send(1);
+        advance(20);
+        handler.ackReceived(3);
+        // Rate smoothed to 0.1 + (0.05 - 0.1) / 8 over a minimum of 20ms
+        Assert.assertEquals(4, handler.ackWindow());
+        Assert.assertEquals(101.25 + (20 - 101.25) / 8,
+                            handler.getRoundTripTime(), 1e-9);
+    }
+
+    /**
+     * Ensures a minimum round trip time is expired so the window adapts to
+     * a link that got slower.
+     */
+    @Test
+    public void minRttExpiry() {
+        send(2);
+        advance(10);
+        handler.ackReceived(1);
+        advance(10);
+        handler.ackReceived(2);
+        // Rate of 0.1 acks per ms over 10ms
+        Assert.assertEquals(4, handler.ackWindow());
+
+        advance(11000);
+        send(1);
+        advance(1000);
+        handler.ackReceived(3);
+        // 1 ack in 12s smooths the rate to 0.0875 over the new minimum
+        // of 1000ms
+        Assert.assertEquals(176, handler.ackWindow());
+    }
+
+    @Test
+    public void clampMin() {
+        send(2);
+        advance(10);
+        handler.ackReceived(1);
+        advance(1000);
+        handler.ackReceived(2);
+        Assert.assertEquals(4, handler.ackWindow());
+    }
+
+    @Test
+    public void clampMax() {
+        send(2000);
+        advance(100);
+        handler.ackReceived(1000);
+        advance(1);
+        handler.ackReceived(2000);
+        Assert.assertEquals(256, handler.ackWindow());
+    }
+
+    /**
+     * Ensures acks that were already received are ignored and acks are
+     * cumulative.
+     */
+    @Test
+    public void staleAck() {
+        send(3);
+        advance(100);
+        handler.ackReceived(3);
+        advance(1);
+        handler.ackReceived(2);
+        handler.ackReceived(3);
+        Assert.assertEquals(100, handler.getRoundTripTime(), 0);
+        Assert.assertEquals(8, handler.ackWindow());
+        Assert.assertEquals(0, handler.missingAckCount());
+    }
+
+    /**
+     * Ensures requests queued on a full window are dispatched once an
+     * ack frees it up.
+     */
+    @Test
+    public void ackDispatches() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            JsonObject req = new JsonObject();
+            req.put("rid", i);
+            handler.writeRequest(req, false);
+        }
+        Assert.assertEquals(8, client.getWritten().size());
+        Assert.assertEquals(2, handler.getQueueDepth());
+
+        advance(10);
+        handler.ackReceived(8);
+        Assert.assertTrue(client.awaitWritten(9, 5000));
+        JsonObject msg = client.getWritten().get(8);
+        JsonArray requests = msg.get("requests");
+        Assert.assertEquals(2, requests.size());
+        Assert.assertEquals(9, (int) msg.<Integer>get("msg"));
+        Assert.assertEquals(0, handler.getQueueDepth());
+    }
+
+    private void send(int count) {
+        for (int i = 0; i < count; i++) {
+            handler.incrementMessageId();
+        }
+    }
+
+    private void advance(long millis) {
+        handler.time += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static class ClockHandler extends DataHandler {
+
+        private long time;
+
+        @Override
+        long nanoTime() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests queueing writes against the ack window.
+ *
+ * @author Samuel Grenier
+ */
+public class QueuedWriteManagerTest {
+
+    private TestClient client;
+    private TestTracker tracker;
+    private QueuedWriteManager manager;
+
+    @Before
+    public void setup() {
+        client = new TestClient();
+        tracker = new TestTracker();
+        manager = new QueuedWriteManager(client, tracker,
+                                         EncodingFormat.JSON, "responses");
+    }
+
+    /**
+     * Ensures writes are queued while the window is full and dispatched
+     * in a single message once an ack frees it up.
+     */
+    @Test
+    public void window() throws InterruptedException {
+        tracker.window = 1;
+        Assert.assertTrue(manager.post(response(1), true));
+        tracker.missing.set(1);
+        Assert.assertFalse(manager.post(response(2), true));
+        Assert.assertFalse(manager.post(response(3), false));
+        Assert.assertEquals(2, manager.getQueued());
+
+        tracker.missing.set(0);
+        manager.ackReceived();
+        Assert.assertTrue(client.awaitWritten(2, 5000));
+        JsonArray responses = client.getWritten().get(1).get("responses");
+        Assert.assertEquals(2, responses.size());
+        Assert.assertEquals(0, manager.getQueued());
+    }
+
+    /**
+     * Ensures producers blocked on a full queue don't hold the lock, which
+     * would prevent the queue from ever being dispatched.
+     */
+    @Test
+    public void blockedProducerReleasesLock() throws InterruptedException {
+        client.setWritable(false);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i <= 100000; i++) {
+                    manager.post(response(i), false);
+                }
+            }
+        });
+        producer.setDaemon(true);
+        producer.start();
+
+        long end = System.currentTimeMillis() + 10000;
+        while (producer.getState() != Thread.State.TIMED_WAITING
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(producer.isAlive());
+
+        final AtomicInteger queued = new AtomicInteger(-1);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                queued.set(manager.getQueued());
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        reader.join(1000);
+        Assert.assertFalse(reader.isAlive());
+        Assert.assertTrue(queued.get() > 0);
+
+        client.setWritable(true);
+        manager.ackReceived();
+        producer.join(10000);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertTrue(client.awaitWritten(1, 5000));
+    }
+
+    private static JsonObject response(int rid) {
+        JsonObject obj = new JsonObject();
+        obj.put("rid", rid);
+        return obj;
+    }
+
+    private static class TestTracker implements MessageTracker {
+
+        private final AtomicInteger missing = new AtomicInteger();
+        private final AtomicInteger msgId = new AtomicInteger();
+        private volatile int window = Integer.MAX_VALUE;
+
+        @Override
+        public void ackReceived(int ack) {
+        }
+
+        @Override
+        public int missingAckCount() {
+            return missing.get();
+        }
+
+        @Override
+        public int ackWindow() {
+            return window;
+        }
+
+        @Override
+        public int incrementMessageId() {
+            return msgId.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Network client that records the written messages.
+ *
+ * @author Samuel Grenier
+ */
+class TestClient implements NetworkClient {
+
+    private final List<JsonObject> written = new ArrayList<>();
+    private volatile boolean writable = true;
+
+    void setWritable(boolean writable) {
+        this.writable = writable;
+    }
+
+    synchronized List<JsonObject> getWritten() {
+        return new ArrayList<>(written);
+    }
+
+    /**
+     * @param count Amount of messages to wait for.
+     * @param timeout Maximum time to wait in milliseconds.
+     * @return Whether the messages were written in time.
+     */
+    synchronized boolean awaitWritten(int count, long timeout)
+                                            throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (written.size() < count) {
+            long left = end - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            wait(left);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean writable() {
+        return writable;
+    }
+
+    @Override
+    public synchronized void write(EncodingFormat format, JsonObject data) {
+        written.add(data);
+        notifyAll();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+}
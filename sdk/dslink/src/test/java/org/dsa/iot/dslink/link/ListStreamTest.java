@@ -0,0 +1,199 @@
+package org.dsa.iot.dslink.link;
+
+import org.dsa.iot.dslink.DSLink;
+import org.dsa.iot.dslink.DSLinkHandler;
+import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.methods.requests.ListRequest;
+import org.dsa.iot.dslink.methods.responses.ListResponse;
+import org.dsa.iot.dslink.methods.responses.ListUpdate;
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.util.handler.Handler;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Samuel Grenier
+ */
+public class ListStreamTest {
+
+    @Test
+    public void snapshot() {
+        ListStream stream = new ListStream("/data", 1);
+        Assert.assertFalse(stream.hasState());
+
+        JsonArray updates = new JsonArray();
+        updates.add(update("$is", "node"));
+        updates.add(update("a", new JsonObject()));
+        updates.add(update("b", new JsonObject()));
+        stream.update(response(updates));
+
+        updates = new JsonArray();
+        JsonObject remove = new JsonObject();
+        remove.put("name", "a");
+        remove.put("change", "remove");
+        updates.add(remove);
+        updates.add(update("@attr", 1));
+        stream.update(response(updates));
+
+        ListUpdate snapshot = stream.snapshot(2);
+        Assert.assertEquals(2, snapshot.getRid());
+        Assert.assertTrue(snapshot.isSnapshot());
+        Assert.assertEquals(1, snapshot.getChildren().size());
+        Assert.assertTrue(snapshot.getChildren().containsKey("b"));
+        Assert.assertTrue(snapshot.getMetadata().containsKey("@attr"));
+
+        updates = new JsonArray();
+        updates.add(update("$is", "other"));
+        stream.update(response(updates));
+        snapshot = stream.snapshot(2);
+        Assert.assertEquals("other", snapshot.getMetadata().get("$is"));
+        Assert.assertTrue(snapshot.getChildren().isEmpty());
+    }
+
+    @Test
+    public void listeners() {
+        ListStream stream = new ListStream("/data", 1);
+        stream.addListener(1, null);
+        stream.addUpdateListener(2, null);
+        stream.removeListener(1);
+        Assert.assertFalse(stream.isEmpty());
+        stream.removeListener(2);
+        Assert.assertTrue(stream.isEmpty());
+    }
+
+    @Test
+    public void materialization() {
+        ListStream stream = new ListStream("/data", 1);
+        stream.addUpdateListener(1, null);
+        stream.update(response(new JsonArray()));
+        Assert.assertFalse(stream.isMaterialized());
+
+        stream.addListener(2, null);
+        stream.setMaterialized();
+        stream.removeListener(2);
+        Assert.assertFalse(stream.isMaterialized());
+    }
+
+    @Test
+    public void mixedMode() {
+        final List<JsonObject> requests = new ArrayList<>();
+        DSLink link = new DSLink(new DSLinkHandler() {}, true, "/") {};
+        link.setWriter(new DataHandler() {
+            @Override
+            public void writeRequest(JsonObject object, boolean merge) {
+                requests.add(object);
+            }
+        });
+        Requester requester = link.getRequester();
+
+        final List<ListUpdate> updates = new ArrayList<>();
+        int rid = requester.listUpdates(new ListRequest("/data"), new Handler<ListUpdate>() {
+            @Override
+            public void handle(ListUpdate event) {
+                updates.add(event);
+            }
+        });
+        Assert.assertEquals(1, requests.size());
+
+        JsonArray array = new JsonArray();
+        array.add(update("$is", "node"));
+        JsonObject child = new JsonObject();
+        child.put("$is", "node");
+        array.add(update("a", child));
+        JsonObject in = response(array);
+        in.put("rid", rid);
+        requester.parse(in);
+        Assert.assertEquals(1, updates.size());
+        Assert.assertNull(link.getNodeManager().getNode("/data", false, false).getNode());
+
+        final List<ListResponse> responses = new ArrayList<>();
+        requester.list(new ListRequest("/data"), new Handler<ListResponse>() {
+            @Override
+            public void handle(ListResponse event) {
+                responses.add(event);
+            }
+        });
+        Assert.assertEquals(1, requests.size());
+        Assert.assertEquals(1, responses.size());
+        Node node = responses.get(0).getNode();
+        Assert.assertEquals("/data", node.getPath());
+        Assert.assertNotNull(node.getChild("a"));
+    }
+
+    /**
+     * Ensures every listener of a shared stream receives its own ID, so
+     * closing the stream with the ID of a response only releases the
+     * listener it was delivered to.
+     */
+    @Test
+    public void listenerIds() {
+        final List<JsonObject> requests = new ArrayList<>();
+        DSLink link = new DSLink(new DSLinkHandler() {}, true, "/") {};
+        link.setWriter(new DataHandler() {
+            @Override
+            public void writeRequest(JsonObject object, boolean merge) {
+                requests.add(object);
+            }
+        });
+        Requester requester = link.getRequester();
+
+        final List<ListResponse> first = new ArrayList<>();
+        final List<ListResponse> joined = new ArrayList<>();
+        final List<ListUpdate> updates = new ArrayList<>();
+        int rid = requester.list(new ListRequest("/data"), new Handler<ListResponse>() {
+            @Override
+            public void handle(ListResponse event) {
+                first.add(event);
+            }
+        });
+        int joinedId = requester.list(new ListRequest("/data"), new Handler<ListResponse>() {
+            @Override
+            public void handle(ListResponse event) {
+                joined.add(event);
+            }
+        });
+        int updatesId = requester.listUpdates(new ListRequest("/data"), new Handler<ListUpdate>() {
+            @Override
+            public void handle(ListUpdate event) {
+                updates.add(event);
+            }
+        });
+        Assert.assertEquals(1, requests.size());
+
+        JsonArray array = new JsonArray();
+        array.add(update("$is", "node"));
+        JsonObject in = response(array);
+        in.put("rid", rid);
+        requester.parse(in);
+        Assert.assertEquals(rid, first.get(0).getRid());
+        Assert.assertEquals(joinedId, joined.get(0).getRid());
+        Assert.assertEquals(updatesId, updates.get(0).getRid());
+        Assert.assertSame(first.get(0).getNode(), joined.get(0).getNode());
+
+        requester.closeStream(joined.get(0).getRid(), null);
+        requester.closeStream(updates.get(0).getRid(), null);
+        Assert.assertEquals(1, requests.size());
+
+        requester.closeStream(first.get(0).getRid(), null);
+        Assert.assertEquals(2, requests.size());
+    }
+
+    private static JsonObject response(JsonArray updates) {
+        JsonObject in = new JsonObject();
+        in.put("rid", 1);
+        in.put("updates", updates);
+        return in;
+    }
+
+    private static JsonArray update(String name, Object value) {
+        JsonArray update = new JsonArray();
+        update.add(name);
+        update.add(value);
+        return update;
+    }
+}
@@ -0,0 +1,209 @@
+package org.dsa.iot.dslink.link;
+
+import org.dsa.iot.dslink.DSLink;
+import org.dsa.iot.dslink.DSLinkHandler;
+import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.methods.StreamState;
+import org.dsa.iot.dslink.methods.requests.InvokeRequest;
+import org.dsa.iot.dslink.methods.requests.SetRequest;
+import org.dsa.iot.dslink.methods.responses.InvokeResponse;
+import org.dsa.iot.dslink.methods.responses.SetResponse;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.handler.Handler;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Samuel Grenier
+ */
+public class RequestPipelineTest {
+
+    private final List<JsonObject> requests = new ArrayList<>();
+    private Requester requester;
+
+    @Before
+    public void setup() {
+        DSLink link = new DSLink(new DSLinkHandler() {}, true, "/") {};
+        link.setWriter(new DataHandler() {
+            @Override
+            public void writeRequest(JsonObject object, boolean merge) {
+                synchronized (requests) {
+                    requests.add(object);
+                }
+            }
+        });
+        requester = link.getRequester();
+    }
+
+    /**
+     * Ensures only a window of requests is in flight and queued requests
+     * are sent as requests complete.
+     */
+    @Test
+    public void window() {
+        RequestPipeline pipeline = new RequestPipeline(requester, 2, 0);
+        InvokeHandler[] handlers = new InvokeHandler[5];
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = new InvokeHandler();
+            pipeline.invoke(new InvokeRequest("/action"), handlers[i]);
+        }
+        Assert.assertEquals(2, requests().size());
+        Assert.assertEquals(2, pipeline.getInFlight());
+        Assert.assertEquals(3, pipeline.getQueued());
+
+        respond(rid(0), "open");
+        Assert.assertEquals(1, handlers[0].responses.size());
+        Assert.assertEquals(2, requests().size());
+
+        respond(rid(0), "closed");
+        Assert.assertEquals(2, handlers[0].responses.size());
+        Assert.assertEquals(3, requests().size());
+        Assert.assertEquals(2, pipeline.getInFlight());
+        Assert.assertEquals(2, pipeline.getQueued());
+
+        respond(rid(1), "closed");
+        respond(rid(2), "closed");
+        respond(rid(3), "closed");
+        respond(rid(4), "closed");
+        Assert.assertEquals(5, requests().size());
+        Assert.assertEquals(0, pipeline.getInFlight());
+        Assert.assertEquals(0, pipeline.getQueued());
+        for (InvokeHandler handler : handlers) {
+            InvokeResponse last = handler.last();
+            Assert.assertEquals(StreamState.CLOSED, last.getState());
+            Assert.assertFalse(last.hasError());
+        }
+    }
+
+    /**
+     * Ensures a set is completed by its response.
+     */
+    @Test
+    public void set() {
+        RequestPipeline pipeline = new RequestPipeline(requester, 1, 0);
+        final List<SetResponse> responses = new ArrayList<>();
+        Handler<SetResponse> handler = new Handler<SetResponse>() {
+            @Override
+            public void handle(SetResponse event) {
+                responses.add(event);
+            }
+        };
+        pipeline.set(new SetRequest("/a", new Value(1)), handler);
+        pipeline.set(new SetRequest("/b", new Value(2)), handler);
+        Assert.assertEquals(1, requests().size());
+        Assert.assertEquals(1, pipeline.getQueued());
+
+        respond(rid(0), "closed");
+        Assert.assertEquals(1, responses.size());
+        Assert.assertEquals(2, requests().size());
+        Assert.assertEquals("/b", requests().get(1).get("path"));
+    }
+
+    /**
+     * Ensures a request in flight for too long is closed and completed
+     * with an error, and its late response is ignored.
+     */
+    @Test
+    public void timeout() throws InterruptedException {
+        RequestPipeline pipeline = new RequestPipeline(requester, 1, 50);
+        InvokeHandler first = new InvokeHandler();
+        InvokeHandler second = new InvokeHandler();
+        pipeline.invoke(new InvokeRequest("/action"), first);
+        pipeline.invoke(new InvokeRequest("/action"), second);
+        Assert.assertEquals(1, pipeline.getQueued());
+
+        Assert.assertTrue(first.closed.await(5, TimeUnit.SECONDS));
+        InvokeResponse resp = first.last();
+        Assert.assertTrue(resp.hasError());
+        Assert.assertEquals(StreamState.CLOSED, resp.getState());
+
+        Assert.assertTrue(awaitRequests(3));
+        List<JsonObject> written = requests();
+        Assert.assertEquals("close", written.get(1).get("method"));
+        Assert.assertEquals(rid(0), (int) written.get(1).<Integer>get("rid"));
+        Assert.assertEquals("invoke", written.get(2).get("method"));
+
+        respond(rid(0), "closed");
+        Assert.assertEquals(1, first.responses.size());
+        Assert.assertEquals(1, pipeline.getInFlight());
+
+        respond(rid(2), "closed");
+        Assert.assertFalse(second.last().hasError());
+        Assert.assertEquals(0, pipeline.getInFlight());
+    }
+
+    /**
+     * Ensures requests fail immediately while the requester has no link
+     * rather than holding their slot until the timeout.
+     */
+    @Test
+    public void noLink() {
+        Requester requester = new Requester(new DSLinkHandler() {});
+        RequestPipeline pipeline = new RequestPipeline(requester, 1, 0);
+        InvokeHandler[] handlers = new InvokeHandler[3];
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = new InvokeHandler();
+            pipeline.invoke(new InvokeRequest("/action"), handlers[i]);
+        }
+        for (InvokeHandler handler : handlers) {
+            Assert.assertEquals(1, handler.responses.size());
+            Assert.assertTrue(handler.last().hasError());
+            Assert.assertEquals(StreamState.CLOSED, handler.last().getState());
+        }
+        Assert.assertEquals(0, pipeline.getInFlight());
+        Assert.assertEquals(0, pipeline.getQueued());
+    }
+
+    private List<JsonObject> requests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    private boolean awaitRequests(int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (requests().size() < count) {
+            if (System.currentTimeMillis() > end) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private int rid(int index) {
+        return requests().get(index).get("rid");
+    }
+
+    private void respond(int rid, String stream) {
+        JsonObject in = new JsonObject();
+        in.put("rid", rid);
+        in.put("stream", stream);
+        requester.parse(in);
+    }
+
+    private static class InvokeHandler implements Handler<InvokeResponse> {
+
+        private final List<InvokeResponse> responses = new ArrayList<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public synchronized void handle(InvokeResponse event) {
+            responses.add(event);
+            if (event.getState() == StreamState.CLOSED) {
+                closed.countDown();
+            }
+        }
+
+        synchronized InvokeResponse last() {
+            return responses.get(responses.size() - 1);
+        }
+    }
+}
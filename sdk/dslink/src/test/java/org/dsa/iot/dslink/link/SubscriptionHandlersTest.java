@@ -0,0 +1,174 @@
+package org.dsa.iot.dslink.link;
+
+import org.dsa.iot.dslink.node.value.SubscriptionValue;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.handler.Handler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Samuel Grenier
+ */
+public class SubscriptionHandlersTest {
+
+    @Test
+    public void referenceCounting() {
+        CountingHandler a = new CountingHandler();
+        CountingHandler b = new CountingHandler();
+        SubscriptionHandlers handlers = new SubscriptionHandlers(0, null);
+        handlers.add(a, 0);
+        handlers.add(a, 0);
+        handlers.add(b, 0);
+        Assert.assertEquals(3, handlers.size());
+
+        handlers.handle(update(1));
+        Assert.assertEquals(2, a.count.get());
+        Assert.assertEquals(1, b.count.get());
+
+        Assert.assertTrue(handlers.remove(a));
+        Assert.assertTrue(handlers.remove(b));
+        Assert.assertFalse(handlers.remove(b));
+        Assert.assertFalse(handlers.isEmpty());
+
+        handlers.handle(update(2));
+        Assert.assertEquals(3, a.count.get());
+        Assert.assertEquals(1, b.count.get());
+
+        Assert.assertTrue(handlers.remove(a));
+        Assert.assertTrue(handlers.isEmpty());
+    }
+
+    @Test
+    public void joinReceivesLastValue() {
+        final Value[] last = new Value[1];
+        CountingHandler joined = new CountingHandler() {
+            @Override
+            public void handle(SubscriptionValue event) {
+                super.handle(event);
+                last[0] = event.getValue();
+            }
+        };
+        CountingHandler first = new CountingHandler();
+        SubscriptionHandlers handlers = new SubscriptionHandlers(0, null);
+        handlers.add(first, 0);
+        Assert.assertEquals(0, first.count.get());
+
+        handlers.handle(update(1));
+        handlers.handle(update(2));
+        handlers.add(joined, 0);
+        Assert.assertEquals(1, joined.count.get());
+        Assert.assertEquals(2, last[0].getNumber().intValue());
+        Assert.assertEquals(2, first.count.get());
+
+        handlers.handle(update(3));
+        Assert.assertEquals(2, joined.count.get());
+        Assert.assertEquals(3, last[0].getNumber().intValue());
+
+        handlers.clear();
+        Assert.assertNull(handlers.getLast());
+        handlers.add(joined, 0);
+        Assert.assertEquals(2, joined.count.get());
+    }
+
+    /**
+     * Ensures handlers are called without holding the monitor, so other
+     * threads can join the subscription while a handler is running.
+     */
+    @Test
+    public void callbacksWithoutLock() throws InterruptedException {
+        final SubscriptionHandlers handlers = new SubscriptionHandlers(0, null);
+        final CountingHandler joined = new CountingHandler();
+        final CountDownLatch latch = new CountDownLatch(1);
+        handlers.add(new Handler<SubscriptionValue>() {
+            @Override
+            public void handle(SubscriptionValue event) {
+                Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        handlers.register(joined, 0).deliver();
+                        latch.countDown();
+                    }
+                });
+                t.start();
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }, 0);
+
+        handlers.handle(update(1));
+        Assert.assertEquals(0, latch.getCount());
+        Assert.assertEquals(1, joined.count.get());
+    }
+
+    /**
+     * Ensures the initial value is not delivered after a newer update
+     * already reached the handler.
+     */
+    @Test
+    public void staleInitialValue() {
+        CountingHandler handler = new CountingHandler();
+        SubscriptionHandlers handlers = new SubscriptionHandlers(0, null);
+        handlers.handle(update(1));
+        SubscriptionHandlers.Entry e = handlers.register(handler, 0);
+        handlers.handle(update(2));
+        e.deliver();
+        Assert.assertEquals(1, handler.count.get());
+    }
+
+    @Test
+    public void qosUpgrade() {
+        SubscriptionHandlers handlers = new SubscriptionHandlers(0, 1);
+        Assert.assertFalse(handlers.upgradeQos(null));
+        Assert.assertFalse(handlers.upgradeQos(0));
+        Assert.assertTrue(handlers.upgradeQos(2));
+        Assert.assertEquals(2, (int) handlers.getQos());
+    }
+
+    @Test
+    public void throttled() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Value[] last = new Value[1];
+        CountingHandler throttled = new CountingHandler() {
+            @Override
+            public void handle(SubscriptionValue event) {
+                super.handle(event);
+                last[0] = event.getValue();
+                latch.countDown();
+            }
+        };
+        CountingHandler direct = new CountingHandler();
+        SubscriptionHandlers handlers = new SubscriptionHandlers(0, null);
+        handlers.add(throttled, 200);
+        handlers.add(direct, 0);
+
+        for (int i = 0; i < 5; i++) {
+            handlers.handle(update(i));
+        }
+        Assert.assertEquals(1, throttled.count.get());
+        Assert.assertEquals(5, direct.count.get());
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, throttled.count.get());
+        Assert.assertEquals(4, last[0].getNumber().intValue());
+    }
+
+    private static SubscriptionValue update(int i) {
+        return new SubscriptionValue("/a", new Value(i), null, null, null, null);
+    }
+
+    private static class CountingHandler implements Handler<SubscriptionValue> {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void handle(SubscriptionValue event) {
+            count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.dsa.iot.dslink.link;
+
+import org.dsa.iot.dslink.DSLinkHandler;
+import org.dsa.iot.dslink.node.value.SubscriptionValue;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.handler.Handler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Samuel Grenier
+ */
+public class ValueCacheTest {
+
+    @Test
+    public void hotRead() {
+        Requester requester = new Requester(new DSLinkHandler() {});
+        ValueCache cache = new ValueCache(requester, 60000);
+
+        ValueHandler first = new ValueHandler();
+        cache.read("/a", first);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, first.latch.getCount());
+
+        update(requester, "/a", 1);
+        Assert.assertEquals(0, first.latch.getCount());
+        Assert.assertEquals(1, first.value.getValue().getNumber().intValue());
+
+        ValueHandler second = new ValueHandler();
+        cache.read("/a", second);
+        Assert.assertEquals(0, second.latch.getCount());
+        Assert.assertEquals(1, second.value.getValue().getNumber().intValue());
+        Assert.assertEquals(1, requester.getSubscriptionPaths().size());
+    }
+
+    @Test
+    public void coldReadOfSharedSubscription() {
+        Requester requester = new Requester(new DSLinkHandler() {});
+        ValueCache cache = new ValueCache(requester, 60000);
+        requester.subscribe("/a", new ValueHandler());
+        update(requester, "/a", 5);
+
+        ValueHandler handler = new ValueHandler();
+        cache.read("/a", handler);
+        Assert.assertEquals(0, handler.latch.getCount());
+        Assert.assertEquals(5, handler.value.getValue().getNumber().intValue());
+    }
+
+    @Test
+    public void expiresToNull() throws InterruptedException {
+        Requester requester = new Requester(new DSLinkHandler() {});
+        ValueCache cache = new ValueCache(requester, 50);
+
+        ValueHandler handler = new ValueHandler();
+        cache.read("/a", handler);
+        Assert.assertTrue(handler.latch.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(handler.value);
+        Assert.assertEquals(0, cache.size());
+        Assert.assertFalse(requester.isSubscribed("/a"));
+    }
+
+    @Test
+    public void readAll() throws InterruptedException {
+        Requester requester = new Requester(new DSLinkHandler() {});
+        ValueCache cache = new ValueCache(requester, 60000);
+        requester.subscribe("/a", new ValueHandler());
+        update(requester, "/a", 1);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Map[] values = new Map[1];
+        Set<String> paths = new HashSet<>();
+        paths.add("/a");
+        paths.add("/b");
+        cache.readAll(paths, new Handler<Map<String, SubscriptionValue>>() {
+            @Override
+            public void handle(Map<String, SubscriptionValue> event) {
+                values[0] = event;
+                latch.countDown();
+            }
+        });
+        Assert.assertEquals(1, latch.getCount());
+
+        update(requester, "/b", 2);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, values[0].size());
+        SubscriptionValue b = (SubscriptionValue) values[0].get("/b");
+        Assert.assertEquals(2, b.getValue().getNumber().intValue());
+    }
+
+    private static void update(Requester requester, String path, int value) {
+        int sid = requester.getSubscriptionPaths().get(path);
+        Handler<SubscriptionValue> handler = requester.getSubscriptionHandlers().get(sid);
+        handler.handle(new SubscriptionValue(path, new Value(value), null, null, null, null));
+    }
+
+    private static class ValueHandler implements Handler<SubscriptionValue> {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private SubscriptionValue value;
+
+        @Override
+        public void handle(SubscriptionValue event) {
+            value = event;
+            latch.countDown();
+        }
+    }
+}
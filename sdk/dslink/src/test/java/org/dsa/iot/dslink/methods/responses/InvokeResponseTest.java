@@ -0,0 +1,96 @@
+package org.dsa.iot.dslink.methods.responses;
+
+import org.dsa.iot.dslink.DSLink;
+import org.dsa.iot.dslink.DSLinkHandler;
+import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.methods.StreamState;
+import org.dsa.iot.dslink.node.NodeBuilder;
+import org.dsa.iot.dslink.node.Permission;
+import org.dsa.iot.dslink.node.actions.Action;
+import org.dsa.iot.dslink.node.actions.ActionResult;
+import org.dsa.iot.dslink.node.actions.Parameter;
+import org.dsa.iot.dslink.node.actions.table.Row;
+import org.dsa.iot.dslink.node.actions.table.Table;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueType;
+import org.dsa.iot.dslink.util.handler.Handler;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Samuel Grenier
+ */
+public class InvokeResponseTest {
+
+    /**
+     * Ensures buffered results are written in chunks, waiting for the
+     * written chunks to be sent before writing the next one.
+     */
+    @Test
+    public void writeChunks() {
+        RecordingHandler handler = new RecordingHandler();
+        DSLink link = new DSLink(new DSLinkHandler() {}, false, "/") {};
+        link.setWriter(handler);
+
+        NodeBuilder b = link.getNodeManager().getSuperRoot().createChild("rows");
+        Action act = new Action(Permission.READ, new Handler<ActionResult>() {
+            @Override
+            public void handle(ActionResult event) {
+                Table table = event.getTable();
+                table.setChunkSize(2);
+                for (int i = 0; i < 5; i++) {
+                    table.addRow(Row.make(new Value(i)));
+                }
+            }
+        });
+        act.addResult(new Parameter("value", ValueType.NUMBER));
+        b.setAction(act);
+        b.build();
+
+        InvokeResponse resp = new InvokeResponse(link, 1, "/rows");
+        JsonObject last = resp.getJsonResponse(new JsonObject());
+
+        Assert.assertEquals(2, handler.responses.size());
+        Assert.assertEquals(2, handler.awaits);
+        List<JsonObject> all = new ArrayList<>(handler.responses);
+        all.add(last);
+
+        int expected = 0;
+        for (int i = 0; i < all.size(); i++) {
+            JsonObject obj = all.get(i);
+            Assert.assertEquals(1, (int) obj.<Integer>get("rid"));
+            StreamState state = i < all.size() - 1
+                    ? StreamState.OPEN : StreamState.CLOSED;
+            Assert.assertEquals(state.getJsonName(), obj.get("stream"));
+
+            JsonArray updates = obj.get("updates");
+            Assert.assertTrue(updates.size() <= 2);
+            for (Object o : updates) {
+                JsonArray row = (JsonArray) o;
+                Assert.assertEquals(expected++, ((Number) row.get(0)).intValue());
+            }
+        }
+        Assert.assertEquals(5, expected);
+    }
+
+    private static class RecordingHandler extends DataHandler {
+
+        private final List<JsonObject> responses = new ArrayList<>();
+        private int awaits;
+
+        @Override
+        public void writeResponse(JsonObject object) {
+            responses.add(object);
+        }
+
+        @Override
+        public void awaitResponseCapacity(int limit) {
+            awaits++;
+        }
+    }
+}
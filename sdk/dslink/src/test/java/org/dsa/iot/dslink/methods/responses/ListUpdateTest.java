@@ -0,0 +1,82 @@
+package org.dsa.iot.dslink.methods.responses;
+
+import org.dsa.iot.dslink.methods.StreamState;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Samuel Grenier
+ */
+public class ListUpdateTest {
+
+    @Test
+    public void snapshot() {
+        JsonArray updates = new JsonArray();
+        updates.add(update("$is", "node"));
+        updates.add(update("@attr", 1));
+        JsonObject child = new JsonObject();
+        child.put("$is", "node");
+        updates.add(update("a", child));
+        updates.add(update("b", new JsonObject(child.getMap())));
+
+        ListUpdate update = populate(StreamState.OPEN, updates);
+        Assert.assertTrue(update.isSnapshot());
+        Assert.assertEquals(StreamState.OPEN, update.getStreamState());
+        Assert.assertEquals("node", update.getMetadata().get("$is"));
+        Assert.assertEquals(1, ((Number) update.getMetadata().get("@attr")).intValue());
+        Assert.assertEquals(2, update.getChildren().size());
+        Assert.assertTrue(update.getRemoved().isEmpty());
+    }
+
+    @Test
+    public void delta() {
+        JsonArray updates = new JsonArray();
+        JsonObject remove = new JsonObject();
+        remove.put("name", "a");
+        remove.put("change", "remove");
+        updates.add(remove);
+
+        JsonObject removeChild = new JsonObject();
+        removeChild.put("change", "remove");
+        updates.add(update("b", removeChild));
+
+        remove = new JsonObject();
+        remove.put("name", "@attr");
+        remove.put("change", "remove");
+        updates.add(remove);
+
+        ListUpdate update = populate(null, updates);
+        Assert.assertFalse(update.isSnapshot());
+        Assert.assertTrue(update.getChildren().isEmpty());
+        Assert.assertTrue(update.getMetadata().isEmpty());
+        Assert.assertEquals(3, update.getRemoved().size());
+        Assert.assertTrue(update.getRemoved().contains("@attr"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        ListUpdate update = populate(null, new JsonArray());
+        update.getChildren().put("a", new JsonObject());
+    }
+
+    private static ListUpdate populate(StreamState state, JsonArray updates) {
+        JsonObject in = new JsonObject();
+        in.put("rid", 1);
+        if (state != null) {
+            in.put("stream", state.getJsonName());
+        }
+        in.put("updates", updates);
+        ListUpdate update = new ListUpdate(1, "/data");
+        update.populate(in);
+        return update;
+    }
+
+    private static JsonArray update(String name, Object value) {
+        JsonArray update = new JsonArray();
+        update.add(name);
+        update.add(value);
+        return update;
+    }
+}
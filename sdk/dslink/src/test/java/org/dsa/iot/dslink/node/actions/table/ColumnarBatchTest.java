@@ -0,0 +1,71 @@
+package org.dsa.iot.dslink.node.actions.table;
+
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.TimeUtils;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * @author Samuel Grenier
+ */
+public class ColumnarBatchTest {
+
+    @Test
+    public void encode() {
+        ColumnarBatch batch = createBatch();
+        JsonArray updates = new JsonArray();
+        updates.add(batch.getRow(0));
+        updates.add(batch.getRow(1));
+
+        String t0 = TimeUtils.format(1000L);
+        String t1 = TimeUtils.format(2000L);
+        String expected = "[[\"" + t0 + "\",1.5,true,\"a\"],"
+                + "[\"" + t1 + "\",null,false,null]]";
+        Assert.assertEquals(expected, updates.toString());
+    }
+
+    @Test
+    public void toBatchRow() {
+        List<Row> rows = createBatch().toBatchRow().getRows();
+        Assert.assertEquals(2, rows.size());
+
+        List<Value> values = rows.get(0).getValues();
+        Assert.assertEquals(TimeUtils.format(1000L), values.get(0).getString());
+        Assert.assertEquals(1.5, values.get(1).getNumber().doubleValue(), 0);
+        Assert.assertTrue(values.get(2).getBool());
+        Assert.assertEquals("a", values.get(3).getString());
+
+        values = rows.get(1).getValues();
+        Assert.assertNull(values.get(1).getNumber());
+        Assert.assertNull(values.get(3).getString());
+    }
+
+    @Test
+    public void integers() {
+        ColumnarBatch batch = new ColumnarBatch(1);
+        batch.addIntegerColumn(new long[] {5});
+        JsonArray updates = new JsonArray();
+        updates.add(batch.getRow(0));
+        Assert.assertEquals("[[5]]", updates.toString());
+
+        Value value = batch.toBatchRow().getRows().get(0).getValues().get(0);
+        Assert.assertEquals(Long.valueOf(5), value.getNumber());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortColumn() {
+        new ColumnarBatch(2).addNumberColumn(new double[1]);
+    }
+
+    private static ColumnarBatch createBatch() {
+        ColumnarBatch batch = new ColumnarBatch(2);
+        batch.addTimeColumn(new long[] {1000, 2000});
+        batch.addNumberColumn(new double[] {1.5, Double.NaN});
+        batch.addBoolColumn(new boolean[] {true, false});
+        batch.addStringColumn(new String[] {"a", null});
+        return batch;
+    }
+}
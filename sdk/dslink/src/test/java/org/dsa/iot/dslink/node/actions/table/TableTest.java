@@ -0,0 +1,161 @@
+package org.dsa.iot.dslink.node.actions.table;
+
+import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Samuel Grenier
+ */
+public class TableTest {
+
+    @Test
+    public void chunkedBatch() {
+        RecordingHandler handler = new RecordingHandler();
+        Table table = new Table();
+        table.setChunkSize(2);
+        table.setStreaming(1, handler, null);
+
+        BatchRow batch = new BatchRow();
+        for (int i = 0; i < 5; i++) {
+            batch.addRow(Row.make(new Value(i)));
+        }
+        table.addBatchRows(batch);
+
+        Assert.assertEquals(3, handler.responses.size());
+        Assert.assertEquals(0, handler.awaits);
+        int expected = 0;
+        for (JsonObject resp : handler.responses) {
+            Assert.assertEquals(1, (int) resp.<Integer>get("rid"));
+            JsonArray updates = resp.get("updates");
+            Assert.assertTrue(updates.size() <= 2);
+            for (Object o : updates) {
+                JsonArray row = (JsonArray) o;
+                Assert.assertEquals(expected++, ((Number) row.get(0)).intValue());
+            }
+        }
+        Assert.assertEquals(5, expected);
+    }
+
+    @Test
+    public void modifiedBatchNotChunked() {
+        RecordingHandler handler = new RecordingHandler();
+        Table table = new Table();
+        table.setChunkSize(2);
+        table.setStreaming(1, handler, null);
+
+        BatchRow batch = new BatchRow();
+        for (int i = 0; i < 5; i++) {
+            batch.addRow(Row.make(new Value(i)));
+        }
+        batch.setModifier(BatchRow.Modifier.makeReplace(0, 4));
+        table.addBatchRows(batch);
+
+        Assert.assertEquals(1, handler.responses.size());
+        JsonArray updates = handler.responses.get(0).get("updates");
+        Assert.assertEquals(5, updates.size());
+    }
+
+    @Test
+    public void chunkedColumnar() {
+        RecordingHandler handler = new RecordingHandler();
+        Table table = new Table();
+        table.setChunkSize(2);
+        table.setStreaming(1, handler, null);
+
+        ColumnarBatch batch = new ColumnarBatch(3);
+        batch.addNumberColumn(new double[] {0, 1, 2});
+        table.addColumnarRows(batch);
+
+        Assert.assertEquals(2, handler.responses.size());
+        String updates = handler.responses.get(1).get("updates").toString();
+        Assert.assertEquals("[[2.0]]", updates);
+    }
+
+    @Test
+    public void bulkRows() {
+        RecordingHandler handler = new RecordingHandler();
+        Table table = new Table();
+        table.setChunkSize(2);
+        table.setStreaming(1, handler, null);
+
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(Row.make(new Value(i)));
+        }
+        table.addRows(rows);
+        Assert.assertEquals(3, handler.responses.size());
+        Assert.assertEquals(3, handler.awaits);
+
+        ColumnarBatch batch = new ColumnarBatch(3);
+        batch.addNumberColumn(new double[] {0, 1, 2});
+        table.addRows(batch);
+        Assert.assertEquals(5, handler.responses.size());
+        Assert.assertEquals(5, handler.awaits);
+    }
+
+    @Test
+    public void realTimeRowsNeverBlock() {
+        RecordingHandler handler = new RecordingHandler();
+        Table table = new Table();
+        table.setStreaming(1, handler, null);
+        for (int i = 0; i < 5; i++) {
+            table.addRow(Row.make(new Value(i)));
+        }
+
+        ColumnarBatch batch = new ColumnarBatch(1);
+        batch.addNumberColumn(new double[] {5});
+        table.addColumnarRows(batch);
+
+        Assert.assertEquals(6, handler.responses.size());
+        Assert.assertEquals(0, handler.awaits);
+    }
+
+    @Test
+    public void closeWithError() {
+        RecordingHandler handler = new RecordingHandler();
+        Table table = new Table();
+        table.setStreaming(1, handler, null);
+        table.close(new IllegalStateException("failed"));
+        table.close();
+
+        Assert.assertEquals(1, handler.responses.size());
+        JsonObject resp = handler.responses.get(0);
+        Assert.assertEquals("closed", resp.get("stream"));
+        JsonObject error = resp.get("error");
+        Assert.assertEquals("failed", error.get("msg"));
+        Assert.assertNotNull(error.get("detail"));
+    }
+
+    @Test
+    public void buffered() {
+        Table table = new Table();
+        table.setChunkSize(2);
+        for (int i = 0; i < 5; i++) {
+            table.addRow(Row.make(new Value(i)));
+        }
+        Assert.assertEquals(5, table.getRows().size());
+    }
+
+    private static class RecordingHandler extends DataHandler {
+
+        private final List<JsonObject> responses = new ArrayList<>();
+        private int awaits;
+
+        @Override
+        public void writeResponse(JsonObject object) {
+            responses.add(object);
+        }
+
+        @Override
+        public void awaitResponseCapacity(int limit) {
+            awaits++;
+        }
+    }
+}
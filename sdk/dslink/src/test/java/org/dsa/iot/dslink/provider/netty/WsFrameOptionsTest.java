@@ -0,0 +1,86 @@
+package org.dsa.iot.dslink.provider.netty;
+
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests splitting oversized messages into frames.
+ *
+ * @author Samuel Grenier
+ */
+public class WsFrameOptionsTest {
+
+    /**
+     * Ensures messages are left whole without a frame size limit.
+     */
+    @Test
+    public void unlimited() {
+        WsFrameOptions opts = new WsFrameOptions();
+        List<byte[]> parts = opts.encode(message(100), EncodingFormat.JSON);
+        Assert.assertEquals(1, parts.size());
+    }
+
+    /**
+     * Ensures oversized batches are split in order and only the last part
+     * carries the message ID.
+     */
+    @Test
+    public void split() {
+        WsFrameOptions opts = new WsFrameOptions();
+        opts.setMaxFrameSize(256);
+        List<byte[]> parts = opts.encode(message(100), EncodingFormat.JSON);
+        Assert.assertTrue(parts.size() > 1);
+
+        int expected = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            byte[] bytes = parts.get(i);
+            Assert.assertTrue(bytes.length <= 256);
+
+            JsonObject obj = new JsonObject(EncodingFormat.JSON, bytes);
+            boolean last = i == parts.size() - 1;
+            Assert.assertEquals(last, obj.contains("msg"));
+
+            JsonArray responses = obj.get("responses");
+            for (Object resp : responses) {
+                int rid = ((JsonObject) resp).get("rid");
+                Assert.assertEquals(expected++, rid);
+            }
+        }
+        Assert.assertEquals(100, expected);
+    }
+
+    /**
+     * Ensures a single response exceeding the limit is still written.
+     */
+    @Test
+    public void oversizedResponse() {
+        WsFrameOptions opts = new WsFrameOptions();
+        opts.setMaxFrameSize(8);
+        List<byte[]> parts = opts.encode(message(1), EncodingFormat.JSON);
+        Assert.assertEquals(1, parts.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLevel() {
+        new WsFrameOptions().setCompressionLevel(10);
+    }
+
+    private static JsonObject message(int responses) {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < responses; i++) {
+            JsonObject resp = new JsonObject();
+            resp.put("rid", i);
+            resp.put("stream", "closed");
+            array.add(resp);
+        }
+        JsonObject top = new JsonObject();
+        top.put("responses", array);
+        top.put("msg", 5);
+        return top;
+    }
+}
@@ -0,0 +1,116 @@
+package org.dsa.iot.dslink.serializer;
+
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.NodeManager;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+/**
+ * @author Samuel Grenier
+ */
+public class JournalTest {
+
+    private File file;
+
+    @Before
+    public void setup() throws Exception {
+        file = File.createTempFile("journal", ".log");
+        Assert.assertTrue(file.delete());
+    }
+
+    @After
+    @SuppressWarnings({"unused", "UnusedAssignment"})
+    public void cleanup() {
+        boolean ignored = file.delete();
+        ignored = new File(file.getPath() + ".1").delete();
+    }
+
+    @Test
+    public void replay() {
+        NodeManager source = new NodeManager(null, "node");
+        Journal journal = new Journal(file, source, 0);
+        journal.start();
+
+        Node a = source.createRootNode("a").build();
+        Node b = a.createChild("b").build();
+        b.setValueType(ValueType.NUMBER);
+        b.setValue(new Value(1));
+        journal.markAdded(a);
+        journal.flush();
+
+        b.setValue(new Value(2));
+        b.setDisplayName("B");
+        journal.markChanged(b);
+        Node c = source.createRootNode("c").build();
+        journal.markAdded(c);
+        journal.flush();
+
+        source.getSuperRoot().removeChild(c);
+        journal.markRemoved(c);
+        journal.stop();
+
+        NodeManager dest = new NodeManager(null, "node");
+        new Journal(file, dest, 0).replay();
+        Node node = dest.getNode("a/b").getNode();
+        Assert.assertEquals(2, node.getValue().getNumber().intValue());
+        Assert.assertEquals("B", node.getDisplayName());
+        Assert.assertNull(dest.getSuperRoot().getChild("c"));
+    }
+
+    @Test
+    public void rollOver() throws Exception {
+        NodeManager source = new NodeManager(null, "node");
+        Journal journal = new Journal(file, source, 0);
+        journal.start();
+
+        Node a = source.createRootNode("a").build();
+        journal.markAdded(a);
+        journal.rollOver();
+        Assert.assertFalse(file.exists());
+
+        a.setDisplayName("A");
+        journal.markChanged(a);
+        journal.flush();
+        Assert.assertTrue(journal.size() > 0);
+
+        NodeManager dest = new NodeManager(null, "node");
+        new Journal(file, dest, 0).replay();
+        Assert.assertEquals("A", dest.getNode("a").getNode().getDisplayName());
+
+        journal.discardRolled();
+        Assert.assertFalse(new File(file.getPath() + ".1").exists());
+        journal.stop();
+    }
+
+    @Test
+    public void truncatedEntry() throws Exception {
+        NodeManager source = new NodeManager(null, "node");
+        Journal journal = new Journal(file, source, 0);
+        journal.start();
+        Node a = source.createRootNode("a").build();
+        a.setDisplayName("A");
+        journal.markAdded(a);
+        journal.stop();
+
+        try (FileOutputStream fos = new FileOutputStream(file, true)) {
+            fos.write("{\"op\":\"add\",\"pa".getBytes("UTF-8"));
+        }
+
+        journal.start();
+        Node b = source.createRootNode("b").build();
+        journal.markAdded(b);
+        journal.stop();
+
+        NodeManager dest = new NodeManager(null, "node");
+        new Journal(file, dest, 0).replay();
+        Assert.assertEquals("A", dest.getNode("a").getNode().getDisplayName());
+        Assert.assertNotNull(dest.getSuperRoot().getChild("b"));
+    }
+}
@@ -0,0 +1,92 @@
+package org.dsa.iot.dslink.serializer;
+
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.NodeManager;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueType;
+import org.dsa.iot.dslink.util.FileUtils;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.JsonObject;
+
+import java.io.File;
+
+/**
+ * Compares the startup time of deserializing a large node tree from each
+ * supported serialization format. This is not ran as part of the tests.
+ * <p>
+ * Usage: {@code SerializationBenchmark [nodes] [iterations]}
+ *
+ * @author Samuel Grenier
+ */
+public class SerializationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        NodeManager source = createTree(nodes);
+        for (EncodingFormat format : EncodingFormat.values()) {
+            File file = File.createTempFile("bench", ".nodes");
+            try {
+                SerializationManager sm;
+                sm = new SerializationManager(file, source, format);
+                long start = System.nanoTime();
+                sm.serialize();
+                long write = System.nanoTime() - start;
+
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < iterations; i++) {
+                    NodeManager dest = new NodeManager(null, "node");
+                    start = System.nanoTime();
+                    new SerializationManager(file, dest).deserialize();
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                print(format.toJson() + " (streaming)", file, write, best);
+
+                if (format == EncodingFormat.JSON) {
+                    best = Long.MAX_VALUE;
+                    for (int i = 0; i < iterations; i++) {
+                        NodeManager dest = new NodeManager(null, "node");
+                        start = System.nanoTime();
+                        byte[] bytes = FileUtils.readAllBytes(file);
+                        JsonObject obj = new JsonObject(new String(bytes, "UTF-8"));
+                        new Deserializer(dest).deserialize(obj);
+                        best = Math.min(best, System.nanoTime() - start);
+                    }
+                    print("json (object tree)", file, write, best);
+                }
+            } finally {
+                cleanup(file);
+            }
+        }
+    }
+
+    private static NodeManager createTree(int count) {
+        NodeManager manager = new NodeManager(null, "node");
+        int perRoot = Math.max(1, count / 100);
+        Node root = null;
+        for (int i = 0; i < count; i++) {
+            if (i % perRoot == 0) {
+                root = manager.createRootNode("root" + (i / perRoot)).build();
+            }
+            Node node = root.createChild("node" + i).build();
+            node.setDisplayName("Node " + i);
+            node.setValueType(ValueType.NUMBER);
+            node.setValue(new Value(i * 1.5));
+        }
+        return manager;
+    }
+
+    private static void print(String name, File file,
+                              long write, long read) {
+        System.out.printf("%-20s size=%,d bytes write=%d ms load=%d ms%n",
+                name, file.length(), write / 1000000, read / 1000000);
+    }
+
+    @SuppressWarnings({"unused", "UnusedAssignment"})
+    private static void cleanup(File file) {
+        boolean ignored = file.delete();
+        ignored = new File(file.getPath() + ".bak").delete();
+        ignored = new File(file.getPath() + ".tmp").delete();
+    }
+}
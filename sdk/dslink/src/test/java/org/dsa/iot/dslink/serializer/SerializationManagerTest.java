@@ -0,0 +1,221 @@
+package org.dsa.iot.dslink.serializer;
+
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.NodeManager;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueType;
+import org.dsa.iot.dslink.util.FileUtils;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Tests the serialization manager.
+ *
+ * @author Samuel Grenier
+ */
+public class SerializationManagerTest {
+
+    /**
+     * Ensures serialized data can be read back into a new manager.
+     */
+    @Test
+    public void roundTrip() throws Exception {
+        File file = File.createTempFile("nodes", ".json");
+        try {
+            NodeManager manager = new NodeManager(null, "node");
+            Node a = manager.createRootNode("A").build();
+            a.setDisplayName("Node A");
+            a.setValueType(ValueType.NUMBER);
+            a.setValue(new Value(5));
+            a.createChild("B").build().setHidden(true);
+
+            SerializationManager sm = new SerializationManager(file, manager);
+            sm.serialize();
+
+            NodeManager copy = new NodeManager(null, "node");
+            new SerializationManager(file, copy).deserialize();
+            Node node = copy.getNode("/A").getNode();
+            Assert.assertEquals("Node A", node.getDisplayName());
+            Assert.assertEquals(5, node.getValue().getNumber().intValue());
+            Assert.assertTrue(node.getChild("B").isHidden());
+        } finally {
+            cleanup(file);
+        }
+    }
+
+    /**
+     * Ensures data serialized as MessagePack can be read back into a new
+     * manager.
+     */
+    @Test
+    public void messagePackRoundTrip() throws Exception {
+        File file = File.createTempFile("nodes", ".msgpack");
+        try {
+            NodeManager manager = new NodeManager(null, "node");
+            populate(manager);
+
+            EncodingFormat format = EncodingFormat.MESSAGE_PACK;
+            new SerializationManager(file, manager, format).serialize();
+            Assert.assertTrue(FileUtils.readAllBytes(file)[0] != '{');
+
+            NodeManager copy = new NodeManager(null, "node");
+            new SerializationManager(file, copy, format).deserialize();
+            assertPopulated(copy);
+        } finally {
+            cleanup(file);
+        }
+    }
+
+    /**
+     * Ensures the format of existing data is detected regardless of the
+     * format the manager writes in.
+     */
+    @Test
+    public void detectFormat() throws Exception {
+        File file = File.createTempFile("nodes", ".dat");
+        try {
+            NodeManager manager = new NodeManager(null, "node");
+            populate(manager);
+            EncodingFormat format = EncodingFormat.MESSAGE_PACK;
+            new SerializationManager(file, manager, format).serialize();
+
+            NodeManager copy = new NodeManager(null, "node");
+            new SerializationManager(file, copy).deserialize();
+            assertPopulated(copy);
+
+            new SerializationManager(file, manager).serialize();
+            Assert.assertEquals('{', (char) FileUtils.readAllBytes(file)[0]);
+
+            copy = new NodeManager(null, "node");
+            new SerializationManager(file, copy, format).deserialize();
+            assertPopulated(copy);
+        } finally {
+            cleanup(file);
+        }
+    }
+
+    /**
+     * Ensures nodes read from a corrupt file are discarded before the
+     * backup is read.
+     */
+    @Test
+    public void corruptFallback() throws Exception {
+        File file = File.createTempFile("nodes", ".json");
+        try {
+            NodeManager manager = new NodeManager(null, "node");
+            populate(manager);
+            SerializationManager sm = new SerializationManager(file, manager);
+            sm.serialize();
+            sm.serialize();
+
+            String corrupt = "{\"Partial\":{\"$is\":\"node\"},\"Broken\":";
+            FileUtils.write(file, corrupt.getBytes("UTF-8"));
+
+            NodeManager copy = new NodeManager(null, "node");
+            new SerializationManager(file, copy).deserialize();
+            Assert.assertNull(copy.getSuperRoot().getChild("Partial"));
+            assertPopulated(copy);
+        } finally {
+            cleanup(file);
+        }
+    }
+
+    /**
+     * Ensures the backup retains the previous data once the file is
+     * replaced.
+     */
+    @Test
+    public void backup() throws IOException {
+        File file = File.createTempFile("nodes", ".json");
+        File backup = new File(file.getPath() + ".bak");
+        try {
+            NodeManager manager = new NodeManager(null, "node");
+            manager.createRootNode("A").build();
+            SerializationManager sm = new SerializationManager(file, manager);
+            sm.serialize();
+
+            manager.createRootNode("B").build();
+            sm.markChanged();
+            sm.serialize();
+            JsonObject json = read(file);
+            Assert.assertTrue(json.contains("B"));
+            json = read(backup);
+            Assert.assertTrue(json.contains("A"));
+            Assert.assertFalse(json.contains("B"));
+        } finally {
+            cleanup(file);
+        }
+    }
+
+    /**
+     * Ensures only root nodes that were marked as changed are encoded
+     * again and removed nodes are dropped from the output.
+     */
+    @Test
+    public void incremental() throws IOException {
+        File file = File.createTempFile("nodes", ".json");
+        try {
+            NodeManager manager = new NodeManager(null, "node");
+            Node a = manager.createRootNode("A").build();
+            Node b = manager.createRootNode("B").build();
+            b.createChild("C").build();
+
+            SerializationManager sm = new SerializationManager(file, manager);
+            sm.serialize();
+            Assert.assertTrue(new File(file.getPath() + ".bak").exists());
+
+            // Unmarked changes are not picked up since the subtree is cached
+            a.setDisplayName("Stale");
+            sm.serialize();
+            JsonObject json = read(file);
+            Assert.assertNull(((JsonObject) json.get("A")).get("$name"));
+
+            Node c = b.getChild("C");
+            c.setDisplayName("Fresh");
+            sm.markChanged(c);
+            sm.serialize();
+            json = read(file);
+            JsonObject obj = json.get("B");
+            Assert.assertEquals("Fresh", ((JsonObject) obj.get("C")).get("$name"));
+
+            manager.getSuperRoot().removeChild("A");
+            sm.serialize();
+            json = read(file);
+            Assert.assertFalse(json.contains("A"));
+            Assert.assertTrue(json.contains("B"));
+        } finally {
+            cleanup(file);
+        }
+    }
+
+    private static void populate(NodeManager manager) {
+        Node a = manager.createRootNode("A").build();
+        a.setDisplayName("Node A");
+        a.setValueType(ValueType.NUMBER);
+        a.setValue(new Value(5));
+        a.createChild("B").build().setHidden(true);
+    }
+
+    private static void assertPopulated(NodeManager manager) {
+        Node node = manager.getNode("/A").getNode();
+        Assert.assertEquals("Node A", node.getDisplayName());
+        Assert.assertEquals(5, node.getValue().getNumber().intValue());
+        Assert.assertTrue(node.getChild("B").isHidden());
+    }
+
+    private static JsonObject read(File file) throws IOException {
+        return new JsonObject(new String(FileUtils.readAllBytes(file), "UTF-8"));
+    }
+
+    @SuppressWarnings({"unused", "UnusedAssignment"})
+    private static void cleanup(File file) {
+        boolean ignored = file.delete();
+        ignored = new File(file.getPath() + ".bak").delete();
+        ignored = new File(file.getPath() + ".tmp").delete();
+    }
+}
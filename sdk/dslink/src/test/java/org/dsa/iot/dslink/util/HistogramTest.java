@@ -0,0 +1,60 @@
+package org.dsa.iot.dslink.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the histogram buckets and percentiles.
+ *
+ * @author Samuel Grenier
+ */
+public class HistogramTest {
+
+    /**
+     * Ensures every bucket maps back to the value it starts at.
+     */
+    @Test
+    public void buckets() {
+        Assert.assertEquals(0, Histogram.indexOf(0));
+        Assert.assertEquals(7, Histogram.indexOf(7));
+        Assert.assertEquals(8, Histogram.indexOf(8));
+        Assert.assertEquals(Histogram.indexOf(16), Histogram.indexOf(17));
+        for (int i = 0; i < Histogram.indexOf(Long.MAX_VALUE); i++) {
+            long value = Histogram.valueOf(i);
+            Assert.assertEquals(i, Histogram.indexOf(value));
+            Assert.assertTrue(value < Histogram.valueOf(i + 1));
+        }
+    }
+
+    /**
+     * Ensures percentiles are within the precision of the buckets.
+     */
+    @Test
+    public void percentiles() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.getPercentile(99));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500.5, histogram.getMean(), 0.001);
+        assertNear(500, histogram.getPercentile(50));
+        assertNear(990, histogram.getPercentile(99));
+        Assert.assertEquals(1, histogram.getPercentile(0));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPercentile() {
+        new Histogram().getPercentile(101);
+    }
+
+    private static void assertNear(long expected, long actual) {
+        Assert.assertTrue("expected ~" + expected + " but was " + actual,
+                actual <= expected && actual >= expected * 7 / 8);
+    }
+}
@@ -0,0 +1,54 @@
+package org.dsa.iot.dslink.util;
+
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests stamping the traces of value updates.
+ *
+ * @author Samuel Grenier
+ */
+public class LatencyTraceTest {
+
+    /**
+     * Ensures updates without a trace are left untouched.
+     */
+    @Test
+    public void untraced() {
+        JsonArray update = new JsonArray();
+        update.add(1);
+        update.add(10);
+        update.add("2016-01-01T00:00:00.000-00:00");
+        Assert.assertNull(LatencyTrace.stamp(update));
+        LatencyTrace.record(update);
+        Assert.assertEquals(3, update.size());
+        Assert.assertNull(LatencyTrace.stamp(null));
+    }
+
+    /**
+     * Ensures every hop appends its own timestamp to the trace.
+     */
+    @Test
+    public void stamped() {
+        JsonArray trace = new JsonArray();
+        trace.add(LatencyTrace.now());
+
+        JsonArray update = new JsonArray();
+        update.add(1);
+        update.add(10);
+        update.add("2016-01-01T00:00:00.000-00:00");
+        update.add(trace);
+
+        Assert.assertSame(trace, LatencyTrace.stamp(update));
+        LatencyTrace.record(update);
+        Assert.assertEquals(3, trace.size());
+
+        long prev = 0;
+        for (Object stamp : trace) {
+            long time = ((Number) stamp).longValue();
+            Assert.assertTrue(time >= prev);
+            prev = time;
+        }
+    }
+}
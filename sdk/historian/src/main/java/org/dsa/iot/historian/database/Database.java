@@ -5,11 +5,14 @@ import org.dsa.iot.dslink.node.value.Value;
 import org.dsa.iot.dslink.util.Objects;
 import org.dsa.iot.dslink.util.handler.CompleteHandler;
 import org.dsa.iot.dslink.util.handler.Handler;
+import org.dsa.iot.historian.stats.HistoryCache;
 import org.dsa.iot.historian.utils.QueryData;
 import org.dsa.iot.historian.utils.TimeParser;
+import org.dsa.iot.historian.utils.WriteData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -20,6 +23,7 @@ public abstract class Database {
 
     private static final ScheduledThreadPoolExecutor STPE;
 
+    private final HistoryCache cache = new HistoryCache();
     private final DatabaseProvider provider;
     private final Logger logger;
 
@@ -39,6 +43,17 @@ public abstract class Database {
         return provider;
     }
 
+    /**
+     * Values written through {@link WriteBuffer} invalidate the cache
+     * automatically. Values written into the database by other means must
+     * invalidate it manually.
+     *
+     * @return Cache of rolled up history.
+     */
+    public HistoryCache getHistoryCache() {
+        return cache;
+    }
+
     /**
      * Performs a connection to the database supporting reconnecting if a
      * connection gets dropped.
@@ -95,6 +110,20 @@ public abstract class Database {
      */
     public abstract void write(String path, Value value, long ts);
 
+    /**
+     * Writes a batch of values into the database. The default implementation
+     * writes each value individually. Databases that support multi-row
+     * inserts or bulk APIs should override this.
+     *
+     * @param batch Values to write, in the order they were received.
+     * @see #write(String, Value, long)
+     */
+    public void writeBatch(List<WriteData> batch) {
+        for (WriteData data : batch) {
+            write(data.getPath(), data.getValue(), data.getTimestamp());
+        }
+    }
+
     /**
      * Times must be in UTC. At the end of the query, the {@code handler} must
      * receive a {@code null} event in order to close the table stream.
@@ -109,6 +138,29 @@ public abstract class Database {
                                long to,
                                CompleteHandler<QueryData> handler);
 
+    /**
+     * Opens a cursor over the points of a path. The default implementation
+     * performs {@link #query} on a separate thread and buffers a limited
+     * amount of points, blocking the query until the cursor is consumed.
+     * Databases that can natively page through their results should
+     * override this.
+     *
+     * @param path Path to query.
+     * @param from Beginning search time.
+     * @param to End search time.
+     * @return Cursor over the points of the path.
+     */
+    public QueryCursor openCursor(final String path,
+                                  final long from,
+                                  final long to) {
+        return new HandlerCursor(path, HandlerCursor.DEFAULT_CAPACITY) {
+            @Override
+            protected void query(CompleteHandler<QueryData> handler) {
+                Database.this.query(path, from, to, handler);
+            }
+        };
+    }
+
     /**
      * @param path Path to query.
      * @return The first value stored in the database.
@@ -18,15 +18,85 @@ import java.util.Map;
 public abstract class DatabaseProvider {
 
     private SubscriptionPool pool;
+    private Integer qos;
+    private long minInterval;
+    private boolean preserveTimestamps;
 
     public void setPool(SubscriptionPool pool) {
         this.pool = pool;
+        if (pool != null) {
+            pool.setQos(qos);
+            pool.setMinInterval(minInterval);
+            pool.setPreserveTimestamps(preserveTimestamps);
+        }
     }
 
     public SubscriptionPool getPool() {
         return pool;
     }
 
+    /**
+     * Sets the QoS the watched paths are subscribed with. Paths that are
+     * already subscribed keep their QoS until they are subscribed again.
+     *
+     * @param qos QoS level or {@code null} for the default of the responder.
+     * @see SubscriptionPool#setQos(Integer)
+     */
+    public void setSubscriptionQos(Integer qos) {
+        if (qos != null && (qos < 0 || qos > 3)) {
+            throw new IllegalArgumentException("Invalid QoS setting");
+        }
+        this.qos = qos;
+        SubscriptionPool pool = this.pool;
+        if (pool != null) {
+            pool.setQos(qos);
+        }
+    }
+
+    public Integer getSubscriptionQos() {
+        return qos;
+    }
+
+    /**
+     * Sets the minimum interval between the recorded updates of a watched
+     * path. Paths that are already subscribed keep their interval until
+     * they are subscribed again.
+     *
+     * @param minInterval Minimum interval in milliseconds, 0 to disable.
+     * @see SubscriptionPool#setMinInterval(long)
+     */
+    public void setMinInterval(long minInterval) {
+        if (minInterval < 0) {
+            throw new IllegalArgumentException("minInterval < 0");
+        }
+        this.minInterval = minInterval;
+        SubscriptionPool pool = this.pool;
+        if (pool != null) {
+            pool.setMinInterval(minInterval);
+        }
+    }
+
+    public long getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * @param preserve Whether to record the timestamps of the source
+     *                 rather than the time the updates were received.
+     * @see SubscriptionPool#setPreserveTimestamps(boolean)
+     */
+    public void setPreserveTimestamps(boolean preserve) {
+        this.preserveTimestamps = preserve;
+        SubscriptionPool pool = this.pool;
+        if (pool != null) {
+            pool.setPreserveTimestamps(preserve);
+        }
+    }
+
+    public boolean isPreserveTimestamps() {
+        return preserveTimestamps;
+    }
+
     /**
      * The action handler must set the database settings onto the node
      * configurations.
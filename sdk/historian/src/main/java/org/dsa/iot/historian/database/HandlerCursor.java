@@ -0,0 +1,140 @@
+package org.dsa.iot.historian.database;
+
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.handler.CompleteHandler;
+import org.dsa.iot.historian.utils.QueryData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts a push based query, such as {@link Database#query}, into a
+ * cursor. The query is performed on a separate thread that blocks while
+ * the queue is full, applying backpressure to queries that deliver their
+ * results synchronously. These threads come from a bounded pool of their
+ * own so blocked queries never occupy the shared daemon pool.
+ *
+ * @author Samuel Grenier
+ */
+public abstract class HandlerCursor extends QueryCursor implements CompleteHandler<QueryData> {
+
+    /**
+     * Default amount of points buffered ahead of the consumer.
+     */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private static final Logger LOGGER;
+    private static final ScheduledThreadPoolExecutor PRODUCERS;
+    private static final QueryData END = new QueryData();
+
+    private final BlockingQueue<QueryData> queue;
+    private final String path;
+
+    private volatile boolean closed;
+    private boolean started;
+    private boolean done;
+
+    /**
+     * @param path Path that is queried.
+     * @param capacity Maximum amount of points buffered ahead of the
+     *                 consumer.
+     */
+    protected HandlerCursor(String path, int capacity) {
+        if (path == null) {
+            throw new NullPointerException("path");
+        } else if (capacity < 1) {
+            throw new IllegalArgumentException("capacity < 1");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.path = path;
+    }
+
+    /**
+     * Performs the query. Called on a separate thread once the first
+     * point is requested.
+     *
+     * @param handler Handler the points and completion of the query must
+     *                be delivered to.
+     */
+    protected abstract void query(CompleteHandler<QueryData> handler);
+
+    @Override
+    public QueryData next() {
+        if (done || closed) {
+            return null;
+        } else if (!started) {
+            started = true;
+            start();
+        }
+        try {
+            QueryData data;
+            do {
+                data = queue.poll(1, TimeUnit.SECONDS);
+            } while (data == null && !closed);
+            if (data == null || data == END) {
+                done = true;
+                return null;
+            }
+            return data;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            done = true;
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    @Override
+    public void handle(QueryData event) {
+        if (event != null) {
+            offer(event);
+        }
+    }
+
+    @Override
+    public void complete() {
+        offer(END);
+    }
+
+    private void start() {
+        PRODUCERS.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    query(HandlerCursor.this);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Failed to query {}", path, e);
+                    complete();
+                }
+            }
+        });
+    }
+
+    private void offer(QueryData data) {
+        try {
+            while (!closed) {
+                if (queue.offer(data, 1, TimeUnit.SECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static {
+        LOGGER = LoggerFactory.getLogger(HandlerCursor.class);
+
+        String s = "dslink.historian.cursorThreads";
+        PRODUCERS = Objects.createDaemonThreadPool(Integer.getInteger(s, 8));
+    }
+}
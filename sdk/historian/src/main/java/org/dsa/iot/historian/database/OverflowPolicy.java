@@ -0,0 +1,43 @@
+package org.dsa.iot.historian.database;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Determines how a full write buffer handles new values.
+ *
+ * @author Samuel Grenier
+ */
+public enum OverflowPolicy {
+
+    SPILL("Spill To Disk"),
+    DROP_OLDEST("Drop Oldest"),
+    BLOCK("Block");
+
+    private final String name;
+
+    OverflowPolicy(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static OverflowPolicy toEnum(String s) {
+        for (OverflowPolicy p : OverflowPolicy.values()) {
+            if (p.getName().equals(s)) {
+                return p;
+            }
+        }
+        throw new IllegalArgumentException("Invalid overflow policy: " + s);
+    }
+
+    public static Set<String> buildEnums() {
+        Set<String> enums = new LinkedHashSet<>();
+        for (OverflowPolicy p : OverflowPolicy.values()) {
+            enums.add(p.getName());
+        }
+        return enums;
+    }
+}
@@ -0,0 +1,32 @@
+package org.dsa.iot.historian.database;
+
+import org.dsa.iot.historian.utils.QueryData;
+
+/**
+ * Pull based iteration over the results of a query. The consumer drives
+ * the query by requesting the next point only once it is able to handle
+ * it, allowing results to be produced at the rate they can be sent.
+ * <p>
+ * A cursor must always be closed, even if it was fully consumed, in order
+ * to release any resources held by the database.
+ *
+ * @author Samuel Grenier
+ * @see Database#openCursor(String, long, long)
+ */
+public abstract class QueryCursor implements AutoCloseable {
+
+    /**
+     * Retrieves the next point of the query. This may block until the
+     * point is available.
+     *
+     * @return Next point or {@code null} if the query is complete or the
+     *         cursor was closed.
+     */
+    public abstract QueryData next();
+
+    /**
+     * Cancels the query. Any thread blocked in {@link #next()} is released.
+     */
+    @Override
+    public abstract void close();
+}
@@ -1,99 +1,246 @@
 package org.dsa.iot.historian.database;
 
 import org.dsa.iot.dslink.link.Requester;
+import org.dsa.iot.dslink.methods.requests.SubscribeRequest;
+import org.dsa.iot.dslink.node.NodeManager;
 import org.dsa.iot.dslink.node.value.SubscriptionValue;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueUtils;
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.SubData;
 import org.dsa.iot.dslink.util.handler.Handler;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Manages subscriptions in the historian.
+ * Manages subscriptions in the historian. Subscriptions and
+ * unsubscriptions are collected for a short delay and sent in batches,
+ * so starting a watch group with many paths only sends a few requests.
+ * Updates of all the paths are dispatched without locking.
  *
  * @author Samuel Grenier
  */
 public class SubscriptionPool {
 
-    private final Map<String, SubHandler> subscriptions = new HashMap<>();
+    private static final long BATCH_DELAY = 100;
+
+    private final ConcurrentMap<String, SubHandler> subscriptions = new ConcurrentHashMap<>();
+    private final Set<String> pendingSubs = new LinkedHashSet<>();
+    private final Set<String> pendingUnsubs = new LinkedHashSet<>();
+    private final Object flushLock = new Object();
     private final Requester requester;
+    private final Handler<SubscriptionValue> dispatcher;
+
+    private ScheduledFuture<?> flushFut;
+    private volatile int batchSize = 1000;
+    private volatile Integer qos;
+    private volatile long minInterval;
+    private volatile boolean preserveTimestamps;
 
     public SubscriptionPool(Requester requester) {
         this.requester = requester;
+        this.dispatcher = new Handler<SubscriptionValue>() {
+            @Override
+            public void handle(SubscriptionValue event) {
+                SubHandler handler = subscriptions.get(event.getPath());
+                if (handler != null) {
+                    handler.handle(event);
+                }
+            }
+        };
     }
 
-    public synchronized void subscribe(String path, Watch watch) {
-        SubHandler handler = subscriptions.get(path);
-        if (handler == null) {
-            handler = new SubHandler();
-            subscriptions.put(path, handler);
-            handler.addWatch(watch);
-            requester.subscribe(path, handler);
-        } else {
+    /**
+     * @param batchSize Maximum amount of paths in a single request.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize < 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the QoS requested for new subscriptions. Paths that are already
+     * subscribed keep the QoS they were subscribed with.
+     *
+     * @param qos QoS level or {@code null} for the default of the responder.
+     */
+    public void setQos(Integer qos) {
+        if (qos != null && (qos < 0 || qos > 3)) {
+            throw new IllegalArgumentException("Invalid QoS setting");
+        }
+        this.qos = qos;
+    }
+
+    /**
+     * Sets the minimum interval between the updates of new subscriptions.
+     * Updates received sooner are coalesced into the latest value, which
+     * is delivered once the interval has elapsed.
+     *
+     * @param minInterval Minimum interval in milliseconds, 0 to disable.
+     */
+    public void setMinInterval(long minInterval) {
+        if (minInterval < 0) {
+            throw new IllegalArgumentException("minInterval < 0");
+        }
+        this.minInterval = minInterval;
+    }
+
+    /**
+     * By default the time of an update is replaced with the time it was
+     * received.
+     *
+     * @param preserve Whether to keep the timestamps of the source.
+     */
+    public void setPreserveTimestamps(boolean preserve) {
+        this.preserveTimestamps = preserve;
+    }
+
+    public void subscribe(String path, Watch watch) {
+        path = NodeManager.normalizePath(path, true);
+        SubHandler handler;
+        synchronized (this) {
+            handler = subscriptions.get(path);
+            if (handler == null) {
+                handler = new SubHandler();
+                subscriptions.put(path, handler);
+                // The path is still subscribed if the unsubscription
+                // was not sent yet
+                if (!pendingUnsubs.remove(path)) {
+                    pendingSubs.add(path);
+                    scheduleFlush();
+                }
+            }
             handler.addWatch(watch);
         }
     }
 
-    public synchronized void unsubscribe(String path, Watch watch) {
-        SubHandler handler = subscriptions.get(path);
-        if (handler != null) {
-            handler.removeWatch(watch);
-            if (handler.isEmpty()) {
-                requester.unsubscribe(path, null);
-                subscriptions.remove(path);
+    public void unsubscribe(String path, Watch watch) {
+        path = NodeManager.normalizePath(path, true);
+        synchronized (this) {
+            SubHandler handler = subscriptions.get(path);
+            if (handler != null) {
+                handler.removeWatch(watch);
+                if (handler.isEmpty()) {
+                    subscriptions.remove(path);
+                    if (!pendingSubs.remove(path)) {
+                        pendingUnsubs.add(path);
+                        scheduleFlush();
+                    }
+                }
             }
         }
     }
 
-    private static class SubHandler implements Handler<SubscriptionValue> {
+    private void scheduleFlush() {
+        int pending = pendingSubs.size() + pendingUnsubs.size();
+        if (pending >= batchSize) {
+            if (flushFut != null) {
+                flushFut.cancel(false);
+            }
+            flushFut = null;
+            Objects.getDaemonThreadPool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        } else if (flushFut == null) {
+            flushFut = Objects.getDaemonThreadPool().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, BATCH_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
 
-        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-        private final List<Watch> watches = new ArrayList<>();
+    /**
+     * Sends the pending subscriptions and unsubscriptions.
+     */
+    private void flush() {
+        synchronized (flushLock) {
+            List<String> subs;
+            List<String> unsubs;
+            synchronized (this) {
+                flushFut = null;
+                subs = new ArrayList<>(pendingSubs);
+                unsubs = new ArrayList<>(pendingUnsubs);
+                pendingSubs.clear();
+                pendingUnsubs.clear();
+            }
 
-        public boolean isEmpty() {
-            lock.readLock().lock();
-            try {
-                return watches.isEmpty();
-            } finally {
-                lock.readLock().unlock();
+            int batchSize = this.batchSize;
+            for (int i = 0; i < unsubs.size(); i += batchSize) {
+                int end = Math.min(i + batchSize, unsubs.size());
+                Set<String> paths = new HashSet<>(unsubs.subList(i, end));
+                requester.unsubscribe(paths, dispatcher, null);
+            }
+
+            Integer qos = this.qos;
+            long minInterval = this.minInterval;
+            for (int i = 0; i < subs.size(); i += batchSize) {
+                int end = Math.min(i + batchSize, subs.size());
+                Set<SubData> paths = new LinkedHashSet<>();
+                for (String path : subs.subList(i, end)) {
+                    paths.add(new SubData(path, qos));
+                }
+                SubscribeRequest req = new SubscribeRequest(paths);
+                requester.subscribe(req, dispatcher, minInterval);
             }
         }
+    }
+
+    private class SubHandler implements Handler<SubscriptionValue> {
+
+        private final List<Watch> watches = new CopyOnWriteArrayList<>();
+
+        public boolean isEmpty() {
+            return watches.isEmpty();
+        }
 
         public void addWatch(Watch watch) {
-            lock.writeLock().lock();
-            try {
-                if (!watches.contains(watch)) {
-                    watches.add(watch);
-                }
-            } finally {
-                lock.writeLock().unlock();
+            if (!watches.contains(watch)) {
+                watches.add(watch);
             }
         }
 
         public void removeWatch(Watch watch) {
-            lock.writeLock().lock();
-            try {
-                watches.remove(watch);
-            } finally {
-                lock.writeLock().unlock();
-            }
+            watches.remove(watch);
         }
 
         @Override
         public void handle(SubscriptionValue event) {
-            lock.readLock().lock();
-            try {
-                if (event.getValue() != null) {
-                    event.getValue().setTime(System.currentTimeMillis());
-                }
-                for (Watch w : watches) {
-                    w.onData(event);
-                }
-            } finally {
-                lock.readLock().unlock();
+            if (!preserveTimestamps) {
+                event = restamp(event);
+            }
+            for (Watch w : watches) {
+                w.onData(event);
             }
         }
     }
+
+    /**
+     * The value of an update is shared with every other handler of the
+     * requester subscribed to the path, so it is copied rather than
+     * modified.
+     *
+     * @param event Received update.
+     * @return Update with the value stamped with the current time.
+     */
+    private static SubscriptionValue restamp(SubscriptionValue event) {
+        Value value = ValueUtils.toValue(ValueUtils.toObject(event.getValue()));
+        if (value == null) {
+            return event;
+        }
+        return new SubscriptionValue(event.getPath(), value,
+                event.getCount(), event.getSum(),
+                event.getMin(), event.getMax());
+    }
 }
@@ -23,9 +23,8 @@ import org.dsa.iot.historian.utils.TimeParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author Samuel Grenier
@@ -34,8 +33,7 @@ public class Watch {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Watch.class);
 
-    private final ReentrantReadWriteLock rtLock = new ReentrantReadWriteLock();
-    private final List<Handler<QueryData>> rtHandlers = new ArrayList<>();
+    private final List<Handler<QueryData>> rtHandlers = new CopyOnWriteArrayList<>();
     private final WatchGroup group;
     private final Node node;
 
@@ -235,31 +233,16 @@ public class Watch {
         if (handler == null) {
             return;
         }
-        rtLock.writeLock().lock();
-        try {
-            rtHandlers.add(handler);
-        } finally {
-            rtLock.writeLock().unlock();
-        }
+        rtHandlers.add(handler);
     }
 
     public void removeHandler(Handler<QueryData> handler) {
-        rtLock.writeLock().lock();
-        try {
-            rtHandlers.remove(handler);
-        } finally {
-            rtLock.writeLock().unlock();
-        }
+        rtHandlers.remove(handler);
     }
 
     public void notifyHandlers(QueryData data) {
-        rtLock.readLock().lock();
-        try {
-            for (Handler<QueryData> h : rtHandlers) {
-                h.handle(data);
-            }
-        } finally {
-            rtLock.readLock().unlock();
+        for (Handler<QueryData> h : rtHandlers) {
+            h.handle(data);
         }
     }
 }
@@ -15,19 +15,15 @@ import org.dsa.iot.dslink.node.value.SubscriptionValue;
 import org.dsa.iot.dslink.node.value.Value;
 import org.dsa.iot.dslink.node.value.ValueType;
 import org.dsa.iot.dslink.util.NodeUtils;
-import org.dsa.iot.dslink.util.Objects;
 import org.dsa.iot.dslink.util.StringUtils;
 import org.dsa.iot.dslink.util.handler.Handler;
 import org.dsa.iot.dslink.util.json.JsonArray;
 import org.dsa.iot.dslink.util.json.JsonObject;
-import org.dsa.iot.historian.utils.QueryData;
-import org.dsa.iot.historian.utils.TimeParser;
+import org.dsa.iot.historian.stats.GetGroupHistory;
+import org.dsa.iot.historian.stats.rollup.RollupTiers;
 import org.dsa.iot.historian.utils.WatchUpdate;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -39,9 +35,7 @@ public class WatchGroup {
     private final Database db;
     private final Node node;
 
-    private final Queue<WatchUpdate> queue = new ConcurrentLinkedDeque<>();
-    private final Object writeLoopLock = new Object();
-    private ScheduledFuture<?> bufferFut;
+    private final WriteBuffer buffer;
 
     private LoggingType loggingType;
     private long interval;
@@ -55,12 +49,18 @@ public class WatchGroup {
         this.permission = perm;
         this.node = node;
         this.db = db;
+        this.buffer = new WriteBuffer(db);
     }
 
     public void close() {
-        if (bufferFut != null) {
-            bufferFut.cancel(true);
-        }
+        buffer.close();
+    }
+
+    /**
+     * @return The buffer values are written through.
+     */
+    public WriteBuffer getBuffer() {
+        return buffer;
     }
 
     /**
@@ -73,6 +73,22 @@ public class WatchGroup {
         return db;
     }
 
+    /**
+     * @return The watches of the group.
+     */
+    public List<Watch> getWatches() {
+        List<Watch> watches = new ArrayList<>();
+        for (Node n : node.getChildren().values()) {
+            if (isWatch(n)) {
+                Watch w = n.getMetaData();
+                if (w != null) {
+                    watches.add(w);
+                }
+            }
+        }
+        return watches;
+    }
+
     /**
      * Writes to the database based on the watch group settings.
      *
@@ -121,15 +137,7 @@ public class WatchGroup {
         }
 
         if (doWrite) {
-            WatchUpdate update = new WatchUpdate(watch, sv);
-            if (bufferFut != null) {
-                queue.add(update);
-                return;
-            } else if (!queue.isEmpty()) {
-                handleQueue();
-            }
-            dbWrite(update);
-            watch.handleLastWritten(sv.getValue());
+            buffer.add(new WatchUpdate(watch, sv));
         }
     }
 
@@ -161,7 +169,7 @@ public class WatchGroup {
     public void subscribe() {
         Map<String, Node> children = node.getChildren();
         for (Node n : children.values()) {
-            if (n.getAction() == null) {
+            if (isWatch(n)) {
                 initWatch(n.getName().replaceAll("%2F", "/"));
             }
         }
@@ -174,7 +182,7 @@ public class WatchGroup {
         SubscriptionPool pool = db.getProvider().getPool();
         Map<String, Node> children = node.getChildren();
         for (Node n : children.values()) {
-            if (n.getAction() == null) {
+            if (isWatch(n)) {
                 String path = n.getName().replaceAll("%2F", "/");
                 Watch w = n.getMetaData();
                 pool.unsubscribe(path, w);
@@ -238,6 +246,18 @@ public class WatchGroup {
             b.setRoConfig("lt", new Value(LoggingType.ALL_DATA.getName()));
             // Interval
             b.setRoConfig("i", new Value(5));
+            // Batch size
+            b.setRoConfig("bs", new Value(1000));
+            // Buffer capacity
+            b.setRoConfig("bc", new Value(100000));
+            // Max buffer bytes
+            b.setRoConfig("mbb", new Value(16 * 1024 * 1024));
+            // Overflow policy
+            b.setRoConfig("op", new Value(OverflowPolicy.SPILL.getName()));
+            // Rollup tiers
+            b.setRoConfig("rt", new Value(""));
+            // Rollup tiers maintained since
+            b.setRoConfig("rts", new Value(0));
 
             final Parameter bft;
             {
@@ -277,10 +297,73 @@ public class WatchGroup {
                 i.setDefaultValue(NodeUtils.getRoConfig(b, "i"));
             }
 
+            final Parameter bs;
+            {
+                bs = new Parameter("Batch Size", ValueType.NUMBER);
+                {
+                    String desc = "Batch size controls the maximum amount of ";
+                    desc += "buffered values written into the database at ";
+                    desc += "once.\nThe buffer is flushed early when this ";
+                    desc += "amount of values is buffered.";
+                    bs.setDescription(desc);
+                }
+                bs.setDefaultValue(getConfig(b, "bs"));
+            }
+
+            final Parameter bc;
+            {
+                bc = new Parameter("Buffer Capacity", ValueType.NUMBER);
+                {
+                    String desc = "Buffer capacity controls the maximum ";
+                    desc += "amount of values held in memory before the ";
+                    desc += "overflow policy is applied";
+                    bc.setDescription(desc);
+                }
+                bc.setDefaultValue(getConfig(b, "bc"));
+            }
+
+            final Parameter mbb;
+            {
+                mbb = new Parameter("Max Buffer Bytes", ValueType.NUMBER);
+                {
+                    String desc = "Max buffer bytes controls the estimated ";
+                    desc += "size of the buffered values that triggers ";
+                    desc += "an early flush";
+                    mbb.setDescription(desc);
+                }
+                mbb.setDefaultValue(getConfig(b, "mbb"));
+            }
+
+            final Parameter op;
+            {
+                Set<String> enums = OverflowPolicy.buildEnums();
+                op = new Parameter("Overflow Policy", ValueType.makeEnum(enums));
+                op.setDefaultValue(getConfig(b, "op"));
+                {
+                    String desc = "Overflow policy controls what happens to ";
+                    desc += "new values when the buffer is full";
+                    op.setDescription(desc);
+                }
+            }
+
+            final Parameter rt;
+            {
+                rt = new Parameter("Rollup Tiers", ValueType.STRING);
+                {
+                    String desc = "Rollup tiers are comma separated intervals ";
+                    desc += "such as 1m,1h,1d that values are rolled up into ";
+                    desc += "as they are written.\nHistory requests with a ";
+                    desc += "numeric rollup read from the coarsest tier ";
+                    desc += "that fits the requested interval.";
+                    rt.setDescription(desc);
+                }
+                rt.setDefaultValue(getConfig(b, "rt"));
+            }
+
             EditSettingsHandler handler = new EditSettingsHandler();
             {
                 handler.setBufferFlushTimeParam(bft);
-                setupTimer(bft.getDefault().getNumber().intValue());
+                buffer.setFlushInterval(bft.getDefault().getNumber().intValue());
 
                 handler.setLoggingTypeParam(lt);
                 loggingType = LoggingType.toEnum(lt.getDefault().getString());
@@ -288,10 +371,32 @@ public class WatchGroup {
                 handler.setIntervalParam(i);
                 setInterval(i.getDefault().getNumber().longValue());
 
+                handler.setBatchSizeParam(bs);
+                buffer.setBatchSize(bs.getDefault().getNumber().intValue());
+
+                handler.setBufferCapacityParam(bc);
+                buffer.setCapacity(bc.getDefault().getNumber().intValue());
+
+                handler.setMaxBufferBytesParam(mbb);
+                buffer.setMaxBytes(mbb.getDefault().getNumber().longValue());
+
+                handler.setOverflowPolicyParam(op);
+                String policy = op.getDefault().getString();
+                buffer.setOverflowPolicy(OverflowPolicy.toEnum(policy));
+
+                handler.setRollupTiersParam(rt);
+                long since = getConfig(b, "rts").getNumber().longValue();
+                setRollupTiers(rt.getDefault().getString(), since);
+
                 Action a = new Action(permission, handler);
                 a.addParameter(bft);
                 a.addParameter(lt);
                 a.addParameter(i);
+                a.addParameter(bs);
+                a.addParameter(bc);
+                a.addParameter(mbb);
+                a.addParameter(op);
+                a.addParameter(rt);
                 handler.setAction(a);
 
                 b.setAction(a);
@@ -299,6 +404,7 @@ public class WatchGroup {
 
             b.build();
         }
+        GetGroupHistory.initAction(node, this);
         {
             NodeBuilder b = node.createChild("delete");
             b.setDisplayName("Delete");
@@ -312,52 +418,75 @@ public class WatchGroup {
             }));
             b.build();
         }
+        initMetrics();
     }
 
-    private void setupTimer(int time) {
-        synchronized (writeLoopLock) {
-            if (bufferFut != null) {
-                bufferFut.cancel(false);
-                bufferFut = null;
+    private void initMetrics() {
+        NodeBuilder b = node.createChild("metrics");
+        b.setDisplayName("Metrics");
+        b.setSerializable(false);
+        Node metrics = b.build();
+
+        final Node depth = createMetric(metrics, "queueDepth", "Queue Depth");
+        final Node spilled = createMetric(metrics, "spilled", "Spilled Values");
+        final Node dropped = createMetric(metrics, "dropped", "Dropped Values");
+        final Node latency = createMetric(metrics, "writeLatency", "Write Latency");
+        latency.setConfig("unit", new Value("ms"));
+
+        buffer.setFlushHandler(new Handler<WriteBuffer>() {
+            @Override
+            public void handle(WriteBuffer event) {
+                depth.setValue(new Value(event.getQueueDepth()));
+                spilled.setValue(new Value(event.getSpilledCount()));
+                dropped.setValue(new Value(event.getDroppedCount()));
+                latency.setValue(new Value(event.getLastWriteLatency()));
             }
-
-            if (time <= 0) {
-                return;
-            }
-
-            ScheduledThreadPoolExecutor stpe = Objects.getDaemonThreadPool();
-            bufferFut = stpe.scheduleWithFixedDelay(new Runnable() {
-                @Override
-                public void run() {
-                    handleQueue();
-                }
-            }, time, time, TimeUnit.SECONDS);
-        }
+        });
     }
 
-    private void handleQueue() {
-        int size = queue.size();
+    private static Node createMetric(Node parent, String name, String display) {
+        NodeBuilder b = parent.createChild(name);
+        b.setDisplayName(display);
+        b.setSerializable(false);
+        b.setValueType(ValueType.NUMBER);
+        b.setValue(new Value(0));
+        return b.build();
+    }
 
-        WatchUpdate update = null;
-        for (int i = 0; i < size; ++i) {
-            update = queue.poll();
-            dbWrite(update);
+    /**
+     * Groups persisted before a setting was introduced have no read-only
+     * config for it, in which case the default of the builder is used and
+     * persisted.
+     *
+     * @param b Builder of the edit node with the default configs.
+     * @param name Name of the config.
+     * @return Persisted config or its default.
+     */
+    private static Value getConfig(NodeBuilder b, String name) {
+        Value value = NodeUtils.getRoConfig(b, name);
+        if (value == null) {
+            value = b.getChild().getRoConfig(name);
+            Node n = b.getParent().getChild(b.getChild().getName());
+            if (n != null) {
+                n.setRoConfig(name, value);
+            }
         }
+        return value;
+    }
 
-        if (update != null) {
-            Value value = update.getUpdate().getValue();
-            update.getWatch().handleLastWritten(value);
-        }
+    private static boolean isWatch(Node node) {
+        return node.getAction() == null && node.isSerializable();
     }
 
-    private void dbWrite(WatchUpdate update) {
-        Value value = update.getUpdate().getValue();
-        if (value != null) {
-            long time = TimeParser.parse(value.getTimeStamp());
-            Watch watch = update.getWatch();
-            db.write(watch.getPath(), value, time);
-            watch.notifyHandlers(new QueryData(value, time));
+    private void setRollupTiers(String config, long since) {
+        RollupTiers tiers = null;
+        if (config != null) {
+            tiers = new RollupTiers(config, since);
+            if (tiers.isEmpty()) {
+                tiers = null;
+            }
         }
+        buffer.setRollupTiers(tiers);
     }
 
     private void setInterval(long interval) {
@@ -371,6 +500,11 @@ public class WatchGroup {
         private Parameter bft;
         private Parameter lt;
         private Parameter i;
+        private Parameter bs;
+        private Parameter bc;
+        private Parameter mbb;
+        private Parameter op;
+        private Parameter rt;
 
         public void setAction(Action a) {
             this.action = a;
@@ -388,6 +522,26 @@ public class WatchGroup {
             this.i = i;
         }
 
+        public void setBatchSizeParam(Parameter bs) {
+            this.bs = bs;
+        }
+
+        public void setBufferCapacityParam(Parameter bc) {
+            this.bc = bc;
+        }
+
+        public void setMaxBufferBytesParam(Parameter mbb) {
+            this.mbb = mbb;
+        }
+
+        public void setOverflowPolicyParam(Parameter op) {
+            this.op = op;
+        }
+
+        public void setRollupTiersParam(Parameter rt) {
+            this.rt = rt;
+        }
+
         @Override
         public void handle(ActionResult event) {
             Node node = event.getNode();
@@ -403,9 +557,29 @@ public class WatchGroup {
                 vI.set(0);
             }
 
+            Value vBs = event.getParameter(bs.getName(), bs.getType());
+            if (vBs.getNumber().intValue() < 1) {
+                vBs.set(1);
+            }
+
+            Value vBc = event.getParameter(bc.getName(), bc.getType());
+            if (vBc.getNumber().intValue() < 1) {
+                vBc.set(1);
+            }
+
+            Value vMbb = event.getParameter(mbb.getName(), mbb.getType());
+            if (vMbb.getNumber().longValue() < 1) {
+                vMbb.set(1);
+            }
+
+            Value vOp = event.getParameter(op.getName(), ValueType.STRING);
+            Value vRt = event.getParameter(rt.getName(), new Value(""));
+            // Validate the tiers before any setting is applied
+            new RollupTiers(vRt.getString(), 0);
+
             node.setRoConfig("bft", vBft);
             bft.setDefaultValue(vBft);
-            setupTimer(vBft.getNumber().intValue());
+            buffer.setFlushInterval(vBft.getNumber().intValue());
 
             node.setRoConfig("lt", vLt);
             loggingType = LoggingType.toEnum(vLt.getString());
@@ -415,12 +589,42 @@ public class WatchGroup {
             i.setDefaultValue(vI);
             setInterval(vI.getNumber().longValue());
 
+            node.setRoConfig("bs", vBs);
+            bs.setDefaultValue(vBs);
+            buffer.setBatchSize(vBs.getNumber().intValue());
+
+            node.setRoConfig("bc", vBc);
+            bc.setDefaultValue(vBc);
+            buffer.setCapacity(vBc.getNumber().intValue());
+
+            node.setRoConfig("mbb", vMbb);
+            mbb.setDefaultValue(vMbb);
+            buffer.setMaxBytes(vMbb.getNumber().longValue());
+
+            node.setRoConfig("op", vOp);
+            op.setDefaultValue(vOp);
+            buffer.setOverflowPolicy(OverflowPolicy.toEnum(vOp.getString()));
+
+            if (!vRt.getString().equals(rt.getDefault().getString())) {
+                // Existing values were never rolled up into the new tiers
+                long since = System.currentTimeMillis();
+                node.setRoConfig("rt", vRt);
+                node.setRoConfig("rts", new Value(since));
+                rt.setDefaultValue(vRt);
+                setRollupTiers(vRt.getString(), since);
+            }
+
             lt.setDefaultValue(vLt);
 
             List<Parameter> params = new LinkedList<>();
             params.add(bft);
             params.add(lt);
             params.add(i);
+            params.add(bs);
+            params.add(bc);
+            params.add(mbb);
+            params.add(op);
+            params.add(rt);
             action.setParams(params);
         }
     }
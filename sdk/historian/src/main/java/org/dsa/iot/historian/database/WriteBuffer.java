@@ -0,0 +1,550 @@
+package org.dsa.iot.historian.database;
+
+import org.dsa.iot.dslink.node.value.SubscriptionValue;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueUtils;
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.handler.Handler;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.dsa.iot.historian.stats.HistoryCache;
+import org.dsa.iot.historian.stats.rollup.RollupTiers;
+import org.dsa.iot.historian.utils.QueryData;
+import org.dsa.iot.historian.utils.TimeParser;
+import org.dsa.iot.historian.utils.WatchUpdate;
+import org.dsa.iot.historian.utils.WriteData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind stage between the subscriptions of a watch group and its
+ * database. Values are buffered in memory and written in batches on a
+ * separate thread, preventing a slow database from stalling incoming
+ * subscription updates.
+ * <p>
+ * The buffer is bounded by its capacity. Values that arrive when it is
+ * full are handled according to the {@link OverflowPolicy}. Spilled values
+ * are written after the values in memory, retaining the order they were
+ * received in. A flush is triggered when a batch worth of values is
+ * buffered, the buffered values exceed the byte limit, or the flush
+ * interval elapses.
+ *
+ * @author Samuel Grenier
+ */
+public class WriteBuffer {
+
+    private static final Logger LOGGER;
+
+    private final Deque<WatchUpdate> queue = new ArrayDeque<>();
+    private final Map<String, Watch> spilledWatches = new HashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong totalSpilled = new AtomicLong();
+    private final Database db;
+
+    private int capacity = 100000;
+    private long maxBytes = 16 * 1024 * 1024;
+    private int batchSize = 1000;
+    private OverflowPolicy policy = OverflowPolicy.SPILL;
+    private Handler<WriteBuffer> flushHandler;
+
+    private ScheduledFuture<?> timerFut;
+    private boolean immediate = true;
+    private boolean closed;
+    private long bytes;
+
+    private File spillFile;
+    private Writer spillWriter;
+    private int spilled;
+
+    // Only accessed by the flushing thread
+    private File readFile;
+    private volatile int readRemaining;
+    private volatile long lastLatency;
+    private volatile RollupTiers tiers;
+
+    /**
+     * @param db Database the buffered values are written to.
+     */
+    public WriteBuffer(Database db) {
+        if (db == null) {
+            throw new NullPointerException("db");
+        }
+        this.db = db;
+    }
+
+    /**
+     * @param capacity Maximum amount of values held in memory.
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        notifyAll();
+    }
+
+    /**
+     * @param maxBytes Estimated size of the values in memory that triggers
+     *                 a flush.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    /**
+     * @param batchSize Maximum amount of values written at once, reaching
+     *                  this amount of values in memory triggers a flush.
+     */
+    public synchronized void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @param policy Policy used when the buffer is full.
+     */
+    public synchronized void setOverflowPolicy(OverflowPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException("policy");
+        }
+        this.policy = policy;
+        notifyAll();
+    }
+
+    /**
+     * @param handler Called after every flush, used to update metrics.
+     */
+    public synchronized void setFlushHandler(Handler<WriteBuffer> handler) {
+        this.flushHandler = handler;
+    }
+
+    /**
+     * Sets the interval the buffer is flushed at. Setting the interval to
+     * 0 writes values as soon as possible.
+     *
+     * @param seconds Flush interval in seconds.
+     */
+    public synchronized void setFlushInterval(int seconds) {
+        if (timerFut != null) {
+            timerFut.cancel(false);
+            timerFut = null;
+        }
+        immediate = seconds <= 0;
+        if (immediate || closed) {
+            triggerFlush();
+            return;
+        }
+        timerFut = Objects.getDaemonThreadPool().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                triggerFlush();
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return Amount of values waiting to be written, including spilled
+     *         values.
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size() + spilled + readRemaining;
+    }
+
+    /**
+     * @return Amount of values waiting to be written from disk.
+     */
+    public synchronized int getSpilledCount() {
+        return spilled + readRemaining;
+    }
+
+    /**
+     * @return Total amount of values that were dropped.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return Total amount of values that were spilled to disk.
+     */
+    public long getTotalSpilledCount() {
+        return totalSpilled.get();
+    }
+
+    /**
+     * @return Time in milliseconds the last batch took to write.
+     */
+    public long getLastWriteLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * Sets the rollup tiers maintained as values are written. The buckets
+     * in progress of the previous tiers are written immediately.
+     *
+     * @param tiers Tiers to maintain or {@code null} to disable them.
+     */
+    public void setRollupTiers(RollupTiers tiers) {
+        RollupTiers old = this.tiers;
+        this.tiers = tiers;
+        flushTiers(old);
+    }
+
+    /**
+     * @return Rollup tiers maintained as values are written.
+     */
+    public RollupTiers getRollupTiers() {
+        return tiers;
+    }
+
+    /**
+     * Buffers the update to be written into the database.
+     *
+     * @param update Update to write.
+     */
+    public void add(WatchUpdate update) {
+        if (update.getUpdate().getValue() == null) {
+            return;
+        }
+        boolean flush;
+        synchronized (this) {
+            if (closed) {
+                return;
+            } else if (spilled > 0) {
+                // Newer values must be written after the spilled values
+                spill(update);
+                return;
+            }
+            while (queue.size() >= capacity) {
+                if (policy == OverflowPolicy.DROP_OLDEST) {
+                    bytes -= estimateSize(queue.poll());
+                    dropped.incrementAndGet();
+                } else if (policy == OverflowPolicy.SPILL) {
+                    spill(update);
+                    return;
+                } else {
+                    triggerFlush();
+                    try {
+                        wait(1000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (closed) {
+                        return;
+                    }
+                }
+            }
+            queue.add(update);
+            bytes += estimateSize(update);
+            flush = shouldFlush();
+        }
+        if (flush) {
+            triggerFlush();
+        }
+    }
+
+    /**
+     * Stops the buffer and discards any values that have not been written.
+     * The rollup tier buckets in progress are written.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (timerFut != null) {
+                timerFut.cancel(false);
+                timerFut = null;
+            }
+            queue.clear();
+            bytes = 0;
+            closeSpill();
+            spilled = 0;
+            notifyAll();
+        }
+        flushTiers(tiers);
+    }
+
+    private void triggerFlush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        Objects.getDaemonThreadPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    drain();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Failed to flush buffer", e);
+                } finally {
+                    flushing.set(false);
+                }
+
+                Handler<WriteBuffer> handler;
+                boolean again;
+                synchronized (WriteBuffer.this) {
+                    handler = flushHandler;
+                    again = !closed && (shouldFlush()
+                            || (immediate && spilled > 0));
+                }
+                if (handler != null) {
+                    handler.handle(WriteBuffer.this);
+                }
+                if (again) {
+                    triggerFlush();
+                }
+            }
+        });
+    }
+
+    private void drain() {
+        while (true) {
+            if (readFile != null) {
+                drainSpill();
+                continue;
+            }
+
+            List<WatchUpdate> batch;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                } else if (queue.isEmpty()) {
+                    if (!swapSpill()) {
+                        return;
+                    }
+                    continue;
+                }
+                int size = Math.min(batchSize, queue.size());
+                batch = new ArrayList<>(size);
+                for (int i = 0; i < size; ++i) {
+                    WatchUpdate update = queue.poll();
+                    bytes -= estimateSize(update);
+                    batch.add(update);
+                }
+                notifyAll();
+            }
+            write(batch);
+        }
+    }
+
+    private void flushTiers(RollupTiers tiers) {
+        if (tiers == null) {
+            return;
+        }
+        List<WriteData> batch = new ArrayList<>();
+        tiers.flush(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            db.writeBatch(batch);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to write {} rollups", batch.size(), e);
+        }
+    }
+
+    private void write(List<WatchUpdate> updates) {
+        RollupTiers tiers = this.tiers;
+        List<WriteData> rollups = null;
+        List<WriteData> batch = new ArrayList<>(updates.size());
+        List<Watch> watches = new ArrayList<>(updates.size());
+        Map<Watch, Value> lastWritten = new LinkedHashMap<>();
+        for (WatchUpdate update : updates) {
+            Value value = update.getUpdate().getValue();
+            long time = TimeParser.parse(value.getTimeStamp());
+            Watch watch = update.getWatch();
+            batch.add(new WriteData(watch.getPath(), value, time));
+            if (tiers != null) {
+                if (rollups == null) {
+                    rollups = new ArrayList<>();
+                }
+                tiers.update(watch.getPath(), value, time, rollups);
+            }
+            watches.add(watch);
+            lastWritten.put(watch, value);
+        }
+
+        int size = batch.size();
+        if (rollups != null) {
+            // The buckets in progress are written along with the raw
+            // values so the tiers are complete after a restart
+            tiers.checkpoint(rollups);
+            batch.addAll(rollups);
+        }
+
+        long start = System.nanoTime();
+        try {
+            db.writeBatch(batch);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to write {} values", size, e);
+            dropped.addAndGet(size);
+            return;
+        } finally {
+            long latency = System.nanoTime() - start;
+            lastLatency = TimeUnit.NANOSECONDS.toMillis(latency);
+        }
+
+        Map<String, Long> written = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            WriteData data = batch.get(i);
+            Long ts = written.get(data.getPath());
+            if (ts == null || data.getTimestamp() < ts) {
+                written.put(data.getPath(), data.getTimestamp());
+            }
+        }
+        HistoryCache cache = db.getHistoryCache();
+        for (Map.Entry<String, Long> entry : written.entrySet()) {
+            cache.invalidate(entry.getKey(), entry.getValue());
+        }
+
+        for (int i = 0; i < size; ++i) {
+            WriteData data = batch.get(i);
+            QueryData qd = new QueryData(data.getValue(), data.getTimestamp());
+            watches.get(i).notifyHandlers(qd);
+        }
+        for (Map.Entry<Watch, Value> entry : lastWritten.entrySet()) {
+            entry.getKey().handleLastWritten(entry.getValue());
+        }
+    }
+
+    private void spill(WatchUpdate update) {
+        SubscriptionValue sv = update.getUpdate();
+        Value value = sv.getValue();
+        Watch watch = update.getWatch();
+        try {
+            if (spillWriter == null) {
+                spillFile = File.createTempFile("historian", ".spill");
+                spillFile.deleteOnExit();
+                OutputStream os = new FileOutputStream(spillFile);
+                Writer writer = new OutputStreamWriter(os, "UTF-8");
+                spillWriter = new BufferedWriter(writer);
+            }
+
+            JsonObject obj = new JsonObject();
+            obj.put("path", watch.getPath());
+            obj.put("value", ValueUtils.toObject(value));
+            obj.put("ts", value.getTimeStamp());
+            spillWriter.write(obj.toString());
+            spillWriter.write('\n');
+            spilledWatches.put(watch.getPath(), watch);
+            spilled++;
+            totalSpilled.incrementAndGet();
+        } catch (IOException e) {
+            LOGGER.error("Failed to spill value", e);
+            dropped.incrementAndGet();
+        }
+        triggerFlush();
+    }
+
+    /**
+     * Hands the spilled values over to the flushing thread. Must only be
+     * called when the values in memory have been written.
+     *
+     * @return Whether there were any spilled values.
+     */
+    private boolean swapSpill() {
+        if (spilled == 0) {
+            return false;
+        }
+        try {
+            spillWriter.close();
+        } catch (IOException e) {
+            LOGGER.error("Failed to close spill file", e);
+        }
+        readFile = spillFile;
+        readRemaining = spilled;
+        spillFile = null;
+        spillWriter = null;
+        spilled = 0;
+        return true;
+    }
+
+    private void drainSpill() {
+        File file = readFile;
+        try (InputStream is = new FileInputStream(file)) {
+            Reader reader = new InputStreamReader(is, "UTF-8");
+            BufferedReader in = new BufferedReader(reader);
+            List<WatchUpdate> batch = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                synchronized (this) {
+                    if (closed) {
+                        break;
+                    }
+                }
+                JsonObject obj = new JsonObject(line);
+                String path = obj.get("path");
+                String ts = obj.get("ts");
+                Value value = ValueUtils.toValue(obj.get("value"), ts);
+                Watch watch;
+                synchronized (this) {
+                    watch = spilledWatches.get(path);
+                }
+                readRemaining--;
+                if (watch == null || value == null) {
+                    continue;
+                }
+                SubscriptionValue sv;
+                sv = new SubscriptionValue(path, value, null, null, null, null);
+                batch.add(new WatchUpdate(watch, sv));
+                if (batch.size() >= batchSize) {
+                    write(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to read spill file", e);
+            dropped.addAndGet(readRemaining);
+        } finally {
+            readRemaining = 0;
+            readFile = null;
+            if (!file.delete()) {
+                LOGGER.warn("Failed to delete {}", file.getPath());
+            }
+        }
+    }
+
+    private void closeSpill() {
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException ignored) {
+            }
+            spillWriter = null;
+        }
+        if (spillFile != null) {
+            if (!spillFile.delete()) {
+                LOGGER.warn("Failed to delete {}", spillFile.getPath());
+            }
+            spillFile = null;
+        }
+    }
+
+    private boolean shouldFlush() {
+        return (immediate && !queue.isEmpty())
+                || queue.size() >= batchSize
+                || bytes >= maxBytes;
+    }
+
+    private static long estimateSize(WatchUpdate update) {
+        // Rough estimate of the update, its value and path
+        long size = 96 + update.getWatch().getPath().length() * 2;
+        Value value = update.getUpdate().getValue();
+        String s = value.getString();
+        if (s != null) {
+            size += s.length() * 2;
+        } else if (value.getMap() != null || value.getArray() != null) {
+            size += 256;
+        }
+        return size;
+    }
+
+    static {
+        LOGGER = LoggerFactory.getLogger(WriteBuffer.class);
+    }
+}
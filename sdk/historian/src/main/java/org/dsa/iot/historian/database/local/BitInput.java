@@ -0,0 +1,68 @@
+package org.dsa.iot.historian.database.local;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads bits written by {@link BitOutput} from a region of a buffer.
+ *
+ * @author Samuel Grenier
+ */
+class BitInput {
+
+    private final ByteBuffer buf;
+    private final int offset;
+    private final int limit;
+    private int pos;
+
+    /**
+     * @param buf Buffer to read from.
+     * @param offset Offset of the first byte in the buffer.
+     * @param length Amount of bytes that can be read.
+     */
+    BitInput(ByteBuffer buf, int offset, int length) {
+        this.buf = buf;
+        this.offset = offset;
+        this.limit = length * 8;
+    }
+
+    boolean readBit() {
+        checkRemaining(1);
+        int b = buf.get(offset + (pos >>> 3));
+        boolean bit = (b & (0x80 >>> (pos & 7))) != 0;
+        pos++;
+        return bit;
+    }
+
+    /**
+     * @param bits Amount of bits to read, at most 64.
+     * @return The bits read in the lowest bits of the value.
+     */
+    long readBits(int bits) {
+        checkRemaining(bits);
+        long value = 0;
+        while (bits > 0) {
+            int avail = 8 - (pos & 7);
+            int n = Math.min(avail, bits);
+            int b = buf.get(offset + (pos >>> 3)) & 0xFF;
+            int chunk = (b >>> (avail - n)) & ((1 << n) - 1);
+            value = (value << n) | chunk;
+            pos += n;
+            bits -= n;
+        }
+        return value;
+    }
+
+    byte[] readBytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) readBits(8);
+        }
+        return bytes;
+    }
+
+    private void checkRemaining(int bits) {
+        if (pos + bits > limit) {
+            throw new IllegalStateException("Block is truncated");
+        }
+    }
+}
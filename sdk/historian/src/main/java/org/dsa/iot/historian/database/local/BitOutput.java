@@ -0,0 +1,62 @@
+package org.dsa.iot.historian.database.local;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer that bits are appended to, most significant bit first.
+ *
+ * @author Samuel Grenier
+ */
+class BitOutput {
+
+    private byte[] buf = new byte[128];
+    private int pos;
+
+    void writeBit(boolean bit) {
+        ensureCapacity(1);
+        if (bit) {
+            buf[pos >>> 3] |= 0x80 >>> (pos & 7);
+        }
+        pos++;
+    }
+
+    /**
+     * @param value Value to write the lowest bits of.
+     * @param bits Amount of bits to write, at most 64.
+     */
+    void writeBits(long value, int bits) {
+        ensureCapacity(bits);
+        while (bits > 0) {
+            int free = 8 - (pos & 7);
+            int n = Math.min(free, bits);
+            int chunk = (int) ((value >>> (bits - n)) & ((1 << n) - 1));
+            buf[pos >>> 3] |= chunk << (free - n);
+            pos += n;
+            bits -= n;
+        }
+    }
+
+    void writeBytes(byte[] bytes) {
+        for (byte b : bytes) {
+            writeBits(b, 8);
+        }
+    }
+
+    /**
+     * @return Amount of bytes the written bits occupy.
+     */
+    int byteLength() {
+        return (pos + 7) >>> 3;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, byteLength());
+    }
+
+    private void ensureCapacity(int bits) {
+        int needed = (pos + bits + 7) >>> 3;
+        if (needed > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(needed, buf.length * 2));
+        }
+    }
+}
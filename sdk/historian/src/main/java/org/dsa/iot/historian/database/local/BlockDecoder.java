@@ -0,0 +1,141 @@
+package org.dsa.iot.historian.database.local;
+
+import io.netty.util.CharsetUtil;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Iterates the points of a block written by {@link BlockEncoder}.
+ *
+ * @author Samuel Grenier
+ */
+class BlockDecoder {
+
+    private final BitInput in;
+    private final int count;
+    private int read;
+
+    private long ts;
+    private long delta;
+    private Value value;
+
+    private boolean hasNumber;
+    private long prevBits;
+    private int prevLeading;
+    private int prevTrailing;
+
+    /**
+     * @param buf Buffer holding the block.
+     * @param offset Offset of the block data in the buffer.
+     * @param length Length of the block data.
+     * @param count Amount of points in the block.
+     */
+    BlockDecoder(ByteBuffer buf, int offset, int length, int count) {
+        this.in = new BitInput(buf, offset, length);
+        this.count = count;
+    }
+
+    /**
+     * @return Whether a point was read.
+     */
+    boolean next() {
+        if (read >= count) {
+            return false;
+        }
+        readTimestamp();
+        readValue();
+        read++;
+        return true;
+    }
+
+    long timestamp() {
+        return ts;
+    }
+
+    Value value() {
+        return value;
+    }
+
+    private void readTimestamp() {
+        if (read == 0) {
+            ts = in.readBits(64);
+            return;
+        }
+        long dod;
+        if (!in.readBit()) {
+            dod = 0;
+        } else if (!in.readBit()) {
+            dod = in.readBits(7) - 63;
+        } else if (!in.readBit()) {
+            dod = in.readBits(9) - 255;
+        } else if (!in.readBit()) {
+            dod = in.readBits(12) - 2047;
+        } else {
+            dod = in.readBits(64);
+        }
+        delta += dod;
+        ts += delta;
+    }
+
+    private void readValue() {
+        int type = (int) in.readBits(2);
+        switch (type) {
+            case BlockEncoder.TYPE_NUMBER:
+                value = new Value(readNumber());
+                break;
+            case BlockEncoder.TYPE_BOOL:
+                value = new Value(in.readBit());
+                break;
+            case BlockEncoder.TYPE_NULL:
+                value = new Value((String) null);
+                break;
+            default:
+                int kind = (int) in.readBits(2);
+                int length = (int) in.readBits(32);
+                byte[] bytes = in.readBytes(length);
+                value = toValue(kind, bytes);
+        }
+    }
+
+    private double readNumber() {
+        if (!hasNumber) {
+            hasNumber = true;
+            prevBits = in.readBits(64);
+            return Double.longBitsToDouble(prevBits);
+        }
+        if (in.readBit()) {
+            long xor;
+            if (!in.readBit()) {
+                int length = 64 - prevLeading - prevTrailing;
+                xor = in.readBits(length) << prevTrailing;
+            } else {
+                prevLeading = (int) in.readBits(5);
+                int length = (int) in.readBits(6);
+                if (length == 0) {
+                    length = 64;
+                }
+                prevTrailing = 64 - prevLeading - length;
+                xor = in.readBits(length) << prevTrailing;
+            }
+            prevBits ^= xor;
+        }
+        return Double.longBitsToDouble(prevBits);
+    }
+
+    private static Value toValue(int kind, byte[] bytes) {
+        switch (kind) {
+            case BlockEncoder.OTHER_STRING:
+                return new Value(new String(bytes, CharsetUtil.UTF_8));
+            case BlockEncoder.OTHER_MAP:
+                return new Value(new JsonObject(EncodingFormat.JSON, bytes));
+            case BlockEncoder.OTHER_ARRAY:
+                return new Value(new JsonArray(EncodingFormat.JSON, bytes));
+            default:
+                return new Value(bytes);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.dsa.iot.historian.database.local;
+
+import io.netty.util.CharsetUtil;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+
+/**
+ * Compresses points of a single series into a block. Timestamps are
+ * stored as delta-of-deltas and numbers are XOR'd against the previous
+ * number, which lets regular samples of slowly changing values take only
+ * a few bits per point. Other values are stored as-is.
+ *
+ * @author Samuel Grenier
+ */
+class BlockEncoder {
+
+    static final int TYPE_NUMBER = 0;
+    static final int TYPE_BOOL = 1;
+    static final int TYPE_NULL = 2;
+    static final int TYPE_OTHER = 3;
+
+    static final int OTHER_STRING = 0;
+    static final int OTHER_MAP = 1;
+    static final int OTHER_ARRAY = 2;
+    static final int OTHER_BINARY = 3;
+
+    private final BitOutput out = new BitOutput();
+
+    private int count;
+    private long minTs = Long.MAX_VALUE;
+    private long maxTs = Long.MIN_VALUE;
+
+    private long prevTs;
+    private long prevDelta;
+
+    private boolean hasNumber;
+    private long prevBits;
+    private int prevLeading = -1;
+    private int prevTrailing;
+
+    void append(long ts, Value value) {
+        writeTimestamp(ts);
+        writeValue(value);
+        minTs = Math.min(minTs, ts);
+        maxTs = Math.max(maxTs, ts);
+        count++;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long minTimestamp() {
+        return minTs;
+    }
+
+    long maxTimestamp() {
+        return maxTs;
+    }
+
+    int byteLength() {
+        return out.byteLength();
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private void writeTimestamp(long ts) {
+        if (count == 0) {
+            out.writeBits(ts, 64);
+            prevTs = ts;
+            return;
+        }
+        long delta = ts - prevTs;
+        long dod = delta - prevDelta;
+        if (dod == 0) {
+            out.writeBit(false);
+        } else if (dod >= -63 && dod <= 64) {
+            out.writeBits(0x2, 2);
+            out.writeBits(dod + 63, 7);
+        } else if (dod >= -255 && dod <= 256) {
+            out.writeBits(0x6, 3);
+            out.writeBits(dod + 255, 9);
+        } else if (dod >= -2047 && dod <= 2048) {
+            out.writeBits(0xE, 4);
+            out.writeBits(dod + 2047, 12);
+        } else {
+            out.writeBits(0xF, 4);
+            out.writeBits(dod, 64);
+        }
+        prevDelta = delta;
+        prevTs = ts;
+    }
+
+    private void writeValue(Value value) {
+        Number number = value.getNumber();
+        if (number != null) {
+            out.writeBits(TYPE_NUMBER, 2);
+            writeNumber(number.doubleValue());
+            return;
+        }
+        Boolean bool = value.getBool();
+        if (bool != null) {
+            out.writeBits(TYPE_BOOL, 2);
+            out.writeBit(bool);
+            return;
+        }
+
+        int kind;
+        byte[] bytes;
+        if (value.getString() != null) {
+            kind = OTHER_STRING;
+            bytes = value.getString().getBytes(CharsetUtil.UTF_8);
+        } else if (value.getMap() != null) {
+            kind = OTHER_MAP;
+            bytes = value.getMap().encode(EncodingFormat.JSON);
+        } else if (value.getArray() != null) {
+            kind = OTHER_ARRAY;
+            bytes = value.getArray().encode(EncodingFormat.JSON);
+        } else if ((bytes = value.getBinary()) != null) {
+            kind = OTHER_BINARY;
+        } else {
+            out.writeBits(TYPE_NULL, 2);
+            return;
+        }
+        out.writeBits(TYPE_OTHER, 2);
+        out.writeBits(kind, 2);
+        out.writeBits(bytes.length, 32);
+        out.writeBytes(bytes);
+    }
+
+    private void writeNumber(double d) {
+        long bits = Double.doubleToRawLongBits(d);
+        if (!hasNumber) {
+            hasNumber = true;
+            out.writeBits(bits, 64);
+            prevBits = bits;
+            return;
+        }
+
+        long xor = bits ^ prevBits;
+        prevBits = bits;
+        if (xor == 0) {
+            out.writeBit(false);
+            return;
+        }
+        out.writeBit(true);
+
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (prevLeading != -1
+                && leading >= prevLeading
+                && trailing >= prevTrailing) {
+            // Meaningful bits fit within the previous window
+            out.writeBit(false);
+            int length = 64 - prevLeading - prevTrailing;
+            out.writeBits(xor >>> prevTrailing, length);
+        } else {
+            out.writeBit(true);
+            int length = 64 - leading - trailing;
+            out.writeBits(leading, 5);
+            // A length of 64 wraps to 0
+            out.writeBits(length & 0x3F, 6);
+            out.writeBits(xor >>> trailing, length);
+            prevLeading = leading;
+            prevTrailing = trailing;
+        }
+    }
+}
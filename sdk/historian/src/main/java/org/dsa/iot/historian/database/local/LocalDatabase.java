@@ -0,0 +1,199 @@
+package org.dsa.iot.historian.database.local;
+
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.handler.CompleteHandler;
+import org.dsa.iot.historian.database.Database;
+import org.dsa.iot.historian.database.DatabaseProvider;
+import org.dsa.iot.historian.database.QueryCursor;
+import org.dsa.iot.historian.utils.QueryData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded database storing each path as a compressed time series in its
+ * own directory. No external service is required.
+ *
+ * @author Samuel Grenier
+ * @see Series
+ */
+public class LocalDatabase extends Database {
+
+    private static final Logger LOGGER;
+    private static final char[] BANNED_CHARS = new char[] {
+        '/', '\\', ':', '*', '?', '"', '<', '>', '|', '.'
+    };
+
+    private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+    private final File dir;
+    private final long partitionSize;
+    private final int blockSize;
+    private ScheduledFuture<?> flushFut;
+
+    /**
+     * @param name Name of the database.
+     * @param provider Provider of the database.
+     * @param dir Directory the data is stored in.
+     * @param partitionSize Time span in milliseconds of each segment file.
+     * @param blockSize Maximum amount of points in a compressed block.
+     */
+    public LocalDatabase(String name,
+                         DatabaseProvider provider,
+                         File dir,
+                         long partitionSize,
+                         int blockSize) {
+        super(name, provider);
+        if (dir == null) {
+            throw new NullPointerException("dir");
+        } else if (partitionSize <= 0) {
+            throw new IllegalArgumentException("partitionSize <= 0");
+        } else if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize <= 0");
+        }
+        this.dir = dir;
+        this.partitionSize = partitionSize;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public void write(String path, Value value, long ts) {
+        try {
+            getSeries(path).write(ts, value);
+        } catch (IOException e) {
+            LOGGER.error("Failed to write to {}", path, e);
+        }
+    }
+
+    @Override
+    public void query(String path,
+                      long from,
+                      long to,
+                      CompleteHandler<QueryData> handler) {
+        try {
+            getSeries(path).query(from, to, handler);
+        } catch (IOException e) {
+            LOGGER.error("Failed to query {}", path, e);
+            handler.complete();
+        }
+    }
+
+    @Override
+    public QueryCursor openCursor(String path, long from, long to) {
+        try {
+            return getSeries(path).openCursor(from, to);
+        } catch (IOException e) {
+            LOGGER.error("Failed to query {}", path, e);
+            return super.openCursor(path, from, to);
+        }
+    }
+
+    @Override
+    public QueryData queryFirst(String path) {
+        try {
+            return getSeries(path).first();
+        } catch (IOException e) {
+            LOGGER.error("Failed to query {}", path, e);
+            return null;
+        }
+    }
+
+    @Override
+    public QueryData queryLast(String path) {
+        try {
+            return getSeries(path).last();
+        } catch (IOException e) {
+            LOGGER.error("Failed to query {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes all the open blocks to disk.
+     */
+    public void flush() {
+        for (Series s : series.values()) {
+            try {
+                s.flush();
+            } catch (IOException e) {
+                LOGGER.error("Failed to flush series", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        synchronized (this) {
+            if (flushFut != null) {
+                flushFut.cancel(false);
+                flushFut = null;
+            }
+        }
+        flush();
+    }
+
+    @Override
+    protected void performConnect() throws Exception {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir.getPath());
+        }
+        synchronized (this) {
+            if (flushFut == null) {
+                flushFut = Objects.getDaemonThreadPool().scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+                }, 5, 5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void initExtensions(Node node) {
+    }
+
+    private Series getSeries(String path) {
+        Series s = series.get(path);
+        if (s == null) {
+            String name = encodePath(path);
+            s = new Series(new File(dir, name), partitionSize, blockSize);
+            Series prev = series.putIfAbsent(path, s);
+            if (prev != null) {
+                s = prev;
+            }
+        }
+        return s;
+    }
+
+    private static String encodePath(String path) {
+        StringBuilder builder = new StringBuilder(path.length());
+        for (char c : path.toCharArray()) {
+            boolean banned = c == '%';
+            for (char b : BANNED_CHARS) {
+                if (c == b) {
+                    banned = true;
+                    break;
+                }
+            }
+            if (banned) {
+                builder.append('%');
+                builder.append(String.format("%02X", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    static {
+        LOGGER = LoggerFactory.getLogger(LocalDatabase.class);
+    }
+}
@@ -0,0 +1,100 @@
+package org.dsa.iot.historian.database.local;
+
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.NodeBuilder;
+import org.dsa.iot.dslink.node.Permission;
+import org.dsa.iot.dslink.node.actions.Action;
+import org.dsa.iot.dslink.node.actions.ActionResult;
+import org.dsa.iot.dslink.node.actions.Parameter;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueType;
+import org.dsa.iot.dslink.util.handler.Handler;
+import org.dsa.iot.historian.database.Database;
+import org.dsa.iot.historian.database.DatabaseProvider;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides {@link LocalDatabase}s that store history on the local disk,
+ * allowing a historian to run without an external database.
+ *
+ * @author Samuel Grenier
+ */
+public class LocalDatabaseProvider extends DatabaseProvider {
+
+    private final File root;
+
+    /**
+     * Stores databases in the {@code db} directory of the working directory.
+     */
+    public LocalDatabaseProvider() {
+        this(new File("db"));
+    }
+
+    /**
+     * @param root Directory all the databases are stored in.
+     */
+    public LocalDatabaseProvider(File root) {
+        if (root == null) {
+            throw new NullPointerException("root");
+        }
+        this.root = root;
+    }
+
+    @Override
+    public Action createDbAction(Permission perm) {
+        Action act = new Action(perm, new Handler<ActionResult>() {
+            @Override
+            public void handle(ActionResult event) {
+                Value vName = event.getParameter("Name", ValueType.STRING);
+                Value vPart = event.getParameter("Partition Hours", ValueType.NUMBER);
+                Value vBlock = event.getParameter("Block Size", ValueType.NUMBER);
+                int hours = Math.max(1, vPart.getNumber().intValue());
+                int block = Math.max(1, vBlock.getNumber().intValue());
+
+                NodeBuilder b = createDbNode(vName.getString(), event);
+                b.setRoConfig("ph", new Value(hours));
+                b.setRoConfig("bs", new Value(block));
+                createAndInitDb(b.build());
+            }
+        });
+        {
+            Parameter p = new Parameter("Name", ValueType.STRING);
+            p.setDescription("Name of the database");
+            act.addParameter(p);
+        }
+        {
+            Parameter p = new Parameter("Partition Hours", ValueType.NUMBER);
+            p.setDescription("Time span of each file history is stored in");
+            p.setDefaultValue(new Value(24));
+            act.addParameter(p);
+        }
+        {
+            Parameter p = new Parameter("Block Size", ValueType.NUMBER);
+            String desc = "Maximum amount of values compressed together";
+            p.setDescription(desc);
+            p.setDefaultValue(new Value(1024));
+            act.addParameter(p);
+        }
+        return act;
+    }
+
+    @Override
+    protected Database createDb(Node node) {
+        Value vPart = node.getRoConfig("ph");
+        Value vBlock = node.getRoConfig("bs");
+        int hours = vPart != null ? vPart.getNumber().intValue() : 24;
+        int block = vBlock != null ? vBlock.getNumber().intValue() : 1024;
+
+        String name = node.getName();
+        File dir = new File(root, name);
+        long partition = TimeUnit.HOURS.toMillis(hours);
+        return new LocalDatabase(name, this, dir, partition, block);
+    }
+
+    @Override
+    public Permission dbPermission() {
+        return Permission.CONFIG;
+    }
+}
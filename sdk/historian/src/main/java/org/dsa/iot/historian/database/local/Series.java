@@ -0,0 +1,560 @@
+package org.dsa.iot.historian.database.local;
+
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.handler.CompleteHandler;
+import org.dsa.iot.historian.database.QueryCursor;
+import org.dsa.iot.historian.utils.QueryData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Storage of a single path. Points are partitioned by time into segment
+ * files, each segment holding a sequence of compressed blocks. New points
+ * are compressed into an open block in memory that is appended to its
+ * segment once it is full or flushed. Segments are memory-mapped when
+ * queried and blocks outside the queried range are skipped by their
+ * header alone.
+ * <p>
+ * Every block is sorted by time. A point older than the last point of the
+ * open block starts a new block instead, so blocks of a segment may overlap
+ * and are merged when read.
+ * <p>
+ * Block layout: minimum timestamp (8 bytes), maximum timestamp (8 bytes),
+ * point count (4 bytes), data length (4 bytes), data.
+ *
+ * @author Samuel Grenier
+ */
+class Series {
+
+    private static final Logger LOGGER;
+    static final int HEADER_SIZE = 24;
+    private static final String EXTENSION = ".seg";
+
+    private final Set<Long> validated = new HashSet<>();
+    private final File dir;
+    private final long partitionSize;
+    private final int blockSize;
+
+    private BlockEncoder open;
+    private long openPartition;
+    private QueryData first;
+    private QueryData last;
+    private boolean loaded;
+
+    /**
+     * @param dir Directory the segments of the series are stored in.
+     * @param partitionSize Time span in milliseconds of each segment.
+     * @param blockSize Maximum amount of points in a block.
+     */
+    Series(File dir, long partitionSize, int blockSize) {
+        this.dir = dir;
+        this.partitionSize = partitionSize;
+        this.blockSize = blockSize;
+    }
+
+    synchronized void write(long ts, Value value) throws IOException {
+        long partition = partitionOf(ts);
+        if (open != null && (partition != openPartition
+                                || open.count() >= blockSize
+                                || ts < open.maxTimestamp())) {
+            flush();
+        }
+        if (open == null) {
+            open = new BlockEncoder();
+            openPartition = partition;
+        }
+        open.append(ts, value);
+
+        loadBounds();
+        if (first == null || ts < first.getTimestamp()) {
+            first = new QueryData(value, ts);
+        }
+        if (last == null || ts >= last.getTimestamp()) {
+            last = new QueryData(value, ts);
+        }
+    }
+
+    /**
+     * Appends the open block to its segment.
+     *
+     * @throws IOException An error occurred writing the block.
+     */
+    synchronized void flush() throws IOException {
+        BlockEncoder block = open;
+        if (block == null) {
+            return;
+        }
+        open = null;
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir.getPath());
+        }
+
+        File file = segmentFile(openPartition);
+        if (validated.add(openPartition)) {
+            truncateTornBlock(file);
+        }
+
+        byte[] data = block.toByteArray();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(block.minTimestamp());
+        header.putLong(block.maxTimestamp());
+        header.putInt(block.count());
+        header.putInt(data.length);
+        try (FileOutputStream fos = new FileOutputStream(file, true)) {
+            fos.write(header.array());
+            fos.write(data);
+        }
+    }
+
+    void query(long from, long to, CompleteHandler<QueryData> handler)
+                                                        throws IOException {
+        try (QueryCursor cursor = openCursor(from, to)) {
+            QueryData data;
+            while ((data = cursor.next()) != null) {
+                handler.handle(data);
+            }
+        }
+        handler.complete();
+    }
+
+    /**
+     * Opens a cursor over the points in the time range. The segments are
+     * mapped when the cursor is opened while blocks are only decoded as
+     * the cursor advances.
+     *
+     * @param from Beginning search time.
+     * @param to End search time.
+     * @return Cursor over the points.
+     * @throws IOException An error occurred mapping the segments.
+     */
+    QueryCursor openCursor(long from, long to) throws IOException {
+        long fromIndex = indexOf(from);
+        long toIndex = indexOf(to);
+        Map<Long, List<ByteBuffer>> buffers = new TreeMap<>();
+        synchronized (this) {
+            // The open block must not be flushed while the segments are
+            // being mapped or it could be missed
+            try {
+                for (long partition : partitions()) {
+                    long index = partition / partitionSize;
+                    if (index < fromIndex || index > toIndex) {
+                        continue;
+                    }
+                    ByteBuffer buf = map(segmentFile(partition));
+                    if (buf != null) {
+                        buffersOf(buffers, partition).add(buf);
+                    }
+                }
+            } catch (IOException e) {
+                for (List<ByteBuffer> list : buffers.values()) {
+                    unmap(list);
+                }
+                throw e;
+            }
+            ByteBuffer buf = snapshotOpenBlock(fromIndex, toIndex);
+            if (buf != null) {
+                buffersOf(buffers, openPartition).add(buf);
+            }
+        }
+        return new SegmentCursor(buffers.values(), from, to);
+    }
+
+    synchronized QueryData first() throws IOException {
+        loadBounds();
+        return first;
+    }
+
+    synchronized QueryData last() throws IOException {
+        loadBounds();
+        return last;
+    }
+
+    /**
+     * Lazily determines the first and last point from the earliest and
+     * latest segments on disk.
+     */
+    private void loadBounds() throws IOException {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        List<Long> partitions = partitions();
+        if (partitions.isEmpty()) {
+            return;
+        }
+
+        first = readBound(partitions.get(0), true);
+        last = readBound(partitions.get(partitions.size() - 1), false);
+    }
+
+    /**
+     * @param partition Partition to read.
+     * @param earliest Whether to read the earliest or the latest point.
+     * @return Earliest or latest point of the segment.
+     */
+    private QueryData readBound(long partition, boolean earliest)
+                                                        throws IOException {
+        ByteBuffer buf = map(segmentFile(partition));
+        if (buf == null) {
+            return null;
+        }
+        List<ByteBuffer> buffers = Collections.singletonList(buf);
+        QueryData bound = null;
+        try (QueryCursor cursor = new SegmentCursor(
+                Collections.singletonList(buffers),
+                Long.MIN_VALUE, Long.MAX_VALUE)) {
+            QueryData data;
+            while ((data = cursor.next()) != null) {
+                bound = data;
+                if (earliest) {
+                    break;
+                }
+            }
+        }
+        return bound;
+    }
+
+    private ByteBuffer snapshotOpenBlock(long fromIndex, long toIndex) {
+        BlockEncoder block = open;
+        if (block == null) {
+            return null;
+        }
+        long index = openPartition / partitionSize;
+        if (index < fromIndex || index > toIndex) {
+            return null;
+        }
+        byte[] data = block.toByteArray();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + data.length);
+        buf.putLong(block.minTimestamp());
+        buf.putLong(block.maxTimestamp());
+        buf.putInt(block.count());
+        buf.putInt(data.length);
+        buf.put(data);
+        buf.flip();
+        return buf;
+    }
+
+    private List<Long> partitions() {
+        List<Long> partitions = new ArrayList<>();
+        String[] names = dir.list();
+        if (names == null) {
+            return partitions;
+        }
+        for (String name : names) {
+            if (!name.endsWith(EXTENSION)) {
+                continue;
+            }
+            String s = name.substring(0, name.length() - EXTENSION.length());
+            try {
+                partitions.add(Long.parseLong(s));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        Collections.sort(partitions);
+        return partitions;
+    }
+
+    private long partitionOf(long ts) {
+        return indexOf(ts) * partitionSize;
+    }
+
+    private long indexOf(long ts) {
+        long index = ts / partitionSize;
+        if (ts < 0 && ts % partitionSize != 0) {
+            index--;
+        }
+        return index;
+    }
+
+    private File segmentFile(long partition) {
+        return new File(dir, partition + EXTENSION);
+    }
+
+    private static List<ByteBuffer> buffersOf(Map<Long, List<ByteBuffer>> buffers,
+                                              long partition) {
+        List<ByteBuffer> list = buffers.get(partition);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            buffers.put(partition, list);
+        }
+        return list;
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size == 0) {
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private static void unmap(List<ByteBuffer> buffers) {
+        for (ByteBuffer buf : buffers) {
+            unmap(buf);
+        }
+    }
+
+    /**
+     * Releases the mapping of a segment rather than leaving it to the
+     * garbage collector, which may keep thousands of segments mapped and
+     * prevents them from being deleted on some platforms. The buffer must
+     * not be accessed afterwards.
+     */
+    private static void unmap(ByteBuffer buf) {
+        if (!(buf instanceof MappedByteBuffer)) {
+            return;
+        }
+        try {
+            Class<?> clazz = Class.forName("sun.misc.Unsafe");
+            Method clean = clazz.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = clazz.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            clean.invoke(field.get(null), buf);
+            return;
+        } catch (NoSuchMethodException ignored) {
+            // Java 8 and below
+        } catch (Exception e) {
+            LOGGER.debug("Failed to unmap segment", e);
+            return;
+        }
+        try {
+            Method method = buf.getClass().getMethod("cleaner");
+            method.setAccessible(true);
+            Object cleaner = method.invoke(buf);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Failed to unmap segment", e);
+        }
+    }
+
+    /**
+     * Removes any block at the end of the segment that was only partially
+     * written so new blocks can be appended after it.
+     */
+    private static void truncateTornBlock(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long size = raf.length();
+            long pos = 0;
+            while (pos + HEADER_SIZE <= size) {
+                raf.seek(pos + 20);
+                int length = raf.readInt();
+                if (length < 0 || pos + HEADER_SIZE + length > size) {
+                    break;
+                }
+                pos += HEADER_SIZE + length;
+            }
+            if (pos != size) {
+                LOGGER.warn("Truncating torn block in {}", file.getPath());
+                raf.setLength(pos);
+            }
+        }
+    }
+
+    /**
+     * Iterates the points of the segments partition by partition. The
+     * blocks of a partition are merged by time, only decoding a block once
+     * the merge reaches its minimum timestamp so sorted blocks that do not
+     * overlap are decoded one after another.
+     */
+    private static class SegmentCursor extends QueryCursor {
+
+        private final PriorityQueue<BlockReader> readers = new PriorityQueue<>();
+        private final Iterator<List<ByteBuffer>> partitions;
+        private final long from;
+        private final long to;
+
+        private List<ByteBuffer> buffers;
+        private List<Block> blocks = Collections.emptyList();
+        private int nextBlock;
+        private boolean closed;
+
+        /**
+         * @param partitions Buffers of each partition in order of time.
+         * @param from Beginning search time.
+         * @param to End search time.
+         */
+        SegmentCursor(Collection<List<ByteBuffer>> partitions,
+                      long from,
+                      long to) {
+            this.partitions = partitions.iterator();
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public synchronized QueryData next() {
+            while (!closed) {
+                BlockReader head = readers.peek();
+                if (nextBlock < blocks.size()
+                        && (head == null || blocks.get(nextBlock).min <= head.ts)) {
+                    BlockReader reader = blocks.get(nextBlock++).open();
+                    if (reader.next()) {
+                        readers.add(reader);
+                    }
+                    continue;
+                } else if (head == null) {
+                    if (!nextPartition()) {
+                        return null;
+                    }
+                    continue;
+                }
+
+                readers.poll();
+                long ts = head.ts;
+                Value value = head.decoder.value();
+                if (head.next()) {
+                    readers.add(head);
+                }
+                if (ts >= from && ts <= to) {
+                    return new QueryData(value, ts);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            readers.clear();
+            blocks = Collections.emptyList();
+            release();
+            while (partitions.hasNext()) {
+                unmap(partitions.next());
+            }
+        }
+
+        /**
+         * Releases the current partition and reads the headers of the
+         * blocks of the next one that overlap the time range.
+         *
+         * @return Whether there was another partition.
+         */
+        private boolean nextPartition() {
+            release();
+            if (!partitions.hasNext()) {
+                return false;
+            }
+            buffers = partitions.next();
+            blocks = new ArrayList<>();
+            nextBlock = 0;
+            for (ByteBuffer buf : buffers) {
+                int pos = 0;
+                int limit = buf.limit();
+                while (pos + HEADER_SIZE <= limit) {
+                    long min = buf.getLong(pos);
+                    long max = buf.getLong(pos + 8);
+                    int count = buf.getInt(pos + 16);
+                    int length = buf.getInt(pos + 20);
+                    int data = pos + HEADER_SIZE;
+                    if (length < 0 || data + length > limit) {
+                        // Block was torn by an abrupt shutdown
+                        break;
+                    }
+                    pos = data + length;
+                    if (max < from || min > to) {
+                        continue;
+                    }
+                    int seq = blocks.size();
+                    blocks.add(new Block(buf, data, length, count, min, seq));
+                }
+            }
+            Collections.sort(blocks);
+            return true;
+        }
+
+        private void release() {
+            if (buffers != null) {
+                unmap(buffers);
+                buffers = null;
+            }
+        }
+    }
+
+    private static class Block implements Comparable<Block> {
+
+        private final ByteBuffer buf;
+        private final int data;
+        private final int length;
+        private final int count;
+        private final long min;
+        private final int seq;
+
+        Block(ByteBuffer buf, int data, int length, int count, long min, int seq) {
+            this.buf = buf;
+            this.data = data;
+            this.length = length;
+            this.count = count;
+            this.min = min;
+            this.seq = seq;
+        }
+
+        BlockReader open() {
+            return new BlockReader(new BlockDecoder(buf, data, length, count), seq);
+        }
+
+        @Override
+        public int compareTo(Block o) {
+            int cmp = Long.compare(min, o.min);
+            return cmp != 0 ? cmp : Integer.compare(seq, o.seq);
+        }
+    }
+
+    /**
+     * Decoder of a block ordered by its current timestamp, ties being
+     * broken by the order the blocks were written in.
+     */
+    private static class BlockReader implements Comparable<BlockReader> {
+
+        private final BlockDecoder decoder;
+        private final int seq;
+        private long ts;
+
+        BlockReader(BlockDecoder decoder, int seq) {
+            this.decoder = decoder;
+            this.seq = seq;
+        }
+
+        boolean next() {
+            if (!decoder.next()) {
+                return false;
+            }
+            ts = decoder.timestamp();
+            return true;
+        }
+
+        @Override
+        public int compareTo(BlockReader o) {
+            int cmp = Long.compare(ts, o.ts);
+            return cmp != 0 ? cmp : Integer.compare(seq, o.seq);
+        }
+    }
+
+    static {
+        LOGGER = LoggerFactory.getLogger(Series.class);
+    }
+}
@@ -0,0 +1,373 @@
+package org.dsa.iot.historian.stats;
+
+import org.dsa.iot.dslink.methods.StreamState;
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.NodeBuilder;
+import org.dsa.iot.dslink.node.Permission;
+import org.dsa.iot.dslink.node.actions.*;
+import org.dsa.iot.dslink.node.actions.table.ColumnarBatch;
+import org.dsa.iot.dslink.node.actions.table.Table;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueType;
+import org.dsa.iot.dslink.util.handler.Handler;
+import org.dsa.iot.historian.database.Database;
+import org.dsa.iot.historian.database.QueryCursor;
+import org.dsa.iot.historian.database.Watch;
+import org.dsa.iot.historian.database.WatchGroup;
+import org.dsa.iot.historian.stats.interval.IntervalParser;
+import org.dsa.iot.historian.stats.rollup.Rollup;
+import org.dsa.iot.historian.stats.rollup.RollupAccumulator;
+import org.dsa.iot.historian.utils.QueryData;
+import org.dsa.iot.historian.utils.TimeParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Queries the history of many watches of a group at once. Each path is
+ * queried and rolled up in parallel on the daemon pool, then the paths
+ * are aligned on the same interval buckets and returned as a single table
+ * with a column for each path. A failure of any path closes the table
+ * with the error.
+ *
+ * @author Samuel Grenier
+ */
+public class GetGroupHistory implements Handler<ActionResult> {
+
+    private static final Logger LOGGER;
+    private static final int PARALLELISM;
+
+    private final WatchGroup group;
+
+    public GetGroupHistory(WatchGroup group) {
+        this.group = group;
+    }
+
+    @Override
+    public void handle(final ActionResult event) {
+        long[] range = GetHistory.parseTimeRange(event);
+        final long from = range[0];
+        final long to = range[1];
+
+        String sInterval = event.getParameter("Interval", new Value("1h")).getString();
+        final IntervalParser parser = IntervalParser.parse(sInterval);
+        if (parser == null) {
+            throw new IllegalArgumentException("Interval is required");
+        }
+        String sRollup = event.getParameter("Rollup", new Value("avg")).getString();
+        final Rollup.Type rollup = Rollup.Type.toEnum(sRollup);
+        if (!RollupAccumulator.isSupported(rollup)) {
+            throw new IllegalArgumentException("Unsupported rollup: " + sRollup);
+        }
+        final List<String> paths = getPaths(event.getParameter("Paths"));
+
+        final Table table = event.getTable();
+        event.setStreamState(StreamState.INITIALIZED);
+        table.setMode(Table.Mode.APPEND);
+
+        final Query query = new Query(from, to, parser, rollup);
+        event.setCloseHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                query.close();
+            }
+        });
+        QueryPool.get().execute(new Runnable() {
+            @Override
+            public void run() {
+                Exception error = null;
+                try {
+                    List<Column> columns = query.run(group.getDb(), paths);
+                    if (columns != null) {
+                        writeTable(table, query, paths, columns);
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("Failed to query group history", e);
+                    error = e;
+                } finally {
+                    query.close();
+                    table.close(error);
+                }
+            }
+        });
+    }
+
+    private List<String> getPaths(Value value) {
+        List<String> paths = new ArrayList<>();
+        String s = value != null ? value.getString() : null;
+        if (s != null && !s.trim().isEmpty()) {
+            for (String path : s.split(",")) {
+                path = path.trim();
+                if (!path.isEmpty()) {
+                    paths.add(path);
+                }
+            }
+        } else {
+            for (Watch w : group.getWatches()) {
+                paths.add(w.getPath());
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Merges the columns into rows of aligned buckets. Buckets that a path
+     * has no data for are written as {@code null}.
+     */
+    private static void writeTable(Table table,
+                                   Query query,
+                                   List<String> paths,
+                                   List<Column> columns) {
+        List<Parameter> cols = new ArrayList<>(paths.size() + 1);
+        cols.add(new Parameter("timestamp", ValueType.TIME));
+        for (String path : paths) {
+            cols.add(new Parameter(path, ValueType.NUMBER));
+        }
+
+        final int chunkSize = table.getChunkSize();
+        final int width = columns.size();
+        final int[] pos = new int[width];
+        String[] times = new String[chunkSize];
+        double[][] values = new double[width][chunkSize];
+        int size = 0;
+        while (query.isOpen()) {
+            long bucket = Long.MAX_VALUE;
+            for (int i = 0; i < width; i++) {
+                Column c = columns.get(i);
+                if (pos[i] < c.size && c.buckets[pos[i]] < bucket) {
+                    bucket = c.buckets[pos[i]];
+                }
+            }
+            if (bucket == Long.MAX_VALUE) {
+                break;
+            }
+
+            times[size] = TimeParser.parse(query.timeOf(bucket));
+            for (int i = 0; i < width; i++) {
+                Column c = columns.get(i);
+                if (pos[i] < c.size && c.buckets[pos[i]] == bucket) {
+                    values[i][size] = c.values[pos[i]++];
+                } else {
+                    values[i][size] = Double.NaN;
+                }
+            }
+
+            if (++size == chunkSize) {
+                table.addRows(cols, toBatch(times, values, size));
+                // The batch owns the arrays it was created from
+                times = new String[chunkSize];
+                values = new double[width][chunkSize];
+                size = 0;
+                cols = null;
+            }
+        }
+        if (size > 0 || cols != null) {
+            table.addRows(cols, toBatch(times, values, size));
+        }
+    }
+
+    private static ColumnarBatch toBatch(String[] times,
+                                         double[][] values,
+                                         int size) {
+        ColumnarBatch batch = new ColumnarBatch(size);
+        batch.addStringColumn(times);
+        for (double[] v : values) {
+            batch.addNumberColumn(v);
+        }
+        return batch;
+    }
+
+    public static void initAction(Node node, WatchGroup group) {
+        Action a = new Action(Permission.READ, new GetGroupHistory(group));
+        {
+            Parameter param = new Parameter("Timerange", ValueType.STRING);
+            param.setEditorType(EditorType.DATE_RANGE);
+            a.addParameter(param);
+        }
+        {
+            Parameter param = new Parameter("Interval", ValueType.STRING);
+            param.setDefaultValue(new Value("1h"));
+            a.addParameter(param);
+        }
+        {
+            Set<String> enums = new LinkedHashSet<>();
+            enums.add("avg");
+            enums.add("min");
+            enums.add("max");
+            enums.add("sum");
+            enums.add("count");
+            Parameter param = new Parameter("Rollup", ValueType.makeEnum(enums));
+            param.setDefaultValue(new Value("avg"));
+            a.addParameter(param);
+        }
+        {
+            Parameter param = new Parameter("Paths", ValueType.STRING);
+            param.setDescription("Comma separated watch paths, all watches if empty");
+            a.addParameter(param);
+        }
+        a.setResultType(ResultType.TABLE);
+
+        NodeBuilder b = node.createChild("getHistory");
+        b.setDisplayName("Get History");
+        b.setSerializable(false);
+        b.setAction(a);
+        b.build();
+    }
+
+    /**
+     * Rolled up values of a single path, ordered by bucket.
+     */
+    private static class Column {
+
+        private long[] buckets = new long[16];
+        private double[] values = new double[16];
+        private int size;
+
+        void add(long bucket, double value) {
+            if (size == buckets.length) {
+                buckets = Arrays.copyOf(buckets, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            buckets[size] = bucket;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    private static class Query {
+
+        private final List<QueryCursor> cursors = new ArrayList<>();
+        private final long from;
+        private final long to;
+        private final IntervalParser parser;
+        private final Rollup.Type rollup;
+        private final long base;
+
+        private volatile boolean open = true;
+
+        Query(long from, long to, IntervalParser parser, Rollup.Type rollup) {
+            this.from = from;
+            this.to = to;
+            this.parser = parser;
+            this.rollup = rollup;
+            this.base = parser.alignTime(from);
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+
+        long timeOf(long bucket) {
+            return base + bucket * parser.incrementTime();
+        }
+
+        void close() {
+            open = false;
+            synchronized (cursors) {
+                for (QueryCursor c : cursors) {
+                    c.close();
+                }
+                cursors.clear();
+            }
+        }
+
+        /**
+         * Aggregates the paths on the query pool. The calling thread takes
+         * part in the work rather than waiting on the pool, so the query
+         * completes even when every thread of the pool is busy.
+         *
+         * @return Columns in the order of the paths or {@code null} if the
+         *         query was closed.
+         * @throws Exception The first failure of a path.
+         */
+        List<Column> run(final Database db, final List<String> paths)
+                                                        throws Exception {
+            final Column[] columns = new Column[paths.size()];
+            final AtomicInteger next = new AtomicInteger();
+            final CountDownLatch done = new CountDownLatch(paths.size());
+            final AtomicReference<Exception> error = new AtomicReference<>();
+            Runnable worker = new Runnable() {
+                @Override
+                public void run() {
+                    int i;
+                    while ((i = next.getAndIncrement()) < columns.length) {
+                        try {
+                            columns[i] = aggregate(db, paths.get(i));
+                        } catch (Exception e) {
+                            error.compareAndSet(null, e);
+                            close();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }
+            };
+
+            int helpers = Math.min(PARALLELISM, columns.length) - 1;
+            for (int i = 0; i < helpers; i++) {
+                QueryPool.get().execute(worker);
+            }
+            worker.run();
+            done.await();
+
+            Exception e = error.get();
+            if (e != null) {
+                throw e;
+            }
+            return open ? Arrays.asList(columns) : null;
+        }
+
+        private Column aggregate(Database db, String path) {
+            Column column = new Column();
+            QueryCursor cursor = db.openCursor(path, from, to);
+            synchronized (cursors) {
+                if (!open) {
+                    cursor.close();
+                    return column;
+                }
+                cursors.add(cursor);
+            }
+
+            RollupAccumulator acc = new RollupAccumulator();
+            long increment = parser.incrementTime();
+            long bucket = 0;
+            boolean started = false;
+            try {
+                QueryData data;
+                while (open && (data = cursor.next()) != null) {
+                    long ts = parser.alignTime(data.getTimestamp());
+                    long b = (ts - base) / increment;
+                    if (!started || b != bucket) {
+                        if (started) {
+                            column.add(bucket, acc.get(rollup));
+                        }
+                        acc.reset();
+                        bucket = b;
+                        started = true;
+                    }
+                    Value v = data.getValue();
+                    Number n = v != null ? v.getNumber() : null;
+                    acc.update(n != null ? n.doubleValue() : Double.NaN);
+                }
+                if (started) {
+                    column.add(bucket, acc.get(rollup));
+                }
+            } finally {
+                cursor.close();
+                synchronized (cursors) {
+                    cursors.remove(cursor);
+                }
+            }
+            return column;
+        }
+    }
+
+    static {
+        LOGGER = LoggerFactory.getLogger(GetGroupHistory.class);
+        PARALLELISM = Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -5,67 +5,49 @@ import org.dsa.iot.dslink.node.Node;
 import org.dsa.iot.dslink.node.NodeBuilder;
 import org.dsa.iot.dslink.node.Permission;
 import org.dsa.iot.dslink.node.actions.*;
-import org.dsa.iot.dslink.node.actions.table.BatchRow;
 import org.dsa.iot.dslink.node.actions.table.Row;
 import org.dsa.iot.dslink.node.actions.table.Table;
 import org.dsa.iot.dslink.node.value.Value;
 import org.dsa.iot.dslink.node.value.ValueType;
-import org.dsa.iot.dslink.util.Objects;
 import org.dsa.iot.dslink.util.StringUtils;
 import org.dsa.iot.dslink.util.handler.CompleteHandler;
 import org.dsa.iot.dslink.util.handler.Handler;
 import org.dsa.iot.historian.database.Database;
+import org.dsa.iot.historian.database.HandlerCursor;
+import org.dsa.iot.historian.database.QueryCursor;
 import org.dsa.iot.historian.database.Watch;
+import org.dsa.iot.historian.stats.interval.IntervalAggregator;
 import org.dsa.iot.historian.stats.interval.IntervalParser;
 import org.dsa.iot.historian.stats.interval.IntervalProcessor;
 import org.dsa.iot.historian.stats.rollup.Rollup;
+import org.dsa.iot.historian.stats.rollup.RollupAccumulator;
+import org.dsa.iot.historian.stats.rollup.RollupTiers;
 import org.dsa.iot.historian.utils.QueryData;
 import org.dsa.iot.historian.utils.TimeParser;
 
 import java.util.*;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 /**
  * @author Samuel Grenier
  */
 public class GetHistory implements Handler<ActionResult> {
 
+    private final Map<String, RealTimeStream> streams = new HashMap<>();
     private final Database db;
     private final String path;
+    private final boolean legacyQuery;
 
     public GetHistory(Node node, Database db) {
         this.path = StringUtils.decodeName(node.getName());
         this.db = db;
+        this.legacyQuery = overridesQuery(getClass());
     }
 
     @Override
     public void handle(final ActionResult event) {
-        final long from;
-        final long to;
-        {
-            Value v = event.getParameter("Timerange");
-            if (v != null) {
-                String range = event.getParameter("Timerange").getString();
-                String[] split = range.split("/");
-
-                final String sFrom = split[0];
-                final String sTo = split[1];
-
-                from = TimeParser.parse(sFrom);
-                to = TimeParser.parse(sTo);
-            } else {
-                // Assume date is today
-                Calendar c = Calendar.getInstance();
-                Date date = new Date();
-                c.setTime(date);
-                c.set(Calendar.HOUR_OF_DAY, 0);
-                c.set(Calendar.MINUTE, 0);
-                c.set(Calendar.SECOND, 0);
-                c.set(Calendar.MILLISECOND, 0);
-                from = c.getTime().getTime();
-                to = date.getTime();
-            }
-        }
+        long[] range = parseTimeRange(event);
+        final long from = range[0];
+        final long to = range[1];
 
         final Value def = new Value("none");
         final String sInterval = event.getParameter("Interval", def).getString();
@@ -92,11 +74,20 @@ public class GetHistory implements Handler<ActionResult> {
                            final Rollup.Type rollup,
                            final IntervalParser parser) {
         final IntervalProcessor interval = IntervalProcessor.parse(parser, rollup);
-        final ScheduledThreadPoolExecutor stpe = Objects.getDaemonThreadPool();
-        stpe.execute(new Runnable() {
+        // Numeric rollups of historical data are aggregated without
+        // boxing, the real time updates continue from the interval processor
+        final IntervalAggregator aggregator;
+        if (realTime) {
+            aggregator = null;
+        } else {
+            aggregator = IntervalAggregator.parse(parser, rollup);
+        }
+        QueryPool.get().execute(new Runnable() {
 
-            private boolean open = true;
-            Handler<QueryData> handler;
+            private final Object lock = new Object();
+            private volatile boolean open = true;
+            private volatile QueryCursor cursor;
+            private RealTimeStream stream;
 
             @Override
             public void run() {
@@ -105,61 +96,284 @@ public class GetHistory implements Handler<ActionResult> {
                     @Override
                     public void handle(Void ignored) {
                         open = false;
-                        if (handler != null) {
-                            Watch w = event.getNode().getParent().getMetaData();
-                            w.removeHandler(handler);
+                        QueryCursor c = cursor;
+                        if (c != null) {
+                            c.close();
+                        }
+                        synchronized (lock) {
+                            if (stream != null) {
+                                Watch w = event.getNode().getParent().getMetaData();
+                                leaveStream(w, stream, event.getTable());
+                            }
                         }
                     }
                 });
 
-                query(from, to, rollup, parser, new CompleteHandler<QueryData>() {
+                int chunkSize = table.getChunkSize();
+                List<QueryData> updates = new ArrayList<>(chunkSize);
+                RollupTiers.Tier tier = null;
+                if (aggregator != null) {
+                    tier = selectTier(event, parser);
+                }
+                if (tier == null) {
+                    if (aggregator != null && isCacheable(parser)) {
+                        readCached(table, updates);
+                    } else {
+                        read(from, to, null, null, table, updates);
+                    }
+                } else {
+                    // Tier buckets that are only partially within the time
+                    // range, not yet written or that were not maintained
+                    // at the time are read from the raw values.
+                    long size = tier.getInterval();
+                    RollupTiers tiers = getRollupTiers(event);
+                    long start = Math.max(from, tiers.getSince());
+                    start += (size - start % size) % size;
+                    long end = (to + 1) - (to + 1) % size;
+                    long pending = tier.getPendingStart(path);
+                    if (pending >= 0 && pending < end) {
+                        end = pending;
+                    }
 
-                    private List<QueryData> updates = new LinkedList<>();
+                    if (start >= end) {
+                        read(from, to, null, null, table, updates);
+                    } else {
+                        if (from < start) {
+                            read(from, start - 1, null, null, table, updates);
+                        }
+                        read(start, end - 1, tier, null, table, updates);
+                        if (end <= to) {
+                            read(end, to, null, null, table, updates);
+                        }
+                    }
+                }
+                if (!open) {
+                    return;
+                }
+                processQueryData(table, interval, updates, false);
 
-                    @Override
-                    public void handle(QueryData data) {
-                        List<QueryData> updates = this.updates;
-                        if (updates != null) {
-                            updates.add(data);
-                            if (updates.size() >= 500) {
-                                processQueryData(table, interval, updates, true);
-                            }
+                if (aggregator != null) {
+                    aggregator.complete();
+                    if (aggregator.size() > 0) {
+                        table.addRows(aggregator.drain());
+                    }
+                    table.close();
+                } else if (!realTime) {
+                    if (interval != null) {
+                        Row row = interval.complete();
+                        if (row != null) {
+                            table.addRow(row);
+                        }
+                    }
+                    table.close();
+                } else {
+                    synchronized (lock) {
+                        if (!open) {
+                            return;
                         }
+                        table.sendReady();
+                        Watch w = event.getNode().getParent().getMetaData();
+                        String key = rollup + ":" + parser;
+                        stream = joinStream(w, key, interval, table);
                     }
+                }
+            }
 
-                    @Override
-                    public void complete() {
-                        if (!updates.isEmpty()) {
-                            processQueryData(table, interval, updates, true);
+            /**
+             * Reads the history using the cached buckets. Only the buckets
+             * after the cached range are queried and added to the cache.
+             */
+            private void readCached(Table table, List<QueryData> updates) {
+                long size = parser.incrementTime();
+                HistoryCache cache = db.getHistoryCache();
+                long generation = cache.getGeneration(path);
+                long start = from + (size - from % size) % size;
+                long end = (to + 1) - (to + 1) % size;
+                if (start >= end) {
+                    read(from, to, null, null, table, updates);
+                    return;
+                } else if (from < start) {
+                    // Partial buckets are never cached
+                    read(from, start - 1, null, null, table, updates);
+                }
+
+                long rawFrom = start;
+                HistoryCache.Segment seg = cache.get(path, size);
+                if (seg != null && seg.getFrom() <= start && seg.getTo() > start) {
+                    long cachedEnd = Math.min(seg.getTo(), end);
+                    int chunkSize = table.getChunkSize();
+                    RollupAccumulator acc = new RollupAccumulator();
+                    for (int i = 0; i < seg.size() && open; i++) {
+                        long ts = seg.getStart(i);
+                        if (ts < start) {
+                            continue;
+                        } else if (ts >= cachedEnd) {
+                            break;
+                        }
+                        seg.get(i, acc);
+                        aggregator.update(ts, acc);
+                        if (aggregator.size() >= chunkSize) {
+                            table.addRows(aggregator.drain());
                         }
-                        updates = null;
+                    }
+                    rawFrom = cachedEnd;
+                }
 
-                        if (!realTime) {
-                            if (interval != null) {
-                                Row row = interval.complete();
-                                if (row != null) {
-                                    table.addRow(row);
+                if (rawFrom < end) {
+                    HistoryCache.Builder b = new HistoryCache.Builder(size, rawFrom);
+                    read(rawFrom, end - 1, null, b, table, updates);
+                    if (open) {
+                        cache.put(path, b.build(end), generation);
+                    }
+                }
+                if (end <= to) {
+                    read(end, to, null, null, table, updates);
+                }
+            }
+
+            /**
+             * Reads a part of the history into the table.
+             *
+             * @param tier Tier to read the rolled up values from or
+             *             {@code null} to read the raw values.
+             * @param builder Receives the raw values to cache, can be
+             *                {@code null}.
+             */
+            private void read(long from,
+                              long to,
+                              RollupTiers.Tier tier,
+                              HistoryCache.Builder builder,
+                              Table table,
+                              List<QueryData> updates) {
+                if (!open) {
+                    return;
+                }
+                QueryCursor c;
+                if (tier == null) {
+                    c = openCursor(from, to, rollup, parser);
+                } else {
+                    c = openCursor(tier, from, to);
+                }
+                int chunkSize = table.getChunkSize();
+                RollupAccumulator partial = new RollupAccumulator();
+                try (QueryCursor cursor = c) {
+                    this.cursor = cursor;
+                    if (!open) {
+                        return;
+                    }
+
+                    // Adding rows blocks until the requester can receive
+                    // them, so the cursor is only advanced as fast as the
+                    // rows can be sent
+                    QueryData data;
+                    while (open && (data = cursor.next()) != null) {
+                        if (aggregator != null) {
+                            long ts = data.getTimestamp();
+                            if (tier == null) {
+                                Value v = data.getValue();
+                                Number n = v != null ? v.getNumber() : null;
+                                double d = n != null ? n.doubleValue() : Double.NaN;
+                                aggregator.update(ts, d);
+                                if (builder != null) {
+                                    builder.add(ts, d);
                                 }
+                            } else if (RollupTiers.decode(data.getValue(), partial)) {
+                                aggregator.update(ts, partial);
                             }
-                            table.close();
-                        } else if (open) {
-                            handler = new Handler<QueryData>() {
-                                @Override
-                                public void handle(QueryData event) {
-                                    Collection<QueryData> single = Collections.singleton(event);
-                                    processQueryData(table, interval, single, false);
-                                }
-                            };
-                            table.sendReady();
-                            Watch w = event.getNode().getParent().getMetaData();
-                            w.addHandler(handler);
+                            if (aggregator.size() >= chunkSize) {
+                                table.addRows(aggregator.drain());
+                            }
+                            continue;
+                        }
+                        updates.add(data);
+                        if (updates.size() >= chunkSize) {
+                            processQueryData(table, interval, updates, false);
+                            updates.clear();
                         }
                     }
-                });
+                }
             }
         });
     }
 
+    /**
+     * Buckets can only be cached when every interval starts at its aligned
+     * time, making the buckets independent of the requested time range.
+     */
+    private static boolean isCacheable(IntervalParser parser) {
+        return parser.alignmentTime() == parser.incrementTime();
+    }
+
+    private static RollupTiers getRollupTiers(ActionResult event) {
+        Object meta = event.getNode().getParent().getMetaData();
+        if (meta instanceof Watch) {
+            return ((Watch) meta).getGroup().getBuffer().getRollupTiers();
+        }
+        return null;
+    }
+
+    private static RollupTiers.Tier selectTier(ActionResult event,
+                                               IntervalParser parser) {
+        RollupTiers tiers = getRollupTiers(event);
+        if (tiers == null) {
+            return null;
+        }
+        return tiers.select(parser);
+    }
+
+    /**
+     * Opens the cursor the history is read from. The cursor is advanced
+     * as the rows of the history are sent and closed when the request is
+     * closed. Subclasses that still override {@link #query} are read
+     * through it by default.
+     *
+     * @param from Beginning search time.
+     * @param to End search time.
+     * @param type Rollup type of the request.
+     * @param parser Interval of the request.
+     * @return Cursor over the history.
+     */
+    protected QueryCursor openCursor(final long from,
+                                     final long to,
+                                     final Rollup.Type type,
+                                     final IntervalParser parser) {
+        if (!legacyQuery) {
+            return db.openCursor(path, from, to);
+        }
+        return new HandlerCursor(path, HandlerCursor.DEFAULT_CAPACITY) {
+            @Override
+            @SuppressWarnings("deprecation")
+            protected void query(CompleteHandler<QueryData> handler) {
+                GetHistory.this.query(from, to, type, parser, handler);
+            }
+        };
+    }
+
+    /**
+     * Opens the cursor the buckets of a rollup tier are read from.
+     *
+     * @param tier Tier to read.
+     * @param from Beginning search time.
+     * @param to End search time.
+     * @return Cursor over the bucket points of the tier.
+     */
+    protected QueryCursor openCursor(RollupTiers.Tier tier, long from, long to) {
+        return db.openCursor(tier.getPath(path), from, to);
+    }
+
+    /**
+     * Queries the history by pushing it into the handler.
+     *
+     * @param from Beginning search time.
+     * @param to End search time.
+     * @param type Rollup type of the request.
+     * @param parser Interval of the request.
+     * @param handler Handler of the history.
+     * @deprecated Override {@link #openCursor(long, long, Rollup.Type,
+     *             IntervalParser)} instead, which reads the history at the
+     *             rate it can be sent.
+     */
+    @Deprecated
     @SuppressWarnings("UnusedParameters")
     protected void query(long from,
                          long to,
@@ -169,6 +383,19 @@ public class GetHistory implements Handler<ActionResult> {
         db.query(path, from, to, handler);
     }
 
+    private static boolean overridesQuery(Class<?> clazz) {
+        for (Class<?> c = clazz; c != GetHistory.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("query", long.class, long.class,
+                        Rollup.Type.class, IntervalParser.class,
+                        CompleteHandler.class);
+                return true;
+            } catch (NoSuchMethodException ignored) {
+            }
+        }
+        return false;
+    }
+
     protected void processQueryData(Table table,
                                     IntervalProcessor interval,
                                     Collection<QueryData> data,
@@ -176,34 +403,107 @@ public class GetHistory implements Handler<ActionResult> {
         if (data.isEmpty()) {
             return;
         }
-        BatchRow batch = null;
+        List<Row> rows = null;
         Iterator<QueryData> it = data.iterator();
         while (it.hasNext()) {
             QueryData update = it.next();
             if (performRemove) {
                 it.remove();
             }
-            Row row;
-            long time = update.getTimestamp();
-            if (interval == null) {
-                row = new Row();
-                String t = TimeParser.parse(time);
-                row.addValue(new Value(t));
-                row.addValue(update.getValue());
-            } else {
-                row = interval.getRowUpdate(update, time);
-            }
+            Row row = createRow(interval, update);
 
             if (row != null) {
-                if (batch == null) {
-                    batch = new BatchRow();
+                if (rows == null) {
+                    rows = new ArrayList<>();
                 }
-                batch.addRow(row);
+                rows.add(row);
+            }
+        }
+        if (rows != null) {
+            table.addRows(rows);
+        }
+    }
+
+    /**
+     * Creates the row of an update. Real time updates are processed once
+     * for all the requests with the same interval and rollup.
+     *
+     * @param interval Interval processor or {@code null} if the request
+     *                 has no interval.
+     * @param update Update to process.
+     * @return Row or {@code null} to skip the update.
+     */
+    protected Row createRow(IntervalProcessor interval, QueryData update) {
+        long time = update.getTimestamp();
+        if (interval == null) {
+            Row row = new Row();
+            String t = TimeParser.parse(time);
+            row.addValue(new Value(t));
+            row.addValue(update.getValue());
+            return row;
+        }
+        return interval.getRowUpdate(update, time);
+    }
+
+    private RealTimeStream joinStream(Watch watch,
+                                      String key,
+                                      IntervalProcessor interval,
+                                      Table table) {
+        synchronized (streams) {
+            RealTimeStream stream = streams.get(key);
+            if (stream == null) {
+                stream = new RealTimeStream(this, interval, table);
+                streams.put(key, stream);
+                watch.addHandler(stream);
+            } else {
+                stream.join(table, interval);
             }
+            return stream;
         }
-        if (batch != null) {
-            table.addBatchRows(batch);
+    }
+
+    private void leaveStream(Watch watch, RealTimeStream stream, Table table) {
+        synchronized (streams) {
+            if (stream.leave(table)) {
+                streams.values().remove(stream);
+                watch.removeHandler(stream);
+            }
+        }
+    }
+
+    /**
+     * Parses the "Timerange" parameter of a history request. The range
+     * defaults to the beginning of today until now.
+     *
+     * @param event Request of the history.
+     * @return Beginning and end of the range in UTC.
+     */
+    static long[] parseTimeRange(ActionResult event) {
+        final long from;
+        final long to;
+        Value v = event.getParameter("Timerange");
+        if (v != null) {
+            String range = v.getString();
+            String[] split = range.split("/");
+
+            final String sFrom = split[0];
+            final String sTo = split[1];
+
+            from = TimeParser.parse(sFrom);
+            to = TimeParser.parse(sTo);
+        } else {
+            // Assume date is today
+            Calendar c = Calendar.getInstance();
+            Date date = new Date();
+            c.setTime(date);
+            c.set(Calendar.HOUR_OF_DAY, 0);
+            c.set(Calendar.MINUTE, 0);
+            c.set(Calendar.SECOND, 0);
+            c.set(Calendar.MILLISECOND, 0);
+            from = c.getTime().getTime();
+            to = date.getTime();
         }
+        return new long[] {from, to};
     }
 
     public static void initAction(Node node, Database db) {
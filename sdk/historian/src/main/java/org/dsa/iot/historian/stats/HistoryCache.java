@@ -0,0 +1,359 @@
+package org.dsa.iot.historian.stats;
+
+import org.dsa.iot.historian.stats.rollup.RollupAccumulator;
+
+import java.util.*;
+
+/**
+ * Caches the rolled up buckets of history requests so that repeated
+ * requests over the same time range only query the buckets that changed.
+ * Buckets are cached per path and bucket size as a contiguous range, which
+ * is truncated when a value is written into it. The least recently used
+ * ranges are evicted once the estimated size of the cache exceeds its
+ * maximum.
+ * <p>
+ * The maximum size in bytes can be configured through the
+ * {@code dslink.historian.cacheSize} system property. Default value is
+ * 16777216.
+ *
+ * @author Samuel Grenier
+ */
+public class HistoryCache {
+
+    private static final long MAX_BYTES;
+    private static final int BUCKET_BYTES = 48;
+    private static final int SEGMENT_BYTES = 128;
+
+    private final Map<Key, Segment> segments = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> generations = new HashMap<>();
+    private final long maxBytes;
+    private long bytes;
+
+    public HistoryCache() {
+        this(MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes Maximum estimated size of the cache.
+     */
+    public HistoryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The generation of a path changes every time the path is invalidated.
+     * Buckets can only be cached if the path was not invalidated while they
+     * were being queried.
+     *
+     * @param path Path to retrieve the generation of.
+     * @return Generation of the path.
+     */
+    public synchronized long getGeneration(String path) {
+        Long gen = generations.get(path);
+        return gen != null ? gen : 0;
+    }
+
+    /**
+     * Removes the cached buckets of the path at or after the timestamp.
+     *
+     * @param path Path that was written to.
+     * @param ts Timestamp of the written value.
+     */
+    public synchronized void invalidate(String path, long ts) {
+        generations.put(path, getGeneration(path) + 1);
+        Iterator<Map.Entry<Key, Segment>> it = segments.entrySet().iterator();
+        List<Segment> truncated = null;
+        while (it.hasNext()) {
+            Map.Entry<Key, Segment> entry = it.next();
+            Key key = entry.getKey();
+            Segment seg = entry.getValue();
+            if (!key.path.equals(path) || ts >= seg.to) {
+                continue;
+            }
+            it.remove();
+            bytes -= seg.bytes();
+            long start = ts - ts % key.size;
+            if (start > seg.from) {
+                if (truncated == null) {
+                    truncated = new ArrayList<>();
+                }
+                truncated.add(seg.truncate(start));
+            }
+        }
+        if (truncated != null) {
+            for (Segment seg : truncated) {
+                insert(new Key(path, seg.size), seg);
+            }
+        }
+    }
+
+    /**
+     * @param path Path of the buckets.
+     * @param size Size of the buckets.
+     * @return Cached buckets or {@code null} if none are cached.
+     */
+    public synchronized Segment get(String path, long size) {
+        return segments.get(new Key(path, size));
+    }
+
+    /**
+     * Caches queried buckets. Buckets that overlap or are adjacent to the
+     * cached range are merged into it, otherwise the range is replaced.
+     *
+     * @param path Path of the buckets.
+     * @param seg Buckets to cache.
+     * @param generation Generation of the path when the query started.
+     * @see #getGeneration(String)
+     */
+    public synchronized void put(String path, Segment seg, long generation) {
+        if (generation != getGeneration(path) || seg.from >= seg.to) {
+            return;
+        }
+        Key key = new Key(path, seg.size);
+        Segment old = segments.remove(key);
+        if (old != null) {
+            bytes -= old.bytes();
+            if (old.to >= seg.from && old.from <= seg.to) {
+                seg = old.merge(seg);
+            }
+        }
+        insert(key, seg);
+    }
+
+    private void insert(Key key, Segment seg) {
+        if (seg.bytes() > maxBytes) {
+            return;
+        }
+        segments.put(key, seg);
+        bytes += seg.bytes();
+        Iterator<Segment> it = segments.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().bytes();
+            it.remove();
+        }
+    }
+
+    /**
+     * Immutable contiguous range of rolled up buckets.
+     */
+    public static class Segment {
+
+        private final long size;
+        private final long from;
+        private final long to;
+        private final long[] starts;
+        private final long[] counts;
+        private final long[] numbers;
+        private final double[] sums;
+        private final double[] mins;
+        private final double[] maxs;
+        private final int length;
+
+        private Segment(long size, long from, long to, Builder b) {
+            this.size = size;
+            this.from = from;
+            this.to = to;
+            this.starts = b.starts;
+            this.counts = b.counts;
+            this.numbers = b.numbers;
+            this.sums = b.sums;
+            this.mins = b.mins;
+            this.maxs = b.maxs;
+            this.length = b.length;
+        }
+
+        /**
+         * @return Start of the first bucket in the range.
+         */
+        public long getFrom() {
+            return from;
+        }
+
+        /**
+         * @return End of the last bucket in the range, exclusive.
+         */
+        public long getTo() {
+            return to;
+        }
+
+        /**
+         * @return Amount of buckets that have values.
+         */
+        public int size() {
+            return length;
+        }
+
+        /**
+         * @param index Index of the bucket.
+         * @return Start of the bucket.
+         */
+        public long getStart(int index) {
+            return starts[index];
+        }
+
+        /**
+         * @param index Index of the bucket.
+         * @param acc Accumulator to populate with the bucket.
+         */
+        public void get(int index, RollupAccumulator acc) {
+            acc.set(counts[index], numbers[index], sums[index],
+                    mins[index], maxs[index]);
+        }
+
+        private long bytes() {
+            return SEGMENT_BYTES + (long) BUCKET_BYTES * length;
+        }
+
+        private Segment truncate(long end) {
+            Builder b = new Builder(size, from);
+            for (int i = 0; i < length && starts[i] < end; i++) {
+                b.append(this, i);
+            }
+            return b.build(end);
+        }
+
+        private Segment merge(Segment seg) {
+            Builder b = new Builder(size, Math.min(from, seg.from));
+            int i = 0;
+            while (i < length && starts[i] < seg.from) {
+                b.append(this, i++);
+            }
+            for (int j = 0; j < seg.length; j++) {
+                b.append(seg, j);
+            }
+            while (i < length && starts[i] < seg.to) {
+                i++;
+            }
+            while (i < length) {
+                b.append(this, i++);
+            }
+            return b.build(Math.max(to, seg.to));
+        }
+    }
+
+    /**
+     * Rolls up raw values into the buckets of a segment. Values must be
+     * added in order.
+     */
+    public static class Builder {
+
+        private final RollupAccumulator acc = new RollupAccumulator();
+        private final long size;
+        private final long from;
+
+        private long[] starts = new long[16];
+        private long[] counts = new long[16];
+        private long[] numbers = new long[16];
+        private double[] sums = new double[16];
+        private double[] mins = new double[16];
+        private double[] maxs = new double[16];
+        private int length;
+
+        private long current;
+        private boolean started;
+
+        /**
+         * @param size Size of the buckets.
+         * @param from Start of the first bucket.
+         */
+        public Builder(long size, long from) {
+            this.size = size;
+            this.from = from;
+        }
+
+        /**
+         * @param ts Timestamp of the value.
+         * @param value Number or {@link Double#NaN} if the value is not a
+         *              number.
+         */
+        public void add(long ts, double value) {
+            long start = ts - ts % size;
+            if (!started || start != current) {
+                finish();
+                acc.reset();
+                current = start;
+                started = true;
+            }
+            acc.update(value);
+        }
+
+        /**
+         * @param to End of the last bucket, exclusive.
+         * @return Segment of the buckets.
+         */
+        public Segment build(long to) {
+            finish();
+            return new Segment(size, from, to, this);
+        }
+
+        private void finish() {
+            if (started) {
+                started = false;
+                ensureCapacity();
+                starts[length] = current;
+                counts[length] = acc.getCount();
+                numbers[length] = acc.getNumberCount();
+                sums[length] = acc.getSum();
+                mins[length] = acc.getMin();
+                maxs[length] = acc.getMax();
+                length++;
+            }
+        }
+
+        private void append(Segment seg, int i) {
+            ensureCapacity();
+            starts[length] = seg.starts[i];
+            counts[length] = seg.counts[i];
+            numbers[length] = seg.numbers[i];
+            sums[length] = seg.sums[i];
+            mins[length] = seg.mins[i];
+            maxs[length] = seg.maxs[i];
+            length++;
+        }
+
+        private void ensureCapacity() {
+            if (length < starts.length) {
+                return;
+            }
+            int len = length * 2;
+            starts = Arrays.copyOf(starts, len);
+            counts = Arrays.copyOf(counts, len);
+            numbers = Arrays.copyOf(numbers, len);
+            sums = Arrays.copyOf(sums, len);
+            mins = Arrays.copyOf(mins, len);
+            maxs = Arrays.copyOf(maxs, len);
+        }
+    }
+
+    private static class Key {
+
+        private final String path;
+        private final long size;
+
+        Key(String path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return size == key.size && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + (int) (size ^ (size >>> 32));
+        }
+    }
+
+    static {
+        String s = "dslink.historian.cacheSize";
+        MAX_BYTES = Long.getLong(s, 16 * 1024 * 1024);
+    }
+}
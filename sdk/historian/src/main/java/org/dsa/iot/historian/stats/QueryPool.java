@@ -0,0 +1,34 @@
+package org.dsa.iot.historian.stats;
+
+import org.dsa.iot.dslink.util.Objects;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Threads that perform history queries and write their results. Writing
+ * a result blocks while the requester is out of response capacity, so
+ * queries run on their own bounded pool rather than the shared daemon
+ * pool, where slow requesters would stall ingestion and the handling of
+ * every other request.
+ *
+ * @author Samuel Grenier
+ */
+final class QueryPool {
+
+    private static final ScheduledThreadPoolExecutor POOL;
+
+    private QueryPool() {
+    }
+
+    /**
+     * @return Pool history queries are performed on.
+     */
+    static ScheduledThreadPoolExecutor get() {
+        return POOL;
+    }
+
+    static {
+        String s = "dslink.historian.queryThreads";
+        POOL = Objects.createDaemonThreadPool(Integer.getInteger(s, 8));
+    }
+}
@@ -0,0 +1,107 @@
+package org.dsa.iot.historian.stats;
+
+import org.dsa.iot.dslink.node.actions.table.Row;
+import org.dsa.iot.dslink.node.actions.table.Table;
+import org.dsa.iot.dslink.util.handler.Handler;
+import org.dsa.iot.historian.stats.interval.IntervalProcessor;
+import org.dsa.iot.historian.utils.QueryData;
+
+import java.util.*;
+
+/**
+ * Real time history of a watch shared by all the requests with the same
+ * interval and rollup. Each update is processed once and the resulting
+ * row is written to every table of the stream.
+ * <p>
+ * A table that joins the stream has already processed the history with
+ * its own interval processor. It keeps using it until an interval
+ * completes at the same time as the shared processor, from which point
+ * both processors are in the same state and the table is served by the
+ * shared rows.
+ *
+ * @author Samuel Grenier
+ */
+class RealTimeStream implements Handler<QueryData> {
+
+    private final List<Table> tables = new ArrayList<>();
+    private final Map<Table, IntervalProcessor> pending = new LinkedHashMap<>();
+    private final GetHistory history;
+    private final IntervalProcessor interval;
+
+    /**
+     * @param history History the rows are created by.
+     * @param interval Processor of the first table or {@code null} if the
+     *                 stream has no interval.
+     * @param table First table of the stream.
+     */
+    RealTimeStream(GetHistory history, IntervalProcessor interval, Table table) {
+        this.history = history;
+        this.interval = interval;
+        tables.add(table);
+    }
+
+    /**
+     * @param table Table to join.
+     * @param interval Processor the table processed its history with.
+     */
+    synchronized void join(Table table, IntervalProcessor interval) {
+        if (interval == null) {
+            tables.add(table);
+        } else {
+            pending.put(table, interval);
+        }
+    }
+
+    /**
+     * @param table Table to remove.
+     * @return Whether the stream has no more tables.
+     */
+    synchronized boolean leave(Table table) {
+        tables.remove(table);
+        pending.remove(table);
+        return tables.isEmpty() && pending.isEmpty();
+    }
+
+    @Override
+    public void handle(QueryData event) {
+        List<Table> shared;
+        Row row;
+        Map<Table, Row> own = null;
+        synchronized (this) {
+            row = history.createRow(interval, event);
+            Iterator<Map.Entry<Table, IntervalProcessor>> it = pending.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Table, IntervalProcessor> entry = it.next();
+                IntervalProcessor proc = entry.getValue();
+                Row r = history.createRow(proc, event);
+                if (r != null) {
+                    if (own == null) {
+                        own = new LinkedHashMap<>();
+                    }
+                    own.put(entry.getKey(), r);
+                    if (row != null
+                            && proc.getIntervalStart() == interval.getIntervalStart()) {
+                        // Both processors started the interval with this
+                        // update and are now equivalent
+                        it.remove();
+                        tables.add(entry.getKey());
+                    }
+                }
+            }
+            shared = row != null ? new ArrayList<>(tables) : null;
+        }
+
+        if (own != null) {
+            for (Map.Entry<Table, Row> entry : own.entrySet()) {
+                entry.getKey().addRow(entry.getValue());
+            }
+        }
+        if (shared != null) {
+            for (Table t : shared) {
+                if (own == null || !own.containsKey(t)) {
+                    t.addRow(row);
+                }
+            }
+        }
+    }
+}
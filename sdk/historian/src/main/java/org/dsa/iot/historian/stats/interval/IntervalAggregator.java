@@ -0,0 +1,178 @@
+package org.dsa.iot.historian.stats.interval;
+
+import org.dsa.iot.dslink.node.actions.table.ColumnarBatch;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.historian.stats.rollup.Rollup;
+import org.dsa.iot.historian.stats.rollup.RollupAccumulator;
+import org.dsa.iot.historian.utils.TimeParser;
+
+import java.util.Arrays;
+
+/**
+ * Primitive counterpart of {@link IntervalProcessor} for numeric rollups.
+ * Multiple rollups are computed in a single pass and the completed
+ * intervals are buffered as columns until they are drained into a
+ * {@link ColumnarBatch}, with one column for the interval time followed by
+ * one column for each rollup. Counts are written as integers like
+ * {@link org.dsa.iot.historian.stats.rollup.CountRollup} does.
+ *
+ * @author Samuel Grenier
+ */
+public class IntervalAggregator {
+
+    private final RollupAccumulator acc = new RollupAccumulator();
+    private final IntervalParser parser;
+    private final Rollup.Type[] types;
+
+    private long[] times = new long[16];
+    private double[][] values;
+    private int size;
+
+    private long lastValueTimeTrunc = -1;
+    private boolean hasLastValue;
+    private long realTimeTime;
+
+    private IntervalAggregator(IntervalParser parser, Rollup.Type[] types) {
+        this.parser = parser;
+        this.types = types;
+        this.values = new double[types.length][times.length];
+    }
+
+    /**
+     * @param ts Timestamp of the value.
+     * @param value Value retrieved from the database.
+     */
+    public void update(long ts, Value value) {
+        Number n = value != null ? value.getNumber() : null;
+        update(ts, n != null ? n.doubleValue() : Double.NaN);
+    }
+
+    /**
+     * @param ts Timestamp of the value.
+     * @param value Number retrieved from the database or
+     *              {@link Double#NaN} if the value is not a number.
+     * @see IntervalProcessor#getRowUpdate
+     */
+    public void update(long ts, double value) {
+        advance(ts);
+        acc.update(value);
+    }
+
+    /**
+     * Merges values that were already rolled up, such as a bucket of a
+     * rollup tier.
+     *
+     * @param ts Timestamp of the rolled up values.
+     * @param partial Rolled up values.
+     */
+    public void update(long ts, RollupAccumulator partial) {
+        advance(ts);
+        acc.merge(partial);
+    }
+
+    /**
+     * Completes the interval in progress if the timestamp starts a new
+     * interval.
+     */
+    private void advance(long ts) {
+        final long increment = parser.incrementTime();
+        realTimeTime = ts - increment;
+        final long alignedTs = parser.alignTime(ts);
+
+        if (alignedTs - lastValueTimeTrunc < increment) {
+            // Update within the same interval
+            hasLastValue = true;
+            return;
+        } else if (hasLastValue) {
+            // The interval for this period is completed
+            emit(lastValueTimeTrunc);
+            realTimeTime = alignedTs - increment;
+        }
+
+        lastValueTimeTrunc = alignedTs;
+        hasLastValue = true;
+        acc.reset();
+    }
+
+    /**
+     * Completes the interval that is in progress.
+     *
+     * @see IntervalProcessor#complete()
+     */
+    public void complete() {
+        if (hasLastValue) {
+            hasLastValue = false;
+            emit(realTimeTime);
+        }
+    }
+
+    /**
+     * @return Amount of completed intervals that have not been drained.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes the completed intervals.
+     *
+     * @return Batch of the completed intervals.
+     */
+    public ColumnarBatch drain() {
+        ColumnarBatch batch = new ColumnarBatch(size);
+        String[] col = new String[size];
+        for (int i = 0; i < size; i++) {
+            col[i] = TimeParser.parse(times[i]);
+        }
+        batch.addStringColumn(col);
+        for (int i = 0; i < types.length; i++) {
+            double[] v = values[i];
+            if (types[i] == Rollup.Type.COUNT) {
+                long[] counts = new long[size];
+                for (int j = 0; j < size; j++) {
+                    counts[j] = (long) v[j];
+                }
+                batch.addIntegerColumn(counts);
+            } else {
+                batch.addNumberColumn(Arrays.copyOf(v, size));
+            }
+        }
+        size = 0;
+        return batch;
+    }
+
+    private void emit(long ts) {
+        if (size == times.length) {
+            int len = size * 2;
+            times = Arrays.copyOf(times, len);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Arrays.copyOf(values[i], len);
+            }
+        }
+        times[size] = ts;
+        for (int i = 0; i < types.length; i++) {
+            values[i][size] = acc.get(types[i]);
+        }
+        size++;
+    }
+
+    /**
+     * @param parser Interval to aggregate.
+     * @param types Rollups to compute.
+     * @return Aggregator or {@code null} if there is no interval or a
+     *         rollup is not supported.
+     * @see RollupAccumulator#isSupported(Rollup.Type)
+     */
+    public static IntervalAggregator parse(IntervalParser parser,
+                                           Rollup.Type... types) {
+        if (parser == null || types.length == 0) {
+            return null;
+        }
+        for (Rollup.Type type : types) {
+            if (!RollupAccumulator.isSupported(type)) {
+                return null;
+            }
+        }
+        return new IntervalAggregator(parser, types.clone());
+    }
+}
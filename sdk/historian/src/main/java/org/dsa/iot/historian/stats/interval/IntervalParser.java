@@ -27,6 +27,7 @@ public class IntervalParser {
     private boolean alignYears;
 
     private long incrementTime;
+    private String expression;
 
     /**
      * @return The total amount of time combined to increment by.
@@ -35,6 +36,37 @@ public class IntervalParser {
         return incrementTime;
     }
 
+    /**
+     * @return The largest unit of time that timestamps are aligned to or
+     *         {@code 0} if timestamps are not aligned.
+     */
+    public long alignmentTime() {
+        if (alignYears) {
+            return (long) 3.154e+10;
+        } else if (alignMonths) {
+            return (long) 2.628e+9;
+        } else if (alignWeeks) {
+            return (long) 6.048e+8;
+        } else if (alignDays) {
+            return (long) 8.64e+7;
+        } else if (alignHours) {
+            return (long) 3.6e6;
+        } else if (alignMinutes) {
+            return (long) 6e+4;
+        } else if (alignSeconds) {
+            return (long) 1e+3;
+        }
+        return 0;
+    }
+
+    /**
+     * @return The expression the interval was parsed from.
+     */
+    @Override
+    public String toString() {
+        return expression;
+    }
+
     /**
      * @param ts Timestamp to align
      * @return Aligned timestamp
@@ -184,6 +216,7 @@ public class IntervalParser {
         }
 
         parser.finishParsing();
+        parser.expression = interval;
         return parser;
     }
 }
@@ -80,6 +80,14 @@ public class IntervalProcessor {
         return row;
     }
 
+    /**
+     * @return Aligned start of the interval in progress or {@code -1} if
+     *         no value was processed.
+     */
+    public long getIntervalStart() {
+        return lastValueTimeTrunc;
+    }
+
     public Row complete() {
         if (lastValue == null) {
             // Don't duplicate the value if the interval finished and there
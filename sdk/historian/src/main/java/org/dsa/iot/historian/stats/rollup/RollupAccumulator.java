@@ -0,0 +1,164 @@
+package org.dsa.iot.historian.stats.rollup;
+
+/**
+ * Computes the numeric rollups of a set of values in a single pass without
+ * boxing. Values that are not numbers are represented by
+ * {@link Double#NaN}, they are counted but otherwise ignored.
+ *
+ * @author Samuel Grenier
+ * @see #isSupported(Rollup.Type)
+ */
+public class RollupAccumulator {
+
+    private long count;
+    private long numbers;
+    private double sum;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    /**
+     * Resets the accumulator for consumption again.
+     */
+    public void reset() {
+        count = 0;
+        numbers = 0;
+        sum = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+    }
+
+    /**
+     * @param value Value to update or {@link Double#NaN} if the value is
+     *              not a number.
+     */
+    public void update(double value) {
+        count++;
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (numbers++ == 0) {
+            min = value;
+            max = value;
+        } else {
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+        sum += value;
+    }
+
+    /**
+     * Merges the values of another accumulator into this one.
+     *
+     * @param other Accumulator to merge.
+     */
+    public void merge(RollupAccumulator other) {
+        if (other.numbers > 0) {
+            if (numbers == 0) {
+                min = other.min;
+                max = other.max;
+            } else {
+                min = Math.min(min, other.min);
+                max = Math.max(max, other.max);
+            }
+        }
+        count += other.count;
+        numbers += other.numbers;
+        sum += other.sum;
+    }
+
+    /**
+     * Restores a previously computed state.
+     *
+     * @param count Amount of values.
+     * @param numbers Amount of values that are numbers.
+     * @param sum Sum of the numbers.
+     * @param min Minimum number.
+     * @param max Maximum number.
+     */
+    public void set(long count, long numbers, double sum, double min, double max) {
+        this.count = count;
+        this.numbers = numbers;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return Amount of values, including values that are not numbers.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Amount of values that are numbers.
+     */
+    public long getNumberCount() {
+        return numbers;
+    }
+
+    /**
+     * @return Sum of the numbers.
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return Minimum number or {@link Double#NaN} if there were no numbers.
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return Maximum number or {@link Double#NaN} if there were no numbers.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return Sum of the numbers divided by the amount of values.
+     */
+    public double getAverage() {
+        return sum / count;
+    }
+
+    /**
+     * @param type Rollup to get.
+     * @return Statistical value of the rollup.
+     */
+    public double get(Rollup.Type type) {
+        switch (type) {
+            case AVERAGE:
+                return getAverage();
+            case COUNT:
+                return count;
+            case MAX:
+                return max;
+            case MIN:
+                return min;
+            case SUM:
+                return sum;
+            default:
+                throw new IllegalArgumentException("Unsupported rollup: " + type);
+        }
+    }
+
+    /**
+     * @param type Rollup to check.
+     * @return Whether the rollup can be computed by the accumulator.
+     */
+    public static boolean isSupported(Rollup.Type type) {
+        return type == Rollup.Type.AVERAGE
+                || type == Rollup.Type.COUNT
+                || type == Rollup.Type.MAX
+                || type == Rollup.Type.MIN
+                || type == Rollup.Type.SUM;
+    }
+}
@@ -0,0 +1,268 @@
+package org.dsa.iot.historian.stats.rollup;
+
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.dsa.iot.historian.stats.interval.IntervalParser;
+import org.dsa.iot.historian.utils.WriteData;
+
+import java.util.*;
+
+/**
+ * Maintains downsampled tiers of the written values. Each tier rolls up
+ * the values of a path into fixed buckets as they are written and stores
+ * every completed bucket as a single point under its own path, allowing
+ * long time ranges to be queried without reading the raw values.
+ * <p>
+ * A bucket point holds the count, sum, minimum and maximum of the bucket.
+ * The buckets in progress are stored with every batch of raw values so
+ * the tiers never fall behind the raw values, even if the buckets are
+ * never completed. The same bucket is therefore stored as many points
+ * that only hold the values since the previous point, these points must
+ * be merged when they are read.
+ *
+ * @author Samuel Grenier
+ * @see RollupAccumulator#merge(RollupAccumulator)
+ */
+public class RollupTiers {
+
+    private static final String SEPARATOR = "@rollup:";
+
+    private final List<Tier> tiers = new ArrayList<>();
+    private final long since;
+
+    /**
+     * @param config Comma separated intervals of the tiers, such as
+     *               {@code 1m,1h,1d}.
+     * @param since Time the tiers have been maintained since. Queries
+     *              starting before this time must use the raw values.
+     */
+    public RollupTiers(String config, long since) {
+        if (config == null) {
+            throw new NullPointerException("config");
+        }
+        for (String s : config.split(",")) {
+            s = s.trim();
+            if (s.isEmpty()) {
+                continue;
+            }
+            IntervalParser parser = IntervalParser.parse(s);
+            if (parser == null || parser.incrementTime() <= 0) {
+                throw new IllegalArgumentException("Invalid tier: " + s);
+            }
+            tiers.add(new Tier(s, parser.incrementTime()));
+        }
+        Collections.sort(tiers, new Comparator<Tier>() {
+            @Override
+            public int compare(Tier a, Tier b) {
+                return Long.compare(a.interval, b.interval);
+            }
+        });
+        this.since = since;
+    }
+
+    /**
+     * @return Whether there are any tiers to maintain.
+     */
+    public boolean isEmpty() {
+        return tiers.isEmpty();
+    }
+
+    /**
+     * @return Time the tiers have been maintained since.
+     */
+    public long getSince() {
+        return since;
+    }
+
+    /**
+     * Rolls up a written value into every tier.
+     *
+     * @param path Path of the value.
+     * @param value Value that was written.
+     * @param ts Timestamp of the value.
+     * @param out Receives the points of buckets that were completed.
+     */
+    public void update(String path, Value value, long ts, List<WriteData> out) {
+        Number n = value.getNumber();
+        double d = n != null ? n.doubleValue() : Double.NaN;
+        for (Tier tier : tiers) {
+            tier.update(path, d, ts, out);
+        }
+    }
+
+    /**
+     * Writes the values rolled up into the buckets in progress since they
+     * were last written. The buckets remain in progress and values that
+     * arrive later are stored as additional points.
+     *
+     * @param out Receives the points of the buckets.
+     */
+    public void checkpoint(List<WriteData> out) {
+        for (Tier tier : tiers) {
+            tier.checkpoint(out);
+        }
+    }
+
+    /**
+     * Writes the buckets that are in progress. Values that arrive later
+     * for the same buckets are stored as additional points.
+     *
+     * @param out Receives the points of the buckets.
+     */
+    public void flush(List<WriteData> out) {
+        for (Tier tier : tiers) {
+            tier.flush(out);
+        }
+    }
+
+    /**
+     * Selects the coarsest tier that produces the same intervals as the
+     * raw values. The buckets of the tier must evenly divide both the
+     * interval and the unit of time the interval is aligned to.
+     *
+     * @param parser Requested interval.
+     * @return Tier or {@code null} if no tier can satisfy the interval.
+     */
+    public Tier select(IntervalParser parser) {
+        long interval = parser.incrementTime();
+        long alignment = parser.alignmentTime();
+        for (int i = tiers.size() - 1; i >= 0; i--) {
+            Tier tier = tiers.get(i);
+            long size = tier.interval;
+            if (alignment > 0
+                    && alignment % size == 0
+                    && interval % size == 0) {
+                return tier;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a bucket point into the accumulator.
+     *
+     * @param value Value of the point.
+     * @param acc Accumulator to reset and populate.
+     * @return Whether the value was a bucket point.
+     */
+    public static boolean decode(Value value, RollupAccumulator acc) {
+        JsonObject obj = value != null ? value.getMap() : null;
+        if (obj == null) {
+            return false;
+        }
+        Number count = obj.get("c");
+        Number numbers = obj.get("n");
+        Number sum = obj.get("s");
+        if (count == null || numbers == null || sum == null) {
+            return false;
+        }
+        Number min = obj.get("min");
+        Number max = obj.get("max");
+        acc.reset();
+        acc.set(count.longValue(),
+                numbers.longValue(),
+                sum.doubleValue(),
+                min != null ? min.doubleValue() : Double.NaN,
+                max != null ? max.doubleValue() : Double.NaN);
+        return true;
+    }
+
+    private static Value encode(RollupAccumulator acc) {
+        JsonObject obj = new JsonObject();
+        obj.put("c", acc.getCount());
+        obj.put("n", acc.getNumberCount());
+        obj.put("s", acc.getSum());
+        if (acc.getNumberCount() > 0) {
+            obj.put("min", acc.getMin());
+            obj.put("max", acc.getMax());
+        }
+        return new Value(obj);
+    }
+
+    public static class Tier {
+
+        private final Map<String, Bucket> buckets = new HashMap<>();
+        private final String name;
+        private final long interval;
+
+        Tier(String name, long interval) {
+            this.name = name;
+            this.interval = interval;
+        }
+
+        /**
+         * @return Bucket size of the tier in milliseconds.
+         */
+        public long getInterval() {
+            return interval;
+        }
+
+        /**
+         * @param path Path of the raw values.
+         * @return Path the tier of the raw values is stored under.
+         */
+        public String getPath(String path) {
+            return path + SEPARATOR + name;
+        }
+
+        /**
+         * Values at or after the returned time have not been stored in the
+         * tier yet and must be read from the raw values.
+         *
+         * @param path Path of the raw values.
+         * @return Start of the bucket in progress or {@code -1} if there
+         *         is none.
+         */
+        public synchronized long getPendingStart(String path) {
+            Bucket b = buckets.get(path);
+            return b != null ? b.start : -1;
+        }
+
+        synchronized void update(String path,
+                                 double value,
+                                 long ts,
+                                 List<WriteData> out) {
+            long start = ts - (ts % interval);
+            if (ts < 0 && start != ts) {
+                start -= interval;
+            }
+            Bucket b = buckets.get(path);
+            if (b == null) {
+                b = new Bucket(start);
+                buckets.put(path, b);
+            } else if (b.start != start) {
+                write(path, b, out);
+                b.start = start;
+            }
+            b.acc.update(value);
+        }
+
+        synchronized void checkpoint(List<WriteData> out) {
+            for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+                write(entry.getKey(), entry.getValue(), out);
+            }
+        }
+
+        synchronized void flush(List<WriteData> out) {
+            checkpoint(out);
+            buckets.clear();
+        }
+
+        private void write(String path, Bucket b, List<WriteData> out) {
+            if (b.acc.getCount() > 0) {
+                out.add(new WriteData(getPath(path), encode(b.acc), b.start));
+                b.acc.reset();
+            }
+        }
+    }
+
+    private static class Bucket {
+
+        private final RollupAccumulator acc = new RollupAccumulator();
+        private long start;
+
+        Bucket(long start) {
+            this.start = start;
+        }
+    }
+}
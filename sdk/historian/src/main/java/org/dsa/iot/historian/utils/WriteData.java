@@ -0,0 +1,38 @@
+package org.dsa.iot.historian.utils;
+
+import org.dsa.iot.dslink.node.value.Value;
+
+/**
+ * A single value to be written into the database.
+ *
+ * @author Samuel Grenier
+ */
+public class WriteData {
+
+    private final String path;
+    private final Value value;
+    private final long ts;
+
+    /**
+     * @param path Path of the value.
+     * @param value Value received from the server.
+     * @param ts Converted time in UTC.
+     */
+    public WriteData(String path, Value value, long ts) {
+        this.path = path;
+        this.value = value;
+        this.ts = ts;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Value getValue() {
+        return value;
+    }
+
+    public long getTimestamp() {
+        return ts;
+    }
+}
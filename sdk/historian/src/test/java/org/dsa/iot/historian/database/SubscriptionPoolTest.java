@@ -0,0 +1,98 @@
+package org.dsa.iot.historian.database;
+
+import org.dsa.iot.dslink.DSLinkHandler;
+import org.dsa.iot.dslink.link.Requester;
+import org.dsa.iot.dslink.node.value.SubscriptionValue;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.handler.Handler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tests dispatching the updates of the subscription pool to watches.
+ *
+ * @author Samuel Grenier
+ */
+public class SubscriptionPoolTest {
+
+    /**
+     * Ensures restamping an update leaves the value shared with the other
+     * handlers of the requester untouched.
+     */
+    @Test
+    public void restampCopiesValue() throws InterruptedException {
+        Requester requester = new Requester(new DSLinkHandler() {});
+        SubscriptionPool pool = new SubscriptionPool(requester);
+        TestWatch watch = new TestWatch();
+        pool.subscribe("/a", watch);
+        awaitSubscribed(requester, "/a");
+
+        final List<SubscriptionValue> shared = new CopyOnWriteArrayList<>();
+        requester.subscribe("/a", new Handler<SubscriptionValue>() {
+            @Override
+            public void handle(SubscriptionValue event) {
+                shared.add(event);
+            }
+        });
+
+        Value value = new Value(1, "2000-01-01T00:00:00.000+00:00");
+        long time = value.getTime();
+        update(requester, "/a", value);
+
+        Assert.assertEquals(1, watch.received.size());
+        Value recorded = watch.received.get(0).getValue();
+        Assert.assertNotSame(value, recorded);
+        Assert.assertTrue(recorded.getTime() > time);
+        Assert.assertEquals(1, recorded.getNumber().intValue());
+        Assert.assertEquals(time, shared.get(0).getValue().getTime());
+    }
+
+    /**
+     * Ensures timestamps of the source are kept when configured.
+     */
+    @Test
+    public void preserveTimestamps() throws InterruptedException {
+        Requester requester = new Requester(new DSLinkHandler() {});
+        SubscriptionPool pool = new SubscriptionPool(requester);
+        pool.setPreserveTimestamps(true);
+        TestWatch watch = new TestWatch();
+        pool.subscribe("/a", watch);
+        awaitSubscribed(requester, "/a");
+
+        Value value = new Value(1, "2000-01-01T00:00:00.000+00:00");
+        update(requester, "/a", value);
+        Assert.assertSame(value, watch.received.get(0).getValue());
+    }
+
+    private static void awaitSubscribed(Requester requester, String path)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (!requester.isSubscribed(path)) {
+            Assert.assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    private static void update(Requester requester, String path, Value value) {
+        int sid = requester.getSubscriptionPaths().get(path);
+        Handler<SubscriptionValue> handler = requester.getSubscriptionHandlers().get(sid);
+        handler.handle(new SubscriptionValue(path, value, null, null, null, null));
+    }
+
+    private static class TestWatch extends Watch {
+
+        private final List<SubscriptionValue> received = new CopyOnWriteArrayList<>();
+
+        TestWatch() {
+            super(null, null);
+        }
+
+        @Override
+        public void onData(SubscriptionValue sv) {
+            received.add(sv);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.dsa.iot.historian.database;
+
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.handler.CompleteHandler;
+import org.dsa.iot.historian.utils.QueryData;
+import org.dsa.iot.historian.utils.WriteData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Database that keeps every written value in memory.
+ *
+ * @author Samuel Grenier
+ */
+public class TestDatabase extends Database {
+
+    private final List<WriteData> written = new ArrayList<>();
+    private final List<Integer> batches = new ArrayList<>();
+    private boolean blocked;
+
+    public TestDatabase() {
+        super("test", null);
+    }
+
+    /**
+     * @param blocked Whether writes block until unblocked.
+     */
+    public synchronized void setBlocked(boolean blocked) {
+        this.blocked = blocked;
+        notifyAll();
+    }
+
+    /**
+     * @return Copy of every value written so far.
+     */
+    public synchronized List<WriteData> getWritten() {
+        return new ArrayList<>(written);
+    }
+
+    /**
+     * @return Sizes of every batch written so far.
+     */
+    public synchronized List<Integer> getBatches() {
+        return new ArrayList<>(batches);
+    }
+
+    /**
+     * Waits until at least the amount of values are written.
+     *
+     * @param count Amount of values to wait for.
+     * @param timeout Time in milliseconds to wait for.
+     * @return Whether the values were written in time.
+     */
+    public synchronized boolean awaitWritten(int count, long timeout)
+                                                throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (written.size() < count) {
+            long remaining = end - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    @Override
+    public void write(String path, Value value, long ts) {
+        List<WriteData> batch = new ArrayList<>(1);
+        batch.add(new WriteData(path, value, ts));
+        writeBatch(batch);
+    }
+
+    @Override
+    public synchronized void writeBatch(List<WriteData> batch) {
+        while (blocked) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        written.addAll(batch);
+        batches.add(batch.size());
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void query(String path, long from, long to,
+                                   CompleteHandler<QueryData> handler) {
+        for (WriteData data : written) {
+            long ts = data.getTimestamp();
+            if (data.getPath().equals(path) && ts >= from && ts <= to) {
+                handler.handle(new QueryData(data.getValue(), ts));
+            }
+        }
+        handler.complete();
+    }
+
+    @Override
+    public QueryData queryFirst(String path) {
+        return null;
+    }
+
+    @Override
+    public QueryData queryLast(String path) {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    protected void performConnect() {
+    }
+
+    @Override
+    public void initExtensions(Node node) {
+    }
+}
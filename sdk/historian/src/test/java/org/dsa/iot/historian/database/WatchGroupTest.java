@@ -0,0 +1,129 @@
+package org.dsa.iot.historian.database;
+
+import org.dsa.iot.dslink.DSLink;
+import org.dsa.iot.dslink.link.Linkable;
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.NodeBuilder;
+import org.dsa.iot.dslink.node.Permission;
+import org.dsa.iot.dslink.node.SubscriptionManager;
+import org.dsa.iot.dslink.node.value.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * Tests loading the settings of watch groups.
+ *
+ * @author Samuel Grenier
+ */
+public class WatchGroupTest {
+
+    /**
+     * Ensures groups persisted before the batch size setting existed load
+     * with its default.
+     */
+    @Test
+    public void preBatchSizeSettings() {
+        Node edit = loadGroup("bs");
+        Assert.assertEquals(1000, edit.getRoConfig("bs").getNumber().intValue());
+    }
+
+    /**
+     * Ensures groups persisted before the buffer capacity, byte limit and
+     * overflow policy settings existed load with their defaults.
+     */
+    @Test
+    public void preOverflowSettings() {
+        Node edit = loadGroup("bc", "mbb", "op");
+        Assert.assertEquals(100000, edit.getRoConfig("bc").getNumber().intValue());
+        int mbb = edit.getRoConfig("mbb").getNumber().intValue();
+        Assert.assertEquals(16 * 1024 * 1024, mbb);
+        String op = edit.getRoConfig("op").getString();
+        Assert.assertEquals(OverflowPolicy.SPILL.getName(), op);
+    }
+
+    /**
+     * Ensures groups persisted before rollup tiers existed load without
+     * any tiers.
+     */
+    @Test
+    public void preRollupSettings() {
+        Node edit = loadGroup("rt", "rts");
+        Assert.assertEquals("", edit.getRoConfig("rt").getString());
+        Assert.assertEquals(0, edit.getRoConfig("rts").getNumber().intValue());
+    }
+
+    /**
+     * Ensures groups persisted before any of the write buffer and rollup
+     * settings existed load with their defaults.
+     */
+    @Test
+    public void preSeriesSettings() {
+        Node edit = loadGroup("bs", "bc", "mbb", "op", "rt", "rts");
+        Assert.assertEquals(1000, edit.getRoConfig("bs").getNumber().intValue());
+        Assert.assertEquals(100000, edit.getRoConfig("bc").getNumber().intValue());
+        String op = edit.getRoConfig("op").getString();
+        Assert.assertEquals(OverflowPolicy.SPILL.getName(), op);
+        Assert.assertEquals("", edit.getRoConfig("rt").getString());
+        Assert.assertEquals(5, edit.getRoConfig("bft").getNumber().intValue());
+    }
+
+    /**
+     * Initializes the settings of a group whose persisted edit node lacks
+     * some of the settings.
+     *
+     * @param missing Settings the edit node was persisted without.
+     * @return Edit node of the group.
+     */
+    private static Node loadGroup(String... missing) {
+        Node node = new Node("group", null, new TestLinkable());
+        {
+            NodeBuilder b = node.createChild("edit");
+            b.setRoConfig("bft", new Value(5));
+            b.setRoConfig("lt", new Value(LoggingType.ALL_DATA.getName()));
+            b.setRoConfig("i", new Value(5));
+            b.setRoConfig("bs", new Value(500));
+            b.setRoConfig("bc", new Value(50000));
+            b.setRoConfig("mbb", new Value(1024));
+            b.setRoConfig("op", new Value(OverflowPolicy.BLOCK.getName()));
+            b.setRoConfig("rt", new Value(""));
+            b.setRoConfig("rts", new Value(0));
+            for (String name : missing) {
+                b.getChild().removeRoConfig(name);
+            }
+            b.build();
+        }
+
+        WatchGroup group = new WatchGroup(Permission.READ, node, new TestDatabase());
+        try {
+            group.initSettings();
+        } finally {
+            group.close();
+        }
+        return node.getChild("edit");
+    }
+
+    private static class TestLinkable extends Linkable {
+
+        private final SubscriptionManager manager = new SubscriptionManager(null);
+
+        TestLinkable() {
+            super(null);
+        }
+
+        @Override
+        public SubscriptionManager getSubscriptionManager() {
+            return manager;
+        }
+
+        @Override
+        public void batchSet(Map<Node, Value> updates) {
+        }
+
+        @Override
+        public DSLink getDSLink() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.dsa.iot.historian.database;
+
+import org.dsa.iot.dslink.node.value.SubscriptionValue;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.historian.stats.rollup.RollupAccumulator;
+import org.dsa.iot.historian.stats.rollup.RollupTiers;
+import org.dsa.iot.historian.utils.WatchUpdate;
+import org.dsa.iot.historian.utils.WriteData;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests batching and the overflow policies of the write buffer.
+ *
+ * @author Samuel Grenier
+ */
+public class WriteBufferTest {
+
+    private TestDatabase db;
+    private WriteBuffer buffer;
+    private Watch watch;
+
+    @Before
+    public void setup() {
+        db = new TestDatabase();
+        buffer = new WriteBuffer(db);
+        watch = new TestWatch("/data/a");
+    }
+
+    @After
+    public void teardown() {
+        db.setBlocked(false);
+        buffer.close();
+    }
+
+    /**
+     * Ensures values are written in batches in the order they were added.
+     */
+    @Test
+    public void batches() throws InterruptedException {
+        buffer.setFlushInterval(3600);
+        buffer.setBatchSize(10);
+        add(0, 25);
+        buffer.setFlushInterval(0);
+
+        Assert.assertTrue(db.awaitWritten(25, 5000));
+        assertWritten(0, 25);
+        for (int size : db.getBatches()) {
+            Assert.assertTrue(size <= 10);
+        }
+    }
+
+    /**
+     * Ensures reaching the byte limit flushes the buffer before the
+     * interval elapses.
+     */
+    @Test
+    public void byteLimit() throws InterruptedException {
+        buffer.setFlushInterval(3600);
+        buffer.setMaxBytes(300);
+        add(0, 1);
+        Thread.sleep(100);
+        Assert.assertTrue(db.getWritten().isEmpty());
+
+        add(1, 2);
+        Assert.assertTrue(db.awaitWritten(3, 5000));
+        assertWritten(0, 3);
+    }
+
+    /**
+     * Ensures the oldest values are dropped when the buffer is full.
+     */
+    @Test
+    public void dropOldest() throws InterruptedException {
+        buffer.setFlushInterval(3600);
+        buffer.setCapacity(5);
+        buffer.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+        add(0, 10);
+        Assert.assertEquals(5, buffer.getDroppedCount());
+        Assert.assertEquals(5, buffer.getQueueDepth());
+
+        buffer.setFlushInterval(0);
+        Assert.assertTrue(db.awaitWritten(5, 5000));
+        assertWritten(5, 5);
+    }
+
+    /**
+     * Ensures values exceeding the capacity are spilled to disk and
+     * replayed after the values in memory, retaining their order.
+     */
+    @Test
+    public void spill() throws InterruptedException {
+        db.setBlocked(true);
+        buffer.setFlushInterval(3600);
+        buffer.setCapacity(5);
+        buffer.setOverflowPolicy(OverflowPolicy.SPILL);
+        add(0, 20);
+        Assert.assertTrue(buffer.getTotalSpilledCount() > 0);
+        Assert.assertEquals(0, buffer.getDroppedCount());
+
+        db.setBlocked(false);
+        buffer.setFlushInterval(0);
+        Assert.assertTrue(db.awaitWritten(20, 5000));
+        assertWritten(0, 20);
+    }
+
+    /**
+     * Ensures producers are blocked while the buffer is full rather than
+     * losing values.
+     */
+    @Test
+    public void block() throws InterruptedException {
+        db.setBlocked(true);
+        buffer.setFlushInterval(3600);
+        buffer.setCapacity(2);
+        buffer.setOverflowPolicy(OverflowPolicy.BLOCK);
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                add(0, 6);
+            }
+        });
+        producer.start();
+        producer.join(500);
+        Assert.assertTrue(producer.isAlive());
+        Assert.assertTrue(buffer.getQueueDepth() <= 2);
+
+        db.setBlocked(false);
+        producer.join(5000);
+        Assert.assertFalse(producer.isAlive());
+        buffer.setFlushInterval(0);
+        Assert.assertTrue(db.awaitWritten(6, 5000));
+        assertWritten(0, 6);
+        Assert.assertEquals(0, buffer.getDroppedCount());
+    }
+
+    /**
+     * Ensures the rollup buckets in progress are written with every batch
+     * so the tiers are complete without the buffer being closed.
+     */
+    @Test
+    public void rollupCheckpoints() throws InterruptedException {
+        buffer.setRollupTiers(new RollupTiers("1h", 0));
+        buffer.setFlushInterval(3600);
+        add(0, 3);
+        buffer.setFlushInterval(0);
+        Assert.assertTrue(db.awaitWritten(4, 5000));
+        buffer.setFlushInterval(3600);
+        add(3, 2);
+        buffer.setFlushInterval(0);
+        Assert.assertTrue(db.awaitWritten(6, 5000));
+
+        RollupAccumulator total = new RollupAccumulator();
+        RollupAccumulator point = new RollupAccumulator();
+        String path = watch.getPath() + "@rollup:1h";
+        int points = 0;
+        for (WriteData data : db.getWritten()) {
+            if (path.equals(data.getPath())) {
+                Assert.assertTrue(RollupTiers.decode(data.getValue(), point));
+                total.merge(point);
+                points++;
+            }
+        }
+        Assert.assertTrue(points >= 2);
+        Assert.assertEquals(5, total.getCount());
+        Assert.assertEquals(10, total.getSum(), 0);
+    }
+
+    private void add(int start, int count) {
+        for (int i = start; i < start + count; i++) {
+            Value value = new Value(i);
+            SubscriptionValue sv;
+            sv = new SubscriptionValue(watch.getPath(), value, null, null, null, null);
+            buffer.add(new WatchUpdate(watch, sv));
+        }
+    }
+
+    private void assertWritten(int start, int count) {
+        List<WriteData> written = db.getWritten();
+        Assert.assertEquals(count, written.size());
+        for (int i = 0; i < count; i++) {
+            WriteData data = written.get(i);
+            Assert.assertEquals(watch.getPath(), data.getPath());
+            Assert.assertEquals(start + i, data.getValue().getNumber().intValue());
+        }
+    }
+
+    private static class TestWatch extends Watch {
+
+        private final String path;
+
+        TestWatch(String path) {
+            super(null, null);
+            this.path = path;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public void handleLastWritten(Value value) {
+        }
+    }
+}
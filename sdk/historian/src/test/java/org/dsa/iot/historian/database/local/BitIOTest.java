@@ -0,0 +1,82 @@
+package org.dsa.iot.historian.database.local;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Tests reading back bits written across byte boundaries.
+ *
+ * @author Samuel Grenier
+ */
+public class BitIOTest {
+
+    /**
+     * Ensures single bits, partial words and full words are read back
+     * as they were written.
+     */
+    @Test
+    public void roundTrip() {
+        BitOutput out = new BitOutput();
+        out.writeBit(true);
+        out.writeBits(0x5, 3);
+        out.writeBits(-1L, 64);
+        out.writeBit(false);
+        out.writeBits(Long.MIN_VALUE, 64);
+        out.writeBits(0x1234, 13);
+        out.writeBytes(new byte[] {1, -2, 127});
+        Assert.assertEquals((1 + 3 + 64 + 1 + 64 + 13 + 24 + 7) / 8, out.byteLength());
+
+        byte[] bytes = out.toByteArray();
+        BitInput in = new BitInput(ByteBuffer.wrap(bytes), 0, bytes.length);
+        Assert.assertTrue(in.readBit());
+        Assert.assertEquals(0x5, in.readBits(3));
+        Assert.assertEquals(-1L, in.readBits(64));
+        Assert.assertFalse(in.readBit());
+        Assert.assertEquals(Long.MIN_VALUE, in.readBits(64));
+        Assert.assertEquals(0x1234, in.readBits(13));
+        Assert.assertArrayEquals(new byte[] {1, -2, 127}, in.readBytes(3));
+    }
+
+    /**
+     * Ensures bits are read relative to the offset of the region.
+     */
+    @Test
+    public void offset() {
+        BitOutput out = new BitOutput();
+        out.writeBits(0xABC, 12);
+        byte[] bytes = out.toByteArray();
+
+        ByteBuffer buf = ByteBuffer.allocate(bytes.length + 3);
+        buf.position(3);
+        buf.put(bytes);
+        BitInput in = new BitInput(buf, 3, bytes.length);
+        Assert.assertEquals(0xABC, in.readBits(12));
+    }
+
+    /**
+     * Ensures the buffer grows past its initial capacity.
+     */
+    @Test
+    public void growth() {
+        BitOutput out = new BitOutput();
+        for (int i = 0; i < 1000; i++) {
+            out.writeBits(i, 17);
+        }
+        byte[] bytes = out.toByteArray();
+        BitInput in = new BitInput(ByteBuffer.wrap(bytes), 0, bytes.length);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(i, in.readBits(17));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void truncated() {
+        BitOutput out = new BitOutput();
+        out.writeBits(0xFF, 8);
+        byte[] bytes = out.toByteArray();
+        BitInput in = new BitInput(ByteBuffer.wrap(bytes), 0, bytes.length);
+        in.readBits(9);
+    }
+}
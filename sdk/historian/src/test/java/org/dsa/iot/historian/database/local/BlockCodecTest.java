@@ -0,0 +1,121 @@
+package org.dsa.iot.historian.database.local;
+
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Tests compressing points into blocks and decoding them.
+ *
+ * @author Samuel Grenier
+ */
+public class BlockCodecTest {
+
+    /**
+     * Ensures timestamps survive every delta-of-delta range as well as
+     * repeated and decreasing timestamps.
+     */
+    @Test
+    public void timestamps() {
+        long[] times = {
+                1000, 2000, 3000, 3064, 3064, 3000, 3255,
+                5300, 5300, -100000, Long.MAX_VALUE / 2, 0
+        };
+        BlockEncoder encoder = new BlockEncoder();
+        for (int i = 0; i < times.length; i++) {
+            encoder.append(times[i], new Value(i));
+        }
+        Assert.assertEquals(times.length, encoder.count());
+        Assert.assertEquals(-100000, encoder.minTimestamp());
+        Assert.assertEquals(Long.MAX_VALUE / 2, encoder.maxTimestamp());
+
+        BlockDecoder decoder = decode(encoder);
+        for (int i = 0; i < times.length; i++) {
+            Assert.assertTrue(decoder.next());
+            Assert.assertEquals(times[i], decoder.timestamp());
+            Assert.assertEquals(i, decoder.value().getNumber().intValue());
+        }
+        Assert.assertFalse(decoder.next());
+    }
+
+    /**
+     * Ensures numbers are restored exactly, whether they repeat, fit the
+     * previous window or need a new one.
+     */
+    @Test
+    public void numbers() {
+        double[] numbers = {
+                1.5, 1.5, 1.25, -7, 0, Double.NaN, Double.MAX_VALUE,
+                Double.MIN_VALUE, -0.0, 1e-300, 42, 42.000001
+        };
+        BlockEncoder encoder = new BlockEncoder();
+        for (int i = 0; i < numbers.length; i++) {
+            encoder.append(i, new Value(numbers[i]));
+        }
+
+        BlockDecoder decoder = decode(encoder);
+        for (double number : numbers) {
+            Assert.assertTrue(decoder.next());
+            double d = decoder.value().getNumber().doubleValue();
+            Assert.assertEquals(Double.doubleToRawLongBits(number),
+                                Double.doubleToRawLongBits(d));
+        }
+        Assert.assertFalse(decoder.next());
+    }
+
+    /**
+     * Ensures values other than numbers are mixed in with numbers.
+     */
+    @Test
+    public void values() {
+        JsonObject map = new JsonObject();
+        map.put("a", 1);
+        JsonArray array = new JsonArray();
+        array.add("b");
+
+        BlockEncoder encoder = new BlockEncoder();
+        encoder.append(0, new Value(1));
+        encoder.append(1, new Value(true));
+        encoder.append(2, new Value("text \u00e9"));
+        encoder.append(3, new Value((String) null));
+        encoder.append(4, new Value(map));
+        encoder.append(5, new Value(array));
+        encoder.append(6, new Value(new byte[] {1, 2, 3}));
+        encoder.append(7, new Value(false));
+        encoder.append(8, new Value(2));
+
+        BlockDecoder decoder = decode(encoder);
+        Assert.assertEquals(1, next(decoder).getNumber().intValue());
+        Assert.assertTrue(next(decoder).getBool());
+        Assert.assertEquals("text \u00e9", next(decoder).getString());
+
+        Value value = next(decoder);
+        Assert.assertNull(value.getNumber());
+        Assert.assertNull(value.getString());
+
+        Number a = next(decoder).getMap().get("a");
+        Assert.assertEquals(1, a.intValue());
+        String b = next(decoder).getArray().get(0);
+        Assert.assertEquals("b", b);
+        Assert.assertArrayEquals(new byte[] {1, 2, 3}, next(decoder).getBinary());
+        Assert.assertFalse(next(decoder).getBool());
+        Assert.assertEquals(2, next(decoder).getNumber().intValue());
+        Assert.assertFalse(decoder.next());
+    }
+
+    private static Value next(BlockDecoder decoder) {
+        Assert.assertTrue(decoder.next());
+        return decoder.value();
+    }
+
+    private static BlockDecoder decode(BlockEncoder encoder) {
+        byte[] data = encoder.toByteArray();
+        Assert.assertEquals(data.length, encoder.byteLength());
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        return new BlockDecoder(buf, 0, data.length, encoder.count());
+    }
+}
@@ -0,0 +1,176 @@
+package org.dsa.iot.historian.database.local;
+
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.historian.database.QueryCursor;
+import org.dsa.iot.historian.utils.QueryData;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests writing points to segments and reading them back.
+ *
+ * @author Samuel Grenier
+ */
+public class SeriesTest {
+
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("series", "");
+        Assert.assertTrue(dir.delete());
+    }
+
+    @After
+    @SuppressWarnings({"unused", "UnusedAssignment"})
+    public void cleanup() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                boolean ignored = file.delete();
+            }
+        }
+        boolean ignored = dir.delete();
+    }
+
+    /**
+     * Ensures points spanning partitions, flushed blocks and the open
+     * block are read back in order.
+     */
+    @Test
+    public void roundTrip() throws IOException {
+        Series series = new Series(dir, 1000, 4);
+        for (int i = 0; i < 30; i++) {
+            series.write(i * 100, new Value(i));
+            if (i == 12) {
+                series.flush();
+            }
+        }
+        assertPoints(series.openCursor(0, 3000), 0, 30);
+        assertPoints(series.openCursor(450, 1550), 5, 11);
+        Assert.assertEquals(0, series.first().getTimestamp());
+        Assert.assertEquals(2900, series.last().getTimestamp());
+
+        series.flush();
+        Series reopened = new Series(dir, 1000, 4);
+        assertPoints(reopened.openCursor(0, 3000), 0, 30);
+        Assert.assertEquals(0, reopened.first().getTimestamp());
+        Assert.assertEquals(2900, reopened.last().getTimestamp());
+    }
+
+    /**
+     * Ensures points written out of order are read back sorted, points of
+     * the same time being read in the order they were written.
+     */
+    @Test
+    public void outOfOrder() throws IOException {
+        Series series = new Series(dir, 1000, 100);
+        series.write(100, new Value("a"));
+        series.write(200, new Value("c"));
+        series.write(50, new Value("x"));
+        series.flush();
+        series.write(100, new Value("b"));
+        series.write(150, new Value("y"));
+        series.write(20, new Value("w"));
+
+        List<QueryData> points = read(series.openCursor(0, 1000));
+        Assert.assertEquals(6, points.size());
+        long prev = Long.MIN_VALUE;
+        StringBuilder order = new StringBuilder();
+        for (QueryData data : points) {
+            Assert.assertTrue(data.getTimestamp() >= prev);
+            prev = data.getTimestamp();
+            order.append(data.getValue().getString());
+        }
+        Assert.assertEquals("wxabyc", order.toString());
+
+        series.flush();
+        Series reopened = new Series(dir, 1000, 100);
+        Assert.assertEquals(20, reopened.first().getTimestamp());
+        Assert.assertEquals(200, reopened.last().getTimestamp());
+    }
+
+    /**
+     * Ensures a block torn by an abrupt shutdown is skipped when read and
+     * truncated before new blocks are appended.
+     */
+    @Test
+    public void tornBlock() throws IOException {
+        Series series = new Series(dir, 1000, 100);
+        for (int i = 0; i < 5; i++) {
+            series.write(i, new Value(i));
+        }
+        series.flush();
+
+        File file = new File(dir, "0.seg");
+        long length = file.length();
+        ByteBuffer header = ByteBuffer.allocate(Series.HEADER_SIZE);
+        header.putLong(5);
+        header.putLong(9);
+        header.putInt(5);
+        header.putInt(1000);
+        try (FileOutputStream fos = new FileOutputStream(file, true)) {
+            fos.write(header.array());
+            fos.write(new byte[10]);
+        }
+
+        Series reopened = new Series(dir, 1000, 100);
+        assertPoints(reopened.openCursor(0, 1000), 0, 5);
+        for (int i = 5; i < 10; i++) {
+            reopened.write(i, new Value(i));
+        }
+        reopened.flush();
+        Assert.assertTrue(file.length() > length);
+        assertPoints(new Series(dir, 1000, 100).openCursor(0, 1000), 0, 10);
+    }
+
+    /**
+     * Ensures a closed cursor stops returning points.
+     */
+    @Test
+    public void close() throws IOException {
+        Series series = new Series(dir, 1000, 2);
+        for (int i = 0; i < 10; i++) {
+            series.write(i, new Value(i));
+        }
+        series.flush();
+
+        QueryCursor cursor = series.openCursor(0, 1000);
+        Assert.assertNotNull(cursor.next());
+        cursor.close();
+        Assert.assertNull(cursor.next());
+        cursor.close();
+    }
+
+    private static void assertPoints(QueryCursor cursor, int start, int count) {
+        List<QueryData> points = read(cursor);
+        Assert.assertEquals(count, points.size());
+        for (int i = 0; i < count; i++) {
+            QueryData data = points.get(i);
+            int expected = start + i;
+            Assert.assertEquals(expected, data.getValue().getNumber().intValue());
+        }
+    }
+
+    private static List<QueryData> read(QueryCursor cursor) {
+        List<QueryData> points = new ArrayList<>();
+        try {
+            QueryData data;
+            while ((data = cursor.next()) != null) {
+                points.add(data);
+            }
+        } finally {
+            cursor.close();
+        }
+        return points;
+    }
+}
@@ -0,0 +1,148 @@
+package org.dsa.iot.historian.stats;
+
+import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.Permission;
+import org.dsa.iot.dslink.node.actions.ActionResult;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.json.EncodingFormat;
+import org.dsa.iot.dslink.util.json.JsonArray;
+import org.dsa.iot.dslink.util.json.JsonObject;
+import org.dsa.iot.historian.database.QueryCursor;
+import org.dsa.iot.historian.database.TestDatabase;
+import org.dsa.iot.historian.database.WatchGroup;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests querying the history of several paths of a group.
+ *
+ * @author Samuel Grenier
+ */
+public class GetGroupHistoryTest {
+
+    private static final String RANGE = "2016-01-01T00:00:00.000Z/2016-01-01T03:00:00.000Z";
+    private static final long START = 1451606400000L;
+
+    private WatchGroup group;
+
+    @After
+    public void teardown() {
+        if (group != null) {
+            group.close();
+        }
+    }
+
+    @Test
+    public void aligned() throws InterruptedException {
+        TestDatabase db = new TestDatabase();
+        db.write("/a", new Value(1), START);
+        db.write("/a", new Value(3), START + 1000);
+        db.write("/b", new Value(5), START + 3600000);
+
+        RecordingHandler handler = query(db, "/a,/b");
+        JsonObject last = handler.awaitClosed();
+        Assert.assertNull(last.get("error"));
+
+        List<JsonArray> rows = handler.rows();
+        Assert.assertEquals(2, rows.size());
+        Assert.assertEquals(2, ((Number) rows.get(0).get(1)).intValue());
+        Assert.assertNull(rows.get(0).get(2));
+        Assert.assertNull(rows.get(1).get(1));
+        Assert.assertEquals(5, ((Number) rows.get(1).get(2)).intValue());
+    }
+
+    /**
+     * Ensures a path that fails to be queried closes the table with the
+     * error rather than an empty result.
+     */
+    @Test
+    public void failure() throws InterruptedException {
+        TestDatabase db = new TestDatabase() {
+            @Override
+            public QueryCursor openCursor(String path, long from, long to) {
+                if ("/bad".equals(path)) {
+                    throw new IllegalStateException("broken");
+                }
+                return super.openCursor(path, from, to);
+            }
+        };
+        db.write("/a", new Value(1), START);
+
+        RecordingHandler handler = query(db, "/a,/bad");
+        JsonObject last = handler.awaitClosed();
+        JsonObject error = last.get("error");
+        Assert.assertNotNull(error);
+        Assert.assertEquals("broken", error.get("msg"));
+        Assert.assertTrue(handler.rows().isEmpty());
+    }
+
+    private RecordingHandler query(TestDatabase db, String paths) {
+        Node node = new Node("group", null, null);
+        group = new WatchGroup(Permission.READ, node, db);
+
+        JsonObject params = new JsonObject();
+        params.put("Timerange", RANGE);
+        params.put("Interval", "1h");
+        params.put("Rollup", "avg");
+        params.put("Paths", paths);
+        JsonObject in = new JsonObject();
+        in.put("params", params);
+
+        ActionResult result = new ActionResult(node, in);
+        RecordingHandler handler = new RecordingHandler();
+        result.getTable().setStreaming(1, handler, null);
+        new GetGroupHistory(group).handle(result);
+        return handler;
+    }
+
+    private static class RecordingHandler extends DataHandler {
+
+        private final List<JsonObject> responses = new ArrayList<>();
+
+        @Override
+        public synchronized void writeResponse(JsonObject object) {
+            responses.add(object);
+            notifyAll();
+        }
+
+        @Override
+        public void awaitResponseCapacity(int limit) {
+        }
+
+        synchronized JsonObject awaitClosed() throws InterruptedException {
+            long end = System.currentTimeMillis() + 5000;
+            while (true) {
+                if (!responses.isEmpty()) {
+                    JsonObject last = responses.get(responses.size() - 1);
+                    if ("closed".equals(last.get("stream"))) {
+                        return last;
+                    }
+                }
+                long left = end - System.currentTimeMillis();
+                Assert.assertTrue("Table was not closed", left > 0);
+                wait(left);
+            }
+        }
+
+        synchronized List<JsonArray> rows() {
+            List<JsonArray> rows = new ArrayList<>();
+            for (JsonObject resp : responses) {
+                // Rows are written straight from their columns when encoded
+                byte[] bytes = resp.encode(EncodingFormat.JSON);
+                resp = new JsonObject(EncodingFormat.JSON, bytes);
+                JsonArray updates = resp.get("updates");
+                if (updates != null) {
+                    for (Object row : updates) {
+                        rows.add((JsonArray) row);
+                    }
+                }
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.dsa.iot.historian.stats.interval;
+
+import org.dsa.iot.dslink.node.actions.table.Row;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.historian.stats.rollup.Rollup;
+import org.dsa.iot.historian.utils.QueryData;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Ensures the aggregator produces the same rows as the
+ * {@link IntervalProcessor} and {@link Rollup} it replaces.
+ *
+ * @author Samuel Grenier
+ */
+@RunWith(Parameterized.class)
+public class IntervalAggregatorTest {
+
+    private final Rollup.Type type;
+
+    public IntervalAggregatorTest(Rollup.Type type) {
+        this.type = type;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> types() {
+        return Arrays.asList(new Object[][] {
+                {Rollup.Type.AVERAGE},
+                {Rollup.Type.MIN},
+                {Rollup.Type.MAX},
+                {Rollup.Type.SUM},
+                {Rollup.Type.COUNT}
+        });
+    }
+
+    @Test
+    public void numbers() {
+        List<QueryData> data = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            data.add(new QueryData(new Value(i % 7 - 3.5), i * 300));
+        }
+        assertEquivalent("1s", data);
+    }
+
+    /**
+     * Ensures values that are not numbers are counted but otherwise
+     * ignored, including intervals without any number.
+     */
+    @Test
+    public void nonNumeric() {
+        List<QueryData> data = new ArrayList<>();
+        data.add(new QueryData(new Value("a"), 0));
+        data.add(new QueryData(new Value(2), 100));
+        data.add(new QueryData(new Value(true), 200));
+        data.add(new QueryData(new Value("b"), 1100));
+        data.add(new QueryData(new Value(false), 1200));
+        data.add(new QueryData(new Value(5), 2100));
+        data.add(new QueryData(new Value("c"), 2200));
+        data.add(new QueryData(new Value(-1), 2300));
+        data.add(new QueryData(new Value("d"), 3100));
+        assertEquivalent("1s", data);
+    }
+
+    /**
+     * Ensures intervals without any values are skipped by both.
+     */
+    @Test
+    public void emptyIntervals() {
+        List<QueryData> data = new ArrayList<>();
+        data.add(new QueryData(new Value(1), 500));
+        data.add(new QueryData(new Value(2), 700));
+        data.add(new QueryData(new Value(3), 12000));
+        data.add(new QueryData(new Value(4), 60500));
+        data.add(new QueryData(new Value(5), 61000));
+        assertEquivalent("5s", data);
+    }
+
+    @Test
+    public void noValues() {
+        assertEquivalent("1s", new ArrayList<QueryData>());
+    }
+
+    private void assertEquivalent(String interval, List<QueryData> data) {
+        IntervalProcessor processor;
+        processor = IntervalProcessor.parse(IntervalParser.parse(interval), type);
+        List<Row> expected = new ArrayList<>();
+        for (QueryData qd : data) {
+            Row row = processor.getRowUpdate(qd, qd.getTimestamp());
+            if (row != null) {
+                expected.add(row);
+            }
+        }
+        Row last = processor.complete();
+        if (last != null) {
+            expected.add(last);
+        }
+
+        IntervalAggregator aggregator;
+        aggregator = IntervalAggregator.parse(IntervalParser.parse(interval), type);
+        Assert.assertNotNull(aggregator);
+        for (QueryData qd : data) {
+            aggregator.update(qd.getTimestamp(), qd.getValue());
+        }
+        aggregator.complete();
+        List<Row> actual = aggregator.drain().toBatchRow().getRows();
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            List<Value> e = expected.get(i).getValues();
+            List<Value> a = actual.get(i).getValues();
+            Assert.assertEquals(e.get(0).getString(), a.get(0).getString());
+
+            Number en = e.get(1).getNumber();
+            Number an = a.get(1).getNumber();
+            if (en == null) {
+                Assert.assertNull(an);
+            } else if (type == Rollup.Type.COUNT) {
+                Assert.assertEquals(en, an);
+            } else {
+                Assert.assertEquals(en.doubleValue(), an.doubleValue(), 0);
+            }
+        }
+    }
+}